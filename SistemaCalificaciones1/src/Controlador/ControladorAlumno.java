@@ -1,26 +1,70 @@
 package Controlador;
 
 import Modelo.Alumno;
+import Modelo.BitacoraAuditoria;
+import Modelo.AlmacenFueraDelHeap;
 import Modelo.AlumnoDAO;
+import Modelo.CacheConsultas;
+import Modelo.ConsultaAlumnos;
+import Modelo.DiccionarioCadenas;
+import Modelo.ConsultaRanking;
+import Modelo.DetectorDuplicados;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Queue;
-
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import Modelo.DiferenciaAlumnos;
+import Modelo.ExportadorAlumnos;
+import Modelo.FormatoExportacion;
 import Modelo.GestorArchivos;
+import Modelo.GestorRespaldos;
+import Modelo.HistorialCalificaciones;
+import Modelo.IndiceNombres;
+import Modelo.LoteCambios;
+import Modelo.ManifiestoCatalogo;
+import Modelo.MonitorCarpetas;
+import Modelo.PromocionSemestres;
+import Modelo.RaicesAlmacenamiento;
+import Modelo.ReporteCalificaciones;
+import Modelo.RegistroVersiones;
+import Modelo.Replicador;
 /*es la clase que permite que la interfaz del usuario 
  * pueda crear, modificar, eliminar, cargar y mostrar alumnos usando los métodos del DAO.
  */
 public class ControladorAlumno {
 
-    // Carpeta raíz donde se almacenan las carreras y sus archivos
+    // Carpeta raíz predeterminada donde se almacenan las carreras y sus archivos
     private static final String RAIZ = "Alumnos";
 
+    // Carpeta donde se guardan los respaldos de "Alumnos"
+    private static final String RESPALDOS = "Respaldos";
+
+    // Cantidad de respaldos recientes que no se comprimen
+    private static final int RESPALDOS_SIN_COMPRIMIR = 5;
+
+    // Carpeta donde se guardan los índices de búsqueda
+    private static final String INDICES = "Indices";
+
+    // Máximo de resultados que devuelve una búsqueda por nombre
+    private static final int LIMITE_BUSQUEDA = 500;
+
+    // Carpetas de alumnos de esta instancia (una o varias, ver RaicesAlmacenamiento).
+    // Respaldos e índices de cada una se guardan junto a ella
+    private final RaicesAlmacenamiento raices;
+
     // DAO para manejar lectura y escritura del archivo actual
     private AlumnoDAO dao;
 
@@ -31,17 +75,96 @@ public class ControladorAlumno {
     private String carreraActual;
     private String semestreActual;
 
+    // Sus códigos en DiccionarioCadenas (-1 si el diccionario estaba lleno)
+    private int codigoCarreraActual;
+    private int codigoSemestreActual;
+
     // No usado en este código, pero es una referencia para posible controlador padre
     private ControladorAlumno controlador;
 
+    // Vigilan las carpetas compartidas para detectar cambios hechos por otras oficinas
+    private final List<MonitorCarpetas> monitores = new ArrayList<>();
+
+    // Recibe los cambios detectados en el archivo actual (normalmente la tabla)
+    private Consumer<DiferenciaAlumnos> oyenteArchivoActual;
+
+    // Oyente registrado en RegistroVersiones mientras el monitoreo está activo
+    private Consumer<File> oyenteVersiones;
+
+    // Servidor HTTP local (null mientras no esté encendido)
+    private ServidorApi servidorApi;
+
+    // Último contenido del archivo actual entregado a la vista
+    private volatile List<Alumno> ultimaLista = new ArrayList<>();
+    private volatile String rutaUltimaLista;
+
     /**
      * Constructor.
      * Asigna una ruta por defecto para evitar errores iniciales.
-     * En la interfaz se puede cambiar después.
+     * En la interfaz se puede cambiar después. No toca el disco: el archivo
+     * se crea al cambiar de semestre o al guardar el primer alumno.
      */
     public ControladorAlumno() {
+        this(RaicesAlmacenamiento.configuradas(RAIZ));
+    }
+
+    /**
+     * Constructor con otra carpeta de alumnos (por ejemplo, para pruebas de
+     * carga). Respaldos e índices se guardan junto a esa carpeta.
+     */
+    public ControladorAlumno(String raiz) {
+        this(new RaicesAlmacenamiento(List.of(new File(raiz))));
+    }
+
+    /**
+     * Constructor con las carreras repartidas en varias carpetas de alumnos
+     * (por ejemplo, una por disco).
+     */
+    public ControladorAlumno(RaicesAlmacenamiento raices) {
+        this.raices = raices;
+
         // Establece carpeta y archivo inicial
-        cambiarCarreraSemestre("Ingeniería en Sistemas", "Quinto Semestre");
+        seleccionar("Ingeniería en Sistemas", "Quinto Semestre");
+
+        // Un lote o una promoción interrumpidos se terminan antes de leer cualquier carrera
+        recuperarInterrumpidos();
+    }
+
+    /** Termina los lotes y las promociones que quedaron a medias */
+    private void recuperarInterrumpidos() {
+        for (File raiz : raices.todas()) {
+            try {
+                LoteCambios.recuperar(raiz);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            File[] carreras = raiz.listFiles(File::isDirectory);
+            if (carreras == null) continue;
+            for (File c : carreras) {
+                try {
+                    PromocionSemestres.recuperar(c);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /** Carpeta de respaldos de una carpeta de alumnos (junto a ella) */
+    private static String respaldosDe(File raiz) {
+        String padre = raiz.getParent();
+        return padre == null ? RESPALDOS : new File(padre, RESPALDOS).getPath();
+    }
+
+    /** Carpeta de índices de una carpeta de alumnos (junto a ella) */
+    private static String indicesDe(File raiz) {
+        String padre = raiz.getParent();
+        return padre == null ? INDICES : new File(padre, INDICES).getPath();
+    }
+
+    /** Carpeta de alumnos que contiene el archivo actual */
+    private File raizActual() {
+        return new File(rutaActual).getParentFile().getParentFile();
     }
 
     /**
@@ -49,37 +172,159 @@ public class ControladorAlumno {
      * También garantiza que existan las carpetas y el archivo .txt.
      */
     public void cambiarCarreraSemestre(String carrera, String semestre) {
-        this.carreraActual = carrera;
-        this.semestreActual = semestre;
-
-        // Crea carpeta raíz "Alumnos" si no existe
-        File base = new File(RAIZ);
+        // Crea carpeta raíz "Alumnos" (la que le toca a la carrera) si no existe
+        File base = raices.raizDe(carrera);
         if (!base.exists()) base.mkdirs();
 
         // Crea carpeta de la carrera (por ejemplo: Alumnos/Ingeniería en Sistemas)
-        File carpeta = new File(RAIZ + File.separator + carrera);
+        File carpeta = new File(base, carrera);
         if (!carpeta.exists()) carpeta.mkdirs();
 
-        // Construye la ruta del archivo del semestre
-        String archivo = carpeta.getAbsolutePath() + File.separator + semestre + ".txt";
-        File f = new File(archivo);
+        seleccionar(carrera, semestre);
 
-        // Garantiza existencia del archivo
+        // Garantiza existencia del archivo (si está comprimido se usa el .txtz)
+        File f = new File(rutaActual);
         try {
-            if (!f.exists()) f.createNewFile();
+            if (!f.exists() && !new File(rutaActual + "z").exists()) f.createNewFile();
         } catch (IOException e) {
             e.printStackTrace();
         }
+    }
 
+    /** Fija carrera, semestre, ruta y DAO actuales sin crear nada en disco */
+    private void seleccionar(String carrera, String semestre) {
+        this.carreraActual = DiccionarioCadenas.CARRERAS.canonica(carrera);
+        this.semestreActual = DiccionarioCadenas.SEMESTRES.canonica(semestre);
+        this.codigoCarreraActual = DiccionarioCadenas.CARRERAS.codigo(carrera);
+        this.codigoSemestreActual = DiccionarioCadenas.SEMESTRES.codigo(semestre);
+
+        // Construye la ruta del archivo del semestre
+        String archivo = new File(raices.raizDe(carrera), carrera).getAbsolutePath()
+                + File.separator + semestre + ".txt";
         this.rutaActual = archivo;
 
         // Crea DAO asociado a este archivo
         this.dao = new AlumnoDAO(archivo);
     }
 
-    /** Obtiene la lista completa de alumnos del archivo actual */
+    /**
+     * Obtiene la lista completa de alumnos del archivo actual. Al cambiar de
+     * semestre se precargan en segundo plano el siguiente y el anterior de
+     * la misma carrera, para que moverse entre ellos no espere al disco.
+     */
     public List<Alumno> listar() { 
-        return dao.listar(); 
+        boolean cambioDeVista = !rutaActual.equals(rutaUltimaLista);
+        // El almacén fuera del heap ya es una caché; copiarlo a la otra la volvería a llenar de objetos
+        List<Alumno> lista = AlumnoDAO.usaAlmacenFueraDelHeap() ? dao.listar()
+                : CacheConsultas.compartida().obtener("listar|" + rutaActual, new File(rutaActual), dao::listar);
+        ultimaLista = new ArrayList<>(lista);
+        rutaUltimaLista = rutaActual;
+        if (cambioDeVista && !AlumnoDAO.usaAlmacenFueraDelHeap()) precargarVecinos();
+        return lista;
+    }
+
+    /**
+     * Lee un semestre a la caché sin cambiar el archivo actual; se puede
+     * llamar desde otro hilo. El siguiente listar() de ese semestre ya no
+     * espera al disco.
+     */
+    public void precargarArchivo(String ruta) {
+        if (AlumnoDAO.usaAlmacenFueraDelHeap()) {
+            new AlumnoDAO(ruta).listar();
+            return;
+        }
+        CacheConsultas.compartida().obtener("listar|" + ruta, new File(ruta), new AlumnoDAO(ruta)::listar);
+    }
+
+    /** Pide a la caché los semestres contiguos al actual (solo los que existen) */
+    private void precargarVecinos() {
+        String carrera = carreraActual;
+        int i = PromocionSemestres.SEMESTRES.indexOf(semestreActual);
+        if (carrera == null || i < 0) return;
+
+        File carpeta = new File(raices.raizDe(carrera), carrera);
+        // Primero el siguiente: es hacia donde se suele avanzar
+        for (int j : new int[] { i + 1, i - 1 }) {
+            if (j < 0 || j >= PromocionSemestres.SEMESTRES.size()) continue;
+            File f = new File(carpeta, PromocionSemestres.SEMESTRES.get(j) + ".txt");
+            // leerLineas crea el archivo si falta; aquí no se debe crear nada
+            if (!new GestorArchivos(f.getPath()).archivoEnDisco().exists()) continue;
+            String ruta = f.getAbsolutePath();
+            CacheConsultas.compartida().precargar("listar|" + ruta, f, new AlumnoDAO(ruta)::listar);
+        }
+    }
+
+    /**
+     * Recorre los alumnos del archivo actual sin cargarlos todos (ver
+     * AlumnoDAO.flujo). Debe cerrarse con try-with-resources.
+     */
+    public Stream<Alumno> flujo(Predicate<? super Alumno> filtro, long desde, long limite) throws IOException {
+        return dao.flujo(filtro, desde, limite);
+    }
+
+    /**
+     * Recorre los alumnos de cualquier semestre sin cambiar el actual.
+     * Debe cerrarse con try-with-resources.
+     */
+    public Stream<Alumno> flujo(String carrera, String semestre, Predicate<? super Alumno> filtro,
+                                long desde, long limite) throws IOException {
+        return daoDe(carrera, semestre).flujo(filtro, desde, limite);
+    }
+
+    /** Lee solo una página del archivo actual */
+    public List<Alumno> listarPagina(int desde, int cantidad) throws IOException {
+        return dao.listarPagina(desde, cantidad);
+    }
+
+    /**
+     * Empieza a vigilar la carpeta de alumnos. Cuando el archivo actual cambia
+     * (por esta u otra instancia del programa) se calcula la diferencia contra
+     * lo último que se mostró y se entrega al oyente, para que la tabla se
+     * actualice sin recargar todo.
+     *
+     * @param oyente recibe solo diferencias no vacías del archivo actual
+     */
+    public void iniciarMonitoreo(Consumer<DiferenciaAlumnos> oyente) throws IOException {
+        this.oyenteArchivoActual = oyente;
+
+        if (monitores.isEmpty()) {
+            oyenteVersiones = this::archivoModificado;
+            RegistroVersiones.agregarOyente(oyenteVersiones);
+            for (File r : raices.todas()) {
+                MonitorCarpetas m = new MonitorCarpetas(r.getPath());
+                m.iniciar();
+                monitores.add(m);
+            }
+        }
+    }
+
+    /** Detiene la vigilancia de las carpetas de alumnos */
+    public void detenerMonitoreo() {
+        if (monitores.isEmpty()) return;
+        for (MonitorCarpetas m : monitores) m.detener();
+        RegistroVersiones.quitarOyente(oyenteVersiones);
+        monitores.clear();
+    }
+
+    /**
+     * Llamado por RegistroVersiones cuando cualquier archivo cambia.
+     * Solo interesa si se trata del archivo que está abierto.
+     */
+    private void archivoModificado(File archivo) {
+        Consumer<DiferenciaAlumnos> oyente = oyenteArchivoActual;
+        String ruta = rutaActual;
+        // Si la vista aún no carga el archivo actual no hay contra qué comparar
+        if (oyente == null || ruta == null || !ruta.equals(rutaUltimaLista)) return;
+
+        if (!RegistroVersiones.clave(archivo).equals(RegistroVersiones.clave(new File(ruta))))
+            return;
+
+        List<Alumno> antes = ultimaLista;
+        List<Alumno> despues = new AlumnoDAO(ruta).listar();
+        ultimaLista = new ArrayList<>(despues);
+
+        DiferenciaAlumnos d = DiferenciaAlumnos.calcular(antes, despues);
+        if (!d.estaVacia()) oyente.accept(d);
     }
 
     public String getRutaActual() { 
@@ -113,6 +358,15 @@ public class ControladorAlumno {
         if (a.getCorreo() != null && !a.getCorreo().trim().isEmpty() &&
             !a.getCorreo().trim().matches(".+@.+\\..+"))
             errores.add("Correo con formato inválido.");
+
+        // La barra vertical separa los campos en el archivo
+        for (String campo : new String[] { a.getNombre(), a.getSemestre(), a.getLicenciatura(),
+                a.getCorreo(), a.getTelefono(), a.getDireccion() }) {
+            if (campo != null && campo.indexOf('|') >= 0) {
+                errores.add("Los datos no pueden contener el carácter |.");
+                break;
+            }
+        }
         return errores;
     }
     /**
@@ -124,19 +378,20 @@ public class ControladorAlumno {
         if (!errores.isEmpty())
             throw new IllegalArgumentException(String.join(" ", errores));
 
-        // Evita que dos estudiantes tengan la misma matrícula
-        if (dao.existeMatriculaEnArchivoActual(a.getMatricula())) {
+        // Evita que dos estudiantes tengan la misma matrícula (verifica y agrega de forma atómica)
+        if (!dao.agregarSiNoExiste(a)) {
             throw new IllegalStateException("La matrícula ya existe en este archivo.");
         }
-
-        dao.agregar(a);
         return true;
     }
 
     /**
-     * Edita un alumno. Si se cambió carrera o semestre:
-     *   → elimina del archivo actual
-     *   → mueve al archivo destino
+     * Edita un alumno. Si se cambió carrera o semestre, se mueve al archivo
+     * destino en un lote: el duplicado se revisa antes de escribir y ambos
+     * archivos cambian juntos (o ninguno); si el programa se cierra a
+     * medias, el lote se termina al volver a iniciar.
+     *
+     * @throws IllegalStateException si la matrícula ya existe en el destino
      */
     public boolean editarAlumno(String matriculaOriginal, Alumno nuevos) throws IOException {
 
@@ -145,107 +400,538 @@ public class ControladorAlumno {
             throw new IllegalArgumentException(String.join(" ", errores));
 
         // Si la carrera y semestre no cambian → modificar en el mismo archivo
-        if (nuevos.getLicenciatura().equals(carreraActual) &&
-            nuevos.getSemestre().equals(semestreActual)) {
+        if (mismo(codigoCarreraActual, carreraActual, nuevos.getCodigoLicenciatura(), nuevos.getLicenciatura()) &&
+            mismo(codigoSemestreActual, semestreActual, nuevos.getCodigoSemestre(), nuevos.getSemestre())) {
 
             return dao.editar(matriculaOriginal, nuevos);
         } 
         
         // Si cambian, mover registro
         else {
-            dao.eliminarPorMatricula(matriculaOriginal);
+            File destino = archivoDe(nuevos.getLicenciatura(), nuevos.getSemestre());
+            LoteCambios.Resultado r = dao.lote()
+                    .mover(new File(rutaActual), matriculaOriginal, destino, nuevos)
+                    .aplicar();
+            return r.getMovidos() > 0;
+        }
+    }
 
-            // Construir destino
-            File carpetaDestino = new File(RAIZ + File.separator + nuevos.getLicenciatura());
-            if (!carpetaDestino.exists()) carpetaDestino.mkdirs();
+    /** Elimina alumno únicamente si existe en este archivo */
+    public boolean eliminarAlumno(String matricula) throws IOException {
+        return dao.eliminarPorMatricula(matricula);
+    }
 
-            String rutaDestino = carpetaDestino.getAbsolutePath() + File.separator + nuevos.getSemestre() + ".txt";
-            AlumnoDAO daoDestino = new AlumnoDAO(rutaDestino);
+    /**
+     * Lote de cambios sobre el archivo actual: varias altas, ediciones o
+     * bajas con una sola lectura y reescritura por archivo (ver LoteCambios).
+     */
+    public LoteCambios nuevoLote() {
+        return dao.lote();
+    }
 
-            // Evitar duplicación en archivo destino
-            if (daoDestino.existeMatriculaEnArchivoActual(nuevos.getMatricula())) {
-                throw new IllegalStateException("Ya existe la matrícula en el archivo destino.");
-            }
+    /**
+     * Elimina varios alumnos en un solo lote. Cada alumno se busca en el
+     * archivo de su carrera y semestre, así funciona también con resultados
+     * de búsqueda de varias carpetas.
+     *
+     * @return resumen de lo eliminado y lo que ya no existía
+     */
+    public LoteCambios.Resultado eliminarAlumnos(List<Alumno> alumnos) throws IOException {
+        LoteCambios lote = dao.lote();
+        Map<Long, File> archivos = new HashMap<>();
+        for (Alumno a : alumnos)
+            lote.eliminar(archivoDe(a, archivos), a.getMatricula());
+        return lote.aplicar();
+    }
 
-            daoDestino.agregar(nuevos);
+    /**
+     * Cambia de carrera y/o semestre a varios alumnos en un solo lote: cada
+     * archivo de origen y el de destino se reescriben una sola vez.
+     *
+     * @throws IllegalStateException si alguna matrícula ya existe en el destino
+     */
+    public LoteCambios.Resultado moverAlumnos(List<Alumno> alumnos, String carrera, String semestre)
+            throws IOException {
+        File destino = archivoDe(carrera, semestre);
+        int codigoCarrera = DiccionarioCadenas.CARRERAS.codigo(carrera);
+        int codigoSemestre = DiccionarioCadenas.SEMESTRES.codigo(semestre);
+        LoteCambios lote = dao.lote();
+        Map<Long, File> archivos = new HashMap<>();
+
+        for (Alumno a : alumnos) {
+            Alumno nuevos = new Alumno(a.getNombre(), a.getMatricula(), a.getPromedio(), semestre, a.getEdad(),
+                    carrera, a.getCorreo(), a.getTelefono(), a.getDireccion());
+            List<String> errores = validarAlumno(nuevos);
+            if (!errores.isEmpty())
+                throw new IllegalArgumentException(a.getMatricula() + ": " + String.join(" ", errores));
+
+            if (mismo(codigoCarrera, carrera, a.getCodigoLicenciatura(), a.getLicenciatura()) &&
+                mismo(codigoSemestre, semestre, a.getCodigoSemestre(), a.getSemestre())) continue;
+            lote.mover(archivoDe(a, archivos), a.getMatricula(), destino, nuevos);
+        }
+        return lote.aplicar();
+    }
 
-            // Si se movió al archivo actual, recargar DAO
-            if (rutaActual.equals(rutaDestino))
-                dao = new AlumnoDAO(rutaActual);
+    /** Archivo de un semestre cualquiera (validando los nombres, ver daoDe) */
+    private File archivoDe(String carrera, String semestre) {
+        return new File(daoDe(carrera, semestre).getRuta());
+    }
 
-            return true;
+    /**
+     * Archivo de la carrera y semestre de un alumno. Los alumnos de un mismo
+     * archivo se agrupan por los códigos del diccionario, así la ruta se
+     * arma y valida una sola vez por archivo y no una por alumno.
+     */
+    private File archivoDe(Alumno a, Map<Long, File> vistos) {
+        int c = a.getCodigoLicenciatura(), s = a.getCodigoSemestre();
+        if (c < 0 || s < 0) return archivoDe(a.getLicenciatura(), a.getSemestre());
+        Long clave = ((long) c << 32) | s;
+        File f = vistos.get(clave);
+        if (f == null) {
+            f = archivoDe(a.getLicenciatura(), a.getSemestre());
+            vistos.put(clave, f);
         }
+        return f;
     }
 
-    /** Elimina alumno únicamente si existe en este archivo */
-    public boolean eliminarAlumno(String matricula) throws IOException {
-        if (!dao.existeMatriculaEnArchivoActual(matricula))
-            return false;
-
-        dao.eliminarPorMatricula(matricula);
-        return true;
+    /**
+     * Compara una carrera o semestre por su código en DiccionarioCadenas;
+     * si alguno no tiene código (diccionario lleno) compara el texto.
+     */
+    private static boolean mismo(int codigo, String texto, int otroCodigo, String otroTexto) {
+        if (codigo >= 0 && otroCodigo >= 0) return codigo == otroCodigo;
+        return texto == null ? otroTexto == null : texto.equals(otroTexto);
     }
 
     /** Busca alumno por matrícula dentro del archivo actual */
     public Alumno buscarPorMatricula(String matricula) {
-        for (Alumno a : dao.listar())
-            if (a.getMatricula().equalsIgnoreCase(matricula))
-                return a;
+        return dao.buscarPorMatricula(matricula);
+    }
 
-        return null;
+    /**
+     * Comprime el archivo del semestre actual (.txt → .txtz).
+     * Sigue apareciendo en listados y búsquedas de forma transparente.
+     */
+    public void archivarSemestreActual() throws IOException {
+        dao.comprimir();
+    }
+
+    /** Regresa el semestre actual a texto plano (.txtz → .txt) */
+    public void desarchivarSemestreActual() throws IOException {
+        dao.descomprimir();
     }
 
-    /** Búsqueda por nombre dentro del archivo actual */
+    /** @return true si el semestre actual está comprimido */
+    public boolean semestreActualArchivado() {
+        return dao.estaComprimido();
+    }
+
+    /**
+     * Búsqueda por nombre dentro del archivo actual.
+     * No distingue acentos y tolera errores de escritura (ver IndiceNombres).
+     */
     public List<Alumno> buscarPorNombre(String frag) {
-        List<Alumno> res = new ArrayList<>();
-        for (Alumno a : dao.listar()) {
-            if (a.getNombre().toLowerCase().contains(frag.toLowerCase()))
-                res.add(a);
-        }
-        return res;
+        File archivo = new File(rutaActual);
+        return CacheConsultas.compartida().obtener("nombre|" + rutaActual + "|" + IndiceNombres.normalizar(frag),
+                archivo, () -> IndiceNombres.para(raizActual().getPath(), indicesDe(raizActual()))
+                        .buscar(frag, LIMITE_BUSQUEDA, archivo));
     }
 
-    /** Importa desde un archivo externo seleccionado por JFileChooser */
+    /**
+     * Importa desde un archivo externo seleccionado por JFileChooser. Cada
+     * alumno va al archivo de su carrera y semestre; la bitácora recibe una
+     * importación por cada archivo donde se agregó alguno.
+     *
+     * No cambia la carrera y semestre actuales, así la ventana la puede
+     * llamar en segundo plano (el respaldo previo tarda).
+     */
     public int importarArchivo(File archivo) throws IOException {
 
+        // Respaldo previo: si la importación sale mal se puede restaurar
+        crearRespaldo();
+
         int contador = 0;
 
-        java.io.BufferedReader br = new java.io.BufferedReader(new java.io.FileReader(archivo));
-        String linea;
+        // Las altas se encolan sin esperar; así se escriben por lotes (ver EscritorAltas).
+        // Se agrupan por archivo de destino para la bitácora
+        Map<String, List<CompletableFuture<Boolean>>> altas = new LinkedHashMap<>();
+        Map<String, AlumnoDAO> destinos = new HashMap<>();
 
-        while ((linea = br.readLine()) != null) {
+        try (BufferedReader br = new BufferedReader(new java.io.FileReader(archivo))) {
+            String linea;
 
-            String[] partes = linea.split(",");
+            while ((linea = br.readLine()) != null) {
 
-            if (partes.length < 9) continue; // no válido
+                String[] partes = linea.split(",");
 
-            Alumno a = new Alumno(
-                    partes[0], // nombre
-                    partes[1], // matricula
-                    Double.parseDouble(partes[2]), // promedio
-                    partes[3], // semestre
-                    Integer.parseInt(partes[4]), // edad
-                    partes[5], // carrera
-                    partes[6], // correo
-                    partes[7], // teléfono
-                    partes[8]  // dirección
-            );
+                if (partes.length < 9) continue; // no válido
 
-            // 1. Cambiar automáticamente a la carrera/semestre del alumno leído
-            cambiarCarreraSemestre(a.getLicenciatura(), a.getSemestre());
+                Alumno a = new Alumno(
+                        partes[0], // nombre
+                        partes[1], // matricula
+                        Double.parseDouble(partes[2]), // promedio
+                        partes[3], // semestre
+                        Integer.parseInt(partes[4]), // edad
+                        partes[5], // carrera
+                        partes[6], // correo
+                        partes[7], // teléfono
+                        partes[8]  // dirección
+                );
 
-            // 2. Verificar duplicados
-            if (!dao.existeMatriculaEnArchivoActual(a.getMatricula())) {
-                dao.agregar(a);
-                contador++;
+                // 1. Archivo de la carrera/semestre del alumno leído
+                AlumnoDAO destino = destinos.computeIfAbsent(a.getLicenciatura() + "|" + a.getSemestre(),
+                        k -> daoDe(a.getLicenciatura(), a.getSemestre()));
+
+                // 2. Verificar duplicados (el escritor los revisa por lote)
+                altas.computeIfAbsent(destino.getRuta(), k -> new ArrayList<>()).add(destino.agregarSiNoExisteAsincrono(a));
             }
         }
 
-        br.close();
+        for (Map.Entry<String, List<CompletableFuture<Boolean>>> e : altas.entrySet()) {
+            int agregados = 0;
+            for (CompletableFuture<Boolean> f : e.getValue()) {
+                try {
+                    if (f.join()) agregados++;
+                } catch (CompletionException ex) {
+                    throw ex.getCause() instanceof IOException ? (IOException) ex.getCause() : new IOException(ex.getCause());
+                }
+            }
+            if (agregados > 0) BitacoraAuditoria.registrarImportacion(new File(e.getKey()), archivo, agregados);
+            contador += agregados;
+        }
         return contador;
     }
 
 
+    // -------------------------------
+    //           AUDITORÍA
+    // -------------------------------
+
+    /**
+     * Eventos de la bitácora de auditoría (altas, ediciones, bajas e
+     * importaciones), del más antiguo al más reciente.
+     *
+     * @param matricula matrícula a buscar, o null para todas
+     * @param desde primer día a incluir, o null
+     * @param hasta último día a incluir, o null
+     */
+    public List<BitacoraAuditoria.Registro> consultarAuditoria(String matricula, java.time.LocalDate desde,
+                                                               java.time.LocalDate hasta) throws IOException {
+        List<BitacoraAuditoria.Registro> res = new ArrayList<>();
+        for (List<BitacoraAuditoria.Registro> l : raices.paraCada(r -> BitacoraAuditoria.consultar(
+                new File(r.getAbsoluteFile().getParent(), "Auditoria"), matricula, desde, hasta)))
+            res.addAll(l);
+
+        // Cada carpeta tiene su propia bitácora: se mezclan por fecha
+        if (raices.esMultiple()) res.sort(Comparator.comparing(BitacoraAuditoria.Registro::getInstante));
+        return res;
+    }
+
+    // -------------------------------
+    //      HISTORIAL DE PROMEDIOS
+    // -------------------------------
+
+    /** Todos los promedios registrados de un alumno, del más antiguo al más reciente */
+    public List<HistorialCalificaciones.Punto> historialDe(String matricula) throws IOException {
+        List<HistorialCalificaciones.Punto> res = new ArrayList<>();
+        for (List<HistorialCalificaciones.Punto> l : raices.paraCada(r -> HistorialCalificaciones.deRaiz(r).historia(matricula)))
+            res.addAll(l);
+        // Si cambió de carrera entre carpetas, cada una tiene una parte
+        if (raices.esMultiple()) res.sort(Comparator.comparing(HistorialCalificaciones.Punto::getFecha));
+        return res;
+    }
+
+    /** Último promedio de un alumno en cada semestre cursado */
+    public List<HistorialCalificaciones.Punto> trayectoriaDe(String matricula) throws IOException {
+        return HistorialCalificaciones.trayectoria(historialDe(matricula));
+    }
+
+    /**
+     * Alumnos con las mayores bajas de promedio entre dos semestres seguidos.
+     *
+     * @param carrera carrera a consultar, o null para toda la universidad
+     */
+    public List<HistorialCalificaciones.Caida> mayoresCaidas(String carrera, int k) throws IOException {
+        List<HistorialCalificaciones.Caida> res = new ArrayList<>();
+        for (File r : carrera == null ? raices.todas() : List.of(raices.raizDe(carrera)))
+            res.addAll(HistorialCalificaciones.deRaiz(r).mayoresCaidas(carrera, k));
+        res.sort(Comparator.comparingDouble(HistorialCalificaciones.Caida::getDiferencia).reversed());
+        return res.size() > k ? new ArrayList<>(res.subList(0, k)) : res;
+    }
+
+    /**
+     * Promedio de la cohorte en cada semestre.
+     *
+     * @param carrera carrera a consultar, o null para toda la universidad
+     */
+    public List<HistorialCalificaciones.PromedioCohorte> promedioPorSemestre(String carrera) throws IOException {
+        if (carrera != null) return HistorialCalificaciones.deRaiz(raices.raizDe(carrera)).promedioPorSemestre(carrera);
+        return HistorialCalificaciones.combinar(
+                raices.paraCada(r -> HistorialCalificaciones.deRaiz(r).promedioPorSemestre(null)));
+    }
+
+    /** Pasa los cambios pendientes del historial al archivo por columnas (normalmente es automático) */
+    public void compactarHistorial() throws IOException {
+        raices.paraCada(r -> {
+            HistorialCalificaciones.deRaiz(r).compactar();
+            return null;
+        });
+    }
+
+    // -------------------------------
+    //           RÉPLICA
+    // -------------------------------
+
+    /**
+     * Lleva una copia de la carpeta de alumnos al estado actual, aplicando
+     * solo los cambios registrados desde la última vez (la primera vez se
+     * copia todo). Con varias carpetas de alumnos cada una se copia a su
+     * propia subcarpeta del destino (raiz1, raiz2...), en paralelo.
+     *
+     * @param destino carpeta de la copia
+     * @return eventos aplicados
+     */
+    public long replicarA(File destino) throws IOException {
+        if (!raices.esMultiple()) return new Replicador(raices.principal(), destino).replicar();
+
+        List<File> todas = raices.todas();
+        long n = 0;
+        for (long x : raices.paraCada(r -> new Replicador(r, new File(destino, "raiz" + (todas.indexOf(r) + 1))).replicar()))
+            n += x;
+        return n;
+    }
+
+    // -------------------------------
+    //     PROMOCIÓN DE SEMESTRE
+    // -------------------------------
+
+    /**
+     * Pasa a los alumnos al semestre siguiente (los del último a
+     * Egresados). Cada archivo se lee y se escribe una sola vez, y cada
+     * carrera se confirma completa; una carrera en la que alguna matrícula
+     * quedaría repetida no se toca y lo indica su reporte.
+     *
+     * Antes de escribir se crea un respaldo.
+     *
+     * @param carrera carrera a promover, o null para todas
+     * @param simular true para solo calcular los reportes sin escribir nada
+     * @return un reporte por carrera
+     */
+    public List<PromocionSemestres.Reporte> promoverSemestres(String carrera, boolean simular) throws IOException {
+        if (!simular) crearRespaldo();
+
+        List<PromocionSemestres.Reporte> res = new ArrayList<>();
+        for (String c : carrera == null ? listarCarrerasExistentes() : List.of(carrera))
+            res.add(new PromocionSemestres(new File(raices.raizDe(c), c)).promover(simular));
+        return res;
+    }
+
+    // -------------------------------
+    //      MATRÍCULAS REPETIDAS
+    // -------------------------------
+
+    /**
+     * Busca matrículas repetidas entre todos los archivos de semestre de
+     * todas las carpetas (ver DetectorDuplicados).
+     */
+    public DetectorDuplicados.Analisis buscarDuplicados() throws IOException {
+        return new DetectorDuplicados(raices.archivosDeSemestre()).analizar();
+    }
+
+    /**
+     * Deja una sola copia de cada matrícula repetida según la política
+     * elegida. Antes de escribir se crea un respaldo.
+     */
+    public DetectorDuplicados.Correccion corregirDuplicados(DetectorDuplicados.Analisis analisis,
+                                                           DetectorDuplicados.Politica politica) throws IOException {
+        if (!analisis.getConflictos().isEmpty()) crearRespaldo();
+        return DetectorDuplicados.corregir(analisis, politica);
+    }
+
+    // -------------------------------
+    //     REPORTE DE CALIFICACIONES
+    // -------------------------------
+
+    /**
+     * Genera el reporte de calificaciones por semestre (ver ReporteCalificaciones).
+     *
+     * @param carrera carrera a incluir, o null para toda la universidad
+     * @param umbral promedio debajo del cual se lista a un alumno
+     * @param html archivo HTML a crear (null = no se genera)
+     * @param csv archivo CSV a crear (null = no se genera)
+     * @return resumen de todo lo incluido
+     */
+    public ReporteCalificaciones.Resumen generarReporte(String carrera, double umbral, File html, File csv)
+            throws IOException {
+        return new ReporteCalificaciones(archivosDeCarrera(carrera), umbral).generar(html, csv);
+    }
+
+    // -------------------------------
+    //     CUADRO DE HONOR / RIESGO
+    // -------------------------------
+
+    /**
+     * Los K alumnos con mejor promedio.
+     *
+     * @param carrera carrera a consultar, o null para toda la universidad
+     * @param k cantidad de alumnos
+     */
+    public List<Alumno> mejoresPromedios(String carrera, int k) {
+        return new ConsultaRanking(k, true).ejecutar(archivosDeCarrera(carrera));
+    }
+
+    /**
+     * Los K alumnos con peor promedio (alumnos en riesgo).
+     *
+     * @param carrera carrera a consultar, o null para toda la universidad
+     * @param k cantidad de alumnos
+     */
+    public List<Alumno> peoresPromedios(String carrera, int k) {
+        return new ConsultaRanking(k, false).ejecutar(archivosDeCarrera(carrera));
+    }
+
+    /**
+     * Alumnos con promedio y edad dentro de los rangos dados (inclusivos).
+     * Cada archivo responde con su índice de rangos (búsqueda binaria) y
+     * solo se convierten las líneas que cumplen.
+     *
+     * @param carrera carrera a consultar, o null para toda la universidad
+     */
+    public List<Alumno> buscarPorRango(String carrera, double promMin, double promMax,
+                                       int edadMin, int edadMax) {
+        // Una tarea por carpeta de alumnos: cada disco lee al mismo tiempo
+        List<Alumno> res = new ArrayList<>();
+        for (List<Alumno> parte : raices.paraCadaSinError(r -> {
+            List<Alumno> l = new ArrayList<>();
+            for (File f : archivosDeCarrera(r, carrera)) {
+                try {
+                    l.addAll(AlumnoDAO.buscarPorRango(f, promMin, promMax, edadMin, edadMax));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            return l;
+        }))
+            res.addAll(parte);
+        return res;
+    }
+
+    /**
+     * Prepara una consulta estructurada, por ejemplo
+     * 'carrera = "Derecho" AND promedio &lt; 6 AND nombre ~ "gar"', sin
+     * ejecutarla: el plan dice qué archivos se abren y con qué índice (ver
+     * ConsultaAlumnos).
+     *
+     * @throws IllegalArgumentException si la consulta está mal escrita
+     */
+    public ConsultaAlumnos.Plan planearConsulta(String texto) {
+        return ConsultaAlumnos.analizar(texto).planear(raices, ControladorAlumno::indicesDe);
+    }
+
+    /** Ejecuta una consulta ya planeada (a lo más LIMITE_BUSQUEDA alumnos) */
+    public List<Alumno> consultar(ConsultaAlumnos.Plan plan) throws IOException {
+        return plan.ejecutar(LIMITE_BUSQUEDA);
+    }
+
+    /** Archivos de semestre de una carrera (o de todas si carrera es null) */
+    private List<File> archivosDeCarrera(String carrera) {
+        if (carrera == null) return raices.archivosDeSemestre();
+        return archivosDeCarrera(raices.raizDe(carrera), carrera);
+    }
+
+    /** Archivos de semestre de una carrera (o de todas) dentro de una carpeta de alumnos */
+    private static List<File> archivosDeCarrera(File raiz, String carrera) {
+        List<File> res = new ArrayList<>();
+        for (File f : GestorArchivos.listarArchivosSemestre(raiz))
+            if (carrera == null || f.getParentFile().getName().equals(carrera)) res.add(f);
+        return res;
+    }
+
+    // -------------------------------
+    //           RESPALDOS
+    // -------------------------------
+
+    /**
+     * Crea un respaldo incremental de la carpeta de alumnos y comprime
+     * los respaldos más antiguos.
+     *
+     * @return identificador del respaldo creado
+     */
+    public String crearRespaldo() throws IOException {
+        // Con varias carpetas todas usan el mismo identificador y se respaldan en paralelo
+        String id = GestorRespaldos.nuevoId();
+        raices.paraCada(r -> {
+            GestorRespaldos g = new GestorRespaldos(r.getPath(), respaldosDe(r));
+            g.crearRespaldo(id);
+            g.comprimirAntiguos(RESPALDOS_SIN_COMPRIMIR);
+            return id;
+        });
+        return id;
+    }
+
+    /** @return respaldos disponibles, del más antiguo al más reciente */
+    public List<String> listarRespaldos() {
+        if (!raices.esMultiple())
+            return new GestorRespaldos(raices.principal().getPath(), respaldosDe(raices.principal())).listarRespaldos();
+
+        TreeSet<String> res = new TreeSet<>();
+        for (List<String> l : raices.paraCadaSinError(r -> new GestorRespaldos(r.getPath(), respaldosDe(r)).listarRespaldos()))
+            res.addAll(l);
+        return new ArrayList<>(res);
+    }
+
+    /**
+     * Restaura toda la carpeta de alumnos desde un respaldo. Con varias
+     * carpetas se restauran las que tengan ese respaldo (una carpeta
+     * agregada después no lo tiene y se deja como está).
+     */
+    public void restaurarRespaldo(String id) throws IOException {
+        raices.paraCada(r -> {
+            GestorRespaldos g = new GestorRespaldos(r.getPath(), respaldosDe(r));
+            if (!raices.esMultiple() || g.listarRespaldos().contains(id)) g.restaurarTodo(id);
+            return id;
+        });
+    }
+
+    /** Restaura solo un archivo de semestre desde un respaldo */
+    public void restaurarSemestre(String id, String carrera, String semestre) throws IOException {
+        File r = raices.raizDe(carrera);
+        new GestorRespaldos(r.getPath(), respaldosDe(r)).restaurarSemestre(id, carrera, semestre);
+    }
+
+    // -------------------------------
+    //          EXPORTACIÓN
+    // -------------------------------
+
+    /** Exporta un semestre de una carrera al formato indicado */
+    public long exportarSemestre(String carrera, String semestre,
+                                 FormatoExportacion formato, File destino) throws IOException {
+        File origen = new File(new File(raices.raizDe(carrera), carrera), semestre + ".txt");
+        return new ExportadorAlumnos(formato).exportarArchivos(List.of(origen), destino);
+    }
+
+    /** Exporta todos los semestres de una carrera a un solo archivo */
+    public long exportarCarrera(String carrera, FormatoExportacion formato, File destino) throws IOException {
+        return new ExportadorAlumnos(formato).exportarArchivos(archivosDeCarrera(carrera), destino);
+    }
+
+    /** Exporta todas las carreras y semestres a un solo archivo */
+    public long exportarTodo(FormatoExportacion formato, File destino) throws IOException {
+        return new ExportadorAlumnos(formato).exportarArchivos(raices.archivosDeSemestre(), destino);
+    }
+
+    /** Exporta todas las carreras a un ZIP con una entrada por semestre (en paralelo) */
+    public void exportarTodoZip(FormatoExportacion formato, File zip) throws IOException {
+        // Con varias carpetas las entradas se nombran "carrera/semestre" sin importar la raíz
+        File base = raices.esMultiple() ? null : raices.principal();
+        new ExportadorAlumnos(formato).exportarZip(raices.archivosDeSemestre(), base, zip);
+    }
+
+    /** Exporta una lista de alumnos ya obtenida (por ejemplo, resultados de búsqueda) */
+    public long exportarResultados(List<Alumno> alumnos, FormatoExportacion formato, File destino) throws IOException {
+        return new ExportadorAlumnos(formato).exportarAlumnos(alumnos, destino);
+    }
+
     /**
      * Retorna la lista de carpetas dentro de "Alumnos".
      * Sirve para llenar el combo de carreras dinámicamente.
@@ -253,18 +939,124 @@ public class ControladorAlumno {
     public List<String> listarCarrerasExistentes() {
         List<String> res = new ArrayList<>();
 
-        File base = new File(RAIZ);
-        if (!base.exists()) return res;
+        for (File base : raices.todas()) {
+            if (!base.exists()) continue;
+
+            File[] dirs = base.listFiles(File::isDirectory);
+            if (dirs == null) continue;
+
+            for (File d : dirs)
+                if (!res.contains(d.getName())) res.add(d.getName());
+        }
+        return res;
+    }
+
+    /**
+     * Carreras según el catálogo guardado (Indices/catalogo.txt), sin
+     * recorrer la carpeta de alumnos. Puede estar desactualizado hasta que
+     * se llame a {@link #validarCatalogo()}; vacío la primera vez.
+     */
+    public List<String> listarCarrerasCatalogo() {
+        if (!raices.esMultiple()) return catalogo(raices.principal()).carreras();
+
+        TreeSet<String> res = new TreeSet<>();
+        for (File r : raices.todas()) res.addAll(catalogo(r).carreras());
+        return new ArrayList<>(res);
+    }
+
+    /** Catálogo de una carpeta de alumnos (cada una tiene el suyo) */
+    private static ManifiestoCatalogo catalogo(File raiz) {
+        return ManifiestoCatalogo.para(raiz.getPath(), indicesDe(raiz));
+    }
+
+    /**
+     * Alumnos de un semestre según el catálogo.
+     * @return la cantidad, o -1 si el catálogo no la conoce
+     */
+    public int alumnosEnCatalogo(String carrera, String semestre) {
+        ManifiestoCatalogo.Entrada e = catalogo(raices.raizDe(carrera)).entrada(carrera, semestre);
+        return e == null ? -1 : e.getAlumnos();
+    }
 
-        File[] dirs = base.listFiles(File::isDirectory);
-        if (dirs == null) return res;
+    /**
+     * Compara el catálogo contra la carpeta de alumnos y lo corrige.
+     * Conviene llamarlo en segundo plano.
+     * @return true si cambió la lista de carreras o semestres
+     */
+    public boolean validarCatalogo() throws IOException {
+        return raices.paraCada(r -> catalogo(r).validar()).contains(true);
+    }
+
+    /**
+     * Semestres guardados de una carrera (sin extensión), en orden.
+     * Incluye los semestres comprimidos.
+     */
+    public List<String> listarSemestres(String carrera) {
+        List<String> res = new ArrayList<>();
+        for (File f : archivosDeCarrera(carrera)) {
+            String n = f.getName();
+            res.add(n.substring(0, n.lastIndexOf('.')));
+        }
+        return res;
+    }
+
+    /**
+     * DAO de un semestre cualquiera, sin cambiar la carrera y semestre
+     * actuales (lo usa el servidor HTTP).
+     *
+     * @throws IllegalArgumentException si el nombre de carrera o semestre
+     *         intenta salirse de la carpeta de alumnos
+     */
+    AlumnoDAO daoDe(String carrera, String semestre) {
+        validarNombre(carrera);
+        validarNombre(semestre);
+        return new AlumnoDAO(new File(new File(raices.raizDe(carrera), carrera), semestre + ".txt").getAbsolutePath());
+    }
 
-        for (File d : dirs)
-            res.add(d.getName());
+    /**
+     * @throws IllegalArgumentException si el nombre de carrera o semestre
+     *         está vacío o intenta salirse de la carpeta de alumnos
+     */
+    static void validarNombre(String n) {
+        if (n == null || n.trim().isEmpty() || n.contains("/") || n.contains("\\")
+                || n.equals(".") || n.equals(".."))
+            throw new IllegalArgumentException("Nombre inválido: " + n);
+    }
 
+    /** Métricas de la caché de consultas (aciertos, fallos, expulsiones...) */
+    public String estadisticasCache() {
+        String res = CacheConsultas.compartida().resumen();
+        if (AlumnoDAO.usaAlmacenFueraDelHeap())
+            res += String.format("%nAlmacén fuera del heap: %.1f MB", AlmacenFueraDelHeap.bytesFueraDelHeap() / 1048576.0);
         return res;
     }
 
+    // -------------------------------
+    //        SERVIDOR HTTP LOCAL
+    // -------------------------------
+
+    /**
+     * Enciende la API HTTP/JSON local (solo escucha en 127.0.0.1).
+     *
+     * @param puerto puerto TCP (0 = cualquiera libre)
+     * @return puerto en el que quedó escuchando
+     */
+    public synchronized int iniciarServidorApi(int puerto) throws IOException {
+        if (servidorApi == null) {
+            ServidorApi s = new ServidorApi(this, puerto);
+            s.iniciar();
+            servidorApi = s;
+        }
+        return servidorApi.getPuerto();
+    }
+
+    /** Apaga la API HTTP local si está encendida */
+    public synchronized void detenerServidorApi() {
+        if (servidorApi == null) return;
+        servidorApi.detener();
+        servidorApi = null;
+    }
+
     /**
      * Permite elegir un archivo desde Windows y cargarlo como importación de alumnos.
      */
@@ -292,55 +1084,27 @@ public class ControladorAlumno {
     /**
      * Búsqueda global en TODAS las carreras y TODOS los semestres.
      * Permite encontrar alumnos incluso si no se seleccionó su carrera actual.
+     *
+     * Usa el índice de trigramas: encuentra la matrícula exacta y nombres
+     * sin importar acentos ("Jose" encuentra "José") o con un error de
+     * escritura, ordenados del más al menos parecido. No pasa por la caché
+     * de consultas: una entrada global no se puede validar contra el disco,
+     * y el índice ya revisa él mismo qué archivos cambiaron.
      */
     public List<Alumno> buscarEnTodasLasCarpetas(String texto) {
-        List<Alumno> resultados = new ArrayList<>();
-
-        // Directorio raíz absoluto del proyecto
-        File base = new File(System.getProperty("user.dir"), "Alumnos");
-        if (!base.exists() || !base.isDirectory()) {
-            System.out.println("buscarEnTodasLasCarpetas: base no encontrada -> " + base.getAbsolutePath());
-            return resultados;
-        }
-        // Cola para recorrido en anchura (BFS)
-        Queue<File> queue = new LinkedList<>();
-        queue.add(base);
-        while (!queue.isEmpty()) {
-            File dir = queue.poll();
-            File[] files = dir.listFiles();
-            if (files == null) continue;
-
-            for (File f : files) {
-
-                if (f.isDirectory()) {
-                    // Agregar carpeta a la cola
-                    queue.add(f);
-                } 
-                else if (f.isFile() && f.getName().toLowerCase().endsWith(".txt")) {
-
-                    // Leer archivo encontrado
-                    List<Alumno> lista = leerArchivo(f);
-
-                    for (Alumno a : lista) {
-                        if (a == null) continue;
-
-                        String matricula = a.getMatricula() != null ? a.getMatricula().trim() : "";
-                        String nombre = a.getNombre() != null ? a.getNombre().trim().toLowerCase() : "";
-                        String qLower = texto.toLowerCase();
-
-                        // 1) Coincidencia exacta de matrícula
-                        if (!matricula.isEmpty() && matricula.equalsIgnoreCase(texto)) {
-                            resultados.add(a);
-                        }
-                        // 2) Coincidencia por nombre parcial
-                        else if (!nombre.isEmpty() && nombre.contains(qLower)) {
-                            resultados.add(a);
-                        }
-                    }
-                }
+        List<IndiceNombres> indices = new ArrayList<>();
+        for (File base : raices.todas()) {
+            if (!base.exists() || !base.isDirectory()) {
+                System.out.println("buscarEnTodasLasCarpetas: base no encontrada -> " + base.getAbsolutePath());
+                continue;
             }
+            indices.add(IndiceNombres.para(base.getPath(), indicesDe(base)));
         }
-        return resultados;}
+        if (indices.isEmpty()) return new ArrayList<>();
+
+        // Con varias carpetas cada índice busca en paralelo y los resultados se ordenan juntos
+        return IndiceNombres.buscar(indices, texto, LIMITE_BUSQUEDA);
+    }
     /**
      * Lee un archivo .txt y convierte cada línea en un objeto Alumno.
      * Campos separados por "|".
@@ -348,7 +1112,7 @@ public class ControladorAlumno {
     public List<Alumno> leerArchivo(File archivo) {
         List<Alumno> lista = new ArrayList<>();
 
-        try (BufferedReader br = new BufferedReader(new FileReader(archivo))) {
+        try (BufferedReader br = new GestorArchivos(archivo.getPath()).abrirLector()) {
             String linea;
             while ((linea = br.readLine()) != null) {
 
@@ -0,0 +1,423 @@
+package Controlador;
+
+import Modelo.Alumno;
+import Modelo.AlumnoDAO;
+import Modelo.BitacoraAuditoria;
+import Modelo.GestorArchivos;
+import Modelo.IndiceRangos;
+import Modelo.RegistroVersiones;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * API HTTP/JSON local para que otras herramientas consulten y modifiquen
+ * alumnos sin leer los archivos .txt directamente.
+ *
+ * Cada petición se atiende en un hilo virtual, así cientos de clientes
+ * ligeros pueden estar conectados a la vez. Las operaciones pasan por
+ * AlumnoDAO, por lo que comparten los candados por archivo y los índices
+ * (nombres, rangos) con la ventana.
+ *
+ * Rutas (carrera y semestre van codificados en la URL):
+ *   GET    /api/carreras
+ *   GET    /api/alumnos/{carrera}/{semestre}?desde=0&limite=100
+ *   GET    /api/alumnos/{carrera}/{semestre}/{matricula}
+ *   POST   /api/alumnos/{carrera}/{semestre}              (cuerpo: alumno JSON)
+ *   PUT    /api/alumnos/{carrera}/{semestre}/{matricula}  (cuerpo: alumno JSON)
+ *   DELETE /api/alumnos/{carrera}/{semestre}/{matricula}
+ *   GET    /api/buscar?q=texto&desde=0&limite=100
+ *   GET    /api/estadisticas?carrera=...
+ *
+ * Las consultas de un semestre devuelven ETag; con If-None-Match se
+ * responde 304 si el archivo no cambió. Un PUT con If-Match se rechaza
+ * con 412 si el archivo cambió desde esa versión.
+ */
+public class ServidorApi {
+
+    /** Puerto que se usa si no se indica otro */
+    public static final int PUERTO_PREDETERMINADO = 8080;
+
+    /** Tamaño de página si el cliente no manda "limite" */
+    private static final int LIMITE_PREDETERMINADO = 100;
+
+    /** Tamaño máximo de página */
+    private static final int LIMITE_MAXIMO = 10000;
+
+    private final ControladorAlumno controlador;
+    private final int puertoSolicitado;
+
+    private HttpServer server;
+    private ExecutorService hilos;
+
+    /**
+     * @param controlador controlador del que se toman validaciones y búsquedas
+     * @param puerto puerto TCP (0 = cualquiera libre)
+     */
+    public ServidorApi(ControladorAlumno controlador, int puerto) {
+        this.controlador = controlador;
+        this.puertoSolicitado = puerto;
+    }
+
+    /** Abre el puerto (solo en la interfaz local) y empieza a atender */
+    public void iniciar() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), puertoSolicitado), 1024);
+        hilos = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(hilos);
+        server.createContext("/api/", this::atender);
+        server.start();
+    }
+
+    /** Deja de aceptar peticiones y espera hasta 1 s a las que están en curso */
+    public void detener() {
+        if (server == null) return;
+        server.stop(1);
+        hilos.shutdown();
+        server = null;
+    }
+
+    /** @return puerto en el que está escuchando */
+    public int getPuerto() {
+        return server == null ? puertoSolicitado : server.getAddress().getPort();
+    }
+
+    // -------------------------------
+    //            RUTEO
+    // -------------------------------
+
+    private void atender(HttpExchange ex) throws IOException {
+        // Los cambios hechos por la API quedan en la bitácora a nombre del cliente
+        BitacoraAuditoria.fijarUsuario("api@" + ex.getRemoteAddress().getAddress().getHostAddress());
+        try {
+            String[] partes = segmentos(ex);
+            String metodo = ex.getRequestMethod();
+            String recurso = partes.length > 1 ? partes[1] : "";
+
+            if (recurso.equals("carreras") && partes.length == 2 && metodo.equals("GET")) {
+                carreras(ex);
+            } else if (recurso.equals("buscar") && partes.length == 2 && metodo.equals("GET")) {
+                buscar(ex);
+            } else if (recurso.equals("estadisticas") && partes.length == 2 && metodo.equals("GET")) {
+                estadisticas(ex);
+            } else if (recurso.equals("alumnos") && partes.length == 4) {
+                if (metodo.equals("GET")) listar(ex, partes[2], partes[3]);
+                else if (metodo.equals("POST")) agregar(ex, partes[2], partes[3]);
+                else responderError(ex, 405, "Método no permitido");
+            } else if (recurso.equals("alumnos") && partes.length == 5) {
+                if (metodo.equals("GET")) obtener(ex, partes[2], partes[3], partes[4]);
+                else if (metodo.equals("PUT")) editar(ex, partes[2], partes[3], partes[4]);
+                else if (metodo.equals("DELETE")) eliminar(ex, partes[2], partes[3], partes[4]);
+                else responderError(ex, 405, "Método no permitido");
+            } else {
+                responderError(ex, 404, "Ruta no encontrada");
+            }
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            responderError(ex, 400, e.getMessage());
+        } catch (Exception e) {
+            e.printStackTrace();
+            // El detalle queda en el registro; al cliente no se le muestran rutas ni datos internos
+            responderError(ex, 500, "Error interno del servidor");
+        } finally {
+            BitacoraAuditoria.fijarUsuario(null);
+            ex.close();
+        }
+    }
+
+    /** Segmentos decodificados de la ruta, sin el vacío inicial: ["api", "alumnos", ...] */
+    private static String[] segmentos(HttpExchange ex) {
+        String ruta = ex.getRequestURI().getRawPath();
+        String[] crudos = ruta.replaceAll("^/+|/+$", "").split("/+");
+        String[] res = new String[crudos.length];
+        for (int i = 0; i < crudos.length; i++)
+            res[i] = URLDecoder.decode(crudos[i].replace("+", "%2B"), StandardCharsets.UTF_8);
+        return res;
+    }
+
+    private static Map<String, String> parametros(HttpExchange ex) {
+        Map<String, String> res = new HashMap<>();
+        String q = ex.getRequestURI().getRawQuery();
+        if (q == null || q.isEmpty()) return res;
+
+        for (String par : q.split("&")) {
+            int i = par.indexOf('=');
+            String k = URLDecoder.decode(i < 0 ? par : par.substring(0, i), StandardCharsets.UTF_8);
+            String v = i < 0 ? "" : URLDecoder.decode(par.substring(i + 1), StandardCharsets.UTF_8);
+            res.put(k, v);
+        }
+        return res;
+    }
+
+    private static int entero(Map<String, String> params, String nombre, int porDefecto, int maximo) {
+        String v = params.get(nombre);
+        if (v == null || v.isEmpty()) return porDefecto;
+        try {
+            int n = Integer.parseInt(v);
+            if (n < 0) throw new IllegalArgumentException("Parámetro negativo: " + nombre);
+            return Math.min(n, maximo);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parámetro no numérico: " + nombre);
+        }
+    }
+
+    // -------------------------------
+    //           CONSULTAS
+    // -------------------------------
+
+    private void carreras(HttpExchange ex) throws IOException {
+        StringBuilder sb = new StringBuilder("[");
+        List<String> carreras = controlador.listarCarrerasExistentes();
+        for (int i = 0; i < carreras.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"carrera\":").append(cadena(carreras.get(i))).append(",\"semestres\":[");
+            List<String> semestres = controlador.listarSemestres(carreras.get(i));
+            for (int j = 0; j < semestres.size(); j++) {
+                if (j > 0) sb.append(',');
+                sb.append(cadena(semestres.get(j)));
+            }
+            sb.append("]}");
+        }
+        responder(ex, 200, sb.append(']').toString());
+    }
+
+    private void listar(HttpExchange ex, String carrera, String semestre) throws IOException {
+        AlumnoDAO dao = controlador.daoDe(carrera, semestre);
+        if (!existe(dao)) {
+            responderError(ex, 404, "Semestre no encontrado");
+            return;
+        }
+        if (noModificado(ex, dao)) return;
+
+        Map<String, String> params = parametros(ex);
+        int desde = entero(params, "desde", 0, Integer.MAX_VALUE);
+        int limite = entero(params, "limite", LIMITE_PREDETERMINADO, LIMITE_MAXIMO);
+
+        List<Alumno> pagina = dao.listarPagina(desde, limite);
+        ex.getResponseHeaders().set("X-Total-Count", String.valueOf(dao.indiceRangos().cantidad()));
+        enviarAlumnos(ex, pagina);
+    }
+
+    private void obtener(HttpExchange ex, String carrera, String semestre, String matricula) throws IOException {
+        AlumnoDAO dao = controlador.daoDe(carrera, semestre);
+        if (!existe(dao)) {
+            responderError(ex, 404, "Semestre no encontrado");
+            return;
+        }
+        if (noModificado(ex, dao)) return;
+
+        Alumno a = dao.buscarPorMatricula(matricula);
+        if (a == null) responderError(ex, 404, "Matrícula no encontrada");
+        else responder(ex, 200, a.toJson());
+    }
+
+    private void buscar(HttpExchange ex) throws IOException {
+        Map<String, String> params = parametros(ex);
+        String q = params.getOrDefault("q", "").trim();
+        if (q.isEmpty()) throw new IllegalArgumentException("Falta el parámetro q");
+
+        int desde = entero(params, "desde", 0, Integer.MAX_VALUE);
+        int limite = entero(params, "limite", LIMITE_PREDETERMINADO, LIMITE_MAXIMO);
+
+        List<Alumno> res = controlador.buscarEnTodasLasCarpetas(q);
+        ex.getResponseHeaders().set("X-Total-Count", String.valueOf(res.size()));
+        int fin = (int) Math.min(res.size(), (long) desde + limite);
+        enviarAlumnos(ex, desde >= fin ? List.of() : res.subList(desde, fin));
+    }
+
+    /** Por cada semestre: cantidad de alumnos y promedio general, mínimo y máximo */
+    private void estadisticas(HttpExchange ex) throws IOException {
+        String filtro = parametros(ex).get("carrera");
+        if (filtro != null && !filtro.isEmpty()) ControladorAlumno.validarNombre(filtro);
+        List<String> carreras = filtro == null || filtro.isEmpty()
+                ? controlador.listarCarrerasExistentes() : List.of(filtro);
+
+        // Se resuelven todos antes de enviar el 200: un nombre inválido todavía puede ser un 400
+        List<String[]> semestres = new ArrayList<>();
+        List<AlumnoDAO> daos = new ArrayList<>();
+        for (String carrera : carreras) {
+            for (String semestre : controlador.listarSemestres(carrera)) {
+                daos.add(controlador.daoDe(carrera, semestre));
+                semestres.add(new String[] { carrera, semestre });
+            }
+        }
+
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(200, 0);
+        try (Writer w = escritor(ex)) {
+            w.write('[');
+            for (int i = 0; i < daos.size(); i++) {
+                IndiceRangos ir = daos.get(i).indiceRangos();
+                if (i > 0) w.write(',');
+                w.write("{\"carrera\":" + cadena(semestres.get(i)[0]) + ",\"semestre\":" + cadena(semestres.get(i)[1])
+                        + ",\"alumnos\":" + ir.cantidad()
+                        + ",\"promedio\":" + ir.promedioGeneral()
+                        + ",\"minimo\":" + (ir.cantidad() == 0 ? "null" : ir.promedioMinimo())
+                        + ",\"maximo\":" + (ir.cantidad() == 0 ? "null" : ir.promedioMaximo()) + "}");
+            }
+            w.write(']');
+        }
+    }
+
+    // -------------------------------
+    //          MODIFICACIONES
+    // -------------------------------
+
+    private void agregar(HttpExchange ex, String carrera, String semestre) throws IOException {
+        AlumnoDAO dao = controlador.daoDe(carrera, semestre);
+        Alumno a = leerAlumno(ex, carrera, semestre);
+
+        if (!dao.agregarSiNoExiste(a)) {
+            responderError(ex, 409, "La matrícula ya existe en este archivo.");
+            return;
+        }
+        ex.getResponseHeaders().set("ETag", etiqueta(dao));
+        responder(ex, 201, a.toJson());
+    }
+
+    private void editar(HttpExchange ex, String carrera, String semestre, String matricula) throws IOException {
+        AlumnoDAO dao = controlador.daoDe(carrera, semestre);
+        Alumno a = leerAlumno(ex, carrera, semestre);
+
+        // La versión esperada se compara dentro del candado de escritura del DAO
+        String esperada = ex.getRequestHeaders().getFirst("If-Match");
+        switch (dao.editarSi(matricula, a, () -> coincide(esperada, etiqueta(dao)))) {
+            case VERSION_DISTINTA:
+                responderError(ex, 412, "El archivo cambió desde la versión indicada.");
+                return;
+            case MATRICULA_DUPLICADA:
+                responderError(ex, 409, "La nueva matrícula ya existe en este archivo.");
+                return;
+            case NO_ENCONTRADO:
+                responderError(ex, 404, "Matrícula no encontrada");
+                return;
+            default:
+                ex.getResponseHeaders().set("ETag", etiqueta(dao));
+                responder(ex, 200, a.toJson());
+        }
+    }
+
+    private void eliminar(HttpExchange ex, String carrera, String semestre, String matricula) throws IOException {
+        AlumnoDAO dao = controlador.daoDe(carrera, semestre);
+        if (!dao.eliminarPorMatricula(matricula)) {
+            responderError(ex, 404, "Matrícula no encontrada");
+            return;
+        }
+        ex.sendResponseHeaders(204, -1);
+    }
+
+    /**
+     * Lee el alumno del cuerpo de la petición. Carrera y semestre se toman
+     * de la ruta; luego se aplican las mismas validaciones que en la ventana.
+     */
+    private Alumno leerAlumno(HttpExchange ex, String carrera, String semestre) throws IOException {
+        String cuerpo = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        Alumno a = Alumno.fromJson(cuerpo);
+        a.setLicenciatura(carrera);
+        a.setSemestre(semestre);
+
+        List<String> errores = controlador.validarAlumno(a);
+        if (!errores.isEmpty()) throw new IllegalArgumentException(String.join(" ", errores));
+        return a;
+    }
+
+    // -------------------------------
+    //           RESPUESTAS
+    // -------------------------------
+
+    /**
+     * ETag del archivo de un semestre: versión lógica más fecha y tamaño
+     * (estos últimos detectan cambios hechos por otros procesos).
+     */
+    private static String etiqueta(AlumnoDAO dao) {
+        File semestre = new File(dao.getRuta());
+        File fisico = new GestorArchivos(dao.getRuta()).archivoEnDisco();
+        return "\"" + RegistroVersiones.version(semestre) + "-" + fisico.lastModified() + "-" + fisico.length() + "\"";
+    }
+
+    /** @return true si el semestre existe en disco (las consultas no deben crearlo) */
+    private static boolean existe(AlumnoDAO dao) {
+        return new GestorArchivos(dao.getRuta()).archivoEnDisco().exists();
+    }
+
+    /** Pone el ETag y responde 304 si el cliente ya tiene esa versión */
+    private static boolean noModificado(HttpExchange ex, AlumnoDAO dao) throws IOException {
+        String etag = etiqueta(dao);
+        ex.getResponseHeaders().set("ETag", etag);
+
+        String previo = ex.getRequestHeaders().getFirst("If-None-Match");
+        if (previo != null && coincide(previo, etag)) {
+            ex.sendResponseHeaders(304, -1);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param encabezado valor de If-Match / If-None-Match (null = sin condición)
+     * @return true si el encabezado falta, es "*" o incluye la etiqueta
+     */
+    private static boolean coincide(String encabezado, String etag) {
+        return encabezado == null || encabezado.trim().equals("*")
+                || List.of(encabezado.trim().split("\\s*,\\s*")).contains(etag);
+    }
+
+    /** Envía un arreglo JSON escribiendo alumno por alumno (respuesta por partes) */
+    private static void enviarAlumnos(HttpExchange ex, List<Alumno> alumnos) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(200, 0);
+        try (Writer w = escritor(ex)) {
+            w.write('[');
+            for (int i = 0; i < alumnos.size(); i++) {
+                if (i > 0) w.write(',');
+                w.write(alumnos.get(i).toJson());
+            }
+            w.write(']');
+        }
+    }
+
+    private static Writer escritor(HttpExchange ex) {
+        return new BufferedWriter(new OutputStreamWriter(ex.getResponseBody(), StandardCharsets.UTF_8), 16 * 1024);
+    }
+
+    private static void responder(HttpExchange ex, int codigo, String json) throws IOException {
+        byte[] datos = json.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(codigo, datos.length);
+        ex.getResponseBody().write(datos);
+    }
+
+    private static void responderError(HttpExchange ex, int codigo, String mensaje) {
+        try {
+            responder(ex, codigo, "{\"error\":" + cadena(mensaje == null ? "" : mensaje) + "}");
+        } catch (IOException e) {
+            // Si los encabezados ya se enviaron no hay forma de avisar al cliente
+        }
+    }
+
+    /** Cadena JSON con comillas y escapes */
+    private static String cadena(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+}
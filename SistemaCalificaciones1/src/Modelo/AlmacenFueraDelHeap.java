@@ -0,0 +1,269 @@
+package Modelo;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Almacén de alumnos fuera del heap de Java, para listas muy grandes.
+ *
+ * Los datos de un semestre se guardan en dos ByteBuffer directos:
+ *  - registros de ancho fijo (promedio, edad, códigos de carrera y
+ *    semestre, y la posición/largo de cada texto);
+ *  - un "arena" con los textos en UTF-8, uno tras otro.
+ *
+ * El recolector de basura solo ve dos objetos por semestre en lugar de
+ * miles de Alumno con sus String. Quien pide la lista recibe vistas
+ * ligeras (flyweight) que leen el campo del buffer al momento de pedirlo.
+ *
+ * Se activa con -Dcalificaciones.almacen=fuera-heap (ver AlumnoDAO). El
+ * tamaño total lo limita -XX:MaxDirectMemorySize.
+ */
+public final class AlmacenFueraDelHeap {
+
+    // Disposición de un registro (bytes)
+    private static final int PROMEDIO = 0;      // double
+    private static final int EDAD = 8;          // int
+    private static final int CARRERA = 12;      // int (DiccionarioCadenas.CARRERAS)
+    private static final int SEMESTRE = 16;     // int (DiccionarioCadenas.SEMESTRES)
+    private static final int TEXTOS = 20;       // 5 × (int posición, int largo)
+    private static final int ANCHO = TEXTOS + 5 * 8;
+
+    // Orden de los textos dentro del registro
+    private static final int NOMBRE = 0, MATRICULA = 1, CORREO = 2, TELEFONO = 3, DIRECCION = 4;
+
+    /** Almacenes cargados por archivo, con el sello con que se cargaron */
+    private static final Map<String, AlmacenFueraDelHeap> cargados = new ConcurrentHashMap<>();
+
+    /** Bytes directos ocupados por todos los almacenes vivos */
+    private static final AtomicLong bytesTotales = new AtomicLong();
+
+    static {
+        // Un cambio en el archivo libera su almacén (se recarga al pedirlo)
+        RegistroVersiones.agregarOyente(f -> {
+            AlmacenFueraDelHeap a = cargados.remove(RegistroVersiones.clave(f));
+            if (a != null) bytesTotales.addAndGet(-a.bytes());
+        });
+    }
+
+    private ByteBuffer registros;
+    private ByteBuffer cadenas;
+    private int filas;
+
+    /**
+     * Carrera y semestre de las filas cuyo texto no cupo en el diccionario
+     * (código -1); casi siempre vacíos
+     */
+    private final Map<Integer, String> carrerasSinCodigo = new HashMap<>();
+    private final Map<Integer, String> semestresSinCodigo = new HashMap<>();
+
+    private final long version;
+    private final long modificado;
+    private final long tamano;
+
+    private AlmacenFueraDelHeap(long version, long modificado, long tamano) {
+        this.version = version;
+        this.modificado = modificado;
+        this.tamano = tamano;
+        this.registros = ByteBuffer.allocateDirect(ANCHO * 256);
+        this.cadenas = ByteBuffer.allocateDirect(16 * 1024);
+    }
+
+    // -------------------------------
+    //        CARGA Y CACHÉ
+    // -------------------------------
+
+    /**
+     * Devuelve el almacén vigente de un archivo de semestre, cargándolo si
+     * no existe o si el archivo cambió desde la última carga.
+     */
+    public static AlmacenFueraDelHeap para(File semestre) throws IOException {
+        GestorArchivos g = new GestorArchivos(semestre.getPath());
+        File fisico = g.archivoEnDisco();
+        String clave = RegistroVersiones.clave(semestre);
+
+        AlmacenFueraDelHeap a = cargados.get(clave);
+        if (a != null && a.version == RegistroVersiones.version(semestre)
+                && a.modificado == fisico.lastModified() && a.tamano == fisico.length())
+            return a;
+
+        a = new AlmacenFueraDelHeap(RegistroVersiones.version(semestre), fisico.lastModified(), fisico.length());
+        try (BufferedReader br = g.abrirLector()) {
+            String l;
+            while ((l = br.readLine()) != null)
+                if (!l.trim().isEmpty()) a.agregar(l);
+        }
+
+        AlmacenFueraDelHeap previo = cargados.put(clave, a);
+        bytesTotales.addAndGet(a.bytes() - (previo == null ? 0 : previo.bytes()));
+        return a;
+    }
+
+    /** @return bytes fuera del heap que ocupan todos los almacenes cargados */
+    public static long bytesFueraDelHeap() {
+        return bytesTotales.get();
+    }
+
+    private long bytes() {
+        return registros.capacity() + (long) cadenas.capacity();
+    }
+
+    /** Agrega un registro a partir de una línea del archivo */
+    private void agregar(String linea) {
+        String[] p = linea.split("\\|", -1);
+
+        if (registros.capacity() < (filas + 1) * ANCHO) registros = crecer(registros, (filas + 1) * ANCHO);
+        int base = filas * ANCHO;
+
+        registros.putDouble(base + PROMEDIO, p.length > 2 ? numero(p[2]) : 0.0);
+        registros.putInt(base + EDAD, p.length > 4 ? (int) numero(p[4]) : 0);
+        String carrera = p.length > 5 ? p[5] : "", semestre = p.length > 3 ? p[3] : "";
+        int cc = DiccionarioCadenas.CARRERAS.codigo(carrera), cs = DiccionarioCadenas.SEMESTRES.codigo(semestre);
+        registros.putInt(base + CARRERA, cc);
+        registros.putInt(base + SEMESTRE, cs);
+        if (cc < 0) carrerasSinCodigo.put(filas, carrera);
+        if (cs < 0) semestresSinCodigo.put(filas, semestre);
+
+        guardarTexto(base, NOMBRE, p.length > 0 ? p[0] : "");
+        guardarTexto(base, MATRICULA, p.length > 1 ? p[1] : "");
+        guardarTexto(base, CORREO, p.length > 6 ? p[6] : "");
+        guardarTexto(base, TELEFONO, p.length > 7 ? p[7] : "");
+        guardarTexto(base, DIRECCION, p.length > 8 ? p[8] : "");
+        filas++;
+    }
+
+    private void guardarTexto(int base, int campo, String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        int pos = cadenas.position();
+        if (cadenas.capacity() < pos + b.length) cadenas = crecer(cadenas, pos + b.length);
+        cadenas.put(b);
+        registros.putInt(base + TEXTOS + campo * 8, pos);
+        registros.putInt(base + TEXTOS + campo * 8 + 4, b.length);
+    }
+
+    /** Copia el buffer a uno directo más grande (al menos el doble) */
+    private static ByteBuffer crecer(ByteBuffer b, int minimo) {
+        ByteBuffer nuevo = ByteBuffer.allocateDirect(Math.max(minimo, b.capacity() * 2));
+        int pos = b.position();
+        nuevo.put(b.duplicate().position(0).limit(b.capacity()));
+        nuevo.position(pos);
+        return nuevo;
+    }
+
+    private static double numero(String s) {
+        try {
+            return s.isEmpty() ? 0.0 : Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+
+    // -------------------------------
+    //           LECTURA
+    // -------------------------------
+
+    /** @return cantidad de alumnos */
+    public int filas() {
+        return filas;
+    }
+
+    double promedio(int fila) { return registros.getDouble(fila * ANCHO + PROMEDIO); }
+    int edad(int fila) { return registros.getInt(fila * ANCHO + EDAD); }
+    int carrera(int fila) { return registros.getInt(fila * ANCHO + CARRERA); }
+    int semestre(int fila) { return registros.getInt(fila * ANCHO + SEMESTRE); }
+
+    String textoCarrera(int fila) {
+        int c = carrera(fila);
+        return c < 0 ? carrerasSinCodigo.get(fila) : DiccionarioCadenas.CARRERAS.valor(c);
+    }
+
+    String textoSemestre(int fila) {
+        int c = semestre(fila);
+        return c < 0 ? semestresSinCodigo.get(fila) : DiccionarioCadenas.SEMESTRES.valor(c);
+    }
+
+    /** Decodifica un texto del arena (se crea el String solo cuando se pide) */
+    String texto(int fila, int campo) {
+        int base = fila * ANCHO + TEXTOS + campo * 8;
+        int pos = registros.getInt(base);
+        int largo = registros.getInt(base + 4);
+        byte[] b = new byte[largo];
+        cadenas.get(pos, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lista de solo lectura con una vista por fila. Las vistas se crean al
+     * pedirlas y no copian los datos.
+     */
+    public List<Alumno> comoLista() {
+        return new Lista();
+    }
+
+    private final class Lista extends AbstractList<Alumno> implements RandomAccess {
+        @Override public Alumno get(int i) {
+            if (i < 0 || i >= filas) throw new IndexOutOfBoundsException(i);
+            return new Vista(AlmacenFueraDelHeap.this, i);
+        }
+
+        @Override public int size() {
+            return filas;
+        }
+    }
+
+    /**
+     * Alumno "flyweight": no guarda datos propios, solo el almacén y la fila.
+     * Es de solo lectura; para modificarlo se crea un Alumno normal con
+     * {@link #copia()}.
+     */
+    static final class Vista extends Alumno {
+        private final AlmacenFueraDelHeap almacen;
+        private final int fila;
+
+        Vista(AlmacenFueraDelHeap almacen, int fila) {
+            this.almacen = almacen;
+            this.fila = fila;
+        }
+
+        /** @return un Alumno normal (en el heap) con los mismos datos */
+        public Alumno copia() {
+            return new Alumno(getNombre(), getMatricula(), getPromedio(), getSemestre(), getEdad(),
+                    getLicenciatura(), getCorreo(), getTelefono(), getDireccion());
+        }
+
+        @Override public String getNombre() { return almacen.texto(fila, NOMBRE); }
+        @Override public String getMatricula() { return almacen.texto(fila, MATRICULA); }
+        @Override public double getPromedio() { return almacen.promedio(fila); }
+        @Override public int getEdad() { return almacen.edad(fila); }
+        @Override public String getCorreo() { return almacen.texto(fila, CORREO); }
+        @Override public String getTelefono() { return almacen.texto(fila, TELEFONO); }
+        @Override public String getDireccion() { return almacen.texto(fila, DIRECCION); }
+        @Override public int getCodigoLicenciatura() { return almacen.carrera(fila); }
+        @Override public int getCodigoSemestre() { return almacen.semestre(fila); }
+        @Override public String getLicenciatura() { return almacen.textoCarrera(fila); }
+        @Override public String getSemestre() { return almacen.textoSemestre(fila); }
+
+        @Override public void setNombre(String v) { soloLectura(); }
+        @Override public void setMatricula(String v) { soloLectura(); }
+        @Override public void setPromedio(double v) { soloLectura(); }
+        @Override public void setSemestre(String v) { soloLectura(); }
+        @Override public void setEdad(int v) { soloLectura(); }
+        @Override public void setLicenciatura(String v) { soloLectura(); }
+        @Override public void setCorreo(String v) { soloLectura(); }
+        @Override public void setTelefono(String v) { soloLectura(); }
+        @Override public void setDireccion(String v) { soloLectura(); }
+
+        private static void soloLectura() {
+            throw new UnsupportedOperationException("Vista de solo lectura; use copia() para modificar");
+        }
+    }
+}
@@ -17,14 +17,20 @@ public class Alumno {
     /** Promedio general del alumno (0.0 - 10.0) */
     private double promedio;
 
-    /** Semestre actual que cursa el alumno */
-    private String semestre;
+    /** Semestre actual que cursa el alumno (código en DiccionarioCadenas.SEMESTRES) */
+    private int semestre;
+
+    /** Texto del semestre si no cupo en el diccionario (código -1), si no null */
+    private String semestreSinCodigo;
 
     /** Edad del alumno */
     private int edad;
 
-    /** Carrera o licenciatura que estudia */
-    private String licenciatura;
+    /** Carrera o licenciatura que estudia (código en DiccionarioCadenas.CARRERAS) */
+    private int licenciatura;
+
+    /** Texto de la carrera si no cupo en el diccionario (código -1), si no null */
+    private String licenciaturaSinCodigo;
 
     /** Correo electrónico del alumno */
     private String correo;
@@ -51,12 +57,12 @@ public class Alumno {
         this.nombre = nombre;
         this.matricula = matricula;
         this.promedio = promedio;
-        this.semestre = semestre;
+        fijarSemestre(semestre);
         this.edad = edad;
-        this.licenciatura = licenciatura;
+        fijarLicenciatura(licenciatura);
         this.correo = correo;
         this.telefono = telefono;
-        this.direccion = direccion;
+        this.direccion = DiccionarioCadenas.DIRECCIONES.canonica(direccion);
     }
 
     // -------------------------------
@@ -71,14 +77,43 @@ public class Alumno {
     public double getPromedio() { return promedio; }
     public void setPromedio(double promedio) { this.promedio = promedio; }
 
-    public String getSemestre() { return semestre; }
-    public void setSemestre(String semestre) { this.semestre = semestre; }
+    public String getSemestre() { return semestre < 0 ? semestreSinCodigo : DiccionarioCadenas.SEMESTRES.valor(semestre); }
+    public void setSemestre(String semestre) {
+        fijarSemestre(semestre);
+    }
+
+    // Privados: el constructor no debe llamar setters que una subclase (AlmacenFueraDelHeap.Vista) redefine
+    private void fijarSemestre(String semestre) {
+        this.semestre = DiccionarioCadenas.SEMESTRES.codigo(semestre);
+        this.semestreSinCodigo = this.semestre < 0 ? semestre : null;
+    }
+
+    /**
+     * @return código del semestre; dos alumnos del mismo semestre tienen el
+     *         mismo código. -1 si el diccionario estaba lleno (comparar getSemestre)
+     */
+    public int getCodigoSemestre() { return semestre; }
 
     public int getEdad() { return edad; }
     public void setEdad(int edad) { this.edad = edad; }
 
-    public String getLicenciatura() { return licenciatura; }
-    public void setLicenciatura(String licenciatura) { this.licenciatura = licenciatura; }
+    public String getLicenciatura() {
+        return licenciatura < 0 ? licenciaturaSinCodigo : DiccionarioCadenas.CARRERAS.valor(licenciatura);
+    }
+    public void setLicenciatura(String licenciatura) {
+        fijarLicenciatura(licenciatura);
+    }
+
+    private void fijarLicenciatura(String licenciatura) {
+        this.licenciatura = DiccionarioCadenas.CARRERAS.codigo(licenciatura);
+        this.licenciaturaSinCodigo = this.licenciatura < 0 ? licenciatura : null;
+    }
+
+    /**
+     * @return código de la carrera; dos alumnos de la misma carrera tienen el
+     *         mismo código. -1 si el diccionario estaba lleno (comparar getLicenciatura)
+     */
+    public int getCodigoLicenciatura() { return licenciatura; }
 
     public String getCorreo() { return correo; }
     public void setCorreo(String correo) { this.correo = correo; }
@@ -87,7 +122,7 @@ public class Alumno {
     public void setTelefono(String telefono) { this.telefono = telefono; }
 
     public String getDireccion() { return direccion; }
-    public void setDireccion(String direccion) { this.direccion = direccion; }
+    public void setDireccion(String direccion) { this.direccion = DiccionarioCadenas.DIRECCIONES.canonica(direccion); }
 
     /**
      * Convierte los datos del alumno en una línea lista para guardarse en archivo.
@@ -97,8 +132,38 @@ public class Alumno {
      * @return línea lista para escribir en el archivo
      */
     public String toLinea() {
-        return safe(nombre) + "|" + safe(matricula) + "|" + promedio + "|" + safe(semestre) + "|" +
-                edad + "|" + safe(licenciatura) + "|" + safe(correo) + "|" + safe(telefono) + "|" + safe(direccion);
+        // Se usan los getters para que también funcione con vistas (ver AlmacenFueraDelHeap)
+        return safe(getNombre()) + "|" + safe(getMatricula()) + "|" + getPromedio() + "|" + safe(getSemestre()) + "|" +
+                getEdad() + "|" + safe(getLicenciatura()) + "|" + safe(getCorreo()) + "|" + safe(getTelefono()) + "|" + safe(getDireccion());
+    }
+
+    /**
+     * Convierte los datos del alumno en una línea CSV (separada por comas).
+     * Los campos que contienen comas o comillas se encierran entre comillas.
+     *
+     * @return línea CSV sin salto de línea
+     */
+    public String toCsv() {
+        return csv(getNombre()) + "," + csv(getMatricula()) + "," + getPromedio() + "," + csv(getSemestre()) + "," +
+                getEdad() + "," + csv(getLicenciatura()) + "," + csv(getCorreo()) + "," + csv(getTelefono()) + "," + csv(getDireccion());
+    }
+
+    /**
+     * Convierte los datos del alumno en un objeto JSON de una sola línea
+     * (formato JSON Lines).
+     *
+     * @return objeto JSON sin salto de línea
+     */
+    public String toJson() {
+        return "{\"nombre\":" + json(getNombre()) +
+                ",\"matricula\":" + json(getMatricula()) +
+                ",\"promedio\":" + getPromedio() +
+                ",\"semestre\":" + json(getSemestre()) +
+                ",\"edad\":" + getEdad() +
+                ",\"licenciatura\":" + json(getLicenciatura()) +
+                ",\"correo\":" + json(getCorreo()) +
+                ",\"telefono\":" + json(getTelefono()) +
+                ",\"direccion\":" + json(getDireccion()) + "}";
     }
 
     /**
@@ -118,16 +183,108 @@ public class Alumno {
         a.nombre = p.length > 0 ? p[0] : "";
         a.matricula = p.length > 1 ? p[1] : "";
         a.promedio = p.length > 2 && !p[2].isEmpty() ? parseDoubleSafe(p[2]) : 0.0;
-        a.semestre = p.length > 3 ? p[3] : "";
+        a.setSemestre(p.length > 3 ? p[3] : "");
         a.edad = p.length > 4 && !p[4].isEmpty() ? parseIntSafe(p[4]) : 0;
-        a.licenciatura = p.length > 5 ? p[5] : "";
+        a.setLicenciatura(p.length > 5 ? p[5] : "");
         a.correo = p.length > 6 ? p[6] : "";
         a.telefono = p.length > 7 ? p[7] : "";
-        a.direccion = p.length > 8 ? p[8] : "";
+        a.direccion = DiccionarioCadenas.DIRECCIONES.canonica(p.length > 8 ? p[8] : "");
 
         return a;
     }
 
+    /**
+     * Crea un Alumno a partir de un objeto JSON con los mismos nombres de
+     * campo que produce {@link #toJson()}. Los campos que falten quedan con
+     * su valor por defecto y los desconocidos se ignoran.
+     *
+     * @param json objeto JSON plano (sin objetos ni arreglos anidados)
+     * @throws IllegalArgumentException si el texto no es un objeto JSON válido
+     */
+    public static Alumno fromJson(String json) {
+        Alumno a = new Alumno("", "", 0.0, "", 0, "", "", "", "");
+        int[] pos = { saltarEspacios(json, 0) };
+
+        esperar(json, pos, '{');
+        pos[0] = saltarEspacios(json, pos[0]);
+        if (pos[0] < json.length() && json.charAt(pos[0]) == '}') return a;
+
+        while (true) {
+            String campo = leerCadena(json, pos);
+            esperar(json, pos, ':');
+            pos[0] = saltarEspacios(json, pos[0]);
+
+            String valor;
+            if (pos[0] < json.length() && json.charAt(pos[0]) == '"') {
+                valor = leerCadena(json, pos);
+            } else {
+                int ini = pos[0];
+                while (pos[0] < json.length() && ",} \t\r\n".indexOf(json.charAt(pos[0])) < 0) pos[0]++;
+                valor = json.substring(ini, pos[0]);
+                if (valor.equals("null")) valor = "";
+            }
+
+            switch (campo) {
+                case "nombre": a.nombre = valor; break;
+                case "matricula": a.matricula = valor; break;
+                case "promedio": a.promedio = parseDoubleSafe(valor); break;
+                case "semestre": a.setSemestre(valor); break;
+                case "edad": a.edad = parseIntSafe(valor); break;
+                case "licenciatura": a.setLicenciatura(valor); break;
+                case "correo": a.correo = valor; break;
+                case "telefono": a.telefono = valor; break;
+                case "direccion": a.setDireccion(valor); break;
+                default: break;
+            }
+
+            pos[0] = saltarEspacios(json, pos[0]);
+            if (pos[0] < json.length() && json.charAt(pos[0]) == ',') { pos[0]++; continue; }
+            esperar(json, pos, '}');
+            return a;
+        }
+    }
+
+    private static int saltarEspacios(String s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+        return i;
+    }
+
+    private static void esperar(String s, int[] pos, char c) {
+        pos[0] = saltarEspacios(s, pos[0]);
+        if (pos[0] >= s.length() || s.charAt(pos[0]) != c)
+            throw new IllegalArgumentException("JSON inválido: se esperaba '" + c + "' en la posición " + pos[0]);
+        pos[0]++;
+    }
+
+    /** Lee una cadena JSON entre comillas, resolviendo los escapes */
+    private static String leerCadena(String s, int[] pos) {
+        esperar(s, pos, '"');
+        StringBuilder sb = new StringBuilder();
+        int i = pos[0];
+        while (i < s.length() && s.charAt(i) != '"') {
+            char c = s.charAt(i++);
+            if (c != '\\') { sb.append(c); continue; }
+            if (i >= s.length()) break;
+            char e = s.charAt(i++);
+            switch (e) {
+                case 'n': sb.append('\n'); break;
+                case 't': sb.append('\t'); break;
+                case 'r': sb.append('\r'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    if (i + 4 > s.length()) throw new IllegalArgumentException("JSON inválido: escape \\u incompleto");
+                    sb.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+                    i += 4;
+                    break;
+                default: sb.append(e);
+            }
+        }
+        if (i >= s.length()) throw new IllegalArgumentException("JSON inválido: cadena sin cerrar");
+        pos[0] = i + 1;
+        return sb.toString();
+    }
+
     /**
      * Convierte un String a double sin lanzar excepción.
      * Si hay error, devuelve 0.0
@@ -153,11 +310,37 @@ public class Alumno {
         return s == null ? "" : s.replace("\n"," ").replace("\r"," ");
     }
 
+    /**
+     * Escapa un campo para CSV: si tiene coma, comillas o salto de línea
+     * se encierra entre comillas dobles.
+     */
+    private static String csv(String s) {
+        s = safe(s);
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0) return s;
+        return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Convierte un texto en cadena JSON escapando comillas, diagonales
+     * y caracteres de control.
+     */
+    private static String json(String s) {
+        s = safe(s);
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
     /**
      * Representación del alumno cuando se imprime en consola o en comboBox.
      */
     @Override
     public String toString() {
-        return matricula + " - " + nombre;
+        return getMatricula() + " - " + getNombre();
     }
 }
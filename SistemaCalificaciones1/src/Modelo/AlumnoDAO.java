@@ -1,9 +1,22 @@
 package Modelo;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Clase encargada de la gestión de datos de Alumno a nivel de archivo.
@@ -17,9 +30,29 @@ import java.util.List;
  *  - Importar alumnos desde archivos externos
  *
  * Internamente utiliza GestorArchivos para trabajar con los archivos físicos.
+ *
+ * Todas las instancias que apuntan al mismo archivo comparten un candado de
+ * lectura/escritura: varias lecturas pueden ir al mismo tiempo y cada
+ * escritura (incluyendo leer-modificar-guardar) es atómica respecto a las
+ * demás, aunque vengan de hilos distintos (ventana, API HTTP, etc.).
  */
 public class AlumnoDAO {
 
+    /**
+     * Dónde se guardan en memoria los alumnos que devuelve listar():
+     * "heap" (predeterminado, objetos Alumno normales) o "fuera-heap"
+     * (AlmacenFueraDelHeap, para listas muy grandes). Se elige con
+     * -Dcalificaciones.almacen=fuera-heap
+     */
+    private static final boolean FUERA_DEL_HEAP =
+            "fuera-heap".equalsIgnoreCase(System.getProperty("calificaciones.almacen", "heap"));
+
+    /** Resultado de editarSi */
+    public enum ResultadoEdicion { EDITADO, NO_ENCONTRADO, MATRICULA_DUPLICADA, VERSION_DISTINTA }
+
+    /** Candados por archivo, compartidos por todas las instancias */
+    private static final Map<String, ReadWriteLock> candados = new ConcurrentHashMap<>();
+
     /** Ruta actual del archivo donde se almacenan los alumnos */
     private String ruta;
 
@@ -45,13 +78,34 @@ public class AlumnoDAO {
         this.gestor = new GestorArchivos(nuevaRuta);
     }
 
+    /** @return el candado compartido del archivo indicado */
+    static ReadWriteLock candado(File archivo) {
+        return candados.computeIfAbsent(RegistroVersiones.clave(archivo), k -> new ReentrantReadWriteLock());
+    }
+
+    private ReadWriteLock candado() {
+        return candado(new File(ruta));
+    }
+
+    /** @return true si listar() usa el almacén fuera del heap */
+    public static boolean usaAlmacenFueraDelHeap() {
+        return FUERA_DEL_HEAP;
+    }
+
     /**
      * Lee todos los alumnos desde el archivo correspondiente.
+     * Con el almacén fuera del heap la lista es de solo lectura y sus
+     * elementos son vistas que no se pueden modificar.
      *
      * @return lista de alumnos convertidos desde sus líneas
      */
     public List<Alumno> listar() {
+        candado().readLock().lock();
         try {
+            if (FUERA_DEL_HEAP)
+                return AlmacenFueraDelHeap.para(new File(ruta)).comoLista();
+
+
             // Obtiene líneas crudas desde el archivo
             List<String> lines = gestor.leerLineas();
             List<Alumno> res = new ArrayList<>();
@@ -65,7 +119,85 @@ public class AlumnoDAO {
             e.printStackTrace();
             // Si hay error, devolver lista vacía evita que la app se caiga
             return new ArrayList<>();
+        } finally {
+            candado().readLock().unlock();
+        }
+    }
+
+    /**
+     * Lee solo una página del archivo: se salta las primeras "desde" líneas
+     * sin convertirlas y deja de leer al completar la página.
+     *
+     * @param desde cantidad de alumnos a saltar
+     * @param cantidad tamaño máximo de la página
+     */
+    public List<Alumno> listarPagina(int desde, int cantidad) throws IOException {
+        try (Stream<Alumno> s = flujo(null, desde, cantidad)) {
+            return s.collect(Collectors.toCollection(ArrayList::new));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /** Recorre todos los alumnos del archivo sin cargarlos juntos (ver flujo con filtro) */
+    public Stream<Alumno> flujo() throws IOException {
+        return flujo(null, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Recorre el archivo como un Stream que lee una línea a la vez (también
+     * en archivos comprimidos, bloque por bloque). Solo se tienen en memoria
+     * los alumnos que el consumidor guarde; si se detiene antes (findFirst,
+     * limit, anyMatch...) el resto del archivo no se lee.
+     *
+     * El filtro se aplica mientras se lee, antes de saltar y limitar: "desde"
+     * y "limite" cuentan solo los alumnos que lo cumplen.
+     *
+     * Mientras el Stream está abierto se mantiene el candado de lectura del
+     * archivo (las escrituras esperan), así que debe cerrarse, en el mismo
+     * hilo, con try-with-resources:
+     * <pre>
+     *   try (Stream&lt;Alumno&gt; s = dao.flujo(a -&gt; a.getPromedio() &gt;= 9, 0, 20)) { ... }
+     * </pre>
+     * Los errores de lectura se lanzan como UncheckedIOException.
+     *
+     * @param filtro condición que deben cumplir (null = todos)
+     * @param desde cantidad de alumnos a saltar
+     * @param limite máximo de alumnos a entregar
+     */
+    public Stream<Alumno> flujo(Predicate<? super Alumno> filtro, long desde, long limite) throws IOException {
+        Lock lectura = candado().readLock();
+        lectura.lock();
+
+        Stream<Alumno> s;
+        Runnable cerrar;
+        try {
+            if (FUERA_DEL_HEAP) {
+                // Las vistas leen del almacén; no hay archivo que cerrar
+                s = AlmacenFueraDelHeap.para(new File(ruta)).comoLista().stream();
+                cerrar = lectura::unlock;
+            } else {
+                BufferedReader br = gestor.abrirLector();
+                s = br.lines().filter(l -> !l.trim().isEmpty()).map(Alumno::fromLinea);
+                cerrar = () -> {
+                    try {
+                        br.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        lectura.unlock();
+                    }
+                };
+            }
+        } catch (IOException | RuntimeException e) {
+            lectura.unlock();
+            throw e;
         }
+
+        if (filtro != null) s = s.filter(filtro);
+        if (desde > 0) s = s.skip(desde);
+        if (limite < Long.MAX_VALUE) s = s.limit(limite);
+        return s.onClose(cerrar);
     }
 
     /**
@@ -75,23 +207,106 @@ public class AlumnoDAO {
     public boolean existeMatriculaEnArchivoActual(String matricula) {
         if (matricula == null) return false;
 
-        matricula = matricula.trim();
+        return buscarPorMatricula(matricula) != null;
+    }
 
-        // Recorre todos los alumnos y compara matrícula
-        for (Alumno a : listar()) {
-            if (matricula.equalsIgnoreCase(a.getMatricula())) 
-                return true;
+    /**
+     * Busca un alumno por matrícula leyendo solo lo necesario del archivo
+     * (se detiene en la primera coincidencia).
+     *
+     * @return el alumno o null si no existe
+     */
+    public Alumno buscarPorMatricula(String matricula) {
+        if (matricula == null) return null;
+        candado().readLock().lock();
+        try {
+            String l = gestor.buscarLineaPorMatricula(matricula);
+            return l == null ? null : Alumno.fromLinea(l);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            candado().readLock().unlock();
+        }
+    }
+
+    /** @return true si el archivo actual está guardado comprimido (.txtz) */
+    public boolean estaComprimido() {
+        return gestor.estaComprimido();
+    }
+
+    /** Comprime el archivo actual (para semestres de generaciones pasadas) */
+    public void comprimir() throws IOException {
+        candado().writeLock().lock();
+        try {
+            gestor.comprimir();
+        } finally {
+            candado().writeLock().unlock();
+        }
+    }
+
+    /** Regresa el archivo actual a texto plano */
+    public void descomprimir() throws IOException {
+        candado().writeLock().lock();
+        try {
+            gestor.descomprimir();
+        } finally {
+            candado().writeLock().unlock();
         }
-        return false;
     }
 
     /**
-     * Agrega un alumno al final del archivo (modo append).
+     * Agrega un alumno al final del archivo (modo append) y espera a que
+     * esté escrito. Las altas simultáneas al mismo archivo se escriben
+     * juntas (ver EscritorAltas).
      *
      * @param a alumno a agregar
      */
     public void agregar(Alumno a) throws IOException {
-        gestor.appendLinea(a.toLinea());
+        esperar(agregarAsincrono(a));
+    }
+
+    /**
+     * Encola un alta sin esperarla.
+     *
+     * @return se completa cuando la línea ya está escrita en el archivo
+     */
+    public CompletableFuture<Void> agregarAsincrono(Alumno a) {
+        return EscritorAltas.de(new File(ruta)).encolar(a, false).thenApply(x -> null);
+    }
+
+    /**
+     * Agrega el alumno solo si su matrícula no existe en el archivo. La
+     * verificación y la escritura ocurren bajo el mismo candado, así dos
+     * altas simultáneas de la misma matrícula no pueden duplicarla.
+     *
+     * @return true si se agregó, false si la matrícula ya existía
+     */
+    public boolean agregarSiNoExiste(Alumno a) throws IOException {
+        return esperar(agregarSiNoExisteAsincrono(a));
+    }
+
+    /**
+     * Encola un alta que se rechaza si la matrícula ya existe, sin esperarla.
+     *
+     * @return se completa con true al quedar escrita, o false si la
+     *         matrícula ya existía
+     */
+    public CompletableFuture<Boolean> agregarSiNoExisteAsincrono(Alumno a) {
+        return EscritorAltas.de(new File(ruta)).encolar(a, true);
+    }
+
+    /** Espera un alta encolada y regresa su excepción original si falló */
+    private static <T> T esperar(CompletableFuture<T> f) throws IOException {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            Throwable c = e.getCause();
+            if (c instanceof IOException) throw (IOException) c;
+            if (c instanceof RuntimeException) throw (RuntimeException) c;
+            if (c instanceof Error) throw (Error) c;
+            throw new IOException(c);
+        }
     }
 
     /**
@@ -105,19 +320,97 @@ public class AlumnoDAO {
         for (Alumno a : lista) 
             lines.add(a.toLinea());
 
-        gestor.escribirLineas(lines);
+        candado().writeLock().lock();
+        try {
+            gestor.escribirLineas(lines);
+            IndiceRangos.registrarReescritura(new File(ruta), lista);
+        } finally {
+            candado().writeLock().unlock();
+        }
     }
 
     /**
-     * Elimina del archivo el alumno cuya matrícula coincida.
+     * Crea un lote de cambios cuyo archivo predeterminado es el de este DAO.
+     * Varias bajas o ediciones seguidas deben ir en un lote: el archivo se
+     * lee y se reescribe una sola vez (ver LoteCambios).
      */
-    public void eliminarPorMatricula(String matricula) throws IOException {
-        List<Alumno> lista = listar();
+    public LoteCambios lote() {
+        return new LoteCambios(new File(ruta));
+    }
 
-        // removeIf elimina todos los que cumplan la condición
-        lista.removeIf(x -> x.getMatricula().equalsIgnoreCase(matricula));
+    /**
+     * Índice de rangos vigente del archivo actual (cantidad de alumnos,
+     * promedio mínimo/máximo, etc.), leído bajo el candado del archivo.
+     */
+    public IndiceRangos indiceRangos() throws IOException {
+        candado().readLock().lock();
+        try {
+            return IndiceRangos.para(new File(ruta));
+        } finally {
+            candado().readLock().unlock();
+        }
+    }
 
-        guardarTodo(lista);
+    /**
+     * Alumnos del archivo actual con promedio y edad dentro de los rangos
+     * dados (inclusivos). Usa el índice de rangos: solo se convierten las
+     * líneas que cumplen y el archivo se lee hasta la última de ellas.
+     */
+    public List<Alumno> buscarPorRango(double promMin, double promMax, int edadMin, int edadMax)
+            throws IOException {
+        return buscarPorRango(new File(ruta), promMin, promMax, edadMin, edadMax);
+    }
+
+    /** Igual que {@link #buscarPorRango(double, double, int, int)} sobre cualquier archivo de semestre */
+    public static List<Alumno> buscarPorRango(File semestre, double promMin, double promMax,
+                                              int edadMin, int edadMax) throws IOException {
+        candado(semestre).readLock().lock();
+        try {
+            int[] filas = IndiceRangos.para(semestre).filas(promMin, promMax, edadMin, edadMax);
+            List<Alumno> res = new ArrayList<>(filas.length);
+            if (filas.length == 0) return res;
+
+            // Las filas vienen en orden ascendente y cuentan solo líneas no vacías (como leerLineas)
+            try (BufferedReader br = new GestorArchivos(semestre.getPath()).abrirLector()) {
+                String l;
+                int fila = 0, siguiente = 0;
+                while (siguiente < filas.length && (l = br.readLine()) != null) {
+                    if (l.trim().isEmpty()) continue;
+                    if (fila++ != filas[siguiente]) continue;
+                    res.add(Alumno.fromLinea(l));
+                    siguiente++;
+                }
+            }
+            return res;
+        } finally {
+            candado(semestre).readLock().unlock();
+        }
+    }
+
+    /**
+     * Elimina del archivo el alumno cuya matrícula coincida.
+     *
+     * @return true si existía y se eliminó
+     */
+    public boolean eliminarPorMatricula(String matricula) throws IOException {
+        candado().writeLock().lock();
+        try {
+            List<Alumno> lista = new ArrayList<>(listar());
+            List<Alumno> eliminados = new ArrayList<>();
+
+            // Se quitan todos los que tengan esa matrícula
+            lista.removeIf(x -> x.getMatricula().equalsIgnoreCase(matricula) && eliminados.add(x));
+            if (eliminados.isEmpty())
+                return false;
+
+            guardarTodo(lista);
+            for (Alumno a : eliminados)
+                BitacoraAuditoria.registrar(BitacoraAuditoria.Accion.BAJA, new File(ruta), a, null);
+            FeedCambios.registrar(new File(ruta), List.of(FeedCambios.Evento.baja(matricula)));
+            return true;
+        } finally {
+            candado().writeLock().unlock();
+        }
     }
 
     /**
@@ -128,7 +421,39 @@ public class AlumnoDAO {
      * @return true si se encontró y reemplazó, false si no existía
      */
     public boolean editar(String matriculaOriginal, Alumno nuevos) throws IOException {
-        List<Alumno> lista = listar();
+        candado().writeLock().lock();
+        try {
+            return editarSinCandado(matriculaOriginal, nuevos);
+        } finally {
+            candado().writeLock().unlock();
+        }
+    }
+
+    /**
+     * Edita un alumno solo si el archivo sigue como el cliente lo vio y la
+     * nueva matrícula no choca con otra. Las verificaciones y la escritura
+     * ocurren bajo el mismo candado de escritura, así ningún otro cambio
+     * puede colarse entre ellas.
+     *
+     * @param vigente se evalúa con el candado tomado; false = el archivo cambió
+     */
+    public ResultadoEdicion editarSi(String matriculaOriginal, Alumno nuevos, BooleanSupplier vigente)
+            throws IOException {
+        candado().writeLock().lock();
+        try {
+            if (!vigente.getAsBoolean()) return ResultadoEdicion.VERSION_DISTINTA;
+            if (!nuevos.getMatricula().equalsIgnoreCase(matriculaOriginal)
+                    && existeMatriculaEnArchivoActual(nuevos.getMatricula()))
+                return ResultadoEdicion.MATRICULA_DUPLICADA;
+            return editarSinCandado(matriculaOriginal, nuevos)
+                    ? ResultadoEdicion.EDITADO : ResultadoEdicion.NO_ENCONTRADO;
+        } finally {
+            candado().writeLock().unlock();
+        }
+    }
+
+    private boolean editarSinCandado(String matriculaOriginal, Alumno nuevos) throws IOException {
+        List<Alumno> lista = new ArrayList<>(listar());
 
         for (int i = 0; i < lista.size(); i++) {
 
@@ -136,10 +461,13 @@ public class AlumnoDAO {
             if (lista.get(i).getMatricula().equalsIgnoreCase(matriculaOriginal)) {
 
                 // Reemplaza los datos del alumno
-                lista.set(i, nuevos);
+                Alumno antes = lista.set(i, nuevos);
 
                 // Guarda en archivo
                 guardarTodo(lista);
+                BitacoraAuditoria.registrar(BitacoraAuditoria.Accion.EDICION, new File(ruta), antes, nuevos);
+                FeedCambios.registrar(new File(ruta), List.of(FeedCambios.Evento.edicion(antes.getMatricula(), nuevos)));
+                HistorialCalificaciones.registrar(new File(ruta), antes, nuevos);
                 return true;
             }
         }
@@ -154,6 +482,7 @@ public class AlumnoDAO {
      * edad, carrera, correo, telefono, direccion.
      *
      * Si la matrícula ya existe en el archivo actual, se omite ese registro.
+     * Si se agregó alguno queda una importación en la bitácora.
      *
      * @param archivo archivo externo (.txt o .csv)
      * @return cantidad de alumnos agregados
@@ -162,41 +491,44 @@ public class AlumnoDAO {
 
         int contador = 0;
 
-        java.io.BufferedReader br = new java.io.BufferedReader(
+        // Las altas se encolan sin esperar; así se escriben por lotes (ver EscritorAltas)
+        List<CompletableFuture<Boolean>> altas = new ArrayList<>();
+
+        try (java.io.BufferedReader br = new java.io.BufferedReader(
                 new java.io.FileReader(archivo)
-        );
-
-        String linea;
-
-        while ((linea = br.readLine()) != null) {
-
-            // Cada línea se divide por comas
-            String[] partes = linea.split(",");
-
-            // Si no tiene los 9 campos requeridos, se descarta
-            if (partes.length < 9) continue;
-
-            // Construye un nuevo alumno
-            Alumno a = new Alumno(
-                    partes[0],        // nombre
-                    partes[1],        // matricula
-                    Double.parseDouble(partes[2]),
-                    partes[3],        // semestre
-                    Integer.parseInt(partes[4]),
-                    partes[5],        // carrera
-                    partes[6],        // correo
-                    partes[7],        // telefono
-                    partes[8]         // direccion
-            );
-
-            // Evita duplicados según matrícula
-            if (!existeMatriculaEnArchivoActual(a.getMatricula())) {
-                agregar(a);
-                contador++;
+        )) {
+
+            String linea;
+
+            while ((linea = br.readLine()) != null) {
+
+                // Cada línea se divide por comas
+                String[] partes = linea.split(",");
+
+                // Si no tiene los 9 campos requeridos, se descarta
+                if (partes.length < 9) continue;
+
+                // Construye un nuevo alumno
+                Alumno a = new Alumno(
+                        partes[0],        // nombre
+                        partes[1],        // matricula
+                        Double.parseDouble(partes[2]),
+                        partes[3],        // semestre
+                        Integer.parseInt(partes[4]),
+                        partes[5],        // carrera
+                        partes[6],        // correo
+                        partes[7],        // telefono
+                        partes[8]         // direccion
+                );
+
+                // Evita duplicados según matrícula
+                altas.add(agregarSiNoExisteAsincrono(a));
             }
         }
 
-        br.close();
+        for (CompletableFuture<Boolean> f : altas)
+            if (esperar(f)) contador++;
+        if (contador > 0) BitacoraAuditoria.registrarImportacion(new File(ruta), archivo, contador);
         return contador;
     }
 
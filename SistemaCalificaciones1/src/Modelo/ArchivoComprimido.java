@@ -0,0 +1,321 @@
+package Modelo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Archivo de semestre comprimido por bloques (extensión .txtz).
+ *
+ * Las líneas se agrupan en bloques de ~64 KB y cada bloque se comprime por
+ * separado con Deflater, así se puede descomprimir un bloque sin leer los
+ * demás. Al final del archivo hay un índice con la posición de cada bloque
+ * y la menor/mayor matrícula que contiene, para saltar bloques en búsquedas.
+ *
+ * Las líneas se guardan en el orden en que llegan, porque la tabla y las
+ * exportaciones muestran el semestre en el orden del archivo. Los rangos
+ * solo permiten saltar bloques si el archivo ya estaba ordenado por
+ * matrícula (por ejemplo, generado así por servicios escolares); con altas
+ * en cualquier orden casi todos los bloques cubren todo el rango y la
+ * búsqueda termina descomprimiendo el archivo completo, igual que sin índice.
+ *
+ * Estructura:
+ *   "SCZ1"
+ *   bloque*: [int tamañoOriginal][int tamañoComprimido][int lineas][bytes]
+ *   índice:  por bloque [long posición][int lineas][UTF matMin][UTF matMax]
+ *   [int cantidadBloques][long posiciónÍndice]"SCZI"
+ */
+public class ArchivoComprimido {
+
+    /** Extensión de los archivos de semestre comprimidos */
+    public static final String EXTENSION = ".txtz";
+
+    private static final byte[] MAGIA = "SCZ1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MAGIA_INDICE = "SCZI".getBytes(StandardCharsets.US_ASCII);
+
+    /** Tamaño aproximado (sin comprimir) de cada bloque */
+    private static final int TAMANO_BLOQUE = 64 * 1024;
+
+    private final File archivo;
+
+    public ArchivoComprimido(File archivo) {
+        this.archivo = archivo;
+    }
+
+    /** Entrada del índice de bloques */
+    private static final class Bloque {
+        long posicion;
+        int lineas;
+        String matriculaMin;
+        String matriculaMax;
+    }
+
+    // -------------------------------
+    //           ESCRITURA
+    // -------------------------------
+
+    /**
+     * Escribe todas las líneas comprimidas por bloques. Primero se escribe
+     * a un temporal y luego se reemplaza el archivo, para no dejarlo a medias.
+     */
+    public void escribir(List<String> lineas) throws IOException {
+        File tmp = File.createTempFile(archivo.getName(), ".tmp", archivo.getAbsoluteFile().getParentFile());
+        try {
+            escribir(lineas, tmp);
+            try {
+                Files.move(tmp.toPath(), archivo.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), archivo.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    private static void escribir(List<String> lineas, File tmp) throws IOException {
+        List<Bloque> indice = new ArrayList<>();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+
+        try (DataOutputStream out = new DataOutputStream(
+                new java.io.BufferedOutputStream(Files.newOutputStream(tmp.toPath())))) {
+
+            out.write(MAGIA);
+            long posicion = MAGIA.length;
+
+            ByteArrayOutputStream crudo = new ByteArrayOutputStream(TAMANO_BLOQUE + 1024);
+            Bloque actual = null;
+
+            for (int i = 0; i <= lineas.size(); i++) {
+                boolean fin = i == lineas.size();
+
+                // Se cierra el bloque cuando se llena o se acabaron las líneas
+                if (actual != null && (fin || crudo.size() >= TAMANO_BLOQUE)) {
+                    actual.posicion = posicion;
+                    posicion += escribirBloque(out, deflater, crudo.toByteArray(), actual.lineas);
+                    indice.add(actual);
+                    crudo.reset();
+                    actual = null;
+                }
+                if (fin) break;
+
+                String l = lineas.get(i);
+                if (actual == null) actual = new Bloque();
+                actual.lineas++;
+                actualizarRango(actual, matriculaDe(l));
+                crudo.write(l.getBytes(StandardCharsets.UTF_8));
+                crudo.write('\n');
+            }
+
+            // Índice al final
+            long posIndice = posicion;
+            for (Bloque b : indice) {
+                out.writeLong(b.posicion);
+                out.writeInt(b.lineas);
+                out.writeUTF(b.matriculaMin);
+                out.writeUTF(b.matriculaMax);
+            }
+            out.writeInt(indice.size());
+            out.writeLong(posIndice);
+            out.write(MAGIA_INDICE);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /** @return bytes escritos (encabezado del bloque + datos comprimidos) */
+    private static int escribirBloque(DataOutputStream out, Deflater deflater, byte[] crudo, int lineas)
+            throws IOException {
+        deflater.reset();
+        deflater.setInput(crudo);
+        deflater.finish();
+
+        ByteArrayOutputStream comp = new ByteArrayOutputStream(crudo.length / 2 + 64);
+        byte[] buf = new byte[8192];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buf);
+            comp.write(buf, 0, n);
+        }
+
+        out.writeInt(crudo.length);
+        out.writeInt(comp.size());
+        out.writeInt(lineas);
+        comp.writeTo(out);
+        return 12 + comp.size();
+    }
+
+    private static void actualizarRango(Bloque b, String m) {
+        if (b.matriculaMin == null || m.compareTo(b.matriculaMin) < 0) b.matriculaMin = m;
+        if (b.matriculaMax == null || m.compareTo(b.matriculaMax) > 0) b.matriculaMax = m;
+    }
+
+    /** Matrícula (segundo campo) en minúsculas, usada en el índice de bloques */
+    static String matriculaDe(String linea) {
+        int a = linea.indexOf('|');
+        if (a < 0) return "";
+        int b = linea.indexOf('|', a + 1);
+        return (b < 0 ? linea.substring(a + 1) : linea.substring(a + 1, b)).trim().toLowerCase();
+    }
+
+    // -------------------------------
+    //            LECTURA
+    // -------------------------------
+
+    /** Lee y descomprime todas las líneas no vacías */
+    public List<String> leerLineas() throws IOException {
+        List<String> res = new ArrayList<>();
+        try (RandomAccessFile raf = new RandomAccessFile(archivo, "r")) {
+            for (Bloque b : leerIndice(raf))
+                agregarLineas(descomprimir(raf, b), res);
+        }
+        return res;
+    }
+
+    /**
+     * Busca la línea de una matrícula descomprimiendo solo los bloques cuyo
+     * rango de matrículas podría contenerla. Solo se ahorra algo si las
+     * líneas estaban ordenadas por matrícula al comprimir (ver la clase).
+     *
+     * @return la línea encontrada o null
+     */
+    public String buscarPorMatricula(String matricula) throws IOException {
+        String m = matricula.trim().toLowerCase();
+
+        try (RandomAccessFile raf = new RandomAccessFile(archivo, "r")) {
+            for (Bloque b : leerIndice(raf)) {
+                if (m.compareTo(b.matriculaMin) < 0 || m.compareTo(b.matriculaMax) > 0)
+                    continue;
+
+                List<String> lineas = new ArrayList<>();
+                agregarLineas(descomprimir(raf, b), lineas);
+                for (String l : lineas)
+                    if (matriculaDe(l).equals(m)) return l;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Flujo que entrega el contenido descomprimido bloque por bloque;
+     * solo hay un bloque en memoria a la vez.
+     */
+    public InputStream abrirEntrada() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(archivo, "r");
+        List<Bloque> indice;
+        try {
+            indice = leerIndice(raf);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+
+        return new InputStream() {
+            private int siguiente = 0;
+            private byte[] actual = new byte[0];
+            private int pos = 0;
+
+            private boolean cargar() throws IOException {
+                while (pos >= actual.length) {
+                    if (siguiente >= indice.size()) return false;
+                    actual = descomprimir(raf, indice.get(siguiente++));
+                    pos = 0;
+                }
+                return true;
+            }
+
+            @Override public int read() throws IOException {
+                return cargar() ? actual[pos++] & 0xff : -1;
+            }
+
+            @Override public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) return 0;
+                if (!cargar()) return -1;
+                int n = Math.min(len, actual.length - pos);
+                System.arraycopy(actual, pos, b, off, n);
+                pos += n;
+                return n;
+            }
+
+            @Override public void close() throws IOException {
+                raf.close();
+            }
+        };
+    }
+
+    private static List<Bloque> leerIndice(RandomAccessFile raf) throws IOException {
+        long tam = raf.length();
+        if (tam < MAGIA.length + 16) throw new IOException("Archivo comprimido inválido");
+
+        raf.seek(tam - 16);
+        int cantidad = raf.readInt();
+        long posIndice = raf.readLong();
+        byte[] magia = new byte[4];
+        raf.readFully(magia);
+        if (!java.util.Arrays.equals(magia, MAGIA_INDICE))
+            throw new IOException("Archivo comprimido sin índice (posiblemente dañado)");
+
+        byte[] datos = new byte[(int) (tam - 16 - posIndice)];
+        raf.seek(posIndice);
+        raf.readFully(datos);
+
+        List<Bloque> res = new ArrayList<>(cantidad);
+        try (DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(datos))) {
+            for (int i = 0; i < cantidad; i++) {
+                Bloque b = new Bloque();
+                b.posicion = in.readLong();
+                b.lineas = in.readInt();
+                b.matriculaMin = in.readUTF();
+                b.matriculaMax = in.readUTF();
+                res.add(b);
+            }
+        }
+        return res;
+    }
+
+    private static byte[] descomprimir(RandomAccessFile raf, Bloque b) throws IOException {
+        raf.seek(b.posicion);
+        int tamOriginal = raf.readInt();
+        int tamComprimido = raf.readInt();
+        raf.readInt(); // líneas (ya están en el índice)
+
+        byte[] comp = new byte[tamComprimido];
+        raf.readFully(comp);
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(comp);
+            byte[] res = new byte[tamOriginal];
+            int n = 0;
+            while (n < tamOriginal && !inflater.finished()) {
+                int k = inflater.inflate(res, n, tamOriginal - n);
+                if (k == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new IOException("Bloque comprimido incompleto en " + b.posicion);
+                n += k;
+            }
+            return res;
+        } catch (DataFormatException e) {
+            throw new IOException("Bloque comprimido dañado en " + b.posicion, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void agregarLineas(byte[] datos, List<String> destino) {
+        String texto = new String(datos, StandardCharsets.UTF_8);
+        for (String l : texto.split("\n"))
+            if (!l.trim().isEmpty()) destino.add(l);
+    }
+}
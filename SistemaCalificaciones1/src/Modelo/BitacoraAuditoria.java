@@ -0,0 +1,426 @@
+package Modelo;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bitácora de auditoría: quién agregó, editó o eliminó a qué alumno,
+ * cuándo, y con qué datos antes y después.
+ *
+ * Registrar un evento no toca el disco: se copia en una casilla de un
+ * anillo de tamaño fijo (creado al inicio) y un hilo en segundo plano lo
+ * escribe después. Así el costo para quien guarda un alumno es de unos
+ * microsegundos. Solo si el anillo se llena (el disco no alcanza a escribir)
+ * quien registra espera a que se libere una casilla; nunca se pierden
+ * eventos.
+ *
+ * Los eventos se guardan en Auditoria/auditoria-AAAA-MM-DD[.n].log junto a
+ * la carpeta de alumnos: un archivo por día, y otro más si pasa de
+ * {@link #TAMANO_MAXIMO}. Cada línea tiene campos separados por tabulador:
+ *   instante  usuario  acción  carrera  semestre  matrícula  antes  después
+ * donde "antes" y "después" son la línea del alumno (vacías si no aplica).
+ */
+public final class BitacoraAuditoria {
+
+    /** Tipos de evento */
+    public enum Accion { ALTA, EDICION, BAJA, IMPORTACION }
+
+    /** Casillas del anillo (potencia de 2) */
+    private static final int CAPACIDAD = 1 << 14;
+    private static final int MASCARA = CAPACIDAD - 1;
+
+    /** Tamaño a partir del cual se empieza otro archivo del mismo día */
+    static final long TAMANO_MAXIMO = 16L * 1024 * 1024;
+
+    private static final String CARPETA = "Auditoria";
+
+    /** Usuario que se registra si el hilo no indica otro */
+    private static final String USUARIO_PREDETERMINADO = System.getProperty("user.name", "desconocido");
+
+    private static final ThreadLocal<String> usuarioDelHilo = new ThreadLocal<>();
+
+    /** Una casilla del anillo; se reutiliza, nunca se crea otra */
+    private static final class Casilla {
+        volatile long publicado = -1;
+        long instante;
+        String usuario;
+        Accion accion;
+        File archivo;
+        Alumno antes, despues;
+        String detalle;
+    }
+
+    private static final Casilla[] anillo = new Casilla[CAPACIDAD];
+
+    /** Siguiente número de evento a repartir */
+    private static final AtomicLong siguiente = new AtomicLong();
+
+    /** Eventos ya leídos del anillo (sus casillas se pueden reutilizar) */
+    private static final AtomicLong leidos = new AtomicLong();
+
+    /** Eventos ya escritos en disco */
+    private static volatile long escritos;
+
+    /** Esperas por anillo lleno (si crece, el disco es muy lento) */
+    private static final AtomicLong esperas = new AtomicLong();
+
+    private static volatile boolean dormido;
+    private static final Thread escritor;
+
+    static {
+        for (int i = 0; i < CAPACIDAD; i++) anillo[i] = new Casilla();
+
+        escritor = new Thread(BitacoraAuditoria::escribirSiempre, "bitacora-auditoria");
+        escritor.setDaemon(true);
+        escritor.start();
+
+        // Al cerrar el programa se escribe lo pendiente
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> vaciar(2000)));
+    }
+
+    private BitacoraAuditoria() {
+    }
+
+    // -------------------------------
+    //            USUARIO
+    // -------------------------------
+
+    /**
+     * Indica quién hace los cambios en este hilo (por ejemplo, el servidor
+     * HTTP pone la dirección del cliente). null vuelve al predeterminado.
+     */
+    public static void fijarUsuario(String usuario) {
+        if (usuario == null) usuarioDelHilo.remove();
+        else usuarioDelHilo.set(usuario);
+    }
+
+    /** @return usuario que se registrará para los cambios de este hilo */
+    public static String usuario() {
+        String u = usuarioDelHilo.get();
+        return u == null ? USUARIO_PREDETERMINADO : u;
+    }
+
+    // -------------------------------
+    //           REGISTRAR
+    // -------------------------------
+
+    /** Registra un cambio de un alumno hecho por el usuario de este hilo */
+    static void registrar(Accion accion, File semestre, Alumno antes, Alumno despues) {
+        registrar(accion, usuario(), semestre, antes, despues, null);
+    }
+
+    /**
+     * Registra un evento. Solo copia referencias al anillo; convertir los
+     * alumnos a texto y escribir se hace en el hilo de la bitácora.
+     */
+    static void registrar(Accion accion, String usuario, File semestre, Alumno antes, Alumno despues,
+                          String detalle) {
+        long n = siguiente.getAndIncrement();
+
+        // Anillo lleno: esperar a que el escritor libere la casilla
+        if (n - CAPACIDAD >= leidos.get()) {
+            esperas.incrementAndGet();
+            while (n - CAPACIDAD >= leidos.get()) {
+                LockSupport.unpark(escritor);
+                LockSupport.parkNanos(50_000);
+            }
+        }
+
+        Casilla c = anillo[(int) (n & MASCARA)];
+        c.instante = System.currentTimeMillis();
+        c.usuario = usuario;
+        c.accion = accion;
+        c.archivo = semestre;
+        c.antes = antes;
+        c.despues = despues;
+        c.detalle = detalle;
+        c.publicado = n;
+
+        if (dormido) LockSupport.unpark(escritor);
+    }
+
+    /** Registra una importación desde un archivo externo (las altas se registran aparte) */
+    public static void registrarImportacion(File semestreActual, File origen, int agregados) {
+        registrar(Accion.IMPORTACION, usuario(), semestreActual, null, null,
+                origen.getName() + ": " + agregados + " agregados");
+    }
+
+    /**
+     * Espera a que todo lo registrado hasta ahora esté escrito en disco.
+     *
+     * @param maximoMs tiempo máximo de espera
+     * @return true si se alcanzó a escribir todo
+     */
+    public static boolean vaciar(long maximoMs) {
+        long objetivo = siguiente.get();
+        long limite = System.nanoTime() + maximoMs * 1_000_000;
+        while (escritos < objetivo) {
+            if (System.nanoTime() > limite) return false;
+            LockSupport.unpark(escritor);
+            LockSupport.parkNanos(200_000);
+        }
+        return true;
+    }
+
+    /** @return resumen del estado de la bitácora */
+    public static String resumen() {
+        return "Eventos: " + siguiente.get() + " registrados, " + escritos + " escritos, "
+                + esperas.get() + " esperas por anillo lleno";
+    }
+
+    // -------------------------------
+    //       HILO DE ESCRITURA
+    // -------------------------------
+
+    /** Archivo abierto de una carpeta Auditoria */
+    private static final class Destino {
+        BufferedWriter out;
+        LocalDate dia;
+        File archivo;
+        long tamano;
+    }
+
+    private static void escribirSiempre() {
+        Map<File, Destino> destinos = new HashMap<>();
+        long n = 0;
+
+        while (true) {
+            Casilla c = anillo[(int) (n & MASCARA)];
+            if (c.publicado == n) {
+                try {
+                    escribir(destinos, c);
+                } catch (Exception e) {
+                    // Un error de disco no debe detener la bitácora
+                    e.printStackTrace();
+                }
+                c.antes = c.despues = null;
+                c.archivo = null;
+                leidos.set(++n);
+                continue;
+            }
+
+            // Nada pendiente: se escribe al disco y se duerme
+            for (Destino d : destinos.values()) {
+                try {
+                    d.out.flush();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            escritos = n;
+
+            dormido = true;
+            if (c.publicado != n) LockSupport.parkNanos(100_000_000);
+            dormido = false;
+        }
+    }
+
+    private static void escribir(Map<File, Destino> destinos, Casilla c) throws IOException {
+        File semestre = c.archivo.getAbsoluteFile();
+        File carrera = semestre.getParentFile();
+        File carpeta = carpetaDe(semestre);
+
+        String nombre = semestre.getName();
+        int punto = nombre.lastIndexOf('.');
+        if (punto > 0) nombre = nombre.substring(0, punto);
+
+        String linea = Instant.ofEpochMilli(c.instante) + "\t" + escapar(c.usuario) + "\t" + c.accion + "\t"
+                + escapar(carrera.getName()) + "\t" + escapar(nombre) + "\t"
+                + escapar(c.despues != null ? c.despues.getMatricula() : c.antes != null ? c.antes.getMatricula() : "")
+                + "\t" + escapar(c.antes == null ? "" : c.antes.toLinea())
+                + "\t" + escapar(c.despues == null ? (c.detalle == null ? "" : c.detalle) : c.despues.toLinea())
+                + "\n";
+
+        Destino d = destinos.computeIfAbsent(carpeta, k -> new Destino());
+        LocalDate dia = Instant.ofEpochMilli(c.instante).atZone(ZoneId.systemDefault()).toLocalDate();
+        if (d.out == null || !dia.equals(d.dia) || d.tamano >= TAMANO_MAXIMO) abrir(d, carpeta, dia);
+
+        byte[] b = linea.getBytes(StandardCharsets.UTF_8);
+        d.out.write(linea);
+        d.tamano += b.length;
+    }
+
+    /** Abre (o rota a) el archivo del día que corresponde */
+    private static void abrir(Destino d, File carpeta, LocalDate dia) throws IOException {
+        if (d.out != null) d.out.close();
+        Files.createDirectories(carpeta.toPath());
+
+        int parte = 0;
+        File f = new File(carpeta, "auditoria-" + dia + ".log");
+        while (f.exists() && f.length() >= TAMANO_MAXIMO)
+            f = new File(carpeta, "auditoria-" + dia + "." + (++parte) + ".log");
+
+        d.out = Files.newBufferedWriter(f.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        d.dia = dia;
+        d.archivo = f;
+        d.tamano = f.length();
+    }
+
+    /** Carpeta Auditoria que corresponde a un archivo de semestre (junto a la raíz de alumnos) */
+    static File carpetaDe(File semestre) {
+        return new File(carpetaBase(semestre), CARPETA);
+    }
+
+    /** Carpeta que contiene a la raíz de alumnos de un archivo de semestre */
+    static File carpetaBase(File semestre) {
+        File raiz = semestre.getAbsoluteFile().getParentFile().getParentFile();
+        return raiz.getParentFile() == null ? raiz : raiz.getParentFile();
+    }
+
+    /** Escapa tabuladores, saltos de línea y diagonales invertidas */
+    static String escapar(String s) {
+        if (s.indexOf('\\') < 0 && s.indexOf('\t') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) return s;
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    static String desescapar(String s) {
+        if (s.indexOf('\\') < 0) return s;
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch != '\\' || i + 1 == s.length()) {
+                sb.append(ch);
+                continue;
+            }
+            char sig = s.charAt(++i);
+            sb.append(sig == 't' ? '\t' : sig == 'n' ? '\n' : sig == 'r' ? '\r' : sig);
+        }
+        return sb.toString();
+    }
+
+    // -------------------------------
+    //           CONSULTA
+    // -------------------------------
+
+    /** Un evento leído de la bitácora */
+    public static final class Registro {
+        private final Instant instante;
+        private final String usuario, accion, carrera, semestre, matricula, antes, despues;
+
+        Registro(String[] p) {
+            instante = Instant.parse(p[0]);
+            usuario = desescapar(p[1]);
+            accion = p[2];
+            carrera = desescapar(p[3]);
+            semestre = desescapar(p[4]);
+            matricula = desescapar(p[5]);
+            antes = desescapar(p[6]);
+            despues = desescapar(p[7]);
+        }
+
+        public Instant getInstante() { return instante; }
+        public String getUsuario() { return usuario; }
+        public String getAccion() { return accion; }
+        public String getCarrera() { return carrera; }
+        public String getSemestre() { return semestre; }
+        public String getMatricula() { return matricula; }
+
+        /** @return el alumno antes del cambio, o null en altas e importaciones */
+        public Alumno getAntes() { return antes.isEmpty() ? null : Alumno.fromLinea(antes); }
+
+        /** @return el alumno después del cambio, o null en bajas e importaciones */
+        public Alumno getDespues() {
+            return despues.isEmpty() || accion.equals(Accion.IMPORTACION.name()) ? null : Alumno.fromLinea(despues);
+        }
+
+        /**
+         * Describe qué cambió: en ediciones, cada campo con su valor
+         * anterior y nuevo ("promedio: 8.5 → 9.0").
+         */
+        public String describirCambios() {
+            if (accion.equals(Accion.IMPORTACION.name())) return despues;
+            if (antes.isEmpty()) return "alta: " + despues;
+            if (despues.isEmpty()) return "baja: " + antes;
+
+            String[] campos = { "nombre", "matrícula", "promedio", "semestre", "edad", "carrera",
+                    "correo", "teléfono", "dirección" };
+            String[] a = Arrays.copyOf(antes.split("\\|", -1), campos.length);
+            String[] d = Arrays.copyOf(despues.split("\\|", -1), campos.length);
+            List<String> cambios = new ArrayList<>();
+            for (int i = 0; i < campos.length; i++) {
+                String va = a[i] == null ? "" : a[i], vd = d[i] == null ? "" : d[i];
+                if (!va.equals(vd)) cambios.add(campos[i] + ": " + va + " → " + vd);
+            }
+            return cambios.isEmpty() ? "sin cambios" : String.join(", ", cambios);
+        }
+
+        @Override public String toString() {
+            return instante + "  " + usuario + "  " + accion + "  " + carrera + " / " + semestre
+                    + "  " + matricula + "  " + describirCambios();
+        }
+    }
+
+    /**
+     * Busca eventos en una carpeta Auditoria. Los archivos de días fuera del
+     * rango ni se abren. Antes de buscar se escribe lo pendiente.
+     *
+     * @param carpeta carpeta Auditoria
+     * @param matricula matrícula a buscar (sin distinguir mayúsculas), o null para todas
+     * @param desde primer día a incluir, o null
+     * @param hasta último día a incluir, o null
+     * @return eventos en orden cronológico
+     */
+    public static List<Registro> consultar(File carpeta, String matricula, LocalDate desde, LocalDate hasta)
+            throws IOException {
+        vaciar(2000);
+
+        List<Registro> res = new ArrayList<>();
+        File[] archivos = carpeta.listFiles((dir, n) -> n.startsWith("auditoria-") && n.endsWith(".log"));
+        if (archivos == null) return res;
+
+        // Orden cronológico: por día y luego por número de parte
+        Arrays.sort(archivos, (x, y) -> {
+            int c = dia(x).compareTo(dia(y));
+            return c != 0 ? c : Integer.compare(parte(x), parte(y));
+        });
+
+        String m = matricula == null ? null : matricula.trim();
+        for (File f : archivos) {
+            LocalDate dia = dia(f);
+            if (desde != null && dia.isBefore(desde.minusDays(1))) continue;
+            if (hasta != null && dia.isAfter(hasta.plusDays(1))) continue;
+
+            try (BufferedReader br = Files.newBufferedReader(f.toPath(), StandardCharsets.UTF_8)) {
+                String l;
+                while ((l = br.readLine()) != null) {
+                    String[] p = l.split("\t", -1);
+                    if (p.length < 8) continue;
+                    if (m != null && !desescapar(p[5]).equalsIgnoreCase(m)) continue;
+
+                    Registro r = new Registro(p);
+                    LocalDate d = r.instante.atZone(ZoneId.systemDefault()).toLocalDate();
+                    if (desde != null && d.isBefore(desde)) continue;
+                    if (hasta != null && d.isAfter(hasta)) continue;
+                    res.add(r);
+                }
+            }
+        }
+        return res;
+    }
+
+    private static LocalDate dia(File f) {
+        // auditoria-AAAA-MM-DD[.n].log
+        return LocalDate.parse(f.getName().substring("auditoria-".length(), "auditoria-".length() + 10));
+    }
+
+    private static int parte(File f) {
+        String[] p = f.getName().split("\\.");
+        return p.length == 3 ? Integer.parseInt(p[1]) : 0;
+    }
+}
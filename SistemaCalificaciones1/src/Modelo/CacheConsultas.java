@@ -0,0 +1,407 @@
+package Modelo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Caché de resultados de consultas (listados de un semestre, búsquedas por
+ * nombre, búsquedas globales) con tamaño limitado.
+ *
+ * El tamaño se mide en bytes estimados de los alumnos guardados (un
+ * semestre con nombres y correos largos pesa más que uno con la misma
+ * cantidad de alumnos y datos cortos). El límite se configura con
+ * -Dcalificaciones.cache=MB; sin él se usa lo menor entre 64 MB y la cuarta
+ * parte del heap. Al llenarse se expulsa la entrada menos usada
+ * recientemente (LRU), pero solo si la consulta nueva se ha pedido al menos
+ * tantas veces como la que saldría (admisión estilo TinyLFU): así una
+ * búsqueda que se hace una sola vez no saca de la caché al listado que se
+ * abre todo el día.
+ *
+ * Cada entrada recuerda la versión del archivo del que depende (o la
+ * versión global si depende de todos). Cuando RegistroVersiones avisa de
+ * un cambio se eliminan solo las entradas afectadas.
+ *
+ * {@link #precargar} calcula en un hilo de fondo una consulta que
+ * probablemente se pida pronto (por ejemplo los semestres vecinos del que se
+ * está viendo). Lo precargado pasa por la misma admisión, contando como un
+ * uso anticipado, así que no desplaza a lo que se usa seguido.
+ */
+public final class CacheConsultas {
+
+    /** Máximo de bytes estimados entre todas las entradas */
+    private static final long PESO_MAXIMO = Long.getLong("calificaciones.cache",
+            Math.min(64, Runtime.getRuntime().maxMemory() / 4 / 1048576)) * 1048576;
+
+    private static final CacheConsultas compartida = new CacheConsultas(PESO_MAXIMO);
+
+    /** Resultado guardado y la versión de los datos con que se calculó */
+    private static final class Entrada {
+        final List<Alumno> valor;
+        /** Clave del archivo del que depende, o null si depende de todos */
+        final String archivo;
+        final long version;
+        final long modificado;
+        final long tamano;
+        final long versionGlobal;
+        final long peso;
+        /** true si la guardó el hilo de precarga y todavía nadie la ha pedido */
+        boolean precargada;
+
+        Entrada(List<Alumno> valor, String archivo, long version, long modificado, long tamano, long versionGlobal) {
+            this.valor = valor;
+            this.archivo = archivo;
+            this.version = version;
+            this.modificado = modificado;
+            this.tamano = tamano;
+            this.versionGlobal = versionGlobal;
+            this.peso = pesoEstimado(valor);
+        }
+
+        long peso() {
+            return peso;
+        }
+    }
+
+    private final long pesoMaximo;
+
+    /** Entradas en orden de acceso (la primera es la menos reciente) */
+    private final LinkedHashMap<String, Entrada> entradas = new LinkedHashMap<>(64, 0.75f, true);
+    private long pesoActual;
+
+    /** Contadores aproximados de frecuencia por consulta (count-min de 4 filas) */
+    private final int[][] frecuencias = new int[4][1024];
+    private int muestras;
+
+    private long aciertos;
+    private long fallos;
+    private long expulsiones;
+    private long invalidaciones;
+    private long rechazos;
+    private long precargas;
+    private long aciertosPrecarga;
+
+    /** Registrado en RegistroVersiones mientras la caché está abierta */
+    private final Consumer<File> oyente = this::archivoModificado;
+
+    /** Claves que el hilo de precarga tiene pendientes o calculando */
+    private final Set<String> precargando = new HashSet<>();
+
+    /**
+     * Un solo hilo de fondo con pocos pendientes: si el usuario cambia de
+     * vista más rápido de lo que se precarga, se descartan los más viejos.
+     */
+    private final ThreadPoolExecutor hiloPrecarga = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(4), r -> {
+                Thread t = new Thread(r, "precarga-cache");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }, (tarea, ejecutor) -> {
+                // Cola llena: se descarta la más vieja (y se libera su clave) para dejar pasar la nueva
+                Runnable vieja = ejecutor.getQueue().poll();
+                if (vieja != null) terminada((Precarga) vieja);
+                ejecutor.execute(tarea);
+            });
+
+    /** @return la caché compartida por todo el proceso */
+    public static CacheConsultas compartida() {
+        return compartida;
+    }
+
+    /** @param pesoMaximo bytes estimados que puede ocupar la caché */
+    public CacheConsultas(long pesoMaximo) {
+        this.pesoMaximo = pesoMaximo;
+        hiloPrecarga.allowCoreThreadTimeOut(true);
+        RegistroVersiones.agregarOyente(oyente);
+    }
+
+    /**
+     * Deja de escuchar cambios de RegistroVersiones, descarta las
+     * precargas pendientes y vacía la caché. Para cachés propias (la
+     * compartida vive lo que el proceso).
+     */
+    public void cerrar() {
+        RegistroVersiones.quitarOyente(oyente);
+        hiloPrecarga.shutdownNow();
+        limpiar();
+    }
+
+    /**
+     * Devuelve el resultado guardado si sigue vigente; si no, lo calcula y
+     * (si la admisión lo permite) lo guarda.
+     *
+     * @param clave identifica la consulta (tipo, archivo, texto, límite...)
+     * @param dependencia archivo de semestre del que depende el resultado,
+     *        o null si depende de todos los archivos. Sin archivo solo se
+     *        invalida con la versión global, que no ve cambios externos si
+     *        el monitor de carpetas está apagado
+     * @param calcular cómo obtener el resultado si no está en la caché
+     * @return copia del resultado (se puede modificar libremente)
+     */
+    public List<Alumno> obtener(String clave, File dependencia, Supplier<List<Alumno>> calcular) {
+        String archivo = dependencia == null ? null : RegistroVersiones.clave(dependencia);
+
+        synchronized (this) {
+            registrarUso(clave);
+            Entrada e = entradas.get(clave);
+            if (e != null && vigente(e, dependencia)) {
+                aciertos++;
+                if (e.precargada) {
+                    e.precargada = false;
+                    aciertosPrecarga++;
+                }
+                return new ArrayList<>(e.valor);
+            }
+            if (e != null) quitar(clave);
+            fallos++;
+        }
+
+        // Versión tomada ANTES de calcular: si alguien escribe mientras tanto,
+        // la entrada queda vieja y se recalcula la próxima vez
+        Entrada s = sello(archivo, dependencia);
+        List<Alumno> valor = calcular.get();
+        Entrada nueva = new Entrada(Collections.unmodifiableList(new ArrayList<>(valor)),
+                archivo, s.version, s.modificado, s.tamano, s.versionGlobal);
+
+        synchronized (this) {
+            guardar(clave, nueva, frecuencia(clave));
+        }
+        return new ArrayList<>(valor);
+    }
+
+    /**
+     * Calcula en segundo plano una consulta que aún no está en la caché. No
+     * cuenta como uso, no cambia el orden LRU y no espera a que termine.
+     *
+     * @param dependencia archivo de semestre del que depende el resultado
+     */
+    public void precargar(String clave, File dependencia, Supplier<List<Alumno>> calcular) {
+        synchronized (this) {
+            if (entradas.containsKey(clave) || !precargando.add(clave)) return;
+        }
+        hiloPrecarga.execute(new Precarga(clave, dependencia, calcular));
+    }
+
+    /** Consulta pendiente del hilo de precarga */
+    private final class Precarga implements Runnable {
+        final String clave;
+        final File dependencia;
+        final Supplier<List<Alumno>> calcular;
+
+        Precarga(String clave, File dependencia, Supplier<List<Alumno>> calcular) {
+            this.clave = clave;
+            this.dependencia = dependencia;
+            this.calcular = calcular;
+        }
+
+        @Override public void run() {
+            try {
+                // Mismo orden que obtener: versión antes de calcular
+                String archivo = RegistroVersiones.clave(dependencia);
+                Entrada s = sello(archivo, dependencia);
+                List<Alumno> valor = calcular.get();
+                Entrada nueva = new Entrada(Collections.unmodifiableList(new ArrayList<>(valor)),
+                        archivo, s.version, s.modificado, s.tamano, s.versionGlobal);
+                nueva.precargada = true;
+                // Si es muy grande sacaría de la caché a la vista actual y a su otro vecino
+                if (nueva.peso() > pesoMaximo / 4) return;
+
+                synchronized (CacheConsultas.this) {
+                    // Si mientras tanto alguien la pidió, ya está guardada.
+                    // Cuenta como un uso anticipado frente a las que saldrían.
+                    if (!entradas.containsKey(clave) && guardar(clave, nueva, frecuencia(clave) + 1)) precargas++;
+                }
+            } finally {
+                terminada(this);
+            }
+        }
+    }
+
+    private synchronized void terminada(Precarga p) {
+        precargando.remove(p.clave);
+    }
+
+    /** Vacía la caché (los contadores se conservan) */
+    public synchronized void limpiar() {
+        entradas.clear();
+        pesoActual = 0;
+    }
+
+    // -------------------------------
+    //           MÉTRICAS
+    // -------------------------------
+
+    public synchronized long getAciertos() { return aciertos; }
+    public synchronized long getFallos() { return fallos; }
+    public synchronized long getExpulsiones() { return expulsiones; }
+    public synchronized long getInvalidaciones() { return invalidaciones; }
+    public synchronized long getRechazos() { return rechazos; }
+    public synchronized long getPrecargas() { return precargas; }
+    /** @return precargas que después se pidieron (la precarga sirvió) */
+    public synchronized long getAciertosPrecarga() { return aciertosPrecarga; }
+    public synchronized int getEntradas() { return entradas.size(); }
+    /** @return bytes estimados ocupados */
+    public synchronized long getPeso() { return pesoActual; }
+
+    /** @return porcentaje de consultas respondidas desde memoria (0-100) */
+    public synchronized double tasaAciertos() {
+        long total = aciertos + fallos;
+        return total == 0 ? 0.0 : 100.0 * aciertos / total;
+    }
+
+    /** Resumen legible de las métricas */
+    public synchronized String resumen() {
+        return String.format("Aciertos: %d  Fallos: %d  (%.1f%% desde memoria)%n"
+                        + "Entradas: %d  Memoria estimada: %.1f de %.1f MB%n"
+                        + "Expulsadas: %d  Invalidadas por cambios: %d  No admitidas: %d%n"
+                        + "Precargadas: %d  Usadas después: %d",
+                aciertos, fallos, tasaAciertos(), entradas.size(), pesoActual / 1048576.0, pesoMaximo / 1048576.0,
+                expulsiones, invalidaciones, rechazos, precargas, aciertosPrecarga);
+    }
+
+    // -------------------------------
+    //            INTERNOS
+    // -------------------------------
+
+    /** Versión actual de los datos de los que depende una consulta (entrada sin valor) */
+    private static Entrada sello(String archivo, File dependencia) {
+        long global = RegistroVersiones.versionGlobal();
+        if (dependencia == null) return new Entrada(List.of(), null, 0, 0, 0, global);
+
+        File fisico = new GestorArchivos(dependencia.getPath()).archivoEnDisco();
+        return new Entrada(List.of(), archivo, RegistroVersiones.version(dependencia),
+                fisico.lastModified(), fisico.length(), global);
+    }
+
+    /**
+     * Una entrada de un archivo sigue vigente si no cambió su versión ni su
+     * sello en disco (esto último detecta cambios externos aunque no esté
+     * activo el monitor). Las globales dependen de la versión global.
+     */
+    private static boolean vigente(Entrada e, File dependencia) {
+        if (e.archivo == null) return e.versionGlobal == RegistroVersiones.versionGlobal();
+
+        File fisico = new GestorArchivos(dependencia.getPath()).archivoEnDisco();
+        return e.version == RegistroVersiones.version(dependencia)
+                && e.modificado == fisico.lastModified() && e.tamano == fisico.length();
+    }
+
+    /**
+     * @param frecuencia usos de la consulta para la admisión
+     * @return true si quedó guardada
+     */
+    private boolean guardar(String clave, Entrada nueva, int frecuencia) {
+        if (nueva.peso() > pesoMaximo) return false;
+
+        // Primero se decide la admisión contra todas las que tendrían que salir
+        // (de la menos reciente en adelante); si se rechaza, la caché queda igual
+        Entrada anterior = entradas.get(clave);
+        long peso = pesoActual - (anterior == null ? 0 : anterior.peso());
+        int victimas = 0;
+        for (Map.Entry<String, Entrada> victima : entradas.entrySet()) {
+            if (peso + nueva.peso() <= pesoMaximo) break;
+            if (victima.getKey().equals(clave)) continue;
+
+            // Admisión: la nueva consulta debe ser al menos tan frecuente como cada víctima
+            if (frecuencia < frecuencia(victima.getKey())) {
+                rechazos++;
+                return false;
+            }
+            peso -= victima.getValue().peso();
+            victimas++;
+        }
+
+        if (anterior != null) quitar(clave);
+        Iterator<Map.Entry<String, Entrada>> it = entradas.entrySet().iterator();
+        for (int i = 0; i < victimas; i++) {
+            pesoActual -= it.next().getValue().peso();
+            it.remove();
+            expulsiones++;
+        }
+
+        entradas.put(clave, nueva);
+        pesoActual += nueva.peso();
+        return true;
+    }
+
+    /**
+     * Bytes aproximados que ocupan los alumnos de una entrada en el heap:
+     * el objeto, sus textos propios y la referencia en la lista. Dirección,
+     * carrera y semestre se comparten entre alumnos (DiccionarioCadenas) y
+     * no se cuentan.
+     */
+    private static long pesoEstimado(List<Alumno> valor) {
+        long bytes = 64;
+        for (Alumno a : valor)
+            bytes += 8 + 56 + texto(a.getNombre()) + texto(a.getMatricula()) + texto(a.getCorreo())
+                    + texto(a.getTelefono());
+        return bytes;
+    }
+
+    private static long texto(String s) {
+        // Cabecera de String y de su arreglo; un byte por carácter (latin-1)
+        return s == null ? 0 : 40 + s.length();
+    }
+
+    private void quitar(String clave) {
+        Entrada e = entradas.remove(clave);
+        if (e != null) pesoActual -= e.peso();
+    }
+
+    /** Oyente de RegistroVersiones: descarta lo que dependía del archivo */
+    private synchronized void archivoModificado(File f) {
+        String archivo = RegistroVersiones.clave(f);
+        Iterator<Entrada> it = entradas.values().iterator();
+        while (it.hasNext()) {
+            Entrada e = it.next();
+            if (e.archivo == null || e.archivo.equals(archivo)) {
+                pesoActual -= e.peso();
+                it.remove();
+                invalidaciones++;
+            }
+        }
+    }
+
+    private void registrarUso(String clave) {
+        int h = clave.hashCode();
+        for (int i = 0; i < frecuencias.length; i++) {
+            int[] fila = frecuencias[i];
+            int pos = indice(h, i, fila.length);
+            if (fila[pos] < Integer.MAX_VALUE) fila[pos]++;
+        }
+
+        // Envejecimiento: cada cierto número de usos se dividen los contadores,
+        // para que lo popular de ayer no ocupe la caché para siempre
+        if (++muestras >= 10 * frecuencias[0].length) {
+            muestras = 0;
+            for (int[] fila : frecuencias)
+                for (int j = 0; j < fila.length; j++) fila[j] >>>= 1;
+        }
+    }
+
+    private int frecuencia(String clave) {
+        int h = clave.hashCode();
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < frecuencias.length; i++)
+            min = Math.min(min, frecuencias[i][indice(h, i, frecuencias[i].length)]);
+        return min;
+    }
+
+    private static int indice(int h, int fila, int largo) {
+        int x = h * (0x9E3779B9 + 2 * fila + 1);
+        x ^= x >>> 16;
+        return (x & 0x7fffffff) % largo;
+    }
+}
@@ -0,0 +1,732 @@
+package Modelo;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Consultas estructuradas sobre todos los archivos de alumnos, con un
+ * planificador que decide qué leer para responderlas.
+ *
+ * Sintaxis: condiciones unidas con AND (o "y"), por ejemplo
+ *   carrera = "Derecho" AND promedio &lt; 6 AND nombre ~ "gar"
+ * Campos: carrera, semestre, nombre, matricula, promedio, edad, correo,
+ * telefono y direccion. Operadores: = != &lt; &lt;= &gt; &gt;= y ~ (contiene).
+ * Nombre, carrera, dirección y semestre se comparan sin acentos ni
+ * mayúsculas; el semestre además por su orden ("semestre &gt;= 5" o
+ * "semestre &gt;= Quinto").
+ *
+ * El plan:
+ *  1. carrera y semestre se refieren al archivo donde está el alumno: con
+ *     ellas se eligen las carpetas y archivos, solo por su nombre.
+ *  2. En cada archivo se usa el índice más barato que ya exista: el de
+ *     nombres (al planear lee del archivo solo las filas candidatas) para
+ *     la matrícula exacta o "nombre ~"; el de rangos para promedio y edad si
+ *     deja pocas filas (se lee solo hasta la última fila elegida, y si no
+ *     queda ninguna el archivo ni se abre). Sin índice vigente se recorre
+ *     el archivo línea por línea.
+ *  3. Las demás condiciones se evalúan sobre los campos de la línea; solo
+ *     las líneas que cumplen todo se convierten en Alumno.
+ * Los archivos se procesan en paralelo y el resultado sale ordenado por
+ * carrera, semestre y posición en el archivo. Plan.explicar() describe el
+ * plan sin ejecutarlo.
+ */
+public final class ConsultaAlumnos {
+
+    /** El índice de rangos se usa si deja a lo más esta fracción de las filas */
+    private static final double FRACCION_INDICE_RANGOS = 0.25;
+
+    /** Campos que se pueden consultar, con su posición en la línea del archivo */
+    public enum Campo {
+        NOMBRE(0, Tipo.TEXTO),
+        MATRICULA(1, Tipo.CLAVE),
+        PROMEDIO(2, Tipo.NUMERO),
+        SEMESTRE(3, Tipo.SEMESTRE),
+        EDAD(4, Tipo.NUMERO),
+        CARRERA(5, Tipo.TEXTO),
+        CORREO(6, Tipo.CLAVE),
+        TELEFONO(7, Tipo.CLAVE),
+        DIRECCION(8, Tipo.TEXTO);
+
+        final int posicion;
+        final Tipo tipo;
+
+        Campo(int posicion, Tipo tipo) {
+            this.posicion = posicion;
+            this.tipo = tipo;
+        }
+
+        /** @return true si la condición se decide por el archivo y no por la línea */
+        boolean delArchivo() {
+            return this == CARRERA || this == SEMESTRE;
+        }
+
+        static Campo de(String nombre) {
+            switch (IndiceNombres.normalizar(nombre)) {
+                case "nombre": return NOMBRE;
+                case "matricula": return MATRICULA;
+                case "promedio": return PROMEDIO;
+                case "semestre": return SEMESTRE;
+                case "edad": return EDAD;
+                case "carrera":
+                case "licenciatura": return CARRERA;
+                case "correo": return CORREO;
+                case "telefono": return TELEFONO;
+                case "direccion": return DIRECCION;
+                default: throw new IllegalArgumentException("Campo desconocido: " + nombre);
+            }
+        }
+    }
+
+    /**
+     * Cómo se comparan los valores: TEXTO sin acentos ni mayúsculas, CLAVE
+     * solo sin mayúsculas, NUMERO como número y SEMESTRE por su orden.
+     */
+    private enum Tipo { TEXTO, CLAVE, NUMERO, SEMESTRE }
+
+    /** Operadores de comparación */
+    public enum Operador {
+        IGUAL("="), DISTINTO("!="), MENOR("<"), MENOR_IGUAL("<="), MAYOR(">"), MAYOR_IGUAL(">="), CONTIENE("~");
+
+        final String simbolo;
+
+        Operador(String simbolo) {
+            this.simbolo = simbolo;
+        }
+
+        boolean deOrden() {
+            return this != IGUAL && this != DISTINTO && this != CONTIENE;
+        }
+
+        /** @return true si c (resultado de compareTo) cumple el operador */
+        boolean cumple(int c) {
+            switch (this) {
+                case IGUAL: return c == 0;
+                case DISTINTO: return c != 0;
+                case MENOR: return c < 0;
+                case MENOR_IGUAL: return c <= 0;
+                case MAYOR: return c > 0;
+                case MAYOR_IGUAL: return c >= 0;
+                default: throw new IllegalStateException(simbolo);
+            }
+        }
+    }
+
+    /** Una condición "campo operador valor" */
+    public static final class Condicion {
+        private final Campo campo;
+        private final Operador operador;
+        private final String valor;
+
+        /** Valor ya normalizado (textos) o convertido (números, posición del semestre) */
+        private final String comparable;
+        private final double numero;
+
+        Condicion(Campo campo, Operador operador, String valor) {
+            this.campo = campo;
+            this.operador = operador;
+            this.valor = valor;
+
+            if (campo.tipo == Tipo.NUMERO) {
+                if (operador == Operador.CONTIENE)
+                    throw new IllegalArgumentException("~ no se puede usar con " + nombre() + "; use = < <= > >=");
+                try {
+                    numero = Double.parseDouble(valor);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Se esperaba un número para " + nombre() + ": " + valor);
+                }
+                comparable = null;
+            } else if (campo.tipo == Tipo.SEMESTRE && operador != Operador.CONTIENE) {
+                numero = posicionSemestre(valor);
+                if (numero < 0) throw new IllegalArgumentException("Semestre desconocido: " + valor);
+                comparable = null;
+            } else {
+                if (operador.deOrden())
+                    throw new IllegalArgumentException(operador.simbolo + " no se puede usar con " + nombre()
+                            + "; use = != ~");
+                comparable = comparable(campo, valor);
+                numero = 0;
+            }
+        }
+
+        public Campo getCampo() { return campo; }
+        public Operador getOperador() { return operador; }
+        public String getValor() { return valor; }
+
+        private String nombre() {
+            return campo.name().toLowerCase(Locale.ROOT);
+        }
+
+        /** Evalúa la condición sobre el valor crudo del campo */
+        boolean cumple(String crudo) {
+            if (campo.tipo == Tipo.NUMERO) {
+                double v = campo == Campo.PROMEDIO ? aDouble(crudo) : aEntero(crudo);
+                return operador.cumple(Double.compare(v, numero));
+            }
+            // Con ~ el semestre se compara como texto
+            if (campo.tipo == Tipo.SEMESTRE && operador != Operador.CONTIENE) {
+                int p = PromocionSemestres.posicion(crudo);
+                return p >= 0 && operador.cumple(Integer.compare(p, (int) numero));
+            }
+            String c = comparable(campo, crudo);
+            if (operador == Operador.CONTIENE) return c.contains(comparable);
+            return operador.cumple(c.equals(comparable) ? 0 : 1);
+        }
+
+        @Override
+        public String toString() {
+            boolean comillas = campo.tipo != Tipo.NUMERO && !valor.matches("\\d+");
+            return nombre() + " " + operador.simbolo + " " + (comillas ? "\"" + valor + "\"" : valor);
+        }
+    }
+
+    private final String texto;
+    private final List<Condicion> condiciones;
+
+    private ConsultaAlumnos(String texto, List<Condicion> condiciones) {
+        this.texto = texto;
+        this.condiciones = condiciones;
+    }
+
+    /** @return condiciones de la consulta, en el orden en que se escribieron */
+    public List<Condicion> getCondiciones() {
+        return condiciones;
+    }
+
+    @Override
+    public String toString() {
+        return texto;
+    }
+
+    // -------------------------------
+    //            ANÁLISIS
+    // -------------------------------
+
+    /**
+     * Convierte el texto de una consulta en sus condiciones.
+     *
+     * @throws IllegalArgumentException si la consulta está vacía o mal escrita
+     */
+    public static ConsultaAlumnos analizar(String texto) {
+        if (texto == null || texto.trim().isEmpty()) throw new IllegalArgumentException("Consulta vacía");
+
+        List<Condicion> condiciones = new ArrayList<>();
+        int[] pos = { 0 };
+        while (true) {
+            String campo = palabra(texto, pos);
+            if (campo.isEmpty()) throw error(texto, pos[0], "se esperaba un campo");
+            Operador op = operador(texto, pos);
+            String valor = valor(texto, pos);
+            condiciones.add(new Condicion(Campo.de(campo), op, valor));
+
+            saltarEspacios(texto, pos);
+            if (pos[0] >= texto.length()) break;
+            String union = palabra(texto, pos);
+            if (!union.equalsIgnoreCase("and") && !union.equalsIgnoreCase("y"))
+                throw error(texto, pos[0] - union.length(), "se esperaba AND");
+        }
+        return new ConsultaAlumnos(texto.trim(), condiciones);
+    }
+
+    private static void saltarEspacios(String s, int[] pos) {
+        while (pos[0] < s.length() && Character.isWhitespace(s.charAt(pos[0]))) pos[0]++;
+    }
+
+    private static String palabra(String s, int[] pos) {
+        saltarEspacios(s, pos);
+        int inicio = pos[0];
+        while (pos[0] < s.length() && (Character.isLetterOrDigit(s.charAt(pos[0])) || s.charAt(pos[0]) == '_')) pos[0]++;
+        return s.substring(inicio, pos[0]);
+    }
+
+    private static Operador operador(String s, int[] pos) {
+        saltarEspacios(s, pos);
+        // Primero los de dos caracteres, para que "<=" no se lea como "<"
+        for (String o : new String[] { "!=", "<=", ">=", "=", "<", ">", "~" }) {
+            if (s.startsWith(o, pos[0])) {
+                pos[0] += o.length();
+                for (Operador op : Operador.values())
+                    if (op.simbolo.equals(o)) return op;
+            }
+        }
+        throw error(s, pos[0], "se esperaba un operador (= != < <= > >= ~)");
+    }
+
+    /** Valor entre comillas (dobles o simples, con \ para escapar) o una palabra sin espacios */
+    private static String valor(String s, int[] pos) {
+        saltarEspacios(s, pos);
+        if (pos[0] >= s.length()) throw error(s, pos[0], "falta el valor");
+
+        char c = s.charAt(pos[0]);
+        if (c == '"' || c == '\'') {
+            StringBuilder sb = new StringBuilder();
+            int i = pos[0] + 1;
+            for (; i < s.length() && s.charAt(i) != c; i++) {
+                if (s.charAt(i) == '\\' && i + 1 < s.length()) i++;
+                sb.append(s.charAt(i));
+            }
+            if (i >= s.length()) throw error(s, pos[0], "comillas sin cerrar");
+            pos[0] = i + 1;
+            return sb.toString();
+        }
+
+        int inicio = pos[0];
+        while (pos[0] < s.length() && !Character.isWhitespace(s.charAt(pos[0]))) pos[0]++;
+        return s.substring(inicio, pos[0]);
+    }
+
+    private static IllegalArgumentException error(String s, int pos, String mensaje) {
+        return new IllegalArgumentException("Consulta inválida en la posición " + (pos + 1) + ": " + mensaje);
+    }
+
+    // -------------------------------
+    //        VALORES DE CAMPOS
+    // -------------------------------
+
+    /** Forma en que se compara un texto según el tipo del campo */
+    private static String comparable(Campo campo, String s) {
+        return campo.tipo == Tipo.CLAVE ? s.trim().toLowerCase(Locale.ROOT) : normalizar(s);
+    }
+
+    /**
+     * Igual que IndiceNombres.normalizar, sin expresiones regulares para el
+     * caso común de texto sin acentos (se llama una vez por línea al recorrer).
+     */
+    static String normalizar(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        boolean espacio = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 128) return IndiceNombres.normalizar(s);
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                if (espacio && sb.length() > 0) sb.append(' ');
+                sb.append(c);
+                espacio = false;
+            } else if (c >= 'A' && c <= 'Z') {
+                if (espacio && sb.length() > 0) sb.append(' ');
+                sb.append((char) (c + ('a' - 'A')));
+                espacio = false;
+            } else {
+                espacio = true;
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Mismas reglas que Alumno.fromLinea: un valor inválido cuenta como 0 */
+    private static double aDouble(String s) {
+        if (s.isEmpty()) return 0.0;
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+
+    private static int aEntero(String s) {
+        if (s.isEmpty()) return 0;
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Lugar de un semestre escrito por el usuario: número (1 = Primer
+     * Semestre), nombre completo o su primera palabra ("Quinto").
+     *
+     * @return posición en el orden de PromocionSemestres, o -1
+     */
+    private static int posicionSemestre(String valor) {
+        List<String> orden = PromocionSemestres.orden();
+        try {
+            int n = Integer.parseInt(valor.trim());
+            return n >= 1 && n <= orden.size() ? n - 1 : -1;
+        } catch (NumberFormatException e) {
+            // No es número: se busca por nombre
+        }
+        String v = normalizar(valor);
+        for (int i = 0; i < orden.size(); i++) {
+            String s = normalizar(orden.get(i));
+            if (s.equals(v) || s.startsWith(v + " ")) return i;
+        }
+        return -1;
+    }
+
+    /** Campo i de una línea (vacío si la línea tiene menos campos) */
+    static String campo(String linea, int i) {
+        int inicio = 0;
+        for (int k = 0; k < i; k++) {
+            int p = linea.indexOf('|', inicio);
+            if (p < 0) return "";
+            inicio = p + 1;
+        }
+        int fin = linea.indexOf('|', inicio);
+        return fin < 0 ? linea.substring(inicio) : linea.substring(inicio, fin);
+    }
+
+    /** Semestre de un archivo: su nombre sin extensión */
+    private static String semestreDe(File f) {
+        String n = f.getName();
+        if (n.toLowerCase().endsWith(ArchivoComprimido.EXTENSION)) n = n.substring(0, n.length() - 1);
+        if (n.toLowerCase().endsWith(".txt")) n = n.substring(0, n.length() - 4);
+        return n;
+    }
+
+    // -------------------------------
+    //          PLANIFICACIÓN
+    // -------------------------------
+
+    /** Forma de leer un archivo */
+    public enum Acceso {
+        /** Filas candidatas del índice de nombres, leídas al planear */
+        INDICE_NOMBRES,
+        /** Filas elegidas con el índice de rangos */
+        INDICE_RANGOS,
+        /** Búsqueda de la matrícula que se detiene en la primera coincidencia */
+        MATRICULA,
+        /** Recorrido completo línea por línea */
+        RECORRIDO
+    }
+
+    /** Lo que se hará con un archivo */
+    public static final class Paso {
+        private final File archivo;
+        private final String carrera;
+        private final String semestre;
+        private final Acceso acceso;
+
+        /** Sello del archivo con el que se eligieron las filas o líneas */
+        private final long modificado;
+        private final long tamano;
+
+        /** Líneas ya resueltas por el índice de nombres, o null */
+        private final List<String> lineas;
+        /** Filas elegidas por el índice de rangos (ascendentes) y total de filas, o null */
+        private final int[] filas;
+        private final int totalFilas;
+
+        private Paso(File archivo, Acceso acceso, long modificado, long tamano,
+                     List<String> lineas, int[] filas, int totalFilas) {
+            this.archivo = archivo;
+            this.carrera = archivo.getParentFile().getName();
+            this.semestre = semestreDe(archivo);
+            this.acceso = acceso;
+            this.modificado = modificado;
+            this.tamano = tamano;
+            this.lineas = lineas;
+            this.filas = filas;
+            this.totalFilas = totalFilas;
+        }
+
+        public File getArchivo() { return archivo; }
+        public Acceso getAcceso() { return acceso; }
+
+        /** @return true si el archivo no se tiene que abrir */
+        public boolean sinLectura() {
+            return acceso == Acceso.INDICE_NOMBRES || (acceso == Acceso.INDICE_RANGOS && filas.length == 0);
+        }
+
+        @Override
+        public String toString() {
+            String d;
+            switch (acceso) {
+                case INDICE_NOMBRES:
+                    d = "índice de nombres: " + lineas.size() + " líneas candidatas, leídas al planear";
+                    break;
+                case INDICE_RANGOS:
+                    d = "índice de rangos: " + filas.length + " de " + totalFilas + " filas"
+                            + (filas.length == 0 ? ", no se abre" : ", se lee hasta la fila " + (filas[filas.length - 1] + 1));
+                    break;
+                case MATRICULA:
+                    d = "búsqueda de la matrícula, se detiene en la primera coincidencia";
+                    break;
+                default:
+                    d = totalFilas >= 0
+                            ? "recorrido línea por línea (el índice de rangos deja " + filas.length + " de " + totalFilas + " filas)"
+                            : "recorrido línea por línea (sin índice vigente)";
+            }
+            return carrera + "/" + archivo.getName() + ": " + d;
+        }
+    }
+
+    /**
+     * Elige archivos y forma de acceso para cada uno. Solo consulta índices
+     * que ya existen; no construye ninguno.
+     *
+     * @param carpetaIndices carpeta de índices de cada carpeta de alumnos
+     */
+    public Plan planear(RaicesAlmacenamiento raices, Function<File, String> carpetaIndices) {
+        List<Condicion> delArchivo = new ArrayList<>();
+        List<Condicion> deLinea = new ArrayList<>();
+        for (Condicion c : condiciones) (c.campo.delArchivo() ? delArchivo : deLinea).add(c);
+
+        // Primero las comparaciones baratas (números y claves) y al final las de texto sin acentos
+        deLinea.sort(Comparator.comparingInt(c -> c.campo.tipo == Tipo.TEXTO ? 1 : 0));
+
+        // 1. Archivos, solo por nombre de carpeta y de archivo; cada uno con
+        //    el índice de nombres de su carpeta de alumnos (null si no existe)
+        List<File> elegidos = new ArrayList<>();
+        List<IndiceNombres> nombres = new ArrayList<>();
+        int total = 0;
+        for (File raiz : raices.todas()) {
+            IndiceNombres indice = usaIndiceNombres(deLinea)
+                    ? IndiceNombres.existente(raiz.getPath(), carpetaIndices.apply(raiz)) : null;
+
+            for (File f : GestorArchivos.listarArchivosSemestre(raiz)) {
+                total++;
+                boolean entra = true;
+                for (Condicion c : delArchivo)
+                    entra &= c.cumple(c.campo == Campo.CARRERA ? f.getParentFile().getName() : semestreDe(f));
+                if (entra) {
+                    elegidos.add(f);
+                    nombres.add(indice);
+                }
+            }
+        }
+
+        // 2. Forma de acceso de cada archivo (los índices se consultan en paralelo)
+        List<Paso> pasos = new ArrayList<>(IntStream.range(0, elegidos.size()).parallel()
+                .mapToObj(i -> resolver(elegidos.get(i), deLinea, nombres.get(i))).toList());
+        pasos.sort(Comparator.comparing((Paso p) -> p.carrera)
+                .thenComparingInt(p -> {
+                    int i = PromocionSemestres.posicion(p.semestre);
+                    return i < 0 ? Integer.MAX_VALUE : i;
+                })
+                .thenComparing(p -> p.semestre));
+        return new Plan(this, delArchivo, deLinea, pasos, total);
+    }
+
+    /** @return true si alguna condición puede responderse con el índice de nombres */
+    private static boolean usaIndiceNombres(List<Condicion> deLinea) {
+        for (Condicion c : deLinea) {
+            if (c.campo == Campo.MATRICULA && c.operador == Operador.IGUAL) return true;
+            if (c.campo == Campo.NOMBRE && c.operador == Operador.CONTIENE) return true;
+        }
+        return false;
+    }
+
+    /** Decide cómo leer un archivo con los índices que haya */
+    private static Paso resolver(File f, List<Condicion> deLinea, IndiceNombres nombres) {
+        File fisico = new GestorArchivos(f.getPath()).archivoEnDisco();
+        long modificado = fisico.lastModified(), tamano = fisico.length();
+
+        String matricula = null, fragmento = null;
+        double promMin = Double.NEGATIVE_INFINITY, promMax = Double.POSITIVE_INFINITY;
+        int edadMin = Integer.MIN_VALUE, edadMax = Integer.MAX_VALUE;
+        boolean rangos = false;
+        for (Condicion c : deLinea) {
+            if (c.campo == Campo.MATRICULA && c.operador == Operador.IGUAL) matricula = c.valor;
+            if (c.campo == Campo.NOMBRE && c.operador == Operador.CONTIENE) fragmento = c.valor;
+
+            // Los rangos del índice son inclusivos; < y > se vuelven a revisar en la línea
+            if (c.campo == Campo.PROMEDIO && c.operador != Operador.DISTINTO) {
+                rangos = true;
+                if (c.operador != Operador.MAYOR && c.operador != Operador.MAYOR_IGUAL) promMax = Math.min(promMax, c.numero);
+                if (c.operador != Operador.MENOR && c.operador != Operador.MENOR_IGUAL) promMin = Math.max(promMin, c.numero);
+            }
+            if (c.campo == Campo.EDAD && c.operador != Operador.DISTINTO) {
+                rangos = true;
+                int techo = (int) Math.floor(c.numero), piso = (int) Math.ceil(c.numero);
+                if (c.operador != Operador.MAYOR && c.operador != Operador.MAYOR_IGUAL) edadMax = Math.min(edadMax, techo);
+                if (c.operador != Operador.MENOR && c.operador != Operador.MENOR_IGUAL) edadMin = Math.max(edadMin, piso);
+            }
+        }
+
+        // El índice de nombres lee solo las filas candidatas: es lo más barato
+        if (nombres != null && (matricula != null || fragmento != null)) {
+            List<String> lineas = nombres.lineas(f, matricula, fragmento);
+            if (lineas != null) return new Paso(f, Acceso.INDICE_NOMBRES, modificado, tamano, lineas, null, -1);
+        }
+
+        int[] filas = null;
+        int totalFilas = -1;
+        if (rangos) {
+            IndiceRangos ir = IndiceRangos.existente(f);
+            if (ir != null) {
+                filas = ir.filas(promMin, promMax, edadMin, edadMax);
+                totalFilas = ir.cantidad();
+                if (filas.length <= totalFilas * FRACCION_INDICE_RANGOS)
+                    return new Paso(f, Acceso.INDICE_RANGOS, modificado, tamano, null, filas, totalFilas);
+            }
+        }
+
+        if (matricula != null) return new Paso(f, Acceso.MATRICULA, modificado, tamano, null, null, -1);
+        return new Paso(f, Acceso.RECORRIDO, modificado, tamano, null, filas, totalFilas);
+    }
+
+    // -------------------------------
+    //             PLAN
+    // -------------------------------
+
+    /** Plan de una consulta: archivos elegidos y forma de leer cada uno */
+    public static final class Plan {
+        private final ConsultaAlumnos consulta;
+        private final List<Condicion> delArchivo;
+        private final List<Condicion> deLinea;
+        private final List<Paso> pasos;
+        private final int archivosTotales;
+
+        /** Contadores de la última ejecución */
+        private final AtomicLong archivosAbiertos = new AtomicLong();
+        private final AtomicLong lineasLeidas = new AtomicLong();
+
+        private Plan(ConsultaAlumnos consulta, List<Condicion> delArchivo, List<Condicion> deLinea,
+                     List<Paso> pasos, int archivosTotales) {
+            this.consulta = consulta;
+            this.delArchivo = delArchivo;
+            this.deLinea = deLinea;
+            this.pasos = pasos;
+            this.archivosTotales = archivosTotales;
+        }
+
+        public List<Paso> getPasos() { return pasos; }
+        public int getArchivosTotales() { return archivosTotales; }
+        public long getArchivosAbiertos() { return archivosAbiertos.get(); }
+        public long getLineasLeidas() { return lineasLeidas.get(); }
+
+        /** @return descripción del plan, un archivo por renglón */
+        public String explicar() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("Consulta: ").append(consulta).append('\n');
+            sb.append("Archivos: ").append(pasos.size()).append(" de ").append(archivosTotales);
+            sb.append(delArchivo.isEmpty() ? " (sin condiciones de carrera o semestre)" : " (por " + unir(delArchivo) + ")");
+            sb.append('\n');
+            sb.append("Filtro sobre cada línea: ").append(deLinea.isEmpty() ? "ninguno" : unir(deLinea)).append('\n');
+
+            int sinLectura = 0;
+            for (Paso p : pasos) if (p.sinLectura()) sinLectura++;
+            sb.append("Se abren ").append(pasos.size() - sinLectura).append(" archivos; ")
+              .append(sinLectura).append(" se responden solo con índices\n");
+            for (Paso p : pasos) sb.append("  ").append(p).append('\n');
+            return sb.toString();
+        }
+
+        private static String unir(List<Condicion> l) {
+            StringBuilder sb = new StringBuilder();
+            for (Condicion c : l) sb.append(sb.length() == 0 ? "" : " AND ").append(c);
+            return sb.toString();
+        }
+
+        /**
+         * Ejecuta el plan. Cada archivo se lee con su candado de lectura; si
+         * cambió desde que se planeó, se recorre completo en lugar de usar
+         * las filas elegidas con el índice.
+         *
+         * @param limite máximo de alumnos a devolver
+         */
+        public List<Alumno> ejecutar(int limite) throws IOException {
+            archivosAbiertos.set(0);
+            lineasLeidas.set(0);
+            if (limite <= 0) return new ArrayList<>();
+
+            List<List<Alumno>> partes;
+            try {
+                partes = pasos.parallelStream().map(p -> {
+                    try {
+                        return ejecutar(p, limite);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }).toList();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            List<Alumno> res = new ArrayList<>();
+            for (List<Alumno> l : partes) {
+                for (Alumno a : l) {
+                    if (res.size() >= limite) return res;
+                    res.add(a);
+                }
+            }
+            return res;
+        }
+
+        private List<Alumno> ejecutar(Paso p, int limite) throws IOException {
+            List<Alumno> res = new ArrayList<>();
+            Lock lectura = AlumnoDAO.candado(p.archivo).readLock();
+            lectura.lock();
+            try {
+                GestorArchivos g = new GestorArchivos(p.archivo.getPath());
+                File fisico = g.archivoEnDisco();
+                Acceso acceso = fisico.lastModified() == p.modificado && fisico.length() == p.tamano
+                        ? p.acceso : Acceso.RECORRIDO;
+
+                switch (acceso) {
+                    case INDICE_NOMBRES:
+                        for (String l : p.lineas) {
+                            if (res.size() >= limite) break;
+                            if (cumple(l)) res.add(Alumno.fromLinea(l));
+                        }
+                        return res;
+                    case MATRICULA: {
+                        archivosAbiertos.incrementAndGet();
+                        String l = g.buscarLineaPorMatricula(matriculaBuscada());
+                        if (l != null && cumple(l)) res.add(Alumno.fromLinea(l));
+                        return res;
+                    }
+                    case INDICE_RANGOS:
+                        // Sin filas elegidas el archivo ni se abre
+                        if (p.filas.length > 0) recorrer(g, p.filas, limite, res);
+                        return res;
+                    default:
+                        recorrer(g, null, limite, res);
+                        return res;
+                }
+            } finally {
+                lectura.unlock();
+            }
+        }
+
+        /**
+         * Lee el archivo línea por línea y agrega las que cumplen.
+         *
+         * @param filas filas a revisar (ascendentes); null para revisar todas.
+         *              Con filas se deja de leer después de la última.
+         */
+        private void recorrer(GestorArchivos g, int[] filas, int limite, List<Alumno> res) throws IOException {
+            archivosAbiertos.incrementAndGet();
+            try (BufferedReader br = g.abrirLector()) {
+                String l;
+                int fila = 0, siguiente = 0;
+                long leidas = 0;
+                while (res.size() < limite && (l = br.readLine()) != null) {
+                    // Las filas del índice cuentan solo líneas no vacías (como leerLineas)
+                    if (l.trim().isEmpty()) continue;
+                    leidas++;
+                    if (filas != null) {
+                        if (fila++ != filas[siguiente]) continue;
+                        siguiente++;
+                    }
+                    if (cumple(l)) res.add(Alumno.fromLinea(l));
+                    if (filas != null && siguiente == filas.length) break;
+                }
+                lineasLeidas.addAndGet(leidas);
+            }
+        }
+
+        private String matriculaBuscada() {
+            for (Condicion c : deLinea)
+                if (c.campo == Campo.MATRICULA && c.operador == Operador.IGUAL) return c.valor;
+            throw new IllegalStateException("Sin matrícula en " + consulta);
+        }
+
+        /** @return true si la línea cumple todas las condiciones de línea */
+        private boolean cumple(String linea) {
+            for (Condicion c : deLinea)
+                if (!c.cumple(campo(linea, c.campo.posicion))) return false;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package Modelo;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Consultas de "los K mejores" o "los K peores" promedios (cuadro de honor
+ * y alumnos en riesgo) sin cargar ni ordenar a todos los alumnos.
+ *
+ * Cada archivo se recorre línea por línea en paralelo con un montículo
+ * (heap) de tamaño K. Además se guarda, por archivo, el promedio mínimo y
+ * máximo: si un archivo no puede tener a nadie mejor que el K-ésimo actual,
+ * ni siquiera se abre.
+ */
+public class ConsultaRanking {
+
+    /** Promedio mínimo y máximo de un archivo, con el sello con que se calcularon */
+    private static final class Metadatos {
+        final long version;
+        final long modificado;
+        final long tamano;
+        final double minimo;
+        final double maximo;
+
+        Metadatos(long version, long modificado, long tamano, double minimo, double maximo) {
+            this.version = version;
+            this.modificado = modificado;
+            this.tamano = tamano;
+            this.minimo = minimo;
+            this.maximo = maximo;
+        }
+
+        boolean vigente(File f) {
+            return version == RegistroVersiones.version(f)
+                    && modificado == f.lastModified() && tamano == f.length();
+        }
+    }
+
+    /** Metadatos por archivo, compartidos por todo el proceso */
+    private static final Map<String, Metadatos> metadatos = new ConcurrentHashMap<>();
+
+    /** true = mejores promedios (mayores), false = peores (menores) */
+    private final boolean mayores;
+    private final int k;
+
+    /** Orden "de peor a mejor" según el tipo de consulta (raíz del heap = el que sale primero) */
+    private final Comparator<Alumno> ordenHeap;
+
+    /** Heap global con los K mejores encontrados hasta ahora */
+    private final PriorityQueue<Alumno> global;
+
+    /**
+     * @param k cantidad de alumnos a devolver
+     * @param mayores true para los promedios más altos, false para los más bajos
+     */
+    public ConsultaRanking(int k, boolean mayores) {
+        this.k = k;
+        this.mayores = mayores;
+
+        Comparator<Alumno> porPromedio = Comparator.comparingDouble(Alumno::getPromedio);
+        this.ordenHeap = mayores ? porPromedio : porPromedio.reversed();
+        this.global = new PriorityQueue<>(Math.max(1, k), ordenHeap);
+    }
+
+    /**
+     * Ejecuta la consulta sobre los archivos indicados.
+     *
+     * @return los K alumnos, del mejor al peor según el tipo de consulta
+     */
+    public List<Alumno> ejecutar(List<File> archivos) {
+        if (k <= 0) return new ArrayList<>();
+
+        // Primero los archivos que más prometen: así el umbral sube pronto.
+        // Las cotas se copian antes de ordenar; otra consulta puede cambiar
+        // los metadatos a medio ordenamiento y el comparador debe ser estable.
+        int n = archivos.size();
+        double[] cotas = new double[n];
+        List<Integer> posiciones = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            cotas[i] = cotaOptimista(archivos.get(i));
+            posiciones.add(i);
+        }
+        posiciones.sort((x, y) -> Double.compare(cotas[y], cotas[x]));
+
+        List<File> orden = new ArrayList<>(n);
+        for (int i : posiciones) orden.add(archivos.get(i));
+
+        orden.parallelStream().forEach(this::procesar);
+
+        List<Alumno> res = new ArrayList<>(global);
+        res.sort(ordenHeap.reversed());
+        return res;
+    }
+
+    /**
+     * Mejor valor posible del archivo, expresado de forma que "mayor es mejor"
+     * (para los peores promedios se usa el negativo del mínimo).
+     */
+    private double cotaOptimista(File f) {
+        Metadatos m = metadatos.get(RegistroVersiones.clave(f));
+        if (m == null || !m.vigente(f)) return Double.POSITIVE_INFINITY;
+        return mayores ? m.maximo : -m.minimo;
+    }
+
+    /** Recorre un archivo (si puede aportar) y mezcla su heap local con el global */
+    private void procesar(File f) {
+        Metadatos m = metadatos.get(RegistroVersiones.clave(f));
+        if (m != null && m.vigente(f) && !puedeAportar(mayores ? m.maximo : m.minimo))
+            return;
+
+        PriorityQueue<Alumno> local = new PriorityQueue<>(Math.max(1, k), ordenHeap);
+        double minimo = Double.POSITIVE_INFINITY, maximo = Double.NEGATIVE_INFINITY;
+        long version, modificado, tamano;
+
+        // Con el candado de lectura el sello y el contenido corresponden a la misma versión
+        Lock lectura = AlumnoDAO.candado(f).readLock();
+        lectura.lock();
+        try (BufferedReader br = new GestorArchivos(f.getPath()).abrirLector()) {
+            version = RegistroVersiones.version(f);
+            modificado = f.lastModified();
+            tamano = f.length();
+
+            String l;
+            while ((l = br.readLine()) != null) {
+                if (l.trim().isEmpty()) continue;
+
+                // Solo se lee el promedio; la línea completa se convierte si entra al heap
+                double p = promedioDe(l);
+                minimo = Math.min(minimo, p);
+                maximo = Math.max(maximo, p);
+
+                if (local.size() < k || mejorQue(p, local.peek().getPromedio())) {
+                    local.add(Alumno.fromLinea(l));
+                    if (local.size() > k) local.poll();
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        } finally {
+            lectura.unlock();
+        }
+
+        metadatos.put(RegistroVersiones.clave(f), new Metadatos(version, modificado, tamano, minimo, maximo));
+
+        synchronized (global) {
+            for (Alumno a : local) {
+                global.add(a);
+                if (global.size() > k) global.poll();
+            }
+        }
+    }
+
+    /** @return true si un alumno con ese promedio podría entrar al resultado */
+    private boolean puedeAportar(double mejorDelArchivo) {
+        synchronized (global) {
+            return global.size() < k || mejorQue(mejorDelArchivo, global.peek().getPromedio());
+        }
+    }
+
+    private boolean mejorQue(double a, double b) {
+        return mayores ? a > b : a < b;
+    }
+
+    /** Lee el tercer campo (promedio) sin dividir toda la línea */
+    static double promedioDe(String linea) {
+        int a = linea.indexOf('|');
+        int b = a < 0 ? -1 : linea.indexOf('|', a + 1);
+        if (b < 0) return 0.0;
+        int c = linea.indexOf('|', b + 1);
+        String s = (c < 0 ? linea.substring(b + 1) : linea.substring(b + 1, c)).trim();
+        try {
+            return s.isEmpty() ? 0.0 : Double.parseDouble(s);
+        } catch (NumberFormatException ex) {
+            return 0.0;
+        }
+    }
+}
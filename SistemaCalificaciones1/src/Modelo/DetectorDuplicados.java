@@ -0,0 +1,432 @@
+package Modelo;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.IntStream;
+
+/**
+ * Busca matrículas repetidas entre TODOS los archivos de semestre (la
+ * revisión al agregar solo mira el archivo de destino) y las corrige.
+ *
+ * El análisis no necesita que todo quepa en memoria:
+ *  1. Todos los archivos se leen en paralelo y cada línea se manda, según
+ *     el hash de su matrícula, a una de N particiones en disco. Las copias
+ *     de una misma matrícula siempre caen en la misma partición. Cada
+ *     pasada escribe a lo más 256 particiones (256 archivos abiertos); si
+ *     hacen falta más, los archivos se vuelven a leer en otra pasada.
+ *  2. Cada partición se revisa por separado (también en paralelo) con un
+ *     mapa en memoria; N se elige para que una partición quepa holgada en
+ *     el heap. Si todo cabe, no se escriben particiones.
+ *
+ * La corrección conserva una copia de cada matrícula según la política
+ * elegida y quita las demás con una sola reescritura por archivo.
+ */
+public class DetectorDuplicados {
+
+    /** Particiones que se escriben en una misma lectura de los archivos (cada una es un archivo abierto) */
+    private static final int PARTICIONES_POR_PASADA = 256;
+
+    /** Qué copia se conserva */
+    public enum Politica {
+        /** La del archivo modificado más recientemente */
+        MAS_RECIENTE,
+        /** La del semestre más avanzado (Egresados cuenta como el último) */
+        SEMESTRE_MAS_ALTO
+    }
+
+    /** Una copia de una matrícula */
+    public static final class Ubicacion {
+        final File archivo;
+        final int fila;
+        final String linea;
+
+        Ubicacion(File archivo, int fila, String linea) {
+            this.archivo = archivo;
+            this.fila = fila;
+            this.linea = linea;
+        }
+
+        public File getArchivo() { return archivo; }
+        /** @return posición entre las líneas no vacías del archivo (desde 0) */
+        public int getFila() { return fila; }
+        public Alumno getAlumno() { return Alumno.fromLinea(linea); }
+        public String getCarrera() { return archivo.getParentFile().getName(); }
+
+        public String getSemestre() {
+            String n = archivo.getName();
+            return n.substring(0, n.lastIndexOf('.'));
+        }
+
+        @Override public String toString() {
+            return getCarrera() + " / " + getSemestre() + ", fila " + (fila + 1) + ": " + linea;
+        }
+    }
+
+    /** Una matrícula que aparece más de una vez */
+    public static final class Conflicto {
+        final String matricula;
+        final List<Ubicacion> ubicaciones;
+
+        Conflicto(String matricula, List<Ubicacion> ubicaciones) {
+            this.matricula = matricula;
+            this.ubicaciones = ubicaciones;
+        }
+
+        /** @return matrícula en minúsculas */
+        public String getMatricula() { return matricula; }
+        public List<Ubicacion> getUbicaciones() { return ubicaciones; }
+
+        @Override public String toString() {
+            StringBuilder sb = new StringBuilder(matricula).append(" (").append(ubicaciones.size()).append(" copias)");
+            for (Ubicacion u : ubicaciones) sb.append(System.lineSeparator()).append("  ").append(u);
+            return sb.toString();
+        }
+    }
+
+    /** Resultado del análisis */
+    public static final class Analisis {
+        final List<Conflicto> conflictos;
+        final int archivos;
+        final long lineas;
+        final int particiones;
+        /** clave de archivo → {modificado, tamaño} al leerlo, para corregir solo si no cambió */
+        final Map<String, long[]> sellos;
+
+        Analisis(List<Conflicto> conflictos, int archivos, long lineas, int particiones, Map<String, long[]> sellos) {
+            this.conflictos = conflictos;
+            this.archivos = archivos;
+            this.lineas = lineas;
+            this.particiones = particiones;
+            this.sellos = sellos;
+        }
+
+        /** @return matrículas repetidas, en orden */
+        public List<Conflicto> getConflictos() { return conflictos; }
+        public int getArchivos() { return archivos; }
+        public long getLineas() { return lineas; }
+        /** @return particiones en disco usadas (1 = todo en memoria) */
+        public int getParticiones() { return particiones; }
+
+        /** @return copias que sobran (las que quitaría la corrección) */
+        public int getSobrantes() {
+            int n = 0;
+            for (Conflicto c : conflictos) n += c.ubicaciones.size() - 1;
+            return n;
+        }
+    }
+
+    /** Resultado de {@link #corregir(Analisis, Politica)} */
+    public static final class Correccion {
+        private int eliminados, archivos;
+        private final List<String> omitidos = new ArrayList<>();
+
+        public int getEliminados() { return eliminados; }
+        /** @return archivos reescritos */
+        public int getArchivos() { return archivos; }
+        /** @return archivos que cambiaron después del análisis y no se tocaron */
+        public List<String> getOmitidos() { return omitidos; }
+
+        @Override public String toString() {
+            return eliminados + " copias eliminadas en " + archivos + " archivos"
+                    + (omitidos.isEmpty() ? "" : "; sin tocar por cambios recientes: " + String.join(", ", omitidos));
+        }
+    }
+
+    private final List<File> archivos;
+
+    /** Memoria que puede ocupar una partición al revisarla */
+    private final long memoriaPorParticion;
+
+    /**
+     * @param archivos archivos de semestre a revisar (de una o varias raíces)
+     */
+    public DetectorDuplicados(List<File> archivos) {
+        this(archivos, Runtime.getRuntime().maxMemory() / 8);
+    }
+
+    /**
+     * @param memoriaPorParticion bytes de datos por partición; con menos
+     *        se usan más particiones en disco
+     */
+    public DetectorDuplicados(List<File> archivos, long memoriaPorParticion) {
+        this.archivos = new ArrayList<>(archivos);
+        this.memoriaPorParticion = Math.max(1, memoriaPorParticion);
+    }
+
+    // -------------------------------
+    //            ANÁLISIS
+    // -------------------------------
+
+    /** Revisa todos los archivos y devuelve las matrículas repetidas */
+    public Analisis analizar() throws IOException {
+        Map<String, long[]> sellos = new HashMap<>();
+        long bytes = 0;
+        for (File f : archivos) {
+            File fisico = new GestorArchivos(f.getPath()).archivoEnDisco();
+            sellos.put(RegistroVersiones.clave(f), new long[] { fisico.lastModified(), fisico.length() });
+            // Un .txtz ocupa más al descomprimirlo
+            bytes += fisico.getName().endsWith(ArchivoComprimido.EXTENSION) ? fisico.length() * 4 : fisico.length();
+        }
+
+        // En memoria cada byte de línea cuesta varias veces más (String, mapa, listas)
+        int particiones = (int) Math.min(4096, Math.max(1, bytes * 6 / memoriaPorParticion + 1));
+        AtomicLong lineas = new AtomicLong();
+        List<Conflicto> conflictos;
+
+        if (particiones == 1) {
+            // Todo cabe: cada archivo se lee en paralelo y se junta en un solo mapa
+            Map<String, List<Ubicacion>> todas = new HashMap<>();
+            try {
+                archivos.parallelStream().map(f -> {
+                    List<Ubicacion> l = new ArrayList<>();
+                    try {
+                        recorrer(f, (fila, linea) -> l.add(new Ubicacion(f, fila, linea)));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return l;
+                }).forEachOrdered(l -> {
+                    for (Ubicacion u : l)
+                        todas.computeIfAbsent(ArchivoComprimido.matriculaDe(u.linea), k -> new ArrayList<>(1)).add(u);
+                    lineas.addAndGet(l.size());
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            conflictos = repetidas(todas);
+        } else {
+            conflictos = analizarEnParticiones(particiones, lineas);
+        }
+
+        conflictos.sort(Comparator.comparing(Conflicto::getMatricula));
+        return new Analisis(conflictos, archivos.size(), lineas.get(), particiones, sellos);
+    }
+
+    private List<Conflicto> analizarEnParticiones(int n, AtomicLong lineas) throws IOException {
+        Path carpeta = Files.createTempDirectory("duplicados");
+        BufferedWriter[] salidas = new BufferedWriter[Math.min(n, PARTICIONES_POR_PASADA)];
+        try {
+            // 1) Repartir: cada hilo junta sus líneas por partición y las pasa en bloques.
+            //    Cada pasada lee todos los archivos y escribe solo sus particiones
+            for (int desde = 0; desde < n; desde += PARTICIONES_POR_PASADA) {
+                int primera = desde, cuantas = Math.min(PARTICIONES_POR_PASADA, n - desde);
+                for (int p = 0; p < cuantas; p++)
+                    salidas[p] = Files.newBufferedWriter(carpeta.resolve((primera + p) + ".part"), StandardCharsets.UTF_8);
+
+                try {
+                    IntStream.range(0, archivos.size()).parallel().forEach(i -> {
+                        StringBuilder[] bloques = new StringBuilder[cuantas];
+                        try {
+                            recorrer(archivos.get(i), (fila, linea) -> {
+                                if (primera == 0) lineas.incrementAndGet();
+                                String m = ArchivoComprimido.matriculaDe(linea);
+                                int p = Math.floorMod(m.hashCode(), n) - primera;
+                                if (p < 0 || p >= cuantas) return;
+                                if (bloques[p] == null) bloques[p] = new StringBuilder();
+                                bloques[p].append(BitacoraAuditoria.escapar(m)).append('\t').append(i).append('\t')
+                                          .append(fila).append('\t').append(BitacoraAuditoria.escapar(linea)).append('\n');
+                                if (bloques[p].length() > 32 * 1024) vaciar(salidas[p], bloques[p]);
+                            });
+                            for (int p = 0; p < cuantas; p++)
+                                if (bloques[p] != null && bloques[p].length() > 0) vaciar(salidas[p], bloques[p]);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                for (int p = 0; p < cuantas; p++) {
+                    salidas[p].close();
+                    salidas[p] = null;
+                }
+            }
+
+            // 2) Revisar cada partición por separado
+            List<Conflicto> res = new ArrayList<>();
+            try {
+                IntStream.range(0, n).parallel().mapToObj(p -> {
+                    Map<String, List<Ubicacion>> grupo = new HashMap<>();
+                    try (BufferedReader br = Files.newBufferedReader(carpeta.resolve(p + ".part"), StandardCharsets.UTF_8)) {
+                        String l;
+                        while ((l = br.readLine()) != null) {
+                            String[] c = l.split("\t", 4);
+                            grupo.computeIfAbsent(BitacoraAuditoria.desescapar(c[0]), k -> new ArrayList<>(1))
+                                 .add(new Ubicacion(archivos.get(Integer.parseInt(c[1])), Integer.parseInt(c[2]),
+                                         BitacoraAuditoria.desescapar(c[3])));
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return repetidas(grupo);
+                }).forEachOrdered(res::addAll);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return res;
+        } finally {
+            for (BufferedWriter w : salidas) {
+                try {
+                    if (w != null) w.close();
+                } catch (IOException e) {
+                    // Se borra de todos modos
+                }
+            }
+            for (int p = 0; p < n; p++) Files.deleteIfExists(carpeta.resolve(p + ".part"));
+            Files.deleteIfExists(carpeta);
+        }
+    }
+
+    private static void vaciar(BufferedWriter w, StringBuilder bloque) throws IOException {
+        synchronized (w) {
+            w.append(bloque);
+        }
+        bloque.setLength(0);
+    }
+
+    /** @return los grupos con más de una copia (copias ordenadas por archivo y fila) */
+    private static List<Conflicto> repetidas(Map<String, List<Ubicacion>> grupos) {
+        List<Conflicto> res = new ArrayList<>();
+        for (Map.Entry<String, List<Ubicacion>> e : grupos.entrySet()) {
+            if (e.getValue().size() < 2) continue;
+            // En particiones el orden de llegada depende de los hilos
+            e.getValue().sort(Comparator.comparing((Ubicacion u) -> u.archivo.getPath()).thenComparingInt(u -> u.fila));
+            res.add(new Conflicto(e.getKey(), e.getValue()));
+        }
+        return res;
+    }
+
+    private interface OyenteLinea {
+        void linea(int fila, String linea) throws IOException;
+    }
+
+    /** Recorre las líneas no vacías de un archivo con el candado de lectura */
+    private static void recorrer(File f, OyenteLinea oyente) throws IOException {
+        AlumnoDAO.candado(f).readLock().lock();
+        try (BufferedReader br = new GestorArchivos(f.getPath()).abrirLector()) {
+            String l;
+            int fila = 0;
+            while ((l = br.readLine()) != null) {
+                if (l.trim().isEmpty()) continue;
+                oyente.linea(fila++, l);
+            }
+        } finally {
+            AlumnoDAO.candado(f).readLock().unlock();
+        }
+    }
+
+    // -------------------------------
+    //           CORRECCIÓN
+    // -------------------------------
+
+    /**
+     * Conserva una copia de cada matrícula repetida y quita las demás: cada
+     * archivo afectado se lee y se reescribe una sola vez. Si alguno de los
+     * archivos de una matrícula cambió después del análisis, esa matrícula no
+     * se toca (la copia elegida podría ya no estar); esos archivos se indican
+     * en el resultado.
+     */
+    public static Correccion corregir(Analisis analisis, Politica politica) throws IOException {
+        Correccion r = new Correccion();
+
+        // Todos los archivos de algún conflicto, también los de la copia que se conserva
+        TreeMap<String, File> involucrados = new TreeMap<>();
+        for (Conflicto c : analisis.conflictos)
+            for (Ubicacion u : c.ubicaciones) involucrados.putIfAbsent(RegistroVersiones.clave(u.archivo), u.archivo);
+
+        // Candados siempre en el mismo orden (ver LoteCambios)
+        List<Lock> tomados = new ArrayList<>();
+        try {
+            for (File f : involucrados.values()) {
+                Lock lock = AlumnoDAO.candado(f).writeLock();
+                lock.lock();
+                tomados.add(lock);
+            }
+
+            Set<String> cambiados = new HashSet<>();
+            for (Map.Entry<String, File> e : involucrados.entrySet()) {
+                File f = e.getValue();
+                File fisico = new GestorArchivos(f.getPath()).archivoEnDisco();
+                long[] sello = analisis.sellos.get(e.getKey());
+                if (sello == null || sello[0] != fisico.lastModified() || sello[1] != fisico.length()) {
+                    cambiados.add(e.getKey());
+                    r.omitidos.add(f.getParentFile().getName() + "/" + f.getName());
+                }
+            }
+
+            // clave de archivo → filas que se quitan
+            TreeMap<String, List<Ubicacion>> porArchivo = new TreeMap<>();
+            siguiente:
+            for (Conflicto c : analisis.conflictos) {
+                for (Ubicacion u : c.ubicaciones)
+                    if (cambiados.contains(RegistroVersiones.clave(u.archivo))) continue siguiente;
+                Ubicacion conservar = elegir(c.ubicaciones, politica, analisis.sellos);
+                for (Ubicacion u : c.ubicaciones)
+                    if (u != conservar)
+                        porArchivo.computeIfAbsent(RegistroVersiones.clave(u.archivo), k -> new ArrayList<>()).add(u);
+            }
+
+            for (List<Ubicacion> copias : porArchivo.values()) {
+                File f = copias.get(0).archivo;
+                GestorArchivos g = new GestorArchivos(f.getPath());
+                List<String> lineas = g.leerLineas();
+                boolean[] quitar = new boolean[lineas.size()];
+                for (Ubicacion u : copias)
+                    if (u.fila < quitar.length && lineas.get(u.fila).equals(u.linea)) quitar[u.fila] = true;
+
+                List<String> nuevas = new ArrayList<>(lineas.size());
+                List<String> quitadas = new ArrayList<>();
+                for (int i = 0; i < lineas.size(); i++) {
+                    if (quitar[i]) quitadas.add(lineas.get(i));
+                    else nuevas.add(lineas.get(i));
+                }
+                if (quitadas.isEmpty()) continue;
+
+                g.escribirLineas(nuevas);
+                r.archivos++;
+                r.eliminados += quitadas.size();
+
+                FeedCambios.registrarArchivo(f);
+                for (String l : quitadas)
+                    BitacoraAuditoria.registrar(BitacoraAuditoria.Accion.BAJA, BitacoraAuditoria.usuario(), f,
+                            Alumno.fromLinea(l), null, "matrícula repetida");
+            }
+            return r;
+        } finally {
+            for (int i = tomados.size() - 1; i >= 0; i--) tomados.get(i).unlock();
+        }
+    }
+
+    /**
+     * @param sellos fecha de cada archivo al analizarlo
+     * @return la copia que se conserva según la política
+     */
+    static Ubicacion elegir(List<Ubicacion> copias, Politica politica, Map<String, long[]> sellos) {
+        Comparator<Ubicacion> reciente = Comparator
+                .comparingLong((Ubicacion u) -> sellos.get(RegistroVersiones.clave(u.archivo))[0])
+                .thenComparingInt(u -> u.fila);
+        Comparator<Ubicacion> orden = politica == Politica.MAS_RECIENTE ? reciente
+                : Comparator.comparingInt((Ubicacion u) -> PromocionSemestres.posicion(u.getSemestre())).thenComparing(reciente);
+
+        Ubicacion mejor = copias.get(0);
+        for (Ubicacion u : copias)
+            if (orden.compare(u, mejor) > 0) mejor = u;
+        return mejor;
+    }
+}
@@ -0,0 +1,86 @@
+package Modelo;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Diccionario de cadenas repetidas (carreras, semestres, ciudades).
+ *
+ * Cada valor distinto se guarda una sola vez y recibe un código entero
+ * pequeño. Alumno guarda el código de su carrera y semestre en lugar de una
+ * copia del texto, así miles de alumnos de la misma carrera comparten una
+ * sola cadena y comparar carreras es comparar dos enteros.
+ *
+ * El código 0 está reservado para null.
+ *
+ * Los valores llegan de archivos importados y de la API sin validar, y
+ * nunca se quitan; por eso cada diccionario tiene un tope. Lleno, codigo()
+ * devuelve -1 y quien lo usa guarda el texto tal cual (ver Alumno).
+ */
+public final class DiccionarioCadenas {
+
+    /** Nombres de carrera (licenciatura); una universidad tiene a lo más unos cientos */
+    public static final DiccionarioCadenas CARRERAS = new DiccionarioCadenas(4_096);
+
+    /** Nombres de semestre; normalmente una decena */
+    public static final DiccionarioCadenas SEMESTRES = new DiccionarioCadenas(1_024);
+
+    /**
+     * Direcciones: casi siempre solo la ciudad, pero pueden ser libres,
+     * por eso tiene un tope de valores distintos.
+     */
+    public static final DiccionarioCadenas DIRECCIONES = new DiccionarioCadenas(65_536);
+
+    private final int maximo;
+    private final ConcurrentHashMap<String, Integer> codigos = new ConcurrentHashMap<>();
+
+    /** valores[codigo]; se reemplaza por un arreglo más grande al crecer */
+    private volatile String[] valores = new String[16];
+    private int siguiente = 1;
+
+    private DiccionarioCadenas(int maximo) {
+        this.maximo = maximo;
+    }
+
+    /**
+     * @return el código del valor; si es nuevo se le asigna uno.
+     *         Devuelve -1 si el diccionario está lleno.
+     */
+    public int codigo(String s) {
+        if (s == null) return 0;
+        Integer c = codigos.get(s);
+        if (c != null) return c;
+
+        synchronized (this) {
+            c = codigos.get(s);
+            if (c != null) return c;
+            if (siguiente > maximo) return -1;
+
+            String[] v = valores;
+            if (siguiente >= v.length) v = Arrays.copyOf(v, v.length * 2);
+            v[siguiente] = s;
+            valores = v;
+            codigos.put(s, siguiente);
+            return siguiente++;
+        }
+    }
+
+    /** @return el texto de un código (null para 0) */
+    public String valor(int codigo) {
+        return codigo <= 0 ? null : valores[codigo];
+    }
+
+    /**
+     * Devuelve la copia compartida de la cadena (la primera que se vio con
+     * ese contenido). Si el diccionario está lleno se devuelve la misma.
+     */
+    public String canonica(String s) {
+        int c = codigo(s);
+        return c < 0 ? s : valor(c);
+    }
+
+    /** @return cantidad de valores distintos guardados */
+    public synchronized int tamano() {
+        return siguiente - 1;
+    }
+}
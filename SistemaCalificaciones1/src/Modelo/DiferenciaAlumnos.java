@@ -0,0 +1,64 @@
+package Modelo;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resultado de comparar dos versiones de un mismo archivo de semestre.
+ * Permite actualizar una tabla fila por fila en lugar de recargarla completa.
+ *
+ *  - altas:   alumnos que no estaban antes
+ *  - bajas:   matrículas que ya no están
+ *  - cambios: alumnos cuya matrícula sigue pero algún dato cambió
+ */
+public class DiferenciaAlumnos {
+
+    private final List<Alumno> altas = new ArrayList<>();
+    private final List<String> bajas = new ArrayList<>();
+    private final List<Alumno> cambios = new ArrayList<>();
+
+    /**
+     * Compara dos listas usando la matrícula (sin distinguir mayúsculas) como llave.
+     *
+     * @param antes contenido anterior del archivo
+     * @param despues contenido actual del archivo
+     * @return diferencia entre ambas listas
+     */
+    public static DiferenciaAlumnos calcular(List<Alumno> antes, List<Alumno> despues) {
+        DiferenciaAlumnos d = new DiferenciaAlumnos();
+
+        Map<String, Alumno> previos = new LinkedHashMap<>();
+        for (Alumno a : antes)
+            previos.put(llave(a), a);
+
+        for (Alumno a : despues) {
+            Alumno anterior = previos.remove(llave(a));
+
+            if (anterior == null)
+                d.altas.add(a);
+            else if (!anterior.toLinea().equals(a.toLinea()))
+                d.cambios.add(a);
+        }
+
+        // Lo que quedó en el mapa ya no existe en el archivo
+        for (Alumno a : previos.values())
+            d.bajas.add(a.getMatricula());
+
+        return d;
+    }
+
+    private static String llave(Alumno a) {
+        return a.getMatricula() == null ? "" : a.getMatricula().trim().toLowerCase();
+    }
+
+    /** @return true si no hubo ningún cambio */
+    public boolean estaVacia() {
+        return altas.isEmpty() && bajas.isEmpty() && cambios.isEmpty();
+    }
+
+    public List<Alumno> getAltas() { return altas; }
+    public List<String> getBajas() { return bajas; }
+    public List<Alumno> getCambios() { return cambios; }
+}
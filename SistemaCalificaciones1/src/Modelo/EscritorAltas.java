@@ -0,0 +1,245 @@
+package Modelo;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Escritor único de altas para un archivo de semestre ("group commit").
+ *
+ * Cada alta se deja en una cola sin candados y un solo hilo por archivo la
+ * vacía por lotes: toma el candado de escritura una vez, revisa matrículas
+ * repetidas de todo el lote con una sola lectura, agrega todas las líneas
+ * con una sola escritura (y, si se pidió, un solo fsync) y actualiza el
+ * índice de rangos una vez. Con muchos capturistas al mismo tiempo los
+ * lotes crecen solos y el costo por alumno baja.
+ *
+ * Quien encola recibe un CompletableFuture que se completa cuando su línea
+ * ya está escrita (y sincronizada, con -Dcalificaciones.fsync=si). Lo que
+ * sigue a la escritura (índice, feed, bitácora) ya no puede hacer fallar el
+ * alta: un error ahí solo se registra, para que nadie reintente y duplique.
+ */
+final class EscritorAltas {
+
+    /** Máximo de altas que se escriben juntas */
+    private static final int LOTE_MAXIMO = 1024;
+
+    /** true para esperar fsync en cada lote (más lento, sobrevive a un apagón) */
+    private static final boolean SINCRONIZAR =
+            "si".equalsIgnoreCase(System.getProperty("calificaciones.fsync", "no"));
+
+    /** Un escritor por archivo (clave de RegistroVersiones) */
+    private static final Map<String, EscritorAltas> escritores = new ConcurrentHashMap<>();
+
+    /** Los hilos escritores solo existen mientras hay altas pendientes */
+    private static final ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** Un alta esperando a ser escrita */
+    private static final class Pendiente {
+        final Alumno alumno;
+        final String linea;
+        final boolean soloSiNoExiste;
+        /** Quién pidió el alta (el escritor corre en otro hilo) */
+        final String usuario = BitacoraAuditoria.usuario();
+        final CompletableFuture<Boolean> listo = new CompletableFuture<>();
+
+        Pendiente(Alumno alumno, String linea, boolean soloSiNoExiste) {
+            this.alumno = alumno;
+            this.linea = linea;
+            this.soloSiNoExiste = soloSiNoExiste;
+        }
+    }
+
+    private final File archivo;
+    private final ConcurrentLinkedQueue<Pendiente> cola = new ConcurrentLinkedQueue<>();
+
+    /** true mientras hay un hilo vaciando la cola */
+    private final AtomicBoolean activo = new AtomicBoolean();
+
+    private EscritorAltas(File archivo) {
+        this.archivo = archivo;
+    }
+
+    /** @return el escritor del archivo de semestre indicado */
+    static EscritorAltas de(File archivo) {
+        return escritores.computeIfAbsent(RegistroVersiones.clave(archivo), k -> new EscritorAltas(archivo));
+    }
+
+    /**
+     * Encola un alta.
+     *
+     * @param soloSiNoExiste true para rechazarla si la matrícula ya existe
+     *        en el archivo (o en una alta anterior del mismo lote)
+     * @return se completa con true si se escribió, false si se rechazó por
+     *         matrícula repetida, o con la excepción si falló la escritura
+     *         (IllegalArgumentException si el alumno no tiene matrícula,
+     *         IllegalStateException si este hilo está leyendo el archivo)
+     */
+    CompletableFuture<Boolean> encolar(Alumno a, boolean soloSiNoExiste) {
+        // Cada fila se valida antes de entrar al lote: una mala no tumba a las demás
+        if (a == null || a.getMatricula() == null || a.getMatricula().trim().isEmpty())
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Alta sin matrícula."));
+        Pendiente p = new Pendiente(a, a.toLinea(), soloSiNoExiste);
+
+        ReentrantReadWriteLock candado = (ReentrantReadWriteLock) AlumnoDAO.candado(archivo);
+
+        // Si este hilo ya tiene el candado de escritura (por ejemplo dentro de
+        // otra operación del DAO), esperar al escritor lo bloquearía: se
+        // escribe aquí mismo
+        if (candado.isWriteLockedByCurrentThread()) {
+            escribir(List.of(p));
+            return p.listo;
+        }
+
+        // Con el de lectura (un flujo de AlumnoDAO abierto) ni el escritor ni
+        // este hilo podrían tomar el de escritura: se rechaza en vez de colgarse
+        if (candado.getReadHoldCount() > 0)
+            return CompletableFuture.failedFuture(new IllegalStateException(
+                    "No se puede agregar a " + archivo.getName() + " mientras este hilo lo está leyendo."));
+
+        cola.add(p);
+        if (activo.compareAndSet(false, true)) hilos.execute(this::vaciar);
+        return p.listo;
+    }
+
+    /** Escribe lotes mientras haya altas en la cola */
+    private void vaciar() {
+        do {
+            try {
+                List<Pendiente> lote;
+                while (!(lote = tomar()).isEmpty()) escribir(lote);
+            } finally {
+                activo.set(false);
+            }
+            // Un alta pudo llegar justo después de ver la cola vacía
+        } while (!cola.isEmpty() && activo.compareAndSet(false, true));
+    }
+
+    private List<Pendiente> tomar() {
+        List<Pendiente> lote = new ArrayList<>();
+        Pendiente p;
+        while (lote.size() < LOTE_MAXIMO && (p = cola.poll()) != null) lote.add(p);
+        return lote;
+    }
+
+    private void escribir(List<Pendiente> lote) {
+        AlumnoDAO.candado(archivo).writeLock().lock();
+        try {
+            List<Pendiente> aceptadas = new ArrayList<>(lote.size());
+            List<Alumno> alumnos = new ArrayList<>(lote.size());
+            long[] selloPrevio;
+            int fila;
+            try {
+                GestorArchivos g = new GestorArchivos(archivo.getPath());
+
+                // Matrículas repetidas: una sola revisión del archivo por lote
+                Set<String> porRevisar = new HashSet<>();
+                for (Pendiente p : lote)
+                    if (p.soloSiNoExiste) porRevisar.add(clave(p.alumno));
+                Set<String> ocupadas = existentes(g, porRevisar);
+
+                List<String> lineas = new ArrayList<>(lote.size());
+                for (Pendiente p : lote) {
+                    boolean nueva = ocupadas.add(clave(p.alumno));
+                    if (p.soloSiNoExiste && !nueva) {
+                        p.listo.complete(false);
+                        continue;
+                    }
+                    aceptadas.add(p);
+                    alumnos.add(p.alumno);
+                    lineas.add(p.linea);
+                }
+                if (lineas.isEmpty()) return;
+
+                File fisico = g.archivoEnDisco();
+                selloPrevio = new long[] { fisico.lastModified(), fisico.length() };
+                fila = IndiceRangos.filasDe(archivo);
+
+                g.appendLineas(lineas, SINCRONIZAR);
+            } catch (Throwable t) {
+                // Nada se escribió: todo el lote falla y se puede reintentar
+                for (Pendiente p : lote) p.listo.completeExceptionally(t);
+                return;
+            }
+
+            // Las líneas ya están en el archivo: las altas quedan hechas, pero
+            // quien espera no sigue hasta que el feed y el índice las incluyan
+            try {
+                despuesDeEscribir(aceptadas, alumnos, selloPrevio, fila);
+            } finally {
+                for (Pendiente p : aceptadas) p.listo.complete(true);
+            }
+        } finally {
+            AlumnoDAO.candado(archivo).writeLock().unlock();
+        }
+    }
+
+    /**
+     * Índice de rangos, feed y bitácora de un lote ya escrito. Cada paso se
+     * intenta aunque falle el anterior; los errores solo se registran.
+     */
+    private void despuesDeEscribir(List<Pendiente> aceptadas, List<Alumno> alumnos, long[] selloPrevio, int fila) {
+        try {
+            // El índice de rangos se actualiza sin volver a leer el archivo
+            if (fila >= 0) IndiceRangos.registrarAltas(archivo, selloPrevio, fila, alumnos);
+            else IndiceRangos.descartar(archivo);
+        } catch (RuntimeException e) {
+            IndiceRangos.descartar(archivo);
+            e.printStackTrace();
+        }
+
+        try {
+            List<FeedCambios.Evento> eventos = new ArrayList<>(alumnos.size());
+            for (Alumno a : alumnos) eventos.add(FeedCambios.Evento.alta(a));
+            FeedCambios.registrar(archivo, eventos);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+
+        for (Pendiente p : aceptadas) {
+            try {
+                BitacoraAuditoria.registrar(BitacoraAuditoria.Accion.ALTA, p.usuario, archivo, null, p.alumno, null);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /** @return cuáles de las matrículas dadas ya están en el archivo */
+    private static Set<String> existentes(GestorArchivos g, Set<String> matriculas) throws IOException {
+        Set<String> res = new HashSet<>();
+        if (matriculas.isEmpty()) return res;
+
+        // Una sola: la búsqueda se detiene al encontrarla (y en .txtz usa el índice de bloques)
+        if (matriculas.size() == 1) {
+            String m = matriculas.iterator().next();
+            if (g.buscarLineaPorMatricula(m) != null) res.add(m);
+            return res;
+        }
+
+        try (BufferedReader br = g.abrirLector()) {
+            String l;
+            while ((l = br.readLine()) != null) {
+                String m = ArchivoComprimido.matriculaDe(l);
+                if (matriculas.contains(m)) res.add(m);
+            }
+        }
+        return res;
+    }
+
+    private static String clave(Alumno a) {
+        return a.getMatricula().trim().toLowerCase();
+    }
+}
@@ -0,0 +1,211 @@
+package Modelo;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Exporta alumnos a CSV, JSON Lines o formato con barras.
+ *
+ * Los registros se leen y escriben uno por uno (nunca se arma la lista
+ * completa en memoria). Cuando el formato de salida es el mismo que el de
+ * los archivos de semestre (y no están comprimidos), los bytes se copian
+ * con FileChannel.transferTo sin convertir cada registro.
+ */
+public class ExportadorAlumnos {
+
+    /** Formato de salida */
+    private final FormatoExportacion formato;
+
+    public ExportadorAlumnos(FormatoExportacion formato) {
+        this.formato = formato;
+    }
+
+    /**
+     * Exporta varios archivos de semestre a un solo archivo destino.
+     *
+     * @param origenes archivos de semestre en el orden deseado
+     * @param destino archivo a crear (se sobrescribe)
+     * @return cantidad de registros exportados (-1 si se copiaron bytes directamente)
+     */
+    public long exportarArchivos(List<File> origenes, File destino) throws IOException {
+        crearCarpetaPadre(destino);
+
+        if (formato.esFormatoOriginal() && !hayComprimidos(origenes)) {
+            copiarDirecto(origenes, destino);
+            return -1;
+        }
+
+        long total = 0;
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(destino))) {
+            escribirEncabezado(bw);
+
+            for (File f : origenes) {
+                try (BufferedReader br = new GestorArchivos(f.getPath()).abrirLector()) {
+                    String l;
+                    while ((l = br.readLine()) != null) {
+                        if (l.trim().isEmpty()) continue;
+                        bw.write(formato.convertir(Alumno.fromLinea(l)));
+                        bw.newLine();
+                        total++;
+                    }
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Exporta alumnos que ya están en memoria (por ejemplo resultados de búsqueda).
+     *
+     * @return cantidad de registros exportados
+     */
+    public long exportarAlumnos(Iterable<Alumno> alumnos, File destino) throws IOException {
+        crearCarpetaPadre(destino);
+
+        long total = 0;
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(destino))) {
+            escribirEncabezado(bw);
+            for (Alumno a : alumnos) {
+                bw.write(formato.convertir(a));
+                bw.newLine();
+                total++;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Exporta muchos archivos de semestre a un archivo ZIP, una entrada por
+     * semestre (por ejemplo "Derecho/Primer Semestre.csv").
+     *
+     * Cada semestre se convierte en paralelo a un archivo temporal; después
+     * las entradas se agregan al ZIP en orden. La memoria usada no depende
+     * del tamaño de los datos.
+     *
+     * @param origenes archivos de semestre
+     * @param raiz carpeta raíz, usada para nombrar las entradas del ZIP
+     *        (null = "carrera/semestre" de cada archivo, para archivos de
+     *        varias raíces)
+     * @param zip archivo ZIP a crear
+     */
+    public void exportarZip(List<File> origenes, File raiz, File zip) throws IOException {
+        crearCarpetaPadre(zip);
+
+        int hilos = Math.max(1, Math.min(origenes.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+        List<Future<File>> temporales = new ArrayList<>();
+
+        try {
+            for (File f : origenes) {
+                temporales.add(pool.submit(() -> {
+                    File tmp = File.createTempFile("exportacion", "." + formato.getExtension());
+                    exportarArchivos(List.of(f), tmp);
+                    return tmp;
+                }));
+            }
+
+            try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zip.toPath()))) {
+                for (int i = 0; i < origenes.size(); i++) {
+                    File tmp = temporales.get(i).get();
+                    try {
+                        zos.putNextEntry(new ZipEntry(nombreEntrada(raiz, origenes.get(i))));
+                        Files.copy(tmp.toPath(), zos);
+                        zos.closeEntry();
+                    } finally {
+                        tmp.delete();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Exportación interrumpida", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error exportando: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+            // Borra temporales de tareas que hayan terminado tras un error
+            for (Future<File> t : temporales) {
+                if (t.isDone() && !t.isCancelled()) {
+                    try { t.get().delete(); } catch (Exception ignorada) { }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copia los archivos tal cual usando transferTo (el sistema operativo mueve
+     * los bytes sin pasar por objetos Java). Si un archivo no termina en salto
+     * de línea se agrega uno para no pegar registros.
+     */
+    private void copiarDirecto(List<File> origenes, File destino) throws IOException {
+        try (FileChannel out = FileChannel.open(destino.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            for (File f : origenes) {
+                if (!f.exists() || f.length() == 0) continue;
+
+                try (FileChannel in = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+                    long pos = 0, tam = in.size();
+                    while (pos < tam)
+                        pos += in.transferTo(pos, tam - pos, out);
+                }
+
+                if (!terminaEnSaltoDeLinea(f))
+                    out.write(ByteBuffer.wrap(System.lineSeparator().getBytes()));
+            }
+        }
+    }
+
+    /** Los archivos .txtz no se pueden copiar tal cual: hay que descomprimirlos */
+    private static boolean hayComprimidos(List<File> origenes) {
+        for (File f : origenes)
+            if (new GestorArchivos(f.getPath()).estaComprimido()) return true;
+        return false;
+    }
+
+    private static boolean terminaEnSaltoDeLinea(File f) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+            raf.seek(raf.length() - 1);
+            return raf.read() == '\n';
+        }
+    }
+
+    private void escribirEncabezado(Writer w) throws IOException {
+        if (formato.getEncabezado() != null) {
+            w.write(formato.getEncabezado());
+            w.write(System.lineSeparator());
+        }
+    }
+
+    /** Nombre relativo a la raíz, con "/" y la extensión del formato */
+    private String nombreEntrada(File raiz, File origen) {
+        File base = raiz != null ? raiz : origen.getAbsoluteFile().getParentFile().getParentFile();
+        String rel = base.getAbsoluteFile().toPath().relativize(origen.getAbsoluteFile().toPath()).toString();
+        rel = rel.replace(File.separatorChar, '/');
+        int punto = rel.lastIndexOf('.');
+        if (punto > 0) rel = rel.substring(0, punto);
+        return rel + "." + formato.getExtension();
+    }
+
+    private static void crearCarpetaPadre(File f) {
+        File parent = f.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) parent.mkdirs();
+    }
+}
@@ -0,0 +1,240 @@
+package Modelo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registro de cambios ("change data capture") de los archivos de alumnos.
+ *
+ * Cada alta, edición y baja que hace AlumnoDAO recibe un número de
+ * secuencia creciente y se agrega a Cambios/feed.log, junto a la carpeta de
+ * alumnos, antes de soltar el candado del archivo. Así un Replicador puede
+ * aplicar a una copia solo lo que cambió desde la última vez.
+ *
+ * Formato (una línea por evento, campos separados por tabulador):
+ *   secuencia  tipo  carrera  semestre  matrícula  línea del alumno
+ * Tipos: ALTA, EDICION (la matrícula es la original), BAJA y ARCHIVO (el
+ * archivo cambió completo, por ejemplo al restaurar un respaldo: la copia
+ * debe tomarlo entero).
+ *
+ * Varias instancias del programa pueden compartir la carpeta: el feed se
+ * escribe con un candado de archivo del sistema operativo y la secuencia
+ * continúa desde la última línea escrita por cualquiera de ellas.
+ */
+public final class FeedCambios {
+
+    /** Tipos de evento */
+    public enum Tipo { ALTA, EDICION, BAJA, ARCHIVO }
+
+    /** Un cambio por registrar */
+    static final class Evento {
+        final Tipo tipo;
+        final String matricula;
+        final Alumno alumno;
+
+        private Evento(Tipo tipo, String matricula, Alumno alumno) {
+            this.tipo = tipo;
+            this.matricula = matricula;
+            this.alumno = alumno;
+        }
+
+        static Evento alta(Alumno a) { return new Evento(Tipo.ALTA, a.getMatricula(), a); }
+        static Evento edicion(String matriculaOriginal, Alumno nuevos) { return new Evento(Tipo.EDICION, matriculaOriginal, nuevos); }
+        static Evento baja(String matricula) { return new Evento(Tipo.BAJA, matricula, null); }
+        static Evento archivo() { return new Evento(Tipo.ARCHIVO, "", null); }
+    }
+
+    private static final String CARPETA = "Cambios";
+    static final String NOMBRE = "feed.log";
+
+    /** true para esperar fsync del feed en cada registro (ver EscritorAltas) */
+    private static final boolean SINCRONIZAR =
+            "si".equalsIgnoreCase(System.getProperty("calificaciones.fsync", "no"));
+
+    /** Un feed por carpeta Cambios */
+    private static final Map<String, FeedCambios> feeds = new ConcurrentHashMap<>();
+
+    private final File archivo;
+    private FileChannel canal;
+
+    /** Última secuencia escrita (por este u otro proceso) */
+    private long ultima = -1;
+
+    /** Tamaño del feed después de nuestra última escritura */
+    private long tamanoConocido = -1;
+
+    /**
+     * Semestres cuyos eventos no se pudieron escribir; la siguiente vez se
+     * registra para ellos un evento ARCHIVO, así la copia no se queda atrás.
+     */
+    private final Set<File> pendientes = new LinkedHashSet<>();
+
+    private FeedCambios(File archivo) {
+        this.archivo = archivo;
+    }
+
+    /** @return el feed de la carpeta de alumnos a la que pertenece un archivo de semestre */
+    static FeedCambios de(File semestre) {
+        return en(new File(BitacoraAuditoria.carpetaBase(semestre), CARPETA));
+    }
+
+    /** @return el feed guardado en una carpeta Cambios */
+    public static FeedCambios en(File carpeta) {
+        File f = new File(carpeta, NOMBRE).getAbsoluteFile();
+        return feeds.computeIfAbsent(f.getPath(), k -> new FeedCambios(f));
+    }
+
+    /** @return archivo del feed */
+    public File getArchivo() {
+        return archivo;
+    }
+
+    // -------------------------------
+    //           REGISTRAR
+    // -------------------------------
+
+    /**
+     * Registra los cambios de un archivo de semestre. Si el feed no se puede
+     * escribir no se interrumpe la operación (los datos ya se guardaron): se
+     * avisa en consola y el semestre se marca para enviarlo completo después.
+     */
+    static void registrar(File semestre, List<Evento> eventos) {
+        if (eventos.isEmpty()) return;
+        de(semestre).registrarSinError(semestre, eventos);
+    }
+
+    /** Registra que un archivo de semestre cambió completo (o se borró) */
+    static void registrarArchivo(File semestre) {
+        registrar(semestre, List.of(Evento.archivo()));
+    }
+
+    private synchronized void registrarSinError(File semestre, List<Evento> eventos) {
+        try {
+            if (!pendientes.isEmpty()) {
+                for (File f : new ArrayList<>(pendientes)) escribir(f, List.of(Evento.archivo()));
+                pendientes.clear();
+            }
+            escribir(semestre, eventos);
+        } catch (IOException e) {
+            e.printStackTrace();
+            pendientes.add(semestre);
+            cerrar();
+        }
+    }
+
+    private void escribir(File semestre, List<Evento> eventos) throws IOException {
+        if (canal == null) {
+            Files.createDirectories(archivo.getParentFile().toPath());
+            canal = FileChannel.open(archivo.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        FileLock candado = canal.lock();
+        try {
+            // Otro proceso escribió desde la última vez: se toma su última secuencia
+            long tamano = canal.size();
+            if (tamano != tamanoConocido) {
+                long[] fin = ultimaLinea(canal, tamano);
+                ultima = fin[0];
+
+                // Una línea a medias (el programa se cerró al escribirla) se descarta
+                if (fin[1] < tamano) {
+                    canal.truncate(fin[1]);
+                    tamano = fin[1];
+                }
+            }
+
+            File s = semestre.getAbsoluteFile();
+            String carrera = BitacoraAuditoria.escapar(s.getParentFile().getName());
+            String nombre = s.getName();
+            if (nombre.toLowerCase().endsWith(ArchivoComprimido.EXTENSION)) nombre = nombre.substring(0, nombre.length() - 1);
+            if (nombre.toLowerCase().endsWith(".txt")) nombre = nombre.substring(0, nombre.length() - 4);
+            nombre = BitacoraAuditoria.escapar(nombre);
+
+            StringBuilder sb = new StringBuilder();
+            for (Evento e : eventos) {
+                sb.append(++ultima).append('\t').append(e.tipo).append('\t')
+                  .append(carrera).append('\t').append(nombre).append('\t')
+                  .append(BitacoraAuditoria.escapar(e.matricula)).append('\t')
+                  .append(e.alumno == null ? "" : BitacoraAuditoria.escapar(e.alumno.toLinea())).append('\n');
+            }
+
+            ByteBuffer b = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+            long pos = tamano;
+            while (b.hasRemaining()) pos += canal.write(b, pos);
+            if (SINCRONIZAR) canal.force(false);
+            tamanoConocido = pos;
+        } finally {
+            candado.release();
+        }
+    }
+
+    private void cerrar() {
+        try {
+            if (canal != null) canal.close();
+        } catch (IOException e) {
+            // Se reabre en el siguiente registro
+        }
+        canal = null;
+        tamanoConocido = -1;
+    }
+
+    /**
+     * @return {secuencia de la última línea completa (0 si no hay),
+     *          posición donde termina esa línea}
+     */
+    private static long[] ultimaLinea(FileChannel c, long tamano) throws IOException {
+        if (tamano == 0) return new long[] { 0, 0 };
+
+        // Basta leer el final: la última línea completa está ahí
+        int leer = (int) Math.min(tamano, 64 * 1024);
+        ByteBuffer b = ByteBuffer.allocate(leer);
+        while (b.hasRemaining() && c.read(b, tamano - leer + b.position()) > 0) { }
+        byte[] cola = b.array();
+
+        // Se busca en bytes: el inicio de la ventana puede partir un carácter UTF-8
+        int fin = b.position() - 1;
+        while (fin >= 0 && cola[fin] != '\n') fin--;
+        if (fin < 0) {
+            if (leer < tamano) throw new IOException("Feed dañado: línea de más de " + leer + " bytes");
+            return new long[] { 0, 0 };
+        }
+        long finLinea = tamano - leer + fin + 1;
+
+        int inicio = fin - 1;
+        while (inicio >= 0 && cola[inicio] != '\n') inicio--;
+        String linea = new String(cola, inicio + 1, fin - inicio - 1, StandardCharsets.UTF_8);
+        int tab = linea.indexOf('\t');
+        try {
+            return new long[] { Long.parseLong(tab < 0 ? linea : linea.substring(0, tab)), finLinea };
+        } catch (NumberFormatException e) {
+            throw new IOException("Feed dañado: " + linea);
+        }
+    }
+
+    /** @return la última secuencia registrada en el feed (0 si no hay eventos) */
+    public long ultimaSecuencia() throws IOException {
+        return fin()[0];
+    }
+
+    /** @return {última secuencia completa, posición donde termina su línea} */
+    synchronized long[] fin() throws IOException {
+        if (!archivo.exists()) return new long[] { 0, 0 };
+        try (RandomAccessFile raf = new RandomAccessFile(archivo, "r")) {
+            return ultimaLinea(raf.getChannel(), raf.length());
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package Modelo;
+
+/**
+ * Formatos disponibles para exportar alumnos.
+ *
+ *  - CSV:   separado por comas, con encabezado
+ *  - JSONL: un objeto JSON por línea (JSON Lines)
+ *  - PIPE:  el mismo formato con barras (|) de los archivos de semestre
+ */
+public enum FormatoExportacion {
+
+    CSV("csv", "nombre,matricula,promedio,semestre,edad,licenciatura,correo,telefono,direccion"),
+    JSONL("jsonl", null),
+    PIPE("txt", null);
+
+    /** Extensión sugerida para el archivo exportado */
+    private final String extension;
+
+    /** Primera línea del archivo exportado (null si el formato no la usa) */
+    private final String encabezado;
+
+    FormatoExportacion(String extension, String encabezado) {
+        this.extension = extension;
+        this.encabezado = encabezado;
+    }
+
+    public String getExtension() { return extension; }
+    public String getEncabezado() { return encabezado; }
+
+    /**
+     * Indica si el formato es idéntico al de los archivos de semestre.
+     * En ese caso los bytes se pueden copiar sin convertir cada registro.
+     */
+    public boolean esFormatoOriginal() {
+        return this == PIPE;
+    }
+
+    /**
+     * Convierte un alumno a una línea de este formato (sin salto de línea).
+     */
+    public String convertir(Alumno a) {
+        switch (this) {
+            case CSV:   return a.toCsv();
+            case JSONL: return a.toJson();
+            default:    return a.toLinea();
+        }
+    }
+}
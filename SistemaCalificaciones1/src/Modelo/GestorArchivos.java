@@ -1,6 +1,11 @@
 package Modelo;
 
 import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -10,22 +15,61 @@ import java.util.List;
  *  - Leer todas las líneas del archivo
  *  - Escribir (sobrescribir) líneas
  *  - Agregar una línea al final (append)
+ *
+ * Cada escritura se reporta a RegistroVersiones para que los datos
+ * guardados en memoria sobre este archivo se invaliden.
+ *
+ * Si el archivo .txt no existe pero sí su versión comprimida (.txtz,
+ * ver ArchivoComprimido), todas las operaciones trabajan sobre la
+ * versión comprimida de forma transparente.
  * 
  * Esta clase es utilizada por el controlador para manejar los archivos
  * donde se guardan los alumnos.
  */
 public class GestorArchivos {
 
+    /**
+     * Codificación de los archivos de semestre, en texto y comprimidos. Es la
+     * predeterminada de Java desde la versión 18, así que los archivos ya
+     * existentes se leen igual.
+     */
+    public static final Charset CODIFICACION = StandardCharsets.UTF_8;
+
     /** Archivo físico que será manipulado */
     private final File archivo;
 
+    /** Versión comprimida del mismo archivo (mismo nombre con .txtz) */
+    private final File comprimido;
+
     /**
      * Constructor que recibe la ruta del archivo a leer/escribir.
+     * Acepta tanto la ruta .txt como la .txtz del mismo semestre.
      *
      * @param ruta ruta absoluta o relativa del archivo
      */
     public GestorArchivos(String ruta) {
-        this.archivo = new File(ruta);
+        if (ruta.toLowerCase().endsWith(ArchivoComprimido.EXTENSION)) {
+            this.archivo = new File(ruta.substring(0, ruta.length() - 1));
+            this.comprimido = new File(ruta);
+        } else {
+            this.archivo = new File(ruta);
+            this.comprimido = new File(ruta + "z");
+        }
+    }
+
+    /** @return true si el semestre está guardado en formato comprimido */
+    public boolean estaComprimido() {
+        return !archivo.exists() && comprimido.exists();
+    }
+
+    /** @return el archivo que realmente existe en disco (.txt o .txtz) */
+    private File fisico() {
+        return estaComprimido() ? comprimido : archivo;
+    }
+
+    /** @return el archivo que realmente existe en disco (.txt o .txtz) */
+    public File archivoEnDisco() {
+        return fisico();
     }
 
     /**
@@ -42,6 +86,9 @@ public class GestorArchivos {
 
         List<String> lineas = new ArrayList<>();
 
+        if (estaComprimido())
+            return new ArchivoComprimido(comprimido).leerLineas();
+
         // Si el archivo no existe, se crean las carpetas necesarias
         if (!archivo.exists()) {
             File parent = archivo.getParentFile();
@@ -53,7 +100,7 @@ public class GestorArchivos {
         }
 
         // Lectura tradicional línea por línea
-        try (BufferedReader br = new BufferedReader(new FileReader(archivo))) {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(archivo), CODIFICACION))) {
             String l;
             while ((l = br.readLine()) != null) {
 
@@ -74,12 +121,41 @@ public class GestorArchivos {
      */
     public void escribirLineas(List<String> lineas) throws IOException {
 
+        if (estaComprimido()) {
+            new ArchivoComprimido(comprimido).escribir(lineas);
+            RegistroVersiones.notificarCambio(comprimido);
+            return;
+        }
+
         // Asegura que la carpeta contenedora exista
         File parent = archivo.getParentFile();
         if (parent != null && !parent.exists()) parent.mkdirs();
 
-        // FileWriter sin "append", por lo tanto sobrescribe
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(archivo))) {
+        reemplazarTexto(lineas);
+        RegistroVersiones.notificarCambio(archivo);
+    }
+
+    /**
+     * Escribe el .txt en un temporal junto a él y luego lo reemplaza de una
+     * vez: si el programa se cierra a medias, el archivo queda completo.
+     */
+    private void reemplazarTexto(List<String> lineas) throws IOException {
+        File tmp = File.createTempFile(archivo.getName(), ".tmp", archivo.getAbsoluteFile().getParentFile());
+        try {
+            escribirTexto(lineas, tmp);
+            try {
+                Files.move(tmp.toPath(), archivo.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), archivo.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    private static void escribirTexto(List<String> lineas, File destino) throws IOException {
+        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(destino), CODIFICACION))) {
             for (String s : lineas) {
                 bw.write(s);
                 bw.newLine();
@@ -87,6 +163,19 @@ public class GestorArchivos {
         }
     }
 
+    /**
+     * Escribe las líneas en otro archivo con el formato de este (comprimido
+     * si este es .txtz) sin tocar este. Sirve para preparar el reemplazo de
+     * varios archivos a la vez (ver LoteCambios).
+     */
+    void escribirLineasEn(List<String> lineas, File destino) throws IOException {
+        File parent = destino.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) parent.mkdirs();
+
+        if (estaComprimido()) new ArchivoComprimido(destino).escribir(lineas);
+        else escribirTexto(lineas, destino);
+    }
+
     /**
      * Agrega UNA línea al final del archivo (modo append).
      *
@@ -94,16 +183,140 @@ public class GestorArchivos {
      * @throws IOException si ocurre un error
      */
     public void appendLinea(String linea) throws IOException {
+        appendLineas(List.of(linea), false);
+    }
+
+    /**
+     * Agrega varias líneas al final del archivo con una sola escritura.
+     *
+     * @param lineas contenido a agregar, en orden
+     * @param sincronizar true para esperar a que el sistema operativo las
+     *        guarde físicamente en el disco (fsync) antes de regresar
+     * @throws IOException si ocurre un error
+     */
+    public void appendLineas(List<String> lineas, boolean sincronizar) throws IOException {
+        if (lineas.isEmpty()) return;
+
+        // Los archivos comprimidos casi no se escriben: se reescriben completos
+        if (estaComprimido()) {
+            List<String> todas = leerLineas();
+            todas.addAll(lineas);
+            escribirLineas(todas);
+            return;
+        }
 
         // Crea carpetas si no existen
         File parent = archivo.getParentFile();
         if (parent != null && !parent.exists()) parent.mkdirs();
 
-        // FileWriter con "true" → modo append
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(archivo, true))) {
-            bw.write(linea);
-            bw.newLine();
+        // Mismo formato que escribirLineas: CODIFICACION y salto de línea del sistema
+        StringBuilder sb = new StringBuilder();
+        for (String l : lineas) sb.append(l).append(System.lineSeparator());
+
+        // FileOutputStream con "true" → modo append
+        try (FileOutputStream out = new FileOutputStream(archivo, true)) {
+            out.write(sb.toString().getBytes(CODIFICACION));
+            if (sincronizar) out.getFD().sync();
+        }
+        RegistroVersiones.notificarCambio(archivo);
+    }
+
+    /**
+     * Abre el archivo para leerlo línea por línea sin cargarlo completo.
+     * Quien lo llama debe cerrar el lector (try-with-resources).
+     * Si el archivo no existe se devuelve un lector vacío.
+     *
+     * @return lector con buffer sobre el archivo
+     * @throws IOException si ocurre un error al abrirlo
+     */
+    public BufferedReader abrirLector() throws IOException {
+        if (estaComprimido())
+            return new BufferedReader(new InputStreamReader(
+                    new ArchivoComprimido(comprimido).abrirEntrada(), CODIFICACION));
+        if (!archivo.exists())
+            return new BufferedReader(new StringReader(""));
+        return new BufferedReader(new InputStreamReader(new FileInputStream(archivo), CODIFICACION));
+    }
+
+    /**
+     * Busca la línea de una matrícula sin convertir todo el archivo.
+     * En archivos comprimidos solo se descomprimen los bloques cuyo rango
+     * de matrículas la puede contener.
+     *
+     * @return línea encontrada o null si no existe
+     */
+    public String buscarLineaPorMatricula(String matricula) throws IOException {
+        if (estaComprimido())
+            return new ArchivoComprimido(comprimido).buscarPorMatricula(matricula);
+
+        String m = matricula.trim().toLowerCase();
+        try (BufferedReader br = abrirLector()) {
+            String l;
+            while ((l = br.readLine()) != null)
+                if (ArchivoComprimido.matriculaDe(l).equals(m)) return l;
+        }
+        return null;
+    }
+
+    /**
+     * Convierte el archivo .txt a formato comprimido (.txtz) y borra el .txt.
+     * Pensado para semestres de generaciones pasadas que casi no se escriben.
+     */
+    public void comprimir() throws IOException {
+        if (!archivo.exists()) return;
+
+        new ArchivoComprimido(comprimido).escribir(leerLineas());
+        if (!archivo.delete())
+            throw new IOException("No se pudo borrar " + archivo.getName() + " después de comprimirlo");
+        RegistroVersiones.notificarCambio(comprimido);
+    }
+
+    /**
+     * Convierte un archivo .txtz de regreso a texto plano.
+     */
+    public void descomprimir() throws IOException {
+        if (!estaComprimido()) return;
+
+        reemplazarTexto(leerLineas());
+        // El .txt ya tiene todo y es el que se lee; se avisa aunque el .txtz se quede
+        boolean borrado = comprimido.delete();
+        RegistroVersiones.notificarCambio(archivo);
+        if (!borrado)
+            throw new IOException("No se pudo borrar " + comprimido.getName() + " después de descomprimirlo");
+    }
+
+    /**
+     * Recorre la carpeta raíz de alumnos y devuelve todos los archivos
+     * de semestre (.txt o .txtz) de todas las carreras, ordenados por ruta.
+     * Si un semestre tiene ambas versiones solo se incluye el .txt.
+     *
+     * @param raiz carpeta raíz (por ejemplo "Alumnos")
+     * @return lista de archivos de semestre; vacía si la raíz no existe
+     */
+    public static List<File> listarArchivosSemestre(File raiz) {
+        List<File> res = new ArrayList<>();
+
+        File[] carreras = raiz.listFiles(File::isDirectory);
+        if (carreras == null) return res;
+
+        for (File carrera : carreras) {
+            File[] semestres = carrera.listFiles(f -> f.isFile() && esArchivoDeSemestre(f));
+            if (semestres == null) continue;
+            for (File s : semestres) {
+                boolean sombreado = s.getName().toLowerCase().endsWith(ArchivoComprimido.EXTENSION)
+                        && new File(s.getPath().substring(0, s.getPath().length() - 1)).exists();
+                if (!sombreado) res.add(s);
+            }
         }
+
+        res.sort(null);
+        return res;
+    }
+
+    /** @return true si el archivo tiene extensión de archivo de semestre */
+    public static boolean esArchivoDeSemestre(File f) {
+        String n = f.getName().toLowerCase();
+        return n.endsWith(".txt") || n.endsWith(ArchivoComprimido.EXTENSION);
     }
 
     /**
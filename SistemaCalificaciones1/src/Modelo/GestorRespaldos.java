@@ -0,0 +1,425 @@
+package Modelo;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Crea y restaura respaldos incrementales de la carpeta de alumnos.
+ *
+ * Cada respaldo es una carpeta dentro de "Respaldos" con una copia de los
+ * archivos de semestre y un manifiesto (ruta, tamaño, fecha y CRC32).
+ * Los archivos que no cambiaron desde el respaldo anterior no se copian:
+ * se crea un enlace duro al archivo del respaldo anterior, si su CRC32
+ * sigue coincidiendo con el del manifiesto. Los respaldos viejos se
+ * comprimen a .zip. Al restaurar se comprueba el CRC32 de cada archivo
+ * antes de reemplazar nada.
+ */
+public class GestorRespaldos {
+
+    /** Nombre del manifiesto dentro de cada respaldo */
+    private static final String MANIFIESTO = "manifiesto.txt";
+
+    /** Carpeta de alumnos que se respalda */
+    private final File raiz;
+
+    /** Carpeta donde se guardan los respaldos */
+    private final File carpeta;
+
+    /**
+     * @param raiz carpeta de alumnos (por ejemplo "Alumnos")
+     * @param carpeta carpeta de respaldos (por ejemplo "Respaldos")
+     */
+    public GestorRespaldos(String raiz, String carpeta) {
+        this.raiz = new File(raiz).getAbsoluteFile();
+        this.carpeta = new File(carpeta).getAbsoluteFile();
+    }
+
+    /**
+     * Datos de un archivo registrados en el manifiesto.
+     */
+    private static final class Entrada {
+        long tamano;
+        long modificado;
+        long crc;
+
+        String toLinea(String ruta) {
+            return ruta + "|" + tamano + "|" + modificado + "|" + Long.toHexString(crc);
+        }
+    }
+
+    // -------------------------------
+    //          CREAR RESPALDO
+    // -------------------------------
+
+    /** @return identificador para un respaldo nuevo (fecha y hora) */
+    public static String nuevoId() {
+        return new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+    }
+
+    /**
+     * Crea un respaldo nuevo. Solo se copian los archivos que cambiaron
+     * desde el respaldo anterior.
+     *
+     * @return identificador del respaldo creado (fecha y hora)
+     */
+    public String crearRespaldo() throws IOException {
+        return crearRespaldo(nuevoId());
+    }
+
+    /**
+     * Crea un respaldo nuevo con un identificador dado. Sirve para que los
+     * respaldos de varias carpetas de alumnos hechos juntos (una por disco)
+     * tengan el mismo identificador y se restauren juntos.
+     */
+    public String crearRespaldo(String id) throws IOException {
+        // Manifiesto del respaldo más reciente (si existe) para comparar
+        String anterior = ultimoRespaldo();
+        Map<String, Entrada> previo = anterior == null ? new LinkedHashMap<>() : leerManifiesto(anterior);
+        File carpetaAnterior = anterior == null ? null : new File(carpeta, anterior);
+
+        File destino = new File(carpeta, id);
+        Files.createDirectories(destino.toPath());
+
+        Map<String, Entrada> nuevo = new LinkedHashMap<>();
+
+        for (File f : GestorArchivos.listarArchivosSemestre(raiz)) {
+            String rel = relativa(f);
+            File copia = new File(destino, rel);
+            Files.createDirectories(copia.getParentFile().toPath());
+
+            Entrada e = new Entrada();
+            e.tamano = f.length();
+            e.modificado = f.lastModified();
+
+            Entrada p = previo.get(rel);
+            if (p != null && p.tamano == e.tamano && p.modificado == e.modificado
+                    && reutilizar(carpetaAnterior, rel, p, copia)) {
+                // Sin cambios: se reutiliza el archivo del respaldo anterior
+                e.crc = p.crc;
+            } else {
+                e.crc = copiarConCrc(f, copia);
+            }
+            nuevo.put(rel, e);
+        }
+
+        escribirManifiesto(destino, nuevo);
+        return id;
+    }
+
+    /**
+     * Reutiliza un archivo sin cambios con un enlace duro al respaldo
+     * anterior, si este sigue en carpeta y su contenido coincide con el
+     * CRC32 del manifiesto (una copia dañada no se arrastra a los respaldos
+     * siguientes).
+     *
+     * @return false si no se pudo (comprimido, dañado o el sistema de
+     *         archivos no soporta enlaces); entonces se copia el original
+     */
+    private boolean reutilizar(File carpetaAnterior, String rel, Entrada esperado, File copia) {
+        if (carpetaAnterior == null || !carpetaAnterior.isDirectory()) return false;
+        File previo = new File(carpetaAnterior, rel);
+        try {
+            if (!previo.exists() || previo.length() != esperado.tamano || crcDe(previo) != esperado.crc)
+                return false;
+            Files.createLink(copia.toPath(), previo.toPath());
+            return true;
+        } catch (IOException | UnsupportedOperationException ex) {
+            // Se continúa con una copia normal
+            return false;
+        }
+    }
+
+    /** Copia un archivo calculando su CRC32 en la misma lectura */
+    private static long copiarConCrc(File origen, File destino) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buf = ByteBuffer.allocateDirect(64 * 1024);
+
+        try (FileChannel in = FileChannel.open(origen.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(destino.toPath(), StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            while (in.read(buf) != -1) {
+                buf.flip();
+                crc.update(buf.duplicate());
+                while (buf.hasRemaining()) out.write(buf);
+                buf.clear();
+            }
+        }
+        destino.setLastModified(origen.lastModified());
+        return crc.getValue();
+    }
+
+    /** CRC32 del contenido de un archivo */
+    private static long crcDe(File f) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buf = ByteBuffer.allocateDirect(64 * 1024);
+        try (FileChannel in = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            while (in.read(buf) != -1) {
+                buf.flip();
+                crc.update(buf);
+                buf.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    // -------------------------------
+    //       LISTAR Y COMPRIMIR
+    // -------------------------------
+
+    /**
+     * @return identificadores de los respaldos existentes, del más antiguo al más reciente
+     */
+    public List<String> listarRespaldos() {
+        List<String> res = new ArrayList<>();
+        File[] hijos = carpeta.listFiles();
+        if (hijos == null) return res;
+
+        Set<String> vistos = new HashSet<>();
+        for (File h : hijos) {
+            // Una carpeta sin manifiesto es un respaldo que no terminó
+            String id = h.isDirectory() ? (new File(h, MANIFIESTO).exists() ? h.getName() : null)
+                    : h.getName().endsWith(".zip") ? h.getName().substring(0, h.getName().length() - 4)
+                    : null;
+            if (id != null && vistos.add(id)) res.add(id);
+        }
+        res.sort(null);
+        return res;
+    }
+
+    private String ultimoRespaldo() {
+        List<String> ids = listarRespaldos();
+        return ids.isEmpty() ? null : ids.get(ids.size() - 1);
+    }
+
+    /**
+     * Comprime a .zip todos los respaldos excepto los más recientes.
+     * Los respaldos comprimidos se siguen pudiendo restaurar.
+     *
+     * @param conservar cantidad de respaldos recientes que quedan sin comprimir
+     */
+    public void comprimirAntiguos(int conservar) throws IOException {
+        List<String> ids = listarRespaldos();
+
+        for (int i = 0; i < ids.size() - conservar; i++) {
+            File dir = new File(carpeta, ids.get(i));
+            if (!dir.isDirectory()) continue;
+
+            File zip = new File(carpeta, ids.get(i) + ".zip");
+            File tmp = new File(carpeta, ids.get(i) + ".zip.tmp");
+
+            List<Path> archivos;
+            try (Stream<Path> s = Files.walk(dir.toPath())) {
+                archivos = s.filter(Files::isRegularFile).collect(Collectors.toList());
+            }
+
+            try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(tmp.toPath()))) {
+                for (Path p : archivos) {
+                    String nombre = dir.toPath().relativize(p).toString().replace(File.separatorChar, '/');
+                    zos.putNextEntry(new ZipEntry(nombre));
+                    Files.copy(p, zos);
+                    zos.closeEntry();
+                }
+            }
+            Files.move(tmp.toPath(), zip.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            borrarCarpeta(dir);
+        }
+    }
+
+    // -------------------------------
+    //           RESTAURAR
+    // -------------------------------
+
+    /**
+     * Restaura TODA la carpeta de alumnos al estado del respaldo indicado.
+     * Los archivos de semestre que no existían en el respaldo se eliminan.
+     * Si alguna copia del respaldo está dañada no se reemplaza nada.
+     */
+    public void restaurarTodo(String id) throws IOException {
+        Map<String, Entrada> manifiesto = leerManifiesto(id);
+
+        // Primero todas las copias, comprobadas; luego los reemplazos
+        Map<String, File> listos = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, Entrada> e : manifiesto.entrySet())
+                listos.put(e.getKey(), prepararArchivo(id, e.getKey(), e.getValue()));
+        } catch (IOException ex) {
+            for (File tmp : listos.values()) tmp.delete();
+            throw ex;
+        }
+        for (Map.Entry<String, File> e : listos.entrySet())
+            colocarArchivo(e.getKey(), e.getValue());
+
+        for (File f : GestorArchivos.listarArchivosSemestre(raiz)) {
+            if (!manifiesto.containsKey(relativa(f)) && f.delete()) {
+                RegistroVersiones.notificarCambio(f);
+                FeedCambios.registrarArchivo(f);
+            }
+        }
+    }
+
+    /**
+     * Restaura un solo archivo de semestre.
+     *
+     * @param id respaldo de origen
+     * @param carrera carpeta de la carrera
+     * @param semestre nombre del semestre (sin .txt)
+     */
+    public void restaurarSemestre(String id, String carrera, String semestre) throws IOException {
+        String rel = carrera + "/" + semestre + ".txt";
+        Map<String, Entrada> manifiesto = leerManifiesto(id);
+
+        // El semestre pudo estar comprimido cuando se respaldó
+        if (!manifiesto.containsKey(rel) && manifiesto.containsKey(rel + "z"))
+            rel = rel + "z";
+        if (!manifiesto.containsKey(rel))
+            throw new IOException("El respaldo " + id + " no contiene " + rel);
+        colocarArchivo(rel, prepararArchivo(id, rel, manifiesto.get(rel)));
+    }
+
+    /**
+     * Copia un archivo del respaldo a un temporal junto a su destino y
+     * comprueba su CRC32 contra el manifiesto.
+     *
+     * @return el temporal listo para colocarArchivo
+     * @throws IOException si no se pudo copiar o la copia del respaldo está dañada
+     */
+    private File prepararArchivo(String id, String rel, Entrada esperado) throws IOException {
+        File destino = new File(raiz, rel);
+        Files.createDirectories(destino.getParentFile().toPath());
+        File tmp = new File(destino.getPath() + ".restaurando");
+
+        CRC32 crc = new CRC32();
+        try (InputStream in = new CheckedInputStream(abrirEnRespaldo(id, rel), crc)) {
+            Files.copy(in, tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (crc.getValue() != esperado.crc) {
+            tmp.delete();
+            throw new IOException("La copia de " + rel + " en el respaldo " + id + " está dañada (CRC32 distinto)");
+        }
+        return tmp;
+    }
+
+    /**
+     * Reemplaza un archivo de la carpeta de alumnos por su temporal ya
+     * comprobado, así el original no queda a medias.
+     */
+    private void colocarArchivo(String rel, File tmp) throws IOException {
+        File destino = new File(raiz, rel);
+        Files.move(tmp.toPath(), destino.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        // Si el semestre existe en el otro formato (.txt / .txtz) se elimina,
+        // si no el .txt taparía lo restaurado
+        String ruta = destino.getPath();
+        File otro = ruta.endsWith(ArchivoComprimido.EXTENSION)
+                ? new File(ruta.substring(0, ruta.length() - 1))
+                : new File(ruta + "z");
+        otro.delete();
+
+        RegistroVersiones.notificarCambio(destino);
+        FeedCambios.registrarArchivo(destino);
+    }
+
+    /** Abre un archivo dentro de un respaldo, esté en carpeta o comprimido */
+    private InputStream abrirEnRespaldo(String id, String rel) throws IOException {
+        File dir = new File(carpeta, id);
+        if (dir.isDirectory())
+            return Files.newInputStream(new File(dir, rel).toPath());
+
+        ZipFile zip = new ZipFile(new File(carpeta, id + ".zip"));
+        ZipEntry e = zip.getEntry(rel);
+        if (e == null) {
+            zip.close();
+            throw new IOException("No existe " + rel + " en el respaldo " + id);
+        }
+
+        // Al cerrar el flujo también se cierra el ZIP
+        return new java.io.FilterInputStream(zip.getInputStream(e)) {
+            @Override public void close() throws IOException {
+                super.close();
+                zip.close();
+            }
+        };
+    }
+
+    // -------------------------------
+    //           MANIFIESTO
+    // -------------------------------
+
+    private void escribirManifiesto(File destino, Map<String, Entrada> entradas) throws IOException {
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(new File(destino, MANIFIESTO)))) {
+            for (Map.Entry<String, Entrada> e : entradas.entrySet()) {
+                bw.write(e.getValue().toLinea(e.getKey()));
+                bw.newLine();
+            }
+        }
+    }
+
+    private Map<String, Entrada> leerManifiesto(String id) throws IOException {
+        Map<String, Entrada> res = new LinkedHashMap<>();
+
+        File dir = new File(carpeta, id);
+        try (BufferedReader br = dir.isDirectory()
+                ? new BufferedReader(new FileReader(new File(dir, MANIFIESTO)))
+                : new BufferedReader(new InputStreamReader(abrirEnRespaldo(id, MANIFIESTO)))) {
+
+            String l;
+            while ((l = br.readLine()) != null) {
+                String[] p = l.split("\\|");
+                if (p.length < 4) continue;
+
+                Entrada e = new Entrada();
+                e.tamano = Long.parseLong(p[1]);
+                e.modificado = Long.parseLong(p[2]);
+                e.crc = Long.parseLong(p[3], 16);
+                res.put(p[0], e);
+            }
+        }
+        return res;
+    }
+
+    /** Ruta relativa a la raíz con "/" como separador (ej. "Derecho/Primer Semestre.txt") */
+    private String relativa(File f) {
+        return raiz.toPath().relativize(f.getAbsoluteFile().toPath()).toString().replace(File.separatorChar, '/');
+    }
+
+    private static void borrarCarpeta(File dir) {
+        File[] hijos = dir.listFiles();
+        if (hijos != null)
+            for (File h : hijos) {
+                if (h.isDirectory()) borrarCarpeta(h);
+                else h.delete();
+            }
+        dir.delete();
+    }
+}
@@ -0,0 +1,945 @@
+package Modelo;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Historial de promedios de cada alumno, para ver su evolución semestre a
+ * semestre. El archivo de semestre solo guarda el promedio actual; aquí se
+ * conserva cada valor anterior.
+ *
+ * Cada edición que cambia el promedio o el semestre de un alumno (ver
+ * AlumnoDAO y LoteCambios), cada paso a otro archivo de semestre (editar
+ * su carrera o semestre, mover varios, promoción de fin de ciclo) agrega
+ * dos puntos, el valor anterior y el nuevo, a Historial/pendientes.log
+ * junto a la carpeta de alumnos. El anterior
+ * solo sirve la primera vez: los puntos seguidos iguales se descartan.
+ *
+ * Cuando los pendientes pasan de 1 MB se compactan en segundo plano a
+ * Historial/historial.hcol, ordenado por matrícula y en bloques de 1024
+ * alumnos. Dentro de cada bloque los datos van por columnas:
+ *   matrículas   (se guarda solo lo que cambia respecto a la anterior)
+ *   puntos por alumno
+ *   textos       (semestres y carreras, una vez por bloque)
+ *   fechas       (días; la primera de cada alumno y luego diferencias)
+ *   semestre y carrera de cada punto (posición en los textos)
+ *   promedios    (centésimas; el primero y luego diferencias con signo)
+ * Todo en enteros de longitud variable, así un punto ocupa unos 5 bytes y
+ * años de historial caben en pocos MB.
+ *
+ * Consultar un alumno lee un solo bloque (el índice de bloques está al final
+ * del archivo). Las consultas de una cohorte decodifican los bloques en
+ * paralelo, uno por hilo, sin cargar el archivo completo.
+ *
+ * Un cambio de matrícula empieza un historial nuevo con la matrícula nueva.
+ */
+public final class HistorialCalificaciones {
+
+    /** Un promedio registrado */
+    public static final class Punto {
+        private final int dia;
+        private final String semestre, carrera;
+        private final int centesimas;
+
+        Punto(int dia, String semestre, String carrera, int centesimas) {
+            this.dia = dia;
+            this.semestre = semestre;
+            this.carrera = carrera;
+            this.centesimas = centesimas;
+        }
+
+        public LocalDate getFecha() { return LocalDate.ofEpochDay(dia); }
+        public String getSemestre() { return semestre; }
+        public String getCarrera() { return carrera; }
+        public double getPromedio() { return centesimas / 100.0; }
+
+        /** true si dice lo mismo que otro punto (sin importar la fecha) */
+        boolean mismoValor(Punto p) {
+            return centesimas == p.centesimas && semestre.equals(p.semestre) && carrera.equals(p.carrera);
+        }
+
+        @Override public String toString() {
+            return getFecha() + "  " + carrera + " / " + semestre + "  " + String.format("%.2f", getPromedio());
+        }
+    }
+
+    /** Un alumno que pasó de un archivo de semestre a otro */
+    static final class Movimiento {
+        final File origen, destino;
+        final Alumno antes, despues;
+
+        Movimiento(File origen, Alumno antes, File destino, Alumno despues) {
+            this.origen = origen;
+            this.antes = antes;
+            this.destino = destino;
+            this.despues = despues;
+        }
+    }
+
+    /** Mayor baja de promedio de un alumno entre dos semestres seguidos */
+    public static final class Caida {
+        private final String matricula, carrera;
+        private final Punto antes, despues;
+
+        Caida(String matricula, String carrera, Punto antes, Punto despues) {
+            this.matricula = matricula;
+            this.carrera = carrera;
+            this.antes = antes;
+            this.despues = despues;
+        }
+
+        public String getMatricula() { return matricula; }
+        public String getCarrera() { return carrera; }
+        public Punto getAntes() { return antes; }
+        public Punto getDespues() { return despues; }
+        public double getDiferencia() { return (antes.centesimas - despues.centesimas) / 100.0; }
+
+        @Override public String toString() {
+            return String.format("%-12s %-20s %s %.2f -> %s %.2f  (-%.2f)", matricula, carrera, antes.semestre,
+                    antes.getPromedio(), despues.semestre, despues.getPromedio(), getDiferencia());
+        }
+    }
+
+    /** Promedio de una cohorte en un semestre */
+    public static final class PromedioCohorte {
+        private final String semestre;
+        private long alumnos;
+        private long sumaCentesimas;
+
+        PromedioCohorte(String semestre) {
+            this.semestre = semestre;
+        }
+
+        public String getSemestre() { return semestre; }
+        public long getAlumnos() { return alumnos; }
+        public double getMedia() { return alumnos == 0 ? Double.NaN : sumaCentesimas / 100.0 / alumnos; }
+
+        @Override public String toString() {
+            return String.format("%-18s %8d alumnos  media %.2f", semestre, alumnos, getMedia());
+        }
+    }
+
+    private static final String CARPETA = "Historial";
+    private static final String COLUMNAS = "historial.hcol";
+    private static final String PENDIENTES = "pendientes.log";
+    /** Pendientes que se están compactando (los nuevos van a otro pendientes.log) */
+    private static final String COMPACTANDO = "compactando.log";
+
+    private static final int MAGICO = 0x48434F4C;   // "HCOL"
+    private static final int VERSION = 1;
+    private static final int ALUMNOS_POR_BLOQUE = 1024;
+    private static final long COMPACTAR_DESDE = 1 << 20;
+
+    /** Un historial por carpeta Historial */
+    private static final Map<String, HistorialCalificaciones> historiales = new ConcurrentHashMap<>();
+
+    private final File carpeta;
+
+    /** Escritura de pendientes (los agregados se hacen con el monitor de la instancia) */
+    private OutputStream pendientes;
+
+    /** Lectores: lectura; cambiar el .hcol y borrar compactando.log: escritura */
+    private final ReentrantReadWriteLock candado = new ReentrantReadWriteLock();
+
+    /** Una compactación a la vez */
+    private final ReentrantLock compactacion = new ReentrantLock();
+    private volatile boolean compactando;
+
+    /** Índice de bloques del .hcol leído la última vez (se relee si cambia el archivo) */
+    private Indice indice;
+
+    private HistorialCalificaciones(File carpeta) {
+        this.carpeta = carpeta;
+    }
+
+    /** @return el historial de la carpeta de alumnos a la que pertenece un archivo de semestre */
+    static HistorialCalificaciones de(File semestre) {
+        return en(new File(BitacoraAuditoria.carpetaBase(semestre), CARPETA));
+    }
+
+    /** @return el historial de una carpeta de alumnos (se guarda junto a ella) */
+    public static HistorialCalificaciones deRaiz(File raiz) {
+        File base = raiz.getAbsoluteFile().getParentFile();
+        return en(new File(base == null ? raiz.getAbsoluteFile() : base, CARPETA));
+    }
+
+    /** @return el historial guardado en una carpeta Historial */
+    public static HistorialCalificaciones en(File carpeta) {
+        File c = carpeta.getAbsoluteFile();
+        return historiales.computeIfAbsent(c.getPath(), k -> new HistorialCalificaciones(c));
+    }
+
+    // -------------------------------
+    //           REGISTRAR
+    // -------------------------------
+
+    /**
+     * Registra una edición si cambió el promedio o el semestre. Si el
+     * historial no se puede escribir se avisa en consola sin interrumpir la
+     * edición (los datos del alumno ya se guardaron).
+     */
+    static void registrar(File semestre, Alumno antes, Alumno despues) {
+        List<Alumno[]> l = new ArrayList<>(1);
+        l.add(new Alumno[] { antes, despues });
+        registrar(semestre, l);
+    }
+
+    /**
+     * Registra varias ediciones de un archivo de semestre; los pares
+     * {antes, después} que son altas o bajas (un lado null) se ignoran.
+     */
+    static void registrar(File semestre, List<Alumno[]> cambios) {
+        int hoy = (int) LocalDate.now().toEpochDay();
+        StringBuilder sb = new StringBuilder();
+        for (Alumno[] x : cambios) {
+            if (x[0] == null || x[1] == null) continue;
+            par(sb, hoy, semestre, x[0], semestre, x[1]);
+        }
+        agregarSinError(semestre, sb);
+    }
+
+    /**
+     * Registra alumnos que pasaron a otro archivo de semestre: el punto
+     * anterior lleva la carrera y el semestre de origen y el nuevo los del
+     * destino. Se guardan en el historial del destino.
+     */
+    static void registrarMovimientos(List<Movimiento> movimientos) {
+        if (movimientos.isEmpty()) return;
+        int hoy = (int) LocalDate.now().toEpochDay();
+
+        // Normalmente todos van a la misma carpeta de alumnos
+        Map<HistorialCalificaciones, StringBuilder> porHistorial = new LinkedHashMap<>();
+        Map<HistorialCalificaciones, File> ejemplo = new HashMap<>();
+        for (Movimiento mv : movimientos) {
+            HistorialCalificaciones h = de(mv.destino);
+            ejemplo.putIfAbsent(h, mv.destino);
+            par(porHistorial.computeIfAbsent(h, k -> new StringBuilder()), hoy, mv.origen, mv.antes, mv.destino, mv.despues);
+        }
+        for (Map.Entry<HistorialCalificaciones, StringBuilder> e : porHistorial.entrySet())
+            agregarSinError(ejemplo.get(e.getKey()), e.getValue());
+    }
+
+    /** Agrega los dos puntos de un cambio si cambió el promedio, el semestre o la carrera */
+    private static void par(StringBuilder sb, int hoy, File archivoAntes, Alumno antes, File archivoDespues, Alumno despues) {
+        String sa = semestreDe(antes, semestreDeArchivo(archivoAntes));
+        String sd = semestreDe(despues, semestreDeArchivo(archivoDespues));
+        String ca = carreraDe(archivoAntes), cd = carreraDe(archivoDespues);
+        if (centesimas(antes) == centesimas(despues) && sa.equals(sd) && ca.equals(cd)) return;
+
+        String m = clave(despues.getMatricula());
+        linea(sb, m, hoy, sa, ca, centesimas(antes));
+        linea(sb, m, hoy, sd, cd, centesimas(despues));
+    }
+
+    private static void agregarSinError(File semestre, StringBuilder sb) {
+        if (sb.length() == 0) return;
+        try {
+            de(semestre).agregar(sb.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static String carreraDe(File semestre) {
+        return semestre.getAbsoluteFile().getParentFile().getName();
+    }
+
+    /** Nombre del archivo sin extensión ("Quinto Semestre.txtz" → "Quinto Semestre") */
+    private static String semestreDeArchivo(File semestre) {
+        String nombre = semestre.getName();
+        int punto = nombre.lastIndexOf('.');
+        return punto < 0 ? nombre : nombre.substring(0, punto);
+    }
+
+    private synchronized void agregar(byte[] datos) throws IOException {
+        if (pendientes == null) {
+            Files.createDirectories(carpeta.toPath());
+            pendientes = Files.newOutputStream(new File(carpeta, PENDIENTES).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        try {
+            pendientes.write(datos);
+        } catch (IOException e) {
+            cerrarPendientes();
+            throw e;
+        }
+
+        if (!compactando && new File(carpeta, PENDIENTES).length() >= COMPACTAR_DESDE) {
+            compactando = true;
+            Thread.ofVirtual().name("historial-compactar").start(() -> {
+                try {
+                    compactar();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    compactando = false;
+                }
+            });
+        }
+    }
+
+    private void cerrarPendientes() {
+        try {
+            if (pendientes != null) pendientes.close();
+        } catch (IOException ignorada) {
+            // Se vuelve a abrir en el siguiente registro
+        }
+        pendientes = null;
+    }
+
+    private static void linea(StringBuilder sb, String matricula, int dia, String semestre, String carrera, int c) {
+        sb.append(BitacoraAuditoria.escapar(matricula)).append('\t').append(dia).append('\t')
+          .append(BitacoraAuditoria.escapar(semestre)).append('\t').append(BitacoraAuditoria.escapar(carrera))
+          .append('\t').append(c).append('\n');
+    }
+
+    private static String semestreDe(Alumno a, String porOmision) {
+        String s = a.getSemestre();
+        return s == null || s.trim().isEmpty() ? porOmision : s.trim();
+    }
+
+    private static int centesimas(Alumno a) {
+        return (int) Math.round(a.getPromedio() * 100);
+    }
+
+    private static String clave(String matricula) {
+        return matricula.trim().toLowerCase();
+    }
+
+    // -------------------------------
+    //           CONSULTAS
+    // -------------------------------
+
+    /** @return todos los puntos de un alumno, del más antiguo al más reciente */
+    public List<Punto> historia(String matricula) throws IOException {
+        String m = clave(matricula);
+        candado.readLock().lock();
+        try (FileChannel canal = abrirColumnas()) {
+            NavigableMap<String, List<Punto>> pend = leerPendientes(canal);
+            Indice ind = indice(canal);
+
+            List<Punto> res = new ArrayList<>();
+            if (ind != null && ind.primeras.length > 0) {
+                int b = bloqueDe(ind, m);
+                for (Map.Entry<String, List<Punto>> e : alumnosDeBloque(canal, ind, b, Collections.emptyNavigableMap()))
+                    if (e.getKey().equals(m)) res.addAll(e.getValue());
+            }
+            List<Punto> p = pend.get(m);
+            if (p != null) res.addAll(p);
+            return limpiar(res);
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    /** @return un punto por semestre cursado: el último promedio que tuvo en cada uno */
+    public List<Punto> trayectoria(String matricula) throws IOException {
+        return trayectoria(historia(matricula));
+    }
+
+    /** @return la trayectoria a partir de la historia completa */
+    public static List<Punto> trayectoria(List<Punto> historia) {
+        List<Punto> res = new ArrayList<>();
+        for (Punto p : historia) {
+            Punto ultimo = res.isEmpty() ? null : res.get(res.size() - 1);
+            if (ultimo != null && ultimo.semestre.equals(p.semestre) && ultimo.carrera.equals(p.carrera))
+                res.set(res.size() - 1, p);
+            else
+                res.add(p);
+        }
+        return res;
+    }
+
+    /**
+     * Las K mayores bajas de promedio entre dos semestres seguidos.
+     *
+     * @param carrera solo alumnos cuyo último punto es de esa carrera (null = todos)
+     */
+    public List<Caida> mayoresCaidas(String carrera, int k) throws IOException {
+        Comparator<Caida> orden = Comparator.comparingDouble(Caida::getDiferencia);
+        PriorityQueue<Caida> mejores;
+        try (Stream<Map.Entry<String, List<Punto>>> s = alumnos()) {
+            mejores = s.parallel().map(e -> {
+                List<Punto> t = trayectoria(e.getValue());
+                if (t.size() < 2 || (carrera != null && !carrera.equalsIgnoreCase(t.get(t.size() - 1).carrera)))
+                    return null;
+                Caida peor = null;
+                for (int i = 1; i < t.size(); i++) {
+                    Caida c = new Caida(e.getKey(), t.get(i).carrera, t.get(i - 1), t.get(i));
+                    if (c.getDiferencia() > 0 && (peor == null || c.getDiferencia() > peor.getDiferencia())) peor = c;
+                }
+                return peor;
+            }).filter(c -> c != null).collect(() -> new PriorityQueue<>(orden), (q, c) -> {
+                q.add(c);
+                if (q.size() > k) q.poll();
+            }, (q1, q2) -> {
+                for (Caida c : q2) {
+                    q1.add(c);
+                    if (q1.size() > k) q1.poll();
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        List<Caida> res = new ArrayList<>(mejores);
+        res.sort(orden.reversed());
+        return res;
+    }
+
+    /**
+     * Promedio de una cohorte en cada semestre: de cada alumno se toma el
+     * último promedio que tuvo en ese semestre.
+     *
+     * @param carrera solo alumnos cuyo último punto es de esa carrera (null = todos)
+     * @return un renglón por semestre, en el orden de la carrera
+     */
+    public List<PromedioCohorte> promedioPorSemestre(String carrera) throws IOException {
+        Map<String, PromedioCohorte> suma;
+        try (Stream<Map.Entry<String, List<Punto>>> s = alumnos()) {
+            suma = s.parallel().collect(HashMap::new, (m, e) -> {
+                List<Punto> t = trayectoria(e.getValue());
+                if (t.isEmpty() || (carrera != null && !carrera.equalsIgnoreCase(t.get(t.size() - 1).carrera))) return;
+                for (Punto p : t) {
+                    PromedioCohorte c = m.computeIfAbsent(p.semestre, PromedioCohorte::new);
+                    c.alumnos++;
+                    c.sumaCentesimas += p.centesimas;
+                }
+            }, (a, b) -> b.forEach((sem, c) -> {
+                PromedioCohorte x = a.computeIfAbsent(sem, PromedioCohorte::new);
+                x.alumnos += c.alumnos;
+                x.sumaCentesimas += c.sumaCentesimas;
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return ordenar(suma.values());
+    }
+
+    /** Junta los promedios por semestre de varios historiales (varias carpetas de alumnos) */
+    public static List<PromedioCohorte> combinar(List<List<PromedioCohorte>> partes) {
+        Map<String, PromedioCohorte> suma = new HashMap<>();
+        for (List<PromedioCohorte> l : partes) {
+            for (PromedioCohorte c : l) {
+                PromedioCohorte x = suma.computeIfAbsent(c.semestre, PromedioCohorte::new);
+                x.alumnos += c.alumnos;
+                x.sumaCentesimas += c.sumaCentesimas;
+            }
+        }
+        return ordenar(suma.values());
+    }
+
+    private static List<PromedioCohorte> ordenar(Collection<PromedioCohorte> c) {
+        List<PromedioCohorte> res = new ArrayList<>(c);
+        res.sort(Comparator.comparingInt((PromedioCohorte p) -> {
+            int i = PromocionSemestres.posicion(p.semestre);
+            return i < 0 ? Integer.MAX_VALUE : i;
+        }).thenComparing(p -> p.semestre));
+        return res;
+    }
+
+    /** @return cantidad de alumnos con historial y de puntos guardados */
+    public long[] tamano() throws IOException {
+        long[] res = new long[2];
+        try (Stream<Map.Entry<String, List<Punto>>> s = alumnos()) {
+            s.forEach(e -> {
+                res[0]++;
+                res[1] += e.getValue().size();
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return res;
+    }
+
+    /**
+     * Todos los alumnos con su historia completa, bloque por bloque (los
+     * bloques se pueden decodificar en paralelo). El Stream debe consumirse
+     * completo o cerrarse: mientras tanto se mantiene el candado de lectura.
+     */
+    private Stream<Map.Entry<String, List<Punto>>> alumnos() throws IOException {
+        candado.readLock().lock();
+        FileChannel canal = null;
+        try {
+            canal = abrirColumnas();
+            NavigableMap<String, List<Punto>> pend = leerPendientes(canal);
+            Indice ind = indice(canal);
+
+            Stream<Map.Entry<String, List<Punto>>> s;
+            if (ind == null || ind.primeras.length == 0) {
+                s = pend.entrySet().stream().map(e -> entrada(e.getKey(), limpiar(new ArrayList<>(e.getValue()))));
+            } else {
+                FileChannel c = canal;
+                s = IntStream.range(0, ind.primeras.length).boxed().flatMap(b -> {
+                    try {
+                        return alumnosDeBloque(c, ind, b, pend).stream();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            FileChannel cerrar = canal;
+            return s.onClose(() -> {
+                try {
+                    if (cerrar != null) cerrar.close();
+                } catch (IOException ignorada) {
+                    // Solo lectura
+                } finally {
+                    candado.readLock().unlock();
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            if (canal != null) canal.close();
+            candado.readLock().unlock();
+            throw e;
+        }
+    }
+
+    // -------------------------------
+    //          COMPACTACIÓN
+    // -------------------------------
+
+    /**
+     * Pasa los pendientes al archivo por columnas. Normalmente se hace sola
+     * en segundo plano; los registros nuevos no esperan.
+     */
+    public void compactar() throws IOException {
+        compactacion.lock();
+        try {
+            File comp = new File(carpeta, COMPACTANDO);
+            File pend = new File(carpeta, PENDIENTES);
+
+            // Si quedó un compactando.log de una vez anterior, se termina ese primero.
+            // Con el candado de escritura ningún lector ve el cambio de nombre a medias.
+            candado.writeLock().lock();
+            try {
+                synchronized (this) {
+                    if (!comp.exists()) {
+                        if (!pend.exists() || pend.length() == 0) return;
+                        cerrarPendientes();
+                        mover(pend, comp);
+                    }
+                }
+            } finally {
+                candado.writeLock().unlock();
+            }
+
+            byte[] datos = Files.readAllBytes(comp.toPath());
+            long[] marca = marca(datos);
+            File hcol = new File(carpeta, COLUMNAS);
+            File tmp = new File(carpeta, COLUMNAS + ".tmp");
+            Files.deleteIfExists(tmp.toPath());
+
+            try (FileChannel canal = abrirColumnas()) {
+                Indice ind = indice(canal);
+                // Una caída entre el cambio de archivo y el borrado deja el compactando ya incluido
+                if (ind == null || ind.marca[0] != marca[0] || ind.marca[1] != marca[1]) {
+                    NavigableMap<String, List<Punto>> nuevos = new TreeMap<>();
+                    leerLineas(datos, nuevos);
+                    escribirColumnas(tmp, canal, ind, nuevos, marca);
+                }
+            }
+
+            candado.writeLock().lock();
+            try {
+                if (tmp.exists()) mover(tmp, hcol);
+                Files.deleteIfExists(comp.toPath());
+                indice = null;
+            } finally {
+                candado.writeLock().unlock();
+            }
+        } finally {
+            compactacion.unlock();
+        }
+    }
+
+    /** Mezcla los bloques actuales con los pendientes, alumno por alumno, en un .hcol nuevo */
+    private void escribirColumnas(File destino, FileChannel canal, Indice ind,
+                                  NavigableMap<String, List<Punto>> nuevos, long[] marca) throws IOException {
+        List<String> primeras = new ArrayList<>();
+        List<long[]> ubicaciones = new ArrayList<>();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(destino.toPath())))) {
+            out.writeInt(MAGICO);
+            out.writeInt(VERSION);
+            out.writeLong(marca[0]);
+            out.writeLong(marca[1]);
+            long pos = 24;
+
+            List<Map.Entry<String, List<Punto>>> bloque = new ArrayList<>(ALUMNOS_POR_BLOQUE);
+            int n = ind == null ? 0 : ind.primeras.length;
+            if (n == 0) {
+                List<Map.Entry<String, List<Punto>>> todos = new ArrayList<>();
+                for (Map.Entry<String, List<Punto>> e : nuevos.entrySet())
+                    todos.add(entrada(e.getKey(), limpiar(new ArrayList<>(e.getValue()))));
+                pos = vaciarTodos(out, todos, bloque, primeras, ubicaciones, pos);
+            } else {
+                for (int b = 0; b < n; b++)
+                    pos = vaciarTodos(out, alumnosDeBloque(canal, ind, b, nuevos), bloque, primeras, ubicaciones, pos);
+            }
+            if (!bloque.isEmpty()) pos = escribirBloque(out, bloque, primeras, ubicaciones, pos);
+
+            // Índice al final y su posición en los últimos 8 bytes
+            out.writeInt(primeras.size());
+            for (int i = 0; i < primeras.size(); i++) {
+                out.writeUTF(primeras.get(i));
+                out.writeLong(ubicaciones.get(i)[0]);
+                out.writeInt((int) ubicaciones.get(i)[1]);
+            }
+            out.writeLong(pos);
+        }
+    }
+
+    private long vaciarTodos(DataOutputStream out, Iterable<Map.Entry<String, List<Punto>>> alumnos,
+                             List<Map.Entry<String, List<Punto>>> bloque, List<String> primeras,
+                             List<long[]> ubicaciones, long pos) throws IOException {
+        for (Map.Entry<String, List<Punto>> e : alumnos) {
+            if (e.getValue().isEmpty()) continue;
+            bloque.add(e);
+            if (bloque.size() == ALUMNOS_POR_BLOQUE) pos = escribirBloque(out, bloque, primeras, ubicaciones, pos);
+        }
+        return pos;
+    }
+
+    private static long escribirBloque(DataOutputStream out, List<Map.Entry<String, List<Punto>>> bloque,
+                                       List<String> primeras, List<long[]> ubicaciones, long pos) throws IOException {
+        byte[] b = codificar(bloque);
+        out.write(b);
+        primeras.add(bloque.get(0).getKey());
+        ubicaciones.add(new long[] { pos, b.length });
+        bloque.clear();
+        return pos + b.length;
+    }
+
+    // -------------------------------
+    //        FORMATO POR COLUMNAS
+    // -------------------------------
+
+    /** Índice de bloques de un .hcol */
+    private static final class Indice {
+        long modificado, tamano;
+        /** {crc, largo} del compactando.log que ya incluye */
+        long[] marca;
+        String[] primeras;
+        long[] posiciones;
+        int[] largos;
+    }
+
+    /** @return el .hcol abierto para leer, o null si no existe */
+    private FileChannel abrirColumnas() throws IOException {
+        File f = new File(carpeta, COLUMNAS);
+        return f.exists() ? FileChannel.open(f.toPath(), StandardOpenOption.READ) : null;
+    }
+
+    private synchronized Indice indice(FileChannel canal) throws IOException {
+        if (canal == null) return null;
+        File f = new File(carpeta, COLUMNAS);
+        if (indice != null && indice.modificado == f.lastModified() && indice.tamano == canal.size()) return indice;
+
+        Indice ind = new Indice();
+        ind.modificado = f.lastModified();
+        ind.tamano = canal.size();
+
+        ByteBuffer cabecera = leer(canal, 0, 24);
+        if (cabecera.getInt() != MAGICO || cabecera.getInt() != VERSION)
+            throw new IOException("Historial con formato desconocido: " + f);
+        ind.marca = new long[] { cabecera.getLong(), cabecera.getLong() };
+
+        long inicio = leer(canal, ind.tamano - 8, 8).getLong();
+        ByteBuffer bb = leer(canal, inicio, (int) (ind.tamano - 8 - inicio));
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bb.array()));
+        int n = in.readInt();
+        ind.primeras = new String[n];
+        ind.posiciones = new long[n];
+        ind.largos = new int[n];
+        for (int i = 0; i < n; i++) {
+            ind.primeras[i] = in.readUTF();
+            ind.posiciones[i] = in.readLong();
+            ind.largos[i] = in.readInt();
+        }
+        indice = ind;
+        return ind;
+    }
+
+    private static ByteBuffer leer(FileChannel canal, long pos, int n) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(n);
+        while (bb.hasRemaining()) {
+            if (canal.read(bb, pos + bb.position()) < 0) throw new IOException("Historial incompleto");
+        }
+        bb.flip();
+        return bb;
+    }
+
+    /** @return el último bloque cuya primera matrícula es menor o igual */
+    private static int bloqueDe(Indice ind, String m) {
+        int lo = 0, hi = ind.primeras.length - 1, res = 0;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ind.primeras[mid].compareTo(m) <= 0) {
+                res = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Alumnos de un bloque, mezclados con los pendientes que caen en su rango
+     * (entre su primera matrícula y la del bloque siguiente), en orden.
+     */
+    private static List<Map.Entry<String, List<Punto>>> alumnosDeBloque(FileChannel canal, Indice ind, int b,
+            NavigableMap<String, List<Punto>> pend) throws IOException {
+        List<Map.Entry<String, List<Punto>>> guardados = decodificar(leer(canal, ind.posiciones[b], ind.largos[b]));
+
+        String desde = b == 0 ? null : ind.primeras[b];
+        String hasta = b + 1 < ind.primeras.length ? ind.primeras[b + 1] : null;
+        NavigableMap<String, List<Punto>> rango = pend;
+        if (desde != null) rango = rango.tailMap(desde, true);
+        if (hasta != null) rango = rango.headMap(hasta, false);
+        if (rango.isEmpty()) return guardados;
+
+        List<Map.Entry<String, List<Punto>>> res = new ArrayList<>(guardados.size() + rango.size());
+        Map<String, List<Punto>> porMatricula = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Punto>> e : guardados) porMatricula.put(e.getKey(), e.getValue());
+        for (Map.Entry<String, List<Punto>> e : rango.entrySet())
+            porMatricula.computeIfAbsent(e.getKey(), k -> new ArrayList<>()).addAll(e.getValue());
+
+        TreeMap<String, List<Punto>> ordenados = new TreeMap<>(porMatricula);
+        for (Map.Entry<String, List<Punto>> e : ordenados.entrySet())
+            res.add(entrada(e.getKey(), limpiar(new ArrayList<>(e.getValue()))));
+        return res;
+    }
+
+    private static byte[] codificar(List<Map.Entry<String, List<Punto>>> alumnos) {
+        Bytes o = new Bytes();
+        o.varint(alumnos.size());
+
+        String previa = "";
+        for (Map.Entry<String, List<Punto>> e : alumnos) {
+            String m = e.getKey();
+            int comun = 0, max = Math.min(previa.length(), m.length());
+            while (comun < max && previa.charAt(comun) == m.charAt(comun)) comun++;
+            o.varint(comun);
+            o.texto(m.substring(comun));
+            previa = m;
+        }
+        for (Map.Entry<String, List<Punto>> e : alumnos) o.varint(e.getValue().size());
+
+        Map<String, Integer> textos = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Punto>> e : alumnos) {
+            for (Punto p : e.getValue()) {
+                textos.putIfAbsent(p.semestre, textos.size());
+                textos.putIfAbsent(p.carrera, textos.size());
+            }
+        }
+        o.varint(textos.size());
+        for (String t : textos.keySet()) o.texto(t);
+
+        for (Map.Entry<String, List<Punto>> e : alumnos) {
+            int previo = 0;
+            for (Punto p : e.getValue()) {
+                o.varint(p.dia - previo);
+                previo = p.dia;
+            }
+        }
+        for (Map.Entry<String, List<Punto>> e : alumnos)
+            for (Punto p : e.getValue()) o.varint(textos.get(p.semestre));
+        for (Map.Entry<String, List<Punto>> e : alumnos)
+            for (Punto p : e.getValue()) o.varint(textos.get(p.carrera));
+        for (Map.Entry<String, List<Punto>> e : alumnos) {
+            int previo = 0;
+            for (Punto p : e.getValue()) {
+                o.zigzag(p.centesimas - previo);
+                previo = p.centesimas;
+            }
+        }
+        return o.toByteArray();
+    }
+
+    private static List<Map.Entry<String, List<Punto>>> decodificar(ByteBuffer bb) {
+        int n = varint(bb);
+        String[] matriculas = new String[n];
+        String previa = "";
+        for (int i = 0; i < n; i++) {
+            int comun = varint(bb);
+            previa = previa.substring(0, comun) + texto(bb);
+            matriculas[i] = previa;
+        }
+        int[] cuantos = new int[n];
+        int total = 0;
+        for (int i = 0; i < n; i++) total += cuantos[i] = varint(bb);
+
+        String[] textos = new String[varint(bb)];
+        for (int i = 0; i < textos.length; i++) textos[i] = texto(bb);
+
+        int[] dias = new int[total], semestres = new int[total], carreras = new int[total], cent = new int[total];
+        for (int i = 0, k = 0; i < n; i++) {
+            int previo = 0;
+            for (int j = 0; j < cuantos[i]; j++, k++) previo = dias[k] = previo + varint(bb);
+        }
+        for (int k = 0; k < total; k++) semestres[k] = varint(bb);
+        for (int k = 0; k < total; k++) carreras[k] = varint(bb);
+        for (int i = 0, k = 0; i < n; i++) {
+            int previo = 0;
+            for (int j = 0; j < cuantos[i]; j++, k++) previo = cent[k] = previo + zigzag(bb);
+        }
+
+        List<Map.Entry<String, List<Punto>>> res = new ArrayList<>(n);
+        for (int i = 0, k = 0; i < n; i++) {
+            List<Punto> puntos = new ArrayList<>(cuantos[i]);
+            for (int j = 0; j < cuantos[i]; j++, k++)
+                puntos.add(new Punto(dias[k], textos[semestres[k]], textos[carreras[k]], cent[k]));
+            res.add(entrada(matriculas[i], puntos));
+        }
+        return res;
+    }
+
+    /** Salida en memoria con enteros de longitud variable */
+    private static final class Bytes extends ByteArrayOutputStream {
+        void varint(int v) {
+            while ((v & ~0x7F) != 0) {
+                write((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            write(v);
+        }
+
+        void zigzag(int v) {
+            varint((v << 1) ^ (v >> 31));
+        }
+
+        void texto(String s) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            varint(b.length);
+            write(b, 0, b.length);
+        }
+    }
+
+    private static int varint(ByteBuffer bb) {
+        int v = 0, corrimiento = 0;
+        byte b;
+        do {
+            b = bb.get();
+            v |= (b & 0x7F) << corrimiento;
+            corrimiento += 7;
+        } while ((b & 0x80) != 0);
+        return v;
+    }
+
+    private static int zigzag(ByteBuffer bb) {
+        int v = varint(bb);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static String texto(ByteBuffer bb) {
+        byte[] b = new byte[varint(bb)];
+        bb.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // -------------------------------
+    //           PENDIENTES
+    // -------------------------------
+
+    /**
+     * Lee compactando.log (si el .hcol aún no lo incluye) y pendientes.log.
+     * Una última línea sin terminar (se está escribiendo) se ignora.
+     */
+    private NavigableMap<String, List<Punto>> leerPendientes(FileChannel canal) throws IOException {
+        NavigableMap<String, List<Punto>> res = new TreeMap<>();
+        File comp = new File(carpeta, COMPACTANDO);
+        if (comp.exists()) {
+            byte[] datos = Files.readAllBytes(comp.toPath());
+            Indice ind = indice(canal);
+            long[] marca = marca(datos);
+            if (ind == null || ind.marca[0] != marca[0] || ind.marca[1] != marca[1]) leerLineas(datos, res);
+        }
+        File pend = new File(carpeta, PENDIENTES);
+        if (pend.exists()) leerLineas(Files.readAllBytes(pend.toPath()), res);
+        return res;
+    }
+
+    private static void leerLineas(byte[] datos, Map<String, List<Punto>> destino) {
+        int fin = datos.length;
+        while (fin > 0 && datos[fin - 1] != '\n') fin--;
+        for (String l : new String(datos, 0, fin, StandardCharsets.UTF_8).split("\n")) {
+            String[] c = l.split("\t", -1);
+            if (c.length != 5) continue;
+            try {
+                destino.computeIfAbsent(BitacoraAuditoria.desescapar(c[0]), k -> new ArrayList<>())
+                       .add(new Punto(Integer.parseInt(c[1]), BitacoraAuditoria.desescapar(c[2]),
+                               BitacoraAuditoria.desescapar(c[3]), Integer.parseInt(c[4])));
+            } catch (NumberFormatException ignorada) {
+                // Línea dañada
+            }
+        }
+    }
+
+    /** {crc, largo} de unos pendientes, para saber si ya se incluyeron */
+    private static long[] marca(byte[] datos) {
+        CRC32 crc = new CRC32();
+        crc.update(datos);
+        return new long[] { crc.getValue(), datos.length };
+    }
+
+    // -------------------------------
+    //           AUXILIARES
+    // -------------------------------
+
+    /** Ordena por fecha (estable) y quita puntos seguidos con el mismo valor */
+    private static List<Punto> limpiar(List<Punto> puntos) {
+        puntos.sort(Comparator.comparingInt(p -> p.dia));
+        List<Punto> res = new ArrayList<>(puntos.size());
+        for (Punto p : puntos)
+            if (res.isEmpty() || !res.get(res.size() - 1).mismoValor(p)) res.add(p);
+        return res;
+    }
+
+    private static Map.Entry<String, List<Punto>> entrada(String matricula, List<Punto> puntos) {
+        return new AbstractMap.SimpleImmutableEntry<>(matricula, puntos);
+    }
+
+    private static void mover(File origen, File destino) throws IOException {
+        try {
+            Files.move(origen.toPath(), destino.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(origen.toPath(), destino.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
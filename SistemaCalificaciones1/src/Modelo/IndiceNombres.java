@@ -0,0 +1,854 @@
+package Modelo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Índice de trigramas sobre los nombres de TODOS los archivos de semestre,
+ * para búsquedas sin acentos y tolerantes a errores de escritura.
+ *
+ * Los nombres se normalizan (sin acentos, minúsculas, solo letras y
+ * números). Cada archivo tiene su propio índice en memoria, así cuando un
+ * archivo cambia solo se vuelve a indexar ese archivo. El índice no guarda
+ * las líneas: solo las listas de filas por trigrama, la fila de cada
+ * matrícula y dónde empieza cada fila en el .txt. Las filas candidatas se
+ * leen del archivo al buscar. Se guarda en disco (en segundo plano, un
+ * rato después del último cambio) para no releer todo el árbol al iniciar
+ * el programa.
+ *
+ * Los candidatos que comparten trigramas con la búsqueda se ordenan por
+ * distancia de edición (acotada) entre las palabras buscadas y las del nombre.
+ */
+public class IndiceNombres {
+
+    /** Versión del formato del archivo del índice */
+    private static final int VERSION_FORMATO = 2;
+
+    /**
+     * Cada cuánto se revisa la fecha/tamaño de todos los archivos como
+     * máximo. Los cambios del programa y los que ve MonitorCarpetas llegan
+     * antes por RegistroVersiones; esta revisión es solo una red de seguridad.
+     */
+    private static final long INTERVALO_VALIDACION_MS = 60_000;
+
+    /** Espera desde el último cambio antes de guardar el índice en disco */
+    private static final long ESPERA_GUARDADO_MS = 5_000;
+
+    /** Un solo hilo de fondo guarda los índices de todas las raíces */
+    private static final ScheduledExecutorService hiloGuardado = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "guardar-indice-nombres");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    /** Un índice por carpeta raíz */
+    private static final Map<String, IndiceNombres> instancias = new ConcurrentHashMap<>();
+
+    private final File raiz;
+    private final File archivoIndice;
+
+    /** Índice de cada archivo de semestre, por clave de RegistroVersiones */
+    private final Map<String, ArchivoIndexado> archivos = new ConcurrentHashMap<>();
+
+    /** Archivos avisados por RegistroVersiones que deben reindexarse */
+    private final Set<String> sucios = ConcurrentHashMap.newKeySet();
+
+    private boolean cargado = false;
+    private long ultimaValidacion = 0;
+
+    /** true mientras hay un guardado programado que todavía no empieza */
+    private final AtomicBoolean guardadoPendiente = new AtomicBoolean();
+
+    private IndiceNombres(File raiz, File carpetaIndices) {
+        this.raiz = raiz;
+        this.archivoIndice = new File(carpetaIndices, "nombres.idx");
+        RegistroVersiones.agregarOyente(f -> {
+            if (esDeLaRaiz(f)) sucios.add(RegistroVersiones.clave(f));
+        });
+    }
+
+    /** @return true si el archivo es un semestre de una carrera de esta raíz */
+    private boolean esDeLaRaiz(File f) {
+        File carrera = f.getAbsoluteFile().getParentFile();
+        return GestorArchivos.esArchivoDeSemestre(f) && carrera != null && carrera.getParentFile() != null
+                && RegistroVersiones.clave(carrera.getParentFile()).equals(RegistroVersiones.clave(raiz));
+    }
+
+    /**
+     * Devuelve el índice compartido de una carpeta raíz.
+     *
+     * @param raiz carpeta de alumnos
+     * @param carpetaIndices carpeta donde se guarda el índice
+     */
+    public static IndiceNombres para(String raiz, String carpetaIndices) {
+        File r = new File(raiz).getAbsoluteFile();
+        return instancias.computeIfAbsent(RegistroVersiones.clave(r),
+                k -> new IndiceNombres(r, new File(carpetaIndices).getAbsoluteFile()));
+    }
+
+    /**
+     * Devuelve el índice de una carpeta raíz solo si ya existe (en memoria
+     * o guardado en disco); null si habría que construirlo leyendo todo.
+     */
+    public static IndiceNombres existente(String raiz, String carpetaIndices) {
+        IndiceNombres i = instancias.get(RegistroVersiones.clave(new File(raiz).getAbsoluteFile()));
+        if (i != null) return i;
+        return new File(carpetaIndices, "nombres.idx").exists() ? para(raiz, carpetaIndices) : null;
+    }
+
+    // -------------------------------
+    //         NORMALIZACIÓN
+    // -------------------------------
+
+    /**
+     * Quita acentos, pasa a minúsculas y deja solo letras, números y un
+     * espacio entre palabras. "José  Pérez" → "jose perez".
+     */
+    public static String normalizar(String s) {
+        if (s == null) return "";
+        String sinAcentos = Normalizer.normalize(s, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+        return sinAcentos.toLowerCase().replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    /** Trigramas de cada palabra, con "$" marcando inicio y fin */
+    private static Set<String> trigramas(String normalizado) {
+        Set<String> res = new LinkedHashSet<>();
+        for (String palabra : normalizado.split(" ")) {
+            if (palabra.isEmpty()) continue;
+            String p = "$" + palabra + "$";
+            for (int i = 0; i + 3 <= p.length(); i++)
+                res.add(p.substring(i, i + 3));
+        }
+        return res;
+    }
+
+    /** Trigramas de cada palabra y de sus variantes con dos letras vecinas intercambiadas */
+    private static Set<String> trigramasConTransposiciones(String[] palabras) {
+        Set<String> res = new LinkedHashSet<>();
+        for (String p : palabras) {
+            res.addAll(trigramas(p));
+            char[] c = p.toCharArray();
+            for (int i = 0; i + 1 < c.length; i++) {
+                char t = c[i]; c[i] = c[i + 1]; c[i + 1] = t;
+                res.addAll(trigramas(new String(c)));
+                c[i + 1] = c[i]; c[i] = t;
+            }
+        }
+        return res;
+    }
+
+    // -------------------------------
+    //      ÍNDICE DE UN ARCHIVO
+    // -------------------------------
+
+    /**
+     * Referencias a las filas de un archivo: filas por trigrama, fila de cada
+     * matrícula y, en un .txt, posición y largo en bytes de cada fila.
+     */
+    private static final class ArchivoIndexado {
+        final long modificado;
+        final long tamano;
+        final int filas;
+        /** Byte donde empieza cada fila (null en un .txtz: se recorre) */
+        final long[] posiciones;
+        final int[] largos;
+        final Map<String, int[]> trigramas;
+        final Map<String, Integer> matriculas;
+
+        ArchivoIndexado(long modificado, long tamano, int filas, long[] posiciones, int[] largos,
+                        Map<String, int[]> trigramas, Map<String, Integer> matriculas) {
+            this.modificado = modificado;
+            this.tamano = tamano;
+            this.filas = filas;
+            this.posiciones = posiciones;
+            this.largos = largos;
+            this.trigramas = trigramas;
+            this.matriculas = matriculas;
+        }
+
+        /** Indexa las líneas leídas; los nombres normalizados no se conservan */
+        static ArchivoIndexado de(long modificado, long tamano, List<String> lineas, long[] posiciones, int[] largos) {
+            Map<String, Integer> matriculas = new HashMap<>();
+
+            // Primera pasada: trigramas de cada fila y cuántas filas tiene cada trigrama
+            String[][] porFila = new String[lineas.size()][];
+            Map<String, int[]> conteo = new HashMap<>();
+            for (int i = 0; i < porFila.length; i++) {
+                String linea = lineas.get(i);
+                matriculas.putIfAbsent(ArchivoComprimido.matriculaDe(linea), i);
+                porFila[i] = trigramas(normalizar(nombreDe(linea))).toArray(new String[0]);
+                for (String t : porFila[i])
+                    conteo.computeIfAbsent(t, k -> new int[1])[0]++;
+            }
+
+            // Segunda pasada: arreglos de filas del tamaño exacto (sin objetos Integer)
+            Map<String, int[]> trigramas = new HashMap<>();
+            for (Map.Entry<String, int[]> e : conteo.entrySet()) {
+                trigramas.put(e.getKey(), new int[e.getValue()[0]]);
+                e.getValue()[0] = 0;
+            }
+            for (int i = 0; i < porFila.length; i++)
+                for (String t : porFila[i])
+                    trigramas.get(t)[conteo.get(t)[0]++] = i;
+
+            return new ArchivoIndexado(modificado, tamano, porFila.length, posiciones, largos, trigramas, matriculas);
+        }
+
+        /** @return true si el archivo en disco sigue como cuando se indexó */
+        boolean vigente(File semestre) {
+            File fisico = new GestorArchivos(semestre.getPath()).archivoEnDisco();
+            return modificado == fisico.lastModified() && tamano == fisico.length();
+        }
+    }
+
+    private static String nombreDe(String linea) {
+        int p = linea.indexOf('|');
+        return p < 0 ? linea : linea.substring(0, p);
+    }
+
+    // -------------------------------
+    //          BÚSQUEDA
+    // -------------------------------
+
+    /** Coincidencia encontrada con su puntaje (menor es mejor) */
+    private static final class Candidato {
+        final String linea;
+        final int distancia;
+        final int comunes;
+
+        Candidato(String linea, int distancia, int comunes) {
+            this.linea = linea;
+            this.distancia = distancia;
+            this.comunes = comunes;
+        }
+    }
+
+    /** Menor distancia primero; a igual distancia, más trigramas en común */
+    private static final Comparator<Candidato> ORDEN = (a, b) -> a.distancia != b.distancia
+            ? Integer.compare(a.distancia, b.distancia)
+            : Integer.compare(b.comunes, a.comunes);
+
+    /**
+     * Busca alumnos por matrícula exacta o por nombre aproximado en todos los archivos.
+     *
+     * @param texto texto escrito por el usuario
+     * @param limite cantidad máxima de resultados
+     * @return alumnos ordenados del más al menos parecido
+     */
+    public List<Alumno> buscar(String texto, int limite) {
+        return buscar(texto, limite, null);
+    }
+
+    /**
+     * Igual que buscar(texto, limite) pero limitado a un solo archivo.
+     *
+     * @param soloArchivo archivo de semestre (null = todos)
+     */
+    public List<Alumno> buscar(String texto, int limite, File soloArchivo) {
+        return aAlumnos(candidatos(texto, soloArchivo), limite);
+    }
+
+    /**
+     * Busca en los índices de varias carpetas raíz (uno por disco) al mismo
+     * tiempo y ordena todos los resultados juntos, como si fuera un solo
+     * índice.
+     */
+    public static List<Alumno> buscar(List<IndiceNombres> indices, String texto, int limite) {
+        if (indices.size() == 1) return indices.get(0).buscar(texto, limite);
+
+        List<Candidato> todos = new ArrayList<>();
+        for (List<Candidato> l : indices.parallelStream().map(i -> i.candidatos(texto, null)).toList())
+            todos.addAll(l);
+        todos.sort(ORDEN);
+        return aAlumnos(todos, limite);
+    }
+
+    /**
+     * Líneas de un archivo ubicadas con el índice: la de una matrícula exacta
+     * y/o las cuyo nombre normalizado contiene un fragmento (coincidencia
+     * exacta, sin tolerar errores). Del archivo solo se leen las filas
+     * candidatas.
+     *
+     * @param matricula matrícula exacta (null = cualquiera)
+     * @param fragmento texto que debe contener el nombre (null = cualquiera)
+     * @return líneas en el orden del archivo, o null si el archivo no está
+     *         indexado con su contenido actual o el fragmento es muy corto
+     *         para acotar las filas
+     */
+    List<String> lineas(File archivo, String matricula, String fragmento) {
+        actualizar();
+        ArchivoIndexado ai = archivos.get(RegistroVersiones.clave(archivo));
+        if (ai == null || !ai.vigente(archivo)) return null;
+
+        String q = fragmento == null ? null : normalizar(fragmento);
+        int[] candidatas = null;
+        if (matricula != null) {
+            Integer fila = ai.matriculas.get(matricula.trim().toLowerCase());
+            candidatas = fila == null ? new int[0] : new int[] { fila };
+        } else {
+            // Toda fila que contiene el fragmento tiene los trigramas interiores
+            // de sus palabras: basta revisar la lista más corta de ellos
+            for (String palabra : q.split(" ")) {
+                for (int i = 0; i + 3 <= palabra.length(); i++) {
+                    int[] filas = ai.trigramas.get(palabra.substring(i, i + 3));
+                    if (filas == null) return new ArrayList<>();
+                    if (candidatas == null || filas.length < candidatas.length) candidatas = filas;
+                }
+            }
+            // Palabras de menos de 3 letras: quien llama recorre el archivo
+            if (candidatas == null) return null;
+        }
+
+        String[] lineas = leerFilas(archivo, ai, candidatas);
+        if (lineas == null) return null;
+
+        List<String> res = new ArrayList<>();
+        for (String l : lineas)
+            if (q == null || normalizar(nombreDe(l)).contains(q)) res.add(l);
+        return res;
+    }
+
+    private static List<Alumno> aAlumnos(List<Candidato> candidatos, int limite) {
+        List<Alumno> res = new ArrayList<>();
+        for (int i = 0; i < candidatos.size() && res.size() < limite; i++)
+            res.add(Alumno.fromLinea(candidatos.get(i).linea));
+        return res;
+    }
+
+    /** @return candidatos ordenados del más al menos parecido */
+    private List<Candidato> candidatos(String texto, File soloArchivo) {
+        actualizar();
+
+        String q = normalizar(texto);
+        String matricula = texto == null ? "" : texto.trim().toLowerCase();
+        String[] palabras = q.isEmpty() ? new String[0] : q.split(" ");
+        Set<String> trigramasQ = trigramas(q);
+
+        // Cada error de escritura rompe a lo más 3 trigramas: las filas con
+        // menos trigramas en común que este mínimo no pueden coincidir
+        int erroresPermitidos = 0;
+        for (String p : palabras) erroresPermitidos += limiteErrores(p);
+        int minimoComunes = Math.max(1, trigramasQ.size() - 3 * erroresPermitidos);
+
+        String soloClave = soloArchivo == null ? null : RegistroVersiones.clave(soloArchivo);
+
+        List<Candidato> candidatos = new ArrayList<>();
+        int porNombre = recolectar(candidatos, soloClave, palabras, q, matricula, trigramasQ, minimoComunes);
+
+        // Con palabras cortas un error puede romper todos los trigramas
+        // ("jsoe" vs "jose"); si no hubo candidatos se revisan las filas que
+        // comparten al menos uno con la búsqueda o con sus letras vecinas
+        // intercambiadas. Si ninguna comparte, no hay resultados.
+        if (porNombre == 0 && q.length() >= 3)
+            recolectar(candidatos, soloClave, palabras, q, null, trigramasConTransposiciones(palabras), 1);
+
+        candidatos.sort(ORDEN);
+        return candidatos;
+    }
+
+    /**
+     * Agrega a la lista los candidatos de cada archivo indexado.
+     *
+     * @param matricula matrícula buscada (null para no buscar por matrícula)
+     * @param minimoComunes trigramas que una fila debe compartir con la búsqueda
+     * @return cantidad de candidatos encontrados por nombre
+     */
+    private int recolectar(List<Candidato> candidatos, String soloClave, String[] palabras, String q,
+                           String matricula, Set<String> trigramasQ, int minimoComunes) {
+        int porNombre = 0;
+
+        for (Map.Entry<String, ArchivoIndexado> e : archivos.entrySet()) {
+            if (soloClave != null && !soloClave.equals(e.getKey())) continue;
+
+            // Si el archivo cambió desde que se indexó, se reindexa y se repite una vez
+            ArchivoIndexado ai = e.getValue();
+            for (int intento = 0; ai != null && intento < 2; intento++) {
+                int encontrados = recolectar(candidatos, new File(e.getKey()), ai, palabras, q,
+                        matricula, trigramasQ, minimoComunes);
+                if (encontrados >= 0) {
+                    porNombre += encontrados;
+                    break;
+                }
+                ai = reindexar(e.getKey());
+            }
+        }
+        return porNombre;
+    }
+
+    /**
+     * Candidatos de un archivo: filas con suficientes trigramas en común y la
+     * de la matrícula exacta, leídas del archivo.
+     *
+     * @return cantidad encontrada por nombre, o -1 si el archivo ya no
+     *         coincide con el índice
+     */
+    private static int recolectar(List<Candidato> candidatos, File semestre, ArchivoIndexado ai, String[] palabras,
+                                  String q, String matricula, Set<String> trigramasQ, int minimoComunes) {
+        if (q.isEmpty() && matricula == null) return 0;
+
+        // Trigramas en común de cada fila con la búsqueda. Con menos de 3
+        // letras cuentan los trigramas del índice que contienen el texto: toda
+        // palabra que lo contiene tiene al menos uno de ellos
+        int[] comunes = new int[ai.filas];
+        if (q.length() >= 3) {
+            for (String t : trigramasQ) {
+                int[] filas = ai.trigramas.get(t);
+                if (filas == null) continue;
+                for (int f : filas) comunes[f]++;
+            }
+        } else if (!q.isEmpty()) {
+            for (Map.Entry<String, int[]> t : ai.trigramas.entrySet()) {
+                if (!t.getKey().contains(q)) continue;
+                for (int f : t.getValue()) comunes[f] = 1;
+            }
+        }
+
+        // La matrícula exacta siempre va primero
+        Integer filaMatricula = matricula == null ? null : ai.matriculas.get(matricula);
+
+        int n = 0;
+        int[] elegidas = new int[16];
+        for (int fila = 0; fila < comunes.length; fila++) {
+            boolean esMatricula = filaMatricula != null && fila == filaMatricula;
+            if (!esMatricula && (q.isEmpty() || comunes[fila] < minimoComunes)) continue;
+            if (n == elegidas.length) elegidas = Arrays.copyOf(elegidas, n * 2);
+            elegidas[n++] = fila;
+        }
+        if (n == 0) return 0;
+
+        elegidas = Arrays.copyOf(elegidas, n);
+        String[] lineas = leerFilas(semestre, ai, elegidas);
+        if (lineas == null) return -1;
+
+        int porNombre = 0;
+        for (int i = 0; i < n; i++) {
+            int fila = elegidas[i];
+            if (filaMatricula != null && fila == filaMatricula) {
+                candidatos.add(new Candidato(lineas[i], -1, Integer.MAX_VALUE));
+                continue;
+            }
+            int d = distanciaNombre(palabras, q, normalizar(nombreDe(lineas[i])));
+            if (d >= 0) {
+                candidatos.add(new Candidato(lineas[i], d, comunes[fila]));
+                porNombre++;
+            }
+        }
+        return porNombre;
+    }
+
+    /**
+     * Distancia total entre la búsqueda y un nombre: 0 si el nombre contiene
+     * la búsqueda tal cual; si no, la suma de la mejor distancia de cada
+     * palabra buscada contra alguna palabra (o inicio de palabra) del nombre.
+     *
+     * @return distancia o -1 si alguna palabra queda fuera del límite permitido
+     */
+    private static int distanciaNombre(String[] palabras, String q, String nombre) {
+        if (nombre.contains(q)) return 0;
+
+        String[] partes = nombre.split(" ");
+        int total = 0;
+
+        for (String p : palabras) {
+            int limite = limiteErrores(p);
+            int mejor = limite + 1;
+
+            for (String n : partes) {
+                mejor = Math.min(mejor, distanciaAcotada(p, n, limite));
+                if (n.length() > p.length())
+                    mejor = Math.min(mejor, distanciaAcotada(p, n.substring(0, p.length()), limite));
+                if (mejor == 0) break;
+            }
+            if (mejor > limite) return -1;
+            total += mejor;
+        }
+        // Las coincidencias por prefijo/contención quedan por delante de las de error
+        return total + 1;
+    }
+
+    /** Errores de escritura tolerados para una palabra según su longitud */
+    private static int limiteErrores(String palabra) {
+        return palabra.length() <= 4 ? 1 : 2;
+    }
+
+    /**
+     * Distancia de edición (Levenshtein con transposición de letras vecinas,
+     * "jsoe" → "jose" cuesta 1) que se detiene en cuanto supera el límite.
+     *
+     * @return la distancia, o limite + 1 si es mayor al límite
+     */
+    static int distanciaAcotada(String a, String b, int limite) {
+        if (Math.abs(a.length() - b.length()) > limite) return limite + 1;
+
+        int[] previa = new int[b.length() + 1];
+        int[] prev = new int[b.length() + 1];
+        int[] cur = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) prev[j] = j;
+
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            int minFila = cur[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int costo = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + costo);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1))
+                    cur[j] = Math.min(cur[j], previa[j - 2] + 1);
+                minFila = Math.min(minFila, cur[j]);
+            }
+            if (minFila > limite) return limite + 1;
+            int[] t = previa; previa = prev; prev = cur; cur = t;
+        }
+        return Math.min(prev[b.length()], limite + 1);
+    }
+
+    // -------------------------------
+    //        ACTUALIZACIÓN
+    // -------------------------------
+
+    /**
+     * Pone el índice al día: la primera vez lo carga de disco; después
+     * reindexa solo los archivos avisados por RegistroVersiones. Cada
+     * INTERVALO_VALIDACION_MS además revisa fecha/tamaño de todos y quita
+     * los que ya no existen. El guardado en disco queda programado en
+     * segundo plano.
+     */
+    public synchronized void actualizar() {
+        if (!cargado) {
+            cargar();
+            cargado = true;
+            ultimaValidacion = 0;
+        }
+
+        long ahora = System.currentTimeMillis();
+        boolean validarTodo = ahora - ultimaValidacion >= INTERVALO_VALIDACION_MS;
+        if (!validarTodo && sucios.isEmpty()) return;
+
+        boolean cambio = false;
+        if (validarTodo) {
+            Set<String> presentes = new HashSet<>();
+            for (File f : GestorArchivos.listarArchivosSemestre(raiz)) {
+                String clave = RegistroVersiones.clave(f);
+                presentes.add(clave);
+
+                ArchivoIndexado ai = archivos.get(clave);
+                if (ai == null || sucios.remove(clave)
+                        || ai.modificado != f.lastModified() || ai.tamano != f.length())
+                    cambio |= indexar(clave);
+            }
+            if (archivos.keySet().retainAll(presentes)) cambio = true;
+            ultimaValidacion = ahora;
+        }
+
+        // Solo los avisados: sin listar carpetas ni revisar los demás archivos
+        for (String clave : new ArrayList<>(sucios)) {
+            sucios.remove(clave);
+            cambio |= indexar(clave);
+        }
+
+        if (cambio) programarGuardado();
+    }
+
+    /** Reindexa un archivo que dejó de coincidir con el índice durante una búsqueda */
+    private synchronized ArchivoIndexado reindexar(String clave) {
+        if (indexar(clave)) programarGuardado();
+        return archivos.get(clave);
+    }
+
+    /**
+     * Vuelve a leer un archivo; si ya no existe lo quita del índice.
+     *
+     * @return true si el índice cambió
+     */
+    private boolean indexar(String clave) {
+        File semestre = new File(clave);
+        if (!new GestorArchivos(clave).archivoEnDisco().exists())
+            return archivos.remove(clave) != null;
+        try {
+            archivos.put(clave, leerArchivo(semestre));
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // -------------------------------
+    //      LECTURA DE LOS ARCHIVOS
+    // -------------------------------
+
+    /**
+     * Lee un archivo completo para indexarlo. No toma el candado del archivo
+     * (se llama con el monitor del índice tomado): si el archivo cambia
+     * mientras se lee, el resultado queda con un sello que no coincide y se
+     * reindexa en la siguiente búsqueda que lo use.
+     */
+    private static ArchivoIndexado leerArchivo(File semestre) throws IOException {
+        GestorArchivos g = new GestorArchivos(semestre.getPath());
+        File fisico = g.archivoEnDisco();
+        long modificado = fisico.lastModified(), tamano = fisico.length();
+        ArchivoIndexado ai = leerArchivo(g, fisico, modificado, tamano);
+        if (modificado == fisico.lastModified() && tamano == fisico.length()) return ai;
+        return new ArchivoIndexado(-1, -1, ai.filas, ai.posiciones, ai.largos, ai.trigramas, ai.matriculas);
+    }
+
+    /**
+     * En un .txt se anotan posición y largo en bytes de cada fila para luego
+     * leer solo las candidatas.
+     */
+    private static ArchivoIndexado leerArchivo(GestorArchivos g, File fisico, long modificado, long tamano)
+            throws IOException {
+        if (g.estaComprimido())
+            return ArchivoIndexado.de(modificado, tamano, g.leerLineas(), null, null);
+
+        List<String> lineas = new ArrayList<>();
+        long[] posiciones = new long[64];
+        int[] largos = new int[64];
+
+        byte[] buf = new byte[64 * 1024];
+        ByteArrayOutputStream linea = new ByteArrayOutputStream(256);
+        long base = 0, inicio = 0;
+        try (InputStream in = new FileInputStream(fisico)) {
+            int leidos;
+            while ((leidos = in.read(buf)) > 0) {
+                int desde = 0;
+                for (int i = 0; i < leidos; i++) {
+                    if (buf[i] != '\n') continue;
+                    linea.write(buf, desde, i - desde);
+                    long fin = base + i + 1;
+
+                    // Mismas filas que leerLineas: sin las líneas en blanco
+                    String l = texto(linea.toByteArray());
+                    if (!l.trim().isEmpty()) {
+                        if (lineas.size() == posiciones.length) {
+                            posiciones = Arrays.copyOf(posiciones, posiciones.length * 2);
+                            largos = Arrays.copyOf(largos, largos.length * 2);
+                        }
+                        posiciones[lineas.size()] = inicio;
+                        largos[lineas.size()] = (int) (fin - inicio);
+                        lineas.add(l);
+                    }
+                    linea.reset();
+                    inicio = fin;
+                    desde = i + 1;
+                }
+                linea.write(buf, desde, leidos - desde);
+                base += leidos;
+            }
+        }
+        String ultima = texto(linea.toByteArray());
+        if (!ultima.trim().isEmpty()) {
+            posiciones = Arrays.copyOf(posiciones, lineas.size() + 1);
+            largos = Arrays.copyOf(largos, lineas.size() + 1);
+            posiciones[lineas.size()] = inicio;
+            largos[lineas.size()] = (int) (base - inicio);
+            lineas.add(ultima);
+        }
+        return ArchivoIndexado.de(modificado, tamano, lineas,
+                Arrays.copyOf(posiciones, lineas.size()), Arrays.copyOf(largos, lineas.size()));
+    }
+
+    /** Línea decodificada sin el salto de línea */
+    private static String texto(byte[] bytes) {
+        int n = bytes.length;
+        while (n > 0 && (bytes[n - 1] == '\n' || bytes[n - 1] == '\r')) n--;
+        return new String(bytes, 0, n, GestorArchivos.CODIFICACION);
+    }
+
+    /**
+     * Lee del archivo solo las filas indicadas (en orden ascendente): en un
+     * .txt cada una en su posición; un .txtz se recorre una vez.
+     *
+     * @return las líneas, o null si el archivo cambió desde que se indexó
+     */
+    private static String[] leerFilas(File semestre, ArchivoIndexado ai, int[] filas) {
+        String[] res = new String[filas.length];
+        if (filas.length == 0) return res;
+
+        GestorArchivos g = new GestorArchivos(semestre.getPath());
+        Lock lectura = AlumnoDAO.candado(semestre).readLock();
+        lectura.lock();
+        try {
+            if (!ai.vigente(semestre) || (ai.posiciones == null) != g.estaComprimido()) return null;
+
+            if (ai.posiciones != null) {
+                try (FileChannel canal = FileChannel.open(g.archivoEnDisco().toPath(), StandardOpenOption.READ)) {
+                    for (int i = 0; i < filas.length; i++) {
+                        ByteBuffer bb = ByteBuffer.allocate(ai.largos[filas[i]]);
+                        long pos = ai.posiciones[filas[i]];
+                        while (bb.hasRemaining())
+                            if (canal.read(bb, pos + bb.position()) < 0) return null;
+                        res[i] = texto(bb.array());
+                    }
+                }
+                return res;
+            }
+
+            try (BufferedReader br = g.abrirLector()) {
+                String l;
+                int fila = 0, i = 0;
+                while (i < filas.length && (l = br.readLine()) != null) {
+                    if (l.trim().isEmpty()) continue;
+                    if (fila++ == filas[i]) res[i++] = l;
+                }
+                return i == filas.length ? res : null;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            lectura.unlock();
+        }
+    }
+
+    // -------------------------------
+    //          PERSISTENCIA
+    // -------------------------------
+
+    /**
+     * Guarda el índice un rato después del último cambio, en el hilo de
+     * fondo. Varios cambios seguidos producen un solo guardado; si el
+     * programa se cierra antes, al iniciar se reindexan solo los archivos
+     * cuya fecha/tamaño no coincidan.
+     */
+    private void programarGuardado() {
+        if (guardadoPendiente.compareAndSet(false, true)) {
+            hiloGuardado.schedule(() -> {
+                guardadoPendiente.set(false);
+                guardar();
+            }, ESPERA_GUARDADO_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void guardar() {
+        try {
+            Files.createDirectories(archivoIndice.getParentFile().toPath());
+            File tmp = File.createTempFile(archivoIndice.getName(), ".tmp", archivoIndice.getParentFile());
+
+            try {
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(tmp.toPath())))) {
+                    Map<String, ArchivoIndexado> copia = new HashMap<>(archivos);
+                    out.writeInt(VERSION_FORMATO);
+                    out.writeInt(copia.size());
+                    for (Map.Entry<String, ArchivoIndexado> e : copia.entrySet()) {
+                        ArchivoIndexado ai = e.getValue();
+                        out.writeUTF(e.getKey());
+                        out.writeLong(ai.modificado);
+                        out.writeLong(ai.tamano);
+                        out.writeInt(ai.filas);
+
+                        out.writeBoolean(ai.posiciones != null);
+                        if (ai.posiciones != null) {
+                            for (int i = 0; i < ai.filas; i++) {
+                                out.writeLong(ai.posiciones[i]);
+                                out.writeInt(ai.largos[i]);
+                            }
+                        }
+
+                        out.writeInt(ai.matriculas.size());
+                        for (Map.Entry<String, Integer> m : ai.matriculas.entrySet()) {
+                            out.writeUTF(m.getKey());
+                            out.writeInt(m.getValue());
+                        }
+
+                        out.writeInt(ai.trigramas.size());
+                        for (Map.Entry<String, int[]> t : ai.trigramas.entrySet()) {
+                            out.writeUTF(t.getKey());
+                            out.writeInt(t.getValue().length);
+                            for (int fila : t.getValue()) out.writeInt(fila);
+                        }
+                    }
+                }
+                try {
+                    Files.move(tmp.toPath(), archivoIndice.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp.toPath(), archivoIndice.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp.toPath());
+            }
+        } catch (IOException e) {
+            // Sin índice en disco solo se pierde velocidad en el siguiente arranque
+            e.printStackTrace();
+        }
+    }
+
+    private void cargar() {
+        if (!archivoIndice.exists()) return;
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(archivoIndice.toPath())))) {
+            if (in.readInt() != VERSION_FORMATO) return;
+
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String clave = in.readUTF();
+                long modificado = in.readLong();
+                long tamano = in.readLong();
+                int filas = in.readInt();
+
+                long[] posiciones = null;
+                int[] largos = null;
+                if (in.readBoolean()) {
+                    posiciones = new long[filas];
+                    largos = new int[filas];
+                    for (int j = 0; j < filas; j++) {
+                        posiciones[j] = in.readLong();
+                        largos[j] = in.readInt();
+                    }
+                }
+
+                int m = in.readInt();
+                Map<String, Integer> matriculas = new HashMap<>(m * 2);
+                for (int j = 0; j < m; j++) matriculas.put(in.readUTF(), in.readInt());
+
+                int t = in.readInt();
+                Map<String, int[]> trigramas = new HashMap<>(t * 2);
+                for (int j = 0; j < t; j++) {
+                    String trigrama = in.readUTF();
+                    int[] lista = new int[in.readInt()];
+                    for (int k = 0; k < lista.length; k++) lista[k] = in.readInt();
+                    trigramas.put(trigrama, lista);
+                }
+
+                archivos.put(clave, new ArchivoIndexado(modificado, tamano, filas, posiciones, largos,
+                        trigramas, matriculas));
+            }
+        } catch (IOException e) {
+            // Índice dañado: se reconstruye desde los archivos
+            archivos.clear();
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package Modelo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índices secundarios de un archivo de semestre para consultas por rango
+ * de promedio y de edad ("promedio entre 6.0 y 7.0").
+ *
+ * Cada índice es un arreglo ordenado de valores (double/int primitivos)
+ * junto con la fila (posición de la línea en el archivo) de cada valor.
+ * Una consulta hace búsqueda binaria y después solo convierte las filas
+ * que cayeron en el rango.
+ *
+ * Los índices se guardan en Indices/rangos/<carrera>/<semestre>.rng y
+ * AlumnoDAO los mantiene al día en cada escritura.
+ */
+public final class IndiceRangos {
+
+    private static final int VERSION_FORMATO = 1;
+
+    /** Índices cargados en memoria, por clave de RegistroVersiones */
+    private static final Map<String, IndiceRangos> cargados = new ConcurrentHashMap<>();
+
+    /** Sello del archivo de semestre con el que se construyó el índice */
+    private final long modificado;
+    private final long tamano;
+
+    private final double[] promedios;
+    private final int[] filasPromedio;
+    private final int[] edades;
+    private final int[] filasEdad;
+
+    private IndiceRangos(long modificado, long tamano, double[] promedios, int[] filasPromedio,
+                         int[] edades, int[] filasEdad) {
+        this.modificado = modificado;
+        this.tamano = tamano;
+        this.promedios = promedios;
+        this.filasPromedio = filasPromedio;
+        this.edades = edades;
+        this.filasEdad = filasEdad;
+    }
+
+    // -------------------------------
+    //           CONSULTAS
+    // -------------------------------
+
+    /**
+     * Filas cuyo promedio está en [min, max] y cuya edad está en [edadMin, edadMax].
+     *
+     * @return filas en orden ascendente
+     */
+    public int[] filas(double min, double max, int edadMin, int edadMax) {
+        int desde = primeraMayorIgual(promedios, min);
+        int hasta = primeraMayor(promedios, max);
+        int[] porPromedio = hasta > desde ? Arrays.copyOfRange(filasPromedio, desde, hasta) : new int[0];
+
+        int eDesde = primeraMayorIgual(edades, edadMin);
+        int eHasta = primeraMayor(edades, edadMax);
+        int[] porEdad = eHasta > eDesde ? Arrays.copyOfRange(filasEdad, eDesde, eHasta) : new int[0];
+
+        // Intersección de las dos listas de filas (ambas ordenadas)
+        Arrays.sort(porPromedio);
+        Arrays.sort(porEdad);
+        int[] res = new int[Math.min(porPromedio.length, porEdad.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < porPromedio.length && j < porEdad.length) {
+            if (porPromedio[i] < porEdad[j]) i++;
+            else if (porPromedio[i] > porEdad[j]) j++;
+            else { res[n++] = porPromedio[i]; i++; j++; }
+        }
+        return Arrays.copyOf(res, n);
+    }
+
+    /** @return cantidad de alumnos del archivo */
+    public int cantidad() {
+        return promedios.length;
+    }
+
+    /** @return promedio de los promedios del archivo (0 si está vacío) */
+    public double promedioGeneral() {
+        if (promedios.length == 0) return 0.0;
+        double suma = 0;
+        for (double p : promedios) suma += p;
+        return suma / promedios.length;
+    }
+
+    /** @return promedio mínimo del archivo (o +infinito si está vacío) */
+    public double promedioMinimo() {
+        return promedios.length == 0 ? Double.POSITIVE_INFINITY : promedios[0];
+    }
+
+    /** @return promedio máximo del archivo (o -infinito si está vacío) */
+    public double promedioMaximo() {
+        return promedios.length == 0 ? Double.NEGATIVE_INFINITY : promedios[promedios.length - 1];
+    }
+
+    private static int primeraMayorIgual(double[] a, double v) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) { int m = (lo + hi) >>> 1; if (a[m] < v) lo = m + 1; else hi = m; }
+        return lo;
+    }
+
+    private static int primeraMayor(double[] a, double v) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) { int m = (lo + hi) >>> 1; if (a[m] <= v) lo = m + 1; else hi = m; }
+        return lo;
+    }
+
+    private static int primeraMayorIgual(int[] a, int v) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) { int m = (lo + hi) >>> 1; if (a[m] < v) lo = m + 1; else hi = m; }
+        return lo;
+    }
+
+    private static int primeraMayor(int[] a, int v) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) { int m = (lo + hi) >>> 1; if (a[m] <= v) lo = m + 1; else hi = m; }
+        return lo;
+    }
+
+    // -------------------------------
+    //     OBTENER / MANTENER ÍNDICE
+    // -------------------------------
+
+    /**
+     * Devuelve el índice vigente de un archivo: de memoria, de disco, o
+     * reconstruido desde el archivo si el guardado ya no corresponde.
+     */
+    public static IndiceRangos para(File semestre) throws IOException {
+        GestorArchivos g = new GestorArchivos(semestre.getPath());
+        File fisico = g.archivoEnDisco();
+        String clave = RegistroVersiones.clave(semestre);
+
+        IndiceRangos ir = cargados.get(clave);
+        if (ir != null && ir.vigente(fisico)) return ir;
+
+        ir = leer(archivoIndice(semestre));
+        if (ir == null || !ir.vigente(fisico)) {
+            long modificado = fisico.lastModified(), tamano = fisico.length();
+            ir = construir(modificado, tamano, g.leerLineas());
+            guardar(archivoIndice(semestre), ir);
+        }
+        cargados.put(clave, ir);
+        return ir;
+    }
+
+    /**
+     * Índice del archivo solo si ya existe y corresponde a su contenido (en
+     * memoria o guardado en disco); null si habría que construirlo.
+     */
+    static IndiceRangos existente(File semestre) {
+        File fisico = new GestorArchivos(semestre.getPath()).archivoEnDisco();
+        String clave = RegistroVersiones.clave(semestre);
+
+        IndiceRangos ir = cargados.get(clave);
+        if (ir != null && ir.vigente(fisico)) return ir;
+
+        ir = leer(archivoIndice(semestre));
+        if (ir == null || !ir.vigente(fisico)) return null;
+        cargados.put(clave, ir);
+        return ir;
+    }
+
+    /**
+     * Llamado por AlumnoDAO después de agregar líneas al final.
+     * Si el índice correspondía al archivo antes de escribir, las nuevas
+     * filas se mezclan en su lugar (sin releer el archivo); si no, se
+     * descarta y se reconstruirá en la siguiente consulta.
+     *
+     * @param selloPrevio {fecha de modificación, tamaño} antes del append
+     * @param fila posición de la primera línea nueva
+     * @param altas alumnos agregados, en el orden en que se escribieron
+     */
+    static void registrarAltas(File semestre, long[] selloPrevio, int fila, List<Alumno> altas) {
+        String clave = RegistroVersiones.clave(semestre);
+        IndiceRangos ir = cargados.get(clave);
+        if (ir == null || ir.modificado != selloPrevio[0] || ir.tamano != selloPrevio[1]) {
+            descartar(semestre);
+            return;
+        }
+
+        int k = altas.size();
+        double[] p = new double[k];
+        int[] e = new int[k];
+        for (int i = 0; i < k; i++) {
+            p[i] = altas.get(i).getPromedio();
+            e[i] = altas.get(i).getEdad();
+        }
+        IndiceRangos nuevas = ordenar(0, 0, p, e);
+        for (int i = 0; i < k; i++) {
+            nuevas.filasPromedio[i] += fila;
+            nuevas.filasEdad[i] += fila;
+        }
+
+        // Mezcla de dos arreglos ordenados; con valores iguales van primero los viejos
+        int n = ir.promedios.length;
+        double[] ps = new double[n + k];
+        int[] fp = new int[n + k];
+        for (int i = 0, j = 0, t = 0; t < n + k; t++) {
+            if (j >= k || (i < n && ir.promedios[i] <= nuevas.promedios[j])) {
+                ps[t] = ir.promedios[i]; fp[t] = ir.filasPromedio[i++];
+            } else {
+                ps[t] = nuevas.promedios[j]; fp[t] = nuevas.filasPromedio[j++];
+            }
+        }
+        int[] es = new int[n + k];
+        int[] fe = new int[n + k];
+        for (int i = 0, j = 0, t = 0; t < n + k; t++) {
+            if (j >= k || (i < n && ir.edades[i] <= nuevas.edades[j])) {
+                es[t] = ir.edades[i]; fe[t] = ir.filasEdad[i++];
+            } else {
+                es[t] = nuevas.edades[j]; fe[t] = nuevas.filasEdad[j++];
+            }
+        }
+
+        File fisico = new GestorArchivos(semestre.getPath()).archivoEnDisco();
+        IndiceRangos nuevo = new IndiceRangos(fisico.lastModified(), fisico.length(), ps, fp, es, fe);
+        cargados.put(clave, nuevo);
+        guardarSinError(semestre, nuevo);
+    }
+
+    /**
+     * Llamado por AlumnoDAO después de reescribir el archivo completo con la
+     * lista dada: el índice se arma desde la lista, sin volver a leer el disco.
+     */
+    static void registrarReescritura(File semestre, List<Alumno> lista) {
+        File fisico = new GestorArchivos(semestre.getPath()).archivoEnDisco();
+
+        int n = lista.size();
+        double[] p = new double[n];
+        int[] e = new int[n];
+        for (int i = 0; i < n; i++) {
+            p[i] = lista.get(i).getPromedio();
+            e[i] = lista.get(i).getEdad();
+        }
+
+        IndiceRangos ir = ordenar(fisico.lastModified(), fisico.length(), p, e);
+        cargados.put(RegistroVersiones.clave(semestre), ir);
+        guardarSinError(semestre, ir);
+    }
+
+    /**
+     * @return cantidad de filas del índice en memoria del archivo, o -1 si
+     *         no hay uno cargado (la siguiente fila agregada tendrá ese número)
+     */
+    static int filasDe(File semestre) {
+        IndiceRangos ir = cargados.get(RegistroVersiones.clave(semestre));
+        return ir == null ? -1 : ir.promedios.length;
+    }
+
+    /** Olvida el índice de un archivo (se reconstruye cuando se necesite) */
+    static void descartar(File semestre) {
+        cargados.remove(RegistroVersiones.clave(semestre));
+        archivoIndice(semestre).delete();
+    }
+
+    private boolean vigente(File fisico) {
+        return modificado == fisico.lastModified() && tamano == fisico.length();
+    }
+
+    private static IndiceRangos construir(long modificado, long tamano, List<String> lineas) {
+        int n = lineas.size();
+        double[] p = new double[n];
+        int[] e = new int[n];
+        for (int i = 0; i < n; i++) {
+            Alumno a = Alumno.fromLinea(lineas.get(i));
+            p[i] = a.getPromedio();
+            e[i] = a.getEdad();
+        }
+        return ordenar(modificado, tamano, p, e);
+    }
+
+    /** Ordena los valores guardando la fila original de cada uno */
+    private static IndiceRangos ordenar(long modificado, long tamano, double[] p, int[] e) {
+        int n = p.length;
+        Integer[] op = new Integer[n];
+        Integer[] oe = new Integer[n];
+        for (int i = 0; i < n; i++) { op[i] = i; oe[i] = i; }
+        Arrays.sort(op, (x, y) -> Double.compare(p[x], p[y]));
+        Arrays.sort(oe, (x, y) -> Integer.compare(e[x], e[y]));
+
+        double[] ps = new double[n];
+        int[] fp = new int[n], es = new int[n], fe = new int[n];
+        for (int i = 0; i < n; i++) {
+            ps[i] = p[op[i]]; fp[i] = op[i];
+            es[i] = e[oe[i]]; fe[i] = oe[i];
+        }
+        return new IndiceRangos(modificado, tamano, ps, fp, es, fe);
+    }
+
+    // -------------------------------
+    //          PERSISTENCIA
+    // -------------------------------
+
+    /**
+     * Archivo del índice: Indices/rangos/<carrera>/<semestre>.rng, con la
+     * carpeta Indices junto a la carpeta raíz de alumnos.
+     */
+    private static File archivoIndice(File semestre) {
+        File s = semestre.getAbsoluteFile();
+        File carrera = s.getParentFile();
+        File raiz = carrera.getParentFile();
+        File base = raiz.getParentFile() == null ? raiz : raiz.getParentFile();
+
+        String nombre = s.getName();
+        int punto = nombre.lastIndexOf('.');
+        if (punto > 0) nombre = nombre.substring(0, punto);
+
+        return new File(new File(new File(new File(base, "Indices"), "rangos"), carrera.getName()), nombre + ".rng");
+    }
+
+    private static void guardarSinError(File semestre, IndiceRangos ir) {
+        try {
+            guardar(archivoIndice(semestre), ir);
+        } catch (IOException e) {
+            // El índice en memoria sigue siendo válido; solo no se guardó en disco
+            e.printStackTrace();
+        }
+    }
+
+    private static void guardar(File destino, IndiceRangos ir) throws IOException {
+        Files.createDirectories(destino.getParentFile().toPath());
+        // Temporal único: dos hilos pueden guardar el mismo índice a la vez
+        File tmp = Files.createTempFile(destino.getParentFile().toPath(), destino.getName(), ".tmp").toFile();
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp.toPath())))) {
+            out.writeInt(VERSION_FORMATO);
+            out.writeLong(ir.modificado);
+            out.writeLong(ir.tamano);
+            out.writeInt(ir.promedios.length);
+            for (int i = 0; i < ir.promedios.length; i++) {
+                out.writeDouble(ir.promedios[i]);
+                out.writeInt(ir.filasPromedio[i]);
+                out.writeInt(ir.edades[i]);
+                out.writeInt(ir.filasEdad[i]);
+            }
+        }
+        Files.move(tmp.toPath(), destino.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static IndiceRangos leer(File origen) {
+        if (!origen.exists()) return null;
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(origen.toPath())))) {
+            if (in.readInt() != VERSION_FORMATO) return null;
+
+            long modificado = in.readLong();
+            long tamano = in.readLong();
+            int n = in.readInt();
+            double[] p = new double[n];
+            int[] fp = new int[n], e = new int[n], fe = new int[n];
+            for (int i = 0; i < n; i++) {
+                p[i] = in.readDouble();
+                fp[i] = in.readInt();
+                e[i] = in.readInt();
+                fe[i] = in.readInt();
+            }
+            return new IndiceRangos(modificado, tamano, p, fp, e, fe);
+        } catch (IOException e) {
+            // Índice dañado: se reconstruye
+            return null;
+        }
+    }
+}
@@ -0,0 +1,485 @@
+package Modelo;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Lote de cambios (altas, ediciones, bajas y movimientos entre semestres)
+ * que se aplican juntos.
+ *
+ * Hacer diez bajas con eliminarPorMatricula lee y reescribe el archivo diez
+ * veces. Con un lote cada archivo afectado se lee una vez, se aplican en
+ * memoria todos sus cambios y se reescribe una sola vez.
+ *
+ * Uso:
+ * <pre>
+ *   dao.lote().eliminar("A001").eliminar("A002").editar("A003", nuevos).aplicar();
+ * </pre>
+ *
+ * Reglas al aplicar:
+ *  - En cada archivo se aplican primero las bajas, luego las ediciones y al
+ *    final las altas.
+ *  - Una baja o edición cuya matrícula no existe se omite y se cuenta en
+ *    {@link Resultado#getNoEncontrados()}. Lo mismo un movimiento cuyo
+ *    alumno ya no está en el archivo de origen.
+ *  - Si un alta, una edición que cambia la matrícula o un movimiento
+ *    chocaría con una matrícula existente no se escribe nada y se lanza
+ *    IllegalStateException.
+ *  - Mientras se aplica se toman los candados de escritura de todos los
+ *    archivos afectados (siempre en el mismo orden, para no bloquearse con
+ *    otro lote).
+ *  - Cuando cambian varios archivos (por ejemplo al mover un alumno) se
+ *    confirman juntos, como en PromocionSemestres: los archivos nuevos se
+ *    escriben como temporales (.lote), se escribe un diario en Lotes/ junto
+ *    a la carpeta de alumnos con los reemplazos pendientes, se reemplazan
+ *    los archivos y se borra el diario. Si el programa se cierra a medias,
+ *    {@link #recuperar(File)} termina los reemplazos al iniciar; si se
+ *    cierra antes del diario, ningún archivo cambió.
+ */
+public class LoteCambios {
+
+    /** Resumen de lo que hizo {@link #aplicar()} */
+    public static final class Resultado {
+        private int agregados, editados, eliminados, movidos, noEncontrados, archivos;
+
+        public int getAgregados() { return agregados; }
+        public int getEditados() { return editados; }
+        public int getEliminados() { return eliminados; }
+        public int getMovidos() { return movidos; }
+        public int getNoEncontrados() { return noEncontrados; }
+        /** @return archivos reescritos */
+        public int getArchivos() { return archivos; }
+
+        /** @return total de alumnos agregados, editados, eliminados o movidos */
+        public int getTotal() { return agregados + editados + eliminados + movidos; }
+
+        @Override public String toString() {
+            return agregados + " agregados, " + editados + " editados, " + eliminados + " eliminados, "
+                    + movidos + " movidos, " + noEncontrados + " no encontrados (" + archivos + " archivos)";
+        }
+    }
+
+    /** Cambios pendientes de un archivo */
+    private static final class Cambios {
+        final File archivo;
+        /** matrícula (minúsculas) → id de movimiento, o 0 si es baja simple */
+        final Map<String, Integer> bajas = new HashMap<>();
+        /** matrícula original (minúsculas) → datos nuevos */
+        final Map<String, Alumno> ediciones = new HashMap<>();
+        /** altas en orden; el id de movimiento es 0 para altas simples */
+        final List<Alumno> altas = new ArrayList<>();
+        final List<Integer> movimientoDeAlta = new ArrayList<>();
+
+        Cambios(File archivo) {
+            this.archivo = archivo;
+        }
+    }
+
+    /** Carpeta de diarios, junto a la carpeta de alumnos */
+    private static final String CARPETA_DIARIOS = "Lotes";
+    private static final String ENCABEZADO_DIARIO = "#lote v1";
+    private static final String TEMPORAL = ".lote";
+
+    /** Un archivo que se va a reescribir, con lo que se registra después */
+    private static final class Escritura {
+        final File archivo;
+        final List<Alumno> lista;
+        /** {antes, después} de cada alumno que cambió */
+        final List<Alumno[]> auditoria;
+
+        Escritura(File archivo, List<Alumno> lista, List<Alumno[]> auditoria) {
+            this.archivo = archivo;
+            this.lista = lista;
+            this.auditoria = auditoria;
+        }
+    }
+
+    private final File predeterminado;
+
+    /** clave de RegistroVersiones → cambios; ordenado para tomar candados siempre igual */
+    private final TreeMap<String, Cambios> porArchivo = new TreeMap<>();
+
+    private int siguienteMovimiento = 1;
+    private int operaciones;
+
+    /**
+     * @param predeterminado archivo de semestre al que van las operaciones
+     *        que no indican otro (normalmente el del DAO que creó el lote)
+     */
+    public LoteCambios(File predeterminado) {
+        this.predeterminado = predeterminado;
+    }
+
+    private Cambios de(File archivo) {
+        return porArchivo.computeIfAbsent(RegistroVersiones.clave(archivo), k -> new Cambios(archivo));
+    }
+
+    private static String clave(String matricula) {
+        return matricula.trim().toLowerCase();
+    }
+
+    // -------------------------------
+    //          OPERACIONES
+    // -------------------------------
+
+    /** Agrega un alumno al archivo predeterminado */
+    public LoteCambios agregar(Alumno a) {
+        return agregar(predeterminado, a);
+    }
+
+    /** Agrega un alumno a un archivo de semestre */
+    public LoteCambios agregar(File archivo, Alumno a) {
+        Cambios c = de(archivo);
+        c.altas.add(a);
+        c.movimientoDeAlta.add(0);
+        operaciones++;
+        return this;
+    }
+
+    /** Reemplaza los datos del alumno con esa matrícula en el archivo predeterminado */
+    public LoteCambios editar(String matriculaOriginal, Alumno nuevos) {
+        return editar(predeterminado, matriculaOriginal, nuevos);
+    }
+
+    /** Reemplaza los datos del alumno con esa matrícula en un archivo de semestre */
+    public LoteCambios editar(File archivo, String matriculaOriginal, Alumno nuevos) {
+        de(archivo).ediciones.put(clave(matriculaOriginal), nuevos);
+        operaciones++;
+        return this;
+    }
+
+    /** Elimina al alumno con esa matrícula del archivo predeterminado */
+    public LoteCambios eliminar(String matricula) {
+        return eliminar(predeterminado, matricula);
+    }
+
+    /** Elimina al alumno con esa matrícula de un archivo de semestre */
+    public LoteCambios eliminar(File archivo, String matricula) {
+        de(archivo).bajas.putIfAbsent(clave(matricula), 0);
+        operaciones++;
+        return this;
+    }
+
+    /**
+     * Mueve un alumno a otro archivo (cambio de carrera o semestre): se
+     * elimina del origen y se agrega al destino con los datos nuevos. Si no
+     * está en el origen no se agrega al destino.
+     */
+    public LoteCambios mover(File origen, String matriculaOriginal, File destino, Alumno nuevos) {
+        int id = siguienteMovimiento++;
+        de(origen).bajas.put(clave(matriculaOriginal), id);
+        Cambios d = de(destino);
+        d.altas.add(nuevos);
+        d.movimientoDeAlta.add(id);
+        operaciones++;
+        return this;
+    }
+
+    /** @return cantidad de operaciones pendientes */
+    public int tamano() {
+        return operaciones;
+    }
+
+    // -------------------------------
+    //           APLICAR
+    // -------------------------------
+
+    /**
+     * Aplica todas las operaciones: una lectura y una reescritura por
+     * archivo afectado.
+     *
+     * @throws IllegalStateException si un alta o movimiento repetiría una
+     *         matrícula (en ese caso no se modifica ningún archivo)
+     */
+    public Resultado aplicar() throws IOException {
+        Resultado r = new Resultado();
+        if (porArchivo.isEmpty()) return r;
+
+        List<Lock> tomados = new ArrayList<>();
+        try {
+            for (Cambios c : porArchivo.values()) {
+                Lock l = AlumnoDAO.candado(c.archivo).writeLock();
+                l.lock();
+                tomados.add(l);
+            }
+
+            // 1) Una lectura por archivo
+            Map<String, List<Alumno>> contenido = new HashMap<>();
+            Map<String, Set<String>> presentes = new HashMap<>();
+            for (Map.Entry<String, Cambios> e : porArchivo.entrySet()) {
+                List<Alumno> lista = new AlumnoDAO(e.getValue().archivo.getPath()).listar();
+                Set<String> m = new HashSet<>(lista.size() * 2);
+                for (Alumno a : lista) m.add(clave(a.getMatricula()));
+                contenido.put(e.getKey(), lista);
+                presentes.put(e.getKey(), m);
+            }
+
+            // 2) Movimientos cuyo alumno ya no está en el origen
+            Set<Integer> fallidos = new HashSet<>();
+            for (Map.Entry<String, Cambios> e : porArchivo.entrySet()) {
+                for (Map.Entry<String, Integer> b : e.getValue().bajas.entrySet()) {
+                    if (presentes.get(e.getKey()).contains(b.getKey())) continue;
+                    r.noEncontrados++;
+                    if (b.getValue() != 0) fallidos.add(b.getValue());
+                }
+            }
+
+            // 3) Duplicados: se revisan todos antes de escribir
+            for (Map.Entry<String, Cambios> e : porArchivo.entrySet()) {
+                Cambios c = e.getValue();
+                Set<String> ocupadas = new HashSet<>(presentes.get(e.getKey()));
+                ocupadas.removeAll(c.bajas.keySet());
+
+                // Ediciones que cambian la matrícula: primero se liberan las
+                // originales (dos alumnos pueden intercambiarlas) y luego se ocupan las nuevas
+                List<Alumno> renombrados = new ArrayList<>();
+                for (Map.Entry<String, Alumno> ed : c.ediciones.entrySet()) {
+                    if (!ocupadas.contains(ed.getKey())) continue; // no existe o se da de baja
+                    if (clave(ed.getValue().getMatricula()).equals(ed.getKey())) continue;
+                    ocupadas.remove(ed.getKey());
+                    renombrados.add(ed.getValue());
+                }
+                for (Alumno a : renombrados) {
+                    if (!ocupadas.add(clave(a.getMatricula())))
+                        throw new IllegalStateException("La matrícula " + a.getMatricula()
+                                + " ya existe en " + c.archivo.getName() + ".");
+                }
+
+                for (int i = 0; i < c.altas.size(); i++) {
+                    if (fallidos.contains(c.movimientoDeAlta.get(i))) continue;
+                    String m = clave(c.altas.get(i).getMatricula());
+                    if (!ocupadas.add(m))
+                        throw new IllegalStateException("La matrícula " + c.altas.get(i).getMatricula()
+                                + " ya existe en " + c.archivo.getName() + ".");
+                }
+            }
+
+            // 4) Un recorrido por archivo, en memoria
+            List<Escritura> escrituras = new ArrayList<>();
+            // Las dos mitades de cada movimiento, por su número, para el historial
+            Map<Integer, Object[]> salidas = new HashMap<>(), llegadas = new HashMap<>();
+            for (Map.Entry<String, Cambios> e : porArchivo.entrySet()) {
+                Cambios c = e.getValue();
+                List<Alumno> anterior = contenido.get(e.getKey());
+                List<Alumno> nueva = new ArrayList<>(anterior.size() + c.altas.size());
+                Set<String> editadas = new HashSet<>();
+                // Para la bitácora: {antes, después} de cada alumno que cambió
+                List<Alumno[]> auditoria = new ArrayList<>();
+                boolean cambio = false;
+
+                for (Alumno a : anterior) {
+                    String m = clave(a.getMatricula());
+                    Integer baja = c.bajas.get(m);
+                    if (baja != null) {
+                        if (baja == 0) r.eliminados++;
+                        else salidas.put(baja, new Object[] { c.archivo, a });
+                        auditoria.add(new Alumno[] { a, null });
+                        cambio = true;
+                        continue;
+                    }
+                    Alumno nuevos = c.ediciones.get(m);
+                    if (nuevos != null && editadas.add(m)) {
+                        nueva.add(nuevos);
+                        r.editados++;
+                        auditoria.add(new Alumno[] { a, nuevos });
+                        cambio = true;
+                        continue;
+                    }
+                    nueva.add(a);
+                }
+                for (String m : c.ediciones.keySet())
+                    if (!editadas.contains(m) && !c.bajas.containsKey(m)) r.noEncontrados++;
+
+                for (int i = 0; i < c.altas.size(); i++) {
+                    int mov = c.movimientoDeAlta.get(i);
+                    if (fallidos.contains(mov)) continue;
+                    nueva.add(c.altas.get(i));
+                    if (mov == 0) r.agregados++;
+                    else {
+                        r.movidos++;
+                        llegadas.put(mov, new Object[] { c.archivo, c.altas.get(i) });
+                    }
+                    auditoria.add(new Alumno[] { null, c.altas.get(i) });
+                    cambio = true;
+                }
+
+                if (cambio) escrituras.add(new Escritura(c.archivo, nueva, auditoria));
+            }
+
+            // 5) Una reescritura por archivo; si son varios, juntos
+            if (escrituras.size() == 1) {
+                Escritura w = escrituras.get(0);
+                new AlumnoDAO(w.archivo.getPath()).guardarTodo(w.lista);
+            } else if (!escrituras.isEmpty()) {
+                reemplazarJuntos(escrituras);
+            }
+            r.archivos = escrituras.size();
+
+            for (Escritura w : escrituras) {
+                List<FeedCambios.Evento> eventos = new ArrayList<>(w.auditoria.size());
+                for (Alumno[] x : w.auditoria) {
+                    BitacoraAuditoria.registrar(x[0] == null ? BitacoraAuditoria.Accion.ALTA
+                            : x[1] == null ? BitacoraAuditoria.Accion.BAJA : BitacoraAuditoria.Accion.EDICION,
+                            w.archivo, x[0], x[1]);
+                    eventos.add(x[0] == null ? FeedCambios.Evento.alta(x[1])
+                            : x[1] == null ? FeedCambios.Evento.baja(x[0].getMatricula())
+                            : FeedCambios.Evento.edicion(x[0].getMatricula(), x[1]));
+                }
+                FeedCambios.registrar(w.archivo, eventos);
+                HistorialCalificaciones.registrar(w.archivo, w.auditoria);
+            }
+
+            // En cada archivo un movimiento es una baja y un alta; aquí se juntan
+            List<HistorialCalificaciones.Movimiento> movimientos = new ArrayList<>();
+            for (Map.Entry<Integer, Object[]> e : llegadas.entrySet()) {
+                Object[] salida = salidas.get(e.getKey());
+                if (salida == null) continue;
+                movimientos.add(new HistorialCalificaciones.Movimiento((File) salida[0], (Alumno) salida[1],
+                        (File) e.getValue()[0], (Alumno) e.getValue()[1]));
+            }
+            HistorialCalificaciones.registrarMovimientos(movimientos);
+            return r;
+        } finally {
+            for (int i = tomados.size() - 1; i >= 0; i--) tomados.get(i).unlock();
+        }
+    }
+
+    // -------------------------------
+    //      VARIOS ARCHIVOS JUNTOS
+    // -------------------------------
+
+    /**
+     * Reemplaza varios archivos de modo que, aunque el programa se cierre a
+     * medias, terminen todos cambiados o ninguno. Quien llama ya tiene los
+     * candados de escritura.
+     */
+    private static void reemplazarJuntos(List<Escritura> escrituras) throws IOException {
+        // 1. Temporales junto a cada archivo, en su formato (.txt o .txtz)
+        List<File> fisicos = new ArrayList<>(escrituras.size());
+        try {
+            for (Escritura w : escrituras) {
+                GestorArchivos g = new GestorArchivos(w.archivo.getPath());
+                File fisico = g.archivoEnDisco().getAbsoluteFile();
+                List<String> lineas = new ArrayList<>(w.lista.size());
+                for (Alumno a : w.lista) lineas.add(a.toLinea());
+                fisicos.add(fisico);
+                g.escribirLineasEn(lineas, temporal(fisico));
+            }
+        } catch (IOException | RuntimeException e) {
+            // Nada cambió todavía
+            for (File f : fisicos) temporal(f).delete();
+            throw e;
+        }
+
+        // 2. Diario con los reemplazos pendientes (se escribe completo o no existe)
+        File carpeta = new File(BitacoraAuditoria.carpetaBase(fisicos.get(0)), CARPETA_DIARIOS);
+        Files.createDirectories(carpeta.toPath());
+        File tmp = Files.createTempFile(carpeta.toPath(), "lote", ".tmp").toFile();
+        File diario = new File(carpeta, tmp.getName().substring(0, tmp.getName().length() - 4) + ".txt");
+        try {
+            try (BufferedWriter bw = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+                bw.write(ENCABEZADO_DIARIO);
+                bw.newLine();
+                for (File f : fisicos) {
+                    bw.write(f.getPath());
+                    bw.newLine();
+                }
+            }
+            mover(tmp, diario);
+        } catch (IOException | RuntimeException e) {
+            tmp.delete();
+            for (File f : fisicos) temporal(f).delete();
+            throw e;
+        }
+
+        // 3. Reemplazos; si uno falla el diario se queda y recuperar() los termina
+        for (File f : fisicos) mover(temporal(f), f);
+        Files.delete(diario.toPath());
+
+        for (int i = 0; i < escrituras.size(); i++) {
+            Escritura w = escrituras.get(i);
+            IndiceRangos.registrarReescritura(w.archivo, w.lista);
+            RegistroVersiones.notificarCambio(fisicos.get(i));
+        }
+    }
+
+    /**
+     * Termina los lotes que quedaron a medias en una carpeta de alumnos (sus
+     * diarios están en Lotes/, junto a ella) y borra los temporales sueltos.
+     * Se llama al iniciar el programa.
+     */
+    public static synchronized void recuperar(File raiz) throws IOException {
+        File r = raiz.getAbsoluteFile();
+        File[] diarios = new File(r.getParentFile() == null ? r : r.getParentFile(), CARPETA_DIARIOS)
+                .listFiles((d, n) -> n.endsWith(".txt"));
+        if (diarios != null) {
+            for (File diario : diarios) {
+                List<String> lineas = Files.readAllLines(diario.toPath(), StandardCharsets.UTF_8);
+                List<File> fisicos = new ArrayList<>();
+                if (!lineas.isEmpty() && ENCABEZADO_DIARIO.equals(lineas.get(0)))
+                    for (String l : lineas.subList(1, lineas.size()))
+                        if (!l.isEmpty()) fisicos.add(new File(l));
+
+                List<File> reemplazados = new ArrayList<>();
+                TreeMap<String, File> porClave = new TreeMap<>();
+                for (File f : fisicos) porClave.put(RegistroVersiones.clave(f), f);
+                List<Lock> tomados = new ArrayList<>();
+                try {
+                    for (File f : porClave.values()) {
+                        Lock l = AlumnoDAO.candado(f).writeLock();
+                        l.lock();
+                        tomados.add(l);
+                    }
+                    for (File f : fisicos) {
+                        if (!temporal(f).exists()) continue;
+                        mover(temporal(f), f);
+                        reemplazados.add(f);
+                    }
+                    Files.delete(diario.toPath());
+                } finally {
+                    for (int i = tomados.size() - 1; i >= 0; i--) tomados.get(i).unlock();
+                }
+
+                for (File f : reemplazados) {
+                    RegistroVersiones.notificarCambio(f);
+                    FeedCambios.registrarArchivo(f);
+                }
+            }
+        }
+
+        // Temporales de un lote que se cerró antes de escribir su diario
+        File[] carreras = r.listFiles(File::isDirectory);
+        if (carreras == null) return;
+        for (File c : carreras) {
+            File[] sueltos = c.listFiles((d, n) -> n.endsWith(TEMPORAL));
+            if (sueltos != null)
+                for (File f : sueltos) f.delete();
+        }
+    }
+
+    private static File temporal(File fisico) {
+        return new File(fisico.getPath() + TEMPORAL);
+    }
+
+    private static void mover(File origen, File destino) throws IOException {
+        try {
+            Files.move(origen.toPath(), destino.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(origen.toPath(), destino.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package Modelo;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Catálogo de carreras y semestres guardado en un solo archivo pequeño
+ * (Indices/catalogo.txt), para arrancar sin recorrer la carpeta de alumnos.
+ *
+ * Por cada archivo de semestre guarda: carrera, semestre, cantidad de
+ * alumnos, tamaño, fecha de modificación y si está comprimido. Al abrir la
+ * ventana los combos se llenan desde aquí; después, en segundo plano,
+ * {@link #validar()} compara contra el disco y corrige lo que haya cambiado.
+ *
+ * Formato (una línea por semestre):
+ *   carrera|semestre|alumnos|bytes|modificado|comprimido(0/1)
+ */
+public final class ManifiestoCatalogo {
+
+    private static final String ENCABEZADO = "#catalogo v1";
+
+    /** Un catálogo por carpeta raíz, compartido por todo el proceso */
+    private static final Map<String, ManifiestoCatalogo> instancias = new ConcurrentHashMap<>();
+
+    /** Datos de un archivo de semestre */
+    public static final class Entrada {
+        final String carrera;
+        final String semestre;
+        final int alumnos;
+        final long bytes;
+        final long modificado;
+        final boolean comprimido;
+
+        Entrada(String carrera, String semestre, int alumnos, long bytes, long modificado, boolean comprimido) {
+            this.carrera = carrera;
+            this.semestre = semestre;
+            this.alumnos = alumnos;
+            this.bytes = bytes;
+            this.modificado = modificado;
+            this.comprimido = comprimido;
+        }
+
+        public String getCarrera() { return carrera; }
+        public String getSemestre() { return semestre; }
+        /** @return alumnos en el archivo, o -1 si aún no se cuentan */
+        public int getAlumnos() { return alumnos; }
+        public long getBytes() { return bytes; }
+        public boolean isComprimido() { return comprimido; }
+    }
+
+    private final File raiz;
+    private final File archivo;
+
+    /** "carrera/semestre" → entrada, ordenado para que los combos salgan en orden */
+    private final TreeMap<String, Entrada> entradas = new TreeMap<>();
+
+    private ManifiestoCatalogo(File raiz, File archivo) {
+        this.raiz = raiz;
+        this.archivo = archivo;
+    }
+
+    /**
+     * Devuelve el catálogo de una carpeta de alumnos, leyéndolo del disco la
+     * primera vez. Solo se lee el archivo del catálogo; no se lista la carpeta.
+     */
+    public static ManifiestoCatalogo para(String raiz, String carpetaIndices) {
+        String clave = new File(raiz).getAbsolutePath();
+        return instancias.computeIfAbsent(clave, k -> {
+            ManifiestoCatalogo m = new ManifiestoCatalogo(new File(raiz), new File(carpetaIndices, "catalogo.txt"));
+            m.leer();
+            RegistroVersiones.agregarOyente(m::archivoModificado);
+            return m;
+        });
+    }
+
+    // -------------------------------
+    //           CONSULTAS
+    // -------------------------------
+
+    /** @return true si todavía no hay catálogo guardado (primera vez) */
+    public synchronized boolean estaVacio() {
+        return entradas.isEmpty();
+    }
+
+    /** @return carreras del catálogo, en orden alfabético */
+    public synchronized List<String> carreras() {
+        List<String> res = new ArrayList<>();
+        for (Entrada e : entradas.values())
+            if (res.isEmpty() || !res.get(res.size() - 1).equals(e.carrera)) res.add(e.carrera);
+        return res;
+    }
+
+    /** @return semestres guardados de una carrera */
+    public synchronized List<String> semestres(String carrera) {
+        List<String> res = new ArrayList<>();
+        for (Entrada e : entradas.values())
+            if (e.carrera.equals(carrera)) res.add(e.semestre);
+        return res;
+    }
+
+    /** @return la entrada de un semestre o null si no está en el catálogo */
+    public synchronized Entrada entrada(String carrera, String semestre) {
+        return entradas.get(carrera + "/" + semestre);
+    }
+
+    // -------------------------------
+    //          VALIDACIÓN
+    // -------------------------------
+
+    /**
+     * Compara el catálogo contra la carpeta de alumnos: agrega semestres
+     * nuevos, quita los que ya no existen y vuelve a contar los alumnos de
+     * los archivos cuya fecha o tamaño cambió. Si algo cambió lo guarda.
+     *
+     * Pensado para correr en segundo plano después de mostrar la ventana.
+     *
+     * @return true si cambió la lista de carreras o semestres
+     */
+    public boolean validar() throws IOException {
+        TreeMap<String, Entrada> anteriores;
+        synchronized (this) {
+            anteriores = new TreeMap<>(entradas);
+        }
+
+        TreeMap<String, Entrada> nuevas = new TreeMap<>();
+        boolean cambio = false;
+        for (File f : GestorArchivos.listarArchivosSemestre(raiz)) {
+            String carrera = f.getParentFile().getName();
+            String nombre = f.getName();
+            String semestre = nombre.substring(0, nombre.lastIndexOf('.'));
+            String clave = carrera + "/" + semestre;
+            boolean comprimido = nombre.endsWith(ArchivoComprimido.EXTENSION);
+
+            Entrada previa = anteriores.get(clave);
+            if (previa != null && previa.alumnos >= 0 && previa.bytes == f.length()
+                    && previa.modificado == f.lastModified() && previa.comprimido == comprimido) {
+                nuevas.put(clave, previa);
+                continue;
+            }
+            nuevas.put(clave, new Entrada(carrera, semestre, contar(f), f.length(), f.lastModified(), comprimido));
+            cambio = true;
+        }
+
+        boolean cambioLista = !nuevas.keySet().equals(anteriores.keySet());
+        synchronized (this) {
+            entradas.clear();
+            entradas.putAll(nuevas);
+        }
+        if (cambio || cambioLista) guardar();
+        return cambioLista;
+    }
+
+    /** Cuenta las líneas no vacías de un archivo de semestre (.txt o .txtz) */
+    private static int contar(File f) throws IOException {
+        int n = 0;
+        try (BufferedReader br = new GestorArchivos(f.getPath()).abrirLector()) {
+            String l;
+            while ((l = br.readLine()) != null)
+                if (!l.trim().isEmpty()) n++;
+        }
+        return n;
+    }
+
+    /**
+     * Oyente de RegistroVersiones: si cambió un semestre de esta raíz su
+     * cantidad de alumnos queda "sin contar" hasta la próxima validación.
+     */
+    private synchronized void archivoModificado(File f) {
+        File carpeta = f.getAbsoluteFile().getParentFile();
+        if (carpeta == null || !raiz.getAbsoluteFile().equals(carpeta.getParentFile())) return;
+
+        String nombre = f.getName();
+        int punto = nombre.lastIndexOf('.');
+        if (punto < 0) return;
+        String clave = carpeta.getName() + "/" + nombre.substring(0, punto);
+
+        Entrada e = entradas.get(clave);
+        entradas.put(clave, new Entrada(carpeta.getName(), nombre.substring(0, punto), -1,
+                e == null ? -1 : e.bytes, -1, e != null && e.comprimido));
+    }
+
+    // -------------------------------
+    //          PERSISTENCIA
+    // -------------------------------
+
+    private synchronized void leer() {
+        if (!archivo.exists()) return;
+
+        try (BufferedReader br = Files.newBufferedReader(archivo.toPath(), StandardCharsets.UTF_8)) {
+            String l = br.readLine();
+            if (!ENCABEZADO.equals(l)) return; // formato desconocido: se reconstruye al validar
+
+            while ((l = br.readLine()) != null) {
+                String[] p = l.split("\\|", -1);
+                if (p.length < 6) continue;
+                entradas.put(p[0] + "/" + p[1], new Entrada(p[0], p[1], Integer.parseInt(p[2]),
+                        Long.parseLong(p[3]), Long.parseLong(p[4]), p[5].equals("1")));
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Catálogo dañado: se ignora y se reconstruye al validar
+            entradas.clear();
+        }
+    }
+
+    private void guardar() throws IOException {
+        List<Entrada> copia;
+        synchronized (this) {
+            copia = new ArrayList<>(entradas.values());
+        }
+
+        Files.createDirectories(archivo.getAbsoluteFile().getParentFile().toPath());
+        File tmp = Files.createTempFile(archivo.getAbsoluteFile().getParentFile().toPath(), "catalogo", ".tmp").toFile();
+        try (BufferedWriter bw = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+            bw.write(ENCABEZADO);
+            bw.newLine();
+            for (Entrada e : copia) {
+                bw.write(e.carrera + "|" + e.semestre + "|" + e.alumnos + "|" + e.bytes + "|"
+                        + e.modificado + "|" + (e.comprimido ? "1" : "0"));
+                bw.newLine();
+            }
+        }
+        Files.move(tmp.toPath(), archivo.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,147 @@
+package Modelo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vigila la carpeta raíz de alumnos y las carpetas de cada carrera usando
+ * WatchService, para enterarse cuando otra oficina modifica un archivo
+ * de semestre en la carpeta compartida.
+ *
+ * Los eventos se agrupan (debounce): un archivo solo se reporta cuando
+ * lleva un tiempo sin recibir eventos, así una escritura grande genera un
+ * único aviso. El aviso se entrega a RegistroVersiones, que a su vez
+ * notifica a quien tenga datos de ese archivo en memoria.
+ */
+public class MonitorCarpetas {
+
+    /** Tiempo de espera sin eventos antes de reportar un archivo */
+    private static final long ESPERA_MS = 300;
+
+    private final Path raiz;
+    private WatchService servicio;
+    private Thread hilo;
+
+    /** Carpeta vigilada por cada llave de WatchService */
+    private final Map<WatchKey, Path> carpetas = new HashMap<>();
+
+    /** Archivos con eventos pendientes y el momento en que deben reportarse */
+    private final Map<Path, Long> pendientes = new LinkedHashMap<>();
+
+    /**
+     * @param raiz carpeta raíz de alumnos (por ejemplo "Alumnos")
+     */
+    public MonitorCarpetas(String raiz) {
+        this.raiz = new File(raiz).getAbsoluteFile().toPath();
+    }
+
+    /**
+     * Inicia la vigilancia en un hilo de fondo. Si ya estaba iniciada no hace nada.
+     */
+    public synchronized void iniciar() throws IOException {
+        if (hilo != null) return;
+
+        Files.createDirectories(raiz);
+        servicio = FileSystems.getDefault().newWatchService();
+
+        // La raíz detecta carreras nuevas; cada carrera detecta sus semestres
+        registrar(raiz);
+        File[] dirs = raiz.toFile().listFiles(File::isDirectory);
+        if (dirs != null)
+            for (File d : dirs) registrar(d.toPath());
+
+        hilo = new Thread(this::ciclo, "monitor-carpetas");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /** Detiene la vigilancia y libera el WatchService */
+    public synchronized void detener() {
+        if (hilo == null) return;
+        try {
+            servicio.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        hilo.interrupt();
+        hilo = null;
+    }
+
+    private void registrar(Path carpeta) throws IOException {
+        WatchKey k = carpeta.register(servicio,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        carpetas.put(k, carpeta);
+    }
+
+    /** Ciclo principal: recibe eventos y reporta los archivos ya estables */
+    private void ciclo() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+
+                // Si hay pendientes se espera solo hasta el más próximo
+                long espera = pendientes.isEmpty() ? Long.MAX_VALUE : ESPERA_MS;
+                WatchKey k = espera == Long.MAX_VALUE
+                        ? servicio.take()
+                        : servicio.poll(espera, TimeUnit.MILLISECONDS);
+
+                if (k != null) procesar(k);
+                reportarEstables();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Fin normal del monitor
+        }
+    }
+
+    private void procesar(WatchKey k) {
+        Path carpeta = carpetas.get(k);
+
+        for (WatchEvent<?> ev : k.pollEvents()) {
+            if (ev.kind() == StandardWatchEventKinds.OVERFLOW || carpeta == null) continue;
+
+            Path p = carpeta.resolve((Path) ev.context());
+
+            // Carrera nueva dentro de la raíz → también se vigila
+            if (carpeta.equals(raiz) && Files.isDirectory(p)) {
+                try {
+                    registrar(p);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                continue;
+            }
+
+            if (GestorArchivos.esArchivoDeSemestre(p.toFile()))
+                pendientes.put(p, System.currentTimeMillis() + ESPERA_MS);
+        }
+
+        if (!k.reset()) carpetas.remove(k);
+    }
+
+    private void reportarEstables() {
+        long ahora = System.currentTimeMillis();
+        Iterator<Map.Entry<Path, Long>> it = pendientes.entrySet().iterator();
+
+        while (it.hasNext()) {
+            Map.Entry<Path, Long> e = it.next();
+            if (e.getValue() <= ahora) {
+                it.remove();
+                RegistroVersiones.notificarSiCambio(e.getKey().toFile());
+            }
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package Modelo;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Promoción de fin de ciclo: cada alumno de una carrera pasa al semestre
+ * siguiente (los de Octavo pasan a "Egresados").
+ *
+ * Hacerlo alumno por alumno con editarAlumno reescribe el archivo de origen
+ * y agrega al de destino una vez por alumno. Aquí cada archivo de semestre
+ * se lee una sola vez línea por línea, se cambia el campo semestre sin
+ * convertir la línea a Alumno, se revisan matrículas repetidas contra un
+ * conjunto en memoria del destino y se escribe cada archivo nuevo una vez.
+ *
+ * Cada carrera se confirma completa o no se toca:
+ *  1. los archivos nuevos se escriben como temporales (.promocion);
+ *  2. se escribe un diario (promocion.txt en la carpeta de la carrera) con
+ *     los reemplazos pendientes;
+ *  3. se reemplazan los archivos y se borra el diario.
+ * Si el programa se cierra en el paso 3, {@link #recuperar(File)} termina
+ * los reemplazos la siguiente vez que inicia (ver ControladorAlumno) o
+ * antes de la siguiente promoción; si se cierra antes, los temporales se
+ * descartan y la carrera queda como estaba.
+ *
+ * Los semestres promovidos quedan en texto plano (.txt) aunque estuvieran
+ * archivados; se pueden volver a archivar.
+ */
+public class PromocionSemestres {
+
+    /** Semestres en orden; cada uno se promueve al siguiente */
+    public static final List<String> SEMESTRES = List.of(
+            "Primer Semestre", "Segundo Semestre", "Tercer Semestre", "Cuarto Semestre",
+            "Quinto Semestre", "Sexto Semestre", "Séptimo Semestre", "Octavo Semestre");
+
+    /** A dónde van los alumnos del último semestre */
+    public static final String EGRESADOS = "Egresados";
+
+    private static final String DIARIO = "promocion.txt";
+    private static final String ENCABEZADO_DIARIO = "#promocion v1";
+    private static final String TEMPORAL = ".promocion";
+
+    /** Resultado de promover una carrera */
+    public static final class Reporte {
+        private final String carrera;
+        /** semestre → {antes, salen, entran, después} */
+        private final Map<String, int[]> semestres = new LinkedHashMap<>();
+        private final List<String> conflictos = new ArrayList<>();
+        private boolean aplicado;
+
+        Reporte(String carrera) {
+            this.carrera = carrera;
+        }
+
+        public String getCarrera() { return carrera; }
+
+        /** @return matrículas que quedarían repetidas ("matrícula: origen → destino") */
+        public List<String> getConflictos() { return conflictos; }
+
+        /** @return true si se escribieron los cambios (false en simulación o con conflictos) */
+        public boolean isAplicado() { return aplicado; }
+
+        /** @return alumnos que cambian de semestre */
+        public int getPromovidos() {
+            int n = 0;
+            for (int[] c : semestres.values()) n += c[1];
+            return n;
+        }
+
+        /** @return {antes, salen, entran, después} de un semestre, o null si no participa */
+        public int[] conteo(String semestre) {
+            return semestres.get(semestre);
+        }
+
+        private int[] de(String semestre) {
+            return semestres.computeIfAbsent(semestre, k -> new int[4]);
+        }
+
+        @Override public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(carrera).append(aplicado ? "" : " (sin aplicar)").append(System.lineSeparator());
+            sb.append(String.format("  %-18s %7s %7s %7s %7s%n", "Semestre", "Antes", "Salen", "Entran", "Después"));
+            for (Map.Entry<String, int[]> e : semestres.entrySet()) {
+                int[] c = e.getValue();
+                sb.append(String.format("  %-18s %7d %7d %7d %7d%n", e.getKey(), c[0], c[1], c[2], c[3]));
+            }
+            for (String c : conflictos) sb.append("  Repetida: ").append(c).append(System.lineSeparator());
+            return sb.toString();
+        }
+    }
+
+    private final File carpeta;
+
+    /**
+     * @param carpeta carpeta de la carrera (por ejemplo Alumnos/Derecho)
+     */
+    public PromocionSemestres(File carpeta) {
+        this.carpeta = carpeta.getAbsoluteFile();
+    }
+
+    /**
+     * Promueve a todos los alumnos de la carrera.
+     *
+     * @param simular true para solo calcular el reporte sin escribir nada
+     */
+    public Reporte promover(boolean simular) throws IOException {
+        return promover(SEMESTRES, simular);
+    }
+
+    /**
+     * Promueve solo a los alumnos de los semestres indicados. Los alumnos de
+     * los demás semestres se quedan donde están; los promovidos se agregan
+     * a ellos si ese es su destino.
+     *
+     * @param semestres semestres cuyos alumnos avanzan (de SEMESTRES)
+     * @param simular true para solo calcular el reporte sin escribir nada
+     * @return reporte; si hay matrículas repetidas no se escribe nada
+     */
+    public Reporte promover(List<String> semestres, boolean simular) throws IOException {
+        // Las promociones son raras: una a la vez, para que recuperar() no
+        // borre los temporales de otra que está en curso
+        synchronized (PromocionSemestres.class) {
+            return promoverSinEsperar(semestres, simular);
+        }
+    }
+
+    private Reporte promoverSinEsperar(List<String> semestres, boolean simular) throws IOException {
+        Reporte r = new Reporte(carpeta.getName());
+        recuperar(carpeta);
+
+        Set<String> promovidos = new HashSet<>();
+        for (String s : semestres) {
+            if (!SEMESTRES.contains(s)) throw new IllegalArgumentException("Semestre desconocido: " + s);
+            if (existe(s)) promovidos.add(s);
+        }
+        if (promovidos.isEmpty()) return r;
+
+        // Archivos afectados: los promovidos y sus destinos, en orden de semestre
+        List<String> afectados = new ArrayList<>();
+        for (String s : orden()) {
+            String anterior = anterior(s);
+            if (promovidos.contains(s) || (anterior != null && promovidos.contains(anterior))) afectados.add(s);
+        }
+
+        // Candados de escritura siempre en el mismo orden (ver LoteCambios)
+        TreeMap<String, File> porClave = new TreeMap<>();
+        for (String s : afectados) porClave.put(RegistroVersiones.clave(archivo(s)), archivo(s));
+        List<Lock> tomados = new ArrayList<>();
+        List<File> temporales = new ArrayList<>();
+        try {
+            for (File f : porClave.values()) {
+                Lock l = AlumnoDAO.candado(f).writeLock();
+                l.lock();
+                tomados.add(l);
+            }
+
+            // Para la bitácora: {línea anterior, línea nueva, semestre destino}
+            List<String[]> cambios = new ArrayList<>();
+
+            for (String s : afectados) {
+                String anterior = anterior(s);
+                boolean sale = promovidos.contains(s);
+                boolean entra = anterior != null && promovidos.contains(anterior);
+                int[] c = r.de(s);
+
+                File tmp = new File(carpeta, s + ".txt" + TEMPORAL);
+                BufferedWriter bw = simular ? null : new BufferedWriter(
+                        new OutputStreamWriter(new FileOutputStream(tmp), GestorArchivos.CODIFICACION));
+                if (bw != null) temporales.add(tmp);
+                try {
+                    // Matrículas del destino: las que se quedan y las que van llegando
+                    Set<String> ocupadas = new HashSet<>();
+
+                    try (BufferedReader br = abrir(s)) {
+                        String l;
+                        while (br != null && (l = br.readLine()) != null) {
+                            if (l.trim().isEmpty()) continue;
+                            c[0]++;
+                            if (sale) {
+                                c[1]++;
+                                continue;
+                            }
+                            ocupadas.add(clave(l));
+                            if (bw != null) escribir(bw, l);
+                        }
+                    }
+
+                    if (entra) {
+                        try (BufferedReader br = abrir(anterior)) {
+                            String l;
+                            while ((l = br.readLine()) != null) {
+                                if (l.trim().isEmpty()) continue;
+                                String nueva = conSemestre(l, s);
+                                if (!ocupadas.add(clave(l))) {
+                                    r.conflictos.add(matricula(l) + ": " + anterior + " → " + s);
+                                    continue;
+                                }
+                                c[2]++;
+                                if (bw != null) {
+                                    escribir(bw, nueva);
+                                    cambios.add(new String[] { l, nueva, s });
+                                }
+                            }
+                        }
+                    }
+                    c[3] = ocupadas.size();
+                } finally {
+                    if (bw != null) bw.close();
+                }
+            }
+
+            if (simular || !r.conflictos.isEmpty()) return r;
+
+            confirmar(afectados);
+            temporales.clear();
+            r.aplicado = true;
+
+            for (String s : afectados) {
+                RegistroVersiones.notificarCambio(archivo(s));
+                FeedCambios.registrarArchivo(archivo(s));
+            }
+            List<HistorialCalificaciones.Movimiento> movimientos = new ArrayList<>(cambios.size());
+            for (String[] x : cambios) {
+                Alumno antes = Alumno.fromLinea(x[0]), despues = Alumno.fromLinea(x[1]);
+                BitacoraAuditoria.registrar(BitacoraAuditoria.Accion.EDICION, BitacoraAuditoria.usuario(),
+                        archivo(x[2]), antes, despues, "promoción");
+                movimientos.add(new HistorialCalificaciones.Movimiento(archivo(anterior(x[2])), antes, archivo(x[2]), despues));
+            }
+            HistorialCalificaciones.registrarMovimientos(movimientos);
+            return r;
+        } finally {
+            // Sin confirmar (simulación, conflicto o error): la carrera queda como estaba
+            for (File t : temporales) t.delete();
+            for (int i = tomados.size() - 1; i >= 0; i--) tomados.get(i).unlock();
+        }
+    }
+
+    /** Escribe el diario y reemplaza los archivos */
+    private void confirmar(List<String> semestres) throws IOException {
+        File diario = new File(carpeta, DIARIO);
+        File tmp = new File(carpeta, DIARIO + TEMPORAL);
+        try (BufferedWriter bw = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+            bw.write(ENCABEZADO_DIARIO);
+            bw.newLine();
+            for (String s : semestres) {
+                bw.write(s);
+                bw.newLine();
+            }
+        }
+        mover(tmp, diario);
+        terminar(carpeta);
+    }
+
+    /**
+     * Termina una promoción interrumpida en la carpeta de una carrera: si
+     * hay diario se hacen los reemplazos pendientes; si no, se borran los
+     * temporales que hayan quedado. No hace nada si no hay nada pendiente.
+     * Los archivos reemplazados se avisan como cualquier otro cambio
+     * (cachés, tabla abierta y feed de la réplica).
+     */
+    public static synchronized void recuperar(File carpetaCarrera) throws IOException {
+        List<File> reemplazados;
+        List<Lock> tomados = new ArrayList<>();
+        try {
+            // Con los candados de escritura nadie edita un semestre mientras se reemplaza
+            TreeMap<String, File> porClave = new TreeMap<>();
+            for (File f : pendientesDelDiario(carpetaCarrera)) porClave.put(RegistroVersiones.clave(f), f);
+            for (File f : porClave.values()) {
+                Lock l = AlumnoDAO.candado(f).writeLock();
+                l.lock();
+                tomados.add(l);
+            }
+            reemplazados = terminar(carpetaCarrera);
+        } finally {
+            for (int i = tomados.size() - 1; i >= 0; i--) tomados.get(i).unlock();
+        }
+
+        for (File f : reemplazados) {
+            RegistroVersiones.notificarCambio(f);
+            FeedCambios.registrarArchivo(f);
+        }
+    }
+
+    /** @return semestres (.txt) que el diario de la carpeta dice reemplazar; vacío si no hay diario */
+    private static List<File> pendientesDelDiario(File carpetaCarrera) throws IOException {
+        List<File> res = new ArrayList<>();
+        File diario = new File(carpetaCarrera, DIARIO);
+        if (!diario.exists()) return res;
+        List<String> lineas = Files.readAllLines(diario.toPath(), StandardCharsets.UTF_8);
+        if (lineas.isEmpty() || !ENCABEZADO_DIARIO.equals(lineas.get(0))) return res;
+        for (String s : lineas.subList(1, lineas.size()))
+            if (!s.isEmpty()) res.add(new File(carpetaCarrera, s + ".txt"));
+        return res;
+    }
+
+    /**
+     * Hace los reemplazos del diario y borra temporales. Quien llama ya
+     * tiene los candados de escritura de esos semestres.
+     *
+     * @return semestres que se reemplazaron aquí
+     */
+    private static List<File> terminar(File carpetaCarrera) throws IOException {
+        List<File> reemplazados = new ArrayList<>();
+        File diario = new File(carpetaCarrera, DIARIO);
+        if (diario.exists()) {
+            for (File destino : pendientesDelDiario(carpetaCarrera)) {
+                File tmp = new File(destino.getPath() + TEMPORAL);
+                if (tmp.exists()) {
+                    mover(tmp, destino);
+                    reemplazados.add(destino);
+                }
+
+                // El .txt nuevo reemplaza a la versión archivada
+                File archivado = new File(destino.getPath() + "z");
+                if (destino.exists() && archivado.delete()) RegistroVersiones.notificarCambio(archivado);
+            }
+            Files.delete(diario.toPath());
+        }
+
+        File[] sueltos = carpetaCarrera.listFiles((d, n) -> n.endsWith(TEMPORAL));
+        if (sueltos != null)
+            for (File f : sueltos) f.delete();
+        return reemplazados;
+    }
+
+    // -------------------------------
+    //           AUXILIARES
+    // -------------------------------
+
+    /** @return semestres en orden, más Egresados al final */
+    static List<String> orden() {
+        List<String> res = new ArrayList<>(SEMESTRES);
+        res.add(EGRESADOS);
+        return res;
+    }
+
+    /** @return lugar del semestre en el orden (Egresados al final), o -1 si no es uno conocido */
+    static int posicion(String semestre) {
+        return orden().indexOf(semestre);
+    }
+
+    /** @return semestre cuyos alumnos llegan a este, o null para el primero */
+    private static String anterior(String semestre) {
+        int i = orden().indexOf(semestre);
+        return i <= 0 ? null : orden().get(i - 1);
+    }
+
+    private File archivo(String semestre) {
+        return new File(carpeta, semestre + ".txt");
+    }
+
+    private boolean existe(String semestre) {
+        return new GestorArchivos(archivo(semestre).getPath()).archivoEnDisco().exists();
+    }
+
+    /** @return lector del semestre (.txt o .txtz), o null si no existe */
+    private BufferedReader abrir(String semestre) throws IOException {
+        return existe(semestre) ? new GestorArchivos(archivo(semestre).getPath()).abrirLector() : null;
+    }
+
+    /** Cambia el cuarto campo (semestre) de una línea sin convertirla a Alumno */
+    static String conSemestre(String linea, String semestre) {
+        int a = linea.indexOf('|');
+        a = a < 0 ? -1 : linea.indexOf('|', a + 1);
+        a = a < 0 ? -1 : linea.indexOf('|', a + 1);
+        if (a < 0) return linea;
+        int b = linea.indexOf('|', a + 1);
+        return linea.substring(0, a + 1) + semestre + (b < 0 ? "" : linea.substring(b));
+    }
+
+    /** @return matrícula (segundo campo) tal como está escrita */
+    private static String matricula(String linea) {
+        int a = linea.indexOf('|');
+        if (a < 0) return "";
+        int b = linea.indexOf('|', a + 1);
+        return (b < 0 ? linea.substring(a + 1) : linea.substring(a + 1, b)).trim();
+    }
+
+    private static String clave(String linea) {
+        return matricula(linea).toLowerCase();
+    }
+
+    private static void escribir(BufferedWriter bw, String linea) throws IOException {
+        bw.write(linea);
+        bw.newLine();
+    }
+
+    private static void mover(File origen, File destino) throws IOException {
+        try {
+            Files.move(origen.toPath(), destino.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(origen.toPath(), destino.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package Modelo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Carpetas de alumnos repartidas en varios discos.
+ *
+ * Cada carrera vive completa en una sola raíz; así sus semestres, índices,
+ * respaldos y bitácoras siguen juntos y nada de lo que ya trabaja sobre un
+ * archivo de semestre tiene que saber de las demás raíces. A qué raíz va
+ * una carrera:
+ *  1. la raíz donde ya exista su carpeta (la primera, si hubiera varias);
+ *  2. si es nueva, una raíz elegida por el hash de su nombre.
+ * Agregar una raíz no mueve carreras existentes; solo recibe carreras nuevas.
+ *
+ * Las operaciones globales (listar, buscar, rangos, respaldos) se reparten
+ * con {@link #paraCada(Tarea)}: un hilo por raíz, así cada disco lee al
+ * mismo tiempo que los demás.
+ *
+ * Se configuran con -Dcalificaciones.raices=ruta1;ruta2 (separadas con el
+ * separador de rutas del sistema: ";" en Windows, ":" en Linux). Cada raíz
+ * debe estar en su propia carpeta padre, porque ahí se guardan sus índices,
+ * respaldos, cambios y auditoría.
+ */
+public final class RaicesAlmacenamiento {
+
+    /** Trabajo que se hace sobre una raíz */
+    @FunctionalInterface
+    public interface Tarea<T> {
+        T ejecutar(File raiz) throws IOException;
+    }
+
+    /** Hilos para repartir el trabajo entre raíces (casi todo es esperar al disco) */
+    private static final ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final List<File> raices;
+
+    /** carrera → raíz donde vive (se llena conforme se consulta) */
+    private final Map<String, File> ubicacion = new ConcurrentHashMap<>();
+
+    /**
+     * @param raices carpetas de alumnos; la primera es la principal
+     * @throws IllegalArgumentException si la lista está vacía o dos raíces
+     *         comparten carpeta padre
+     */
+    public RaicesAlmacenamiento(List<File> raices) {
+        if (raices.isEmpty()) throw new IllegalArgumentException("Se necesita al menos una carpeta de alumnos.");
+
+        Set<File> padres = new HashSet<>();
+        List<File> lista = new ArrayList<>();
+        for (File r : raices) {
+            File padre = r.getAbsoluteFile().getParentFile();
+            if (raices.size() > 1 && !padres.add(padre))
+                throw new IllegalArgumentException("Cada carpeta de alumnos necesita su propia carpeta padre: " + r);
+            lista.add(r);
+        }
+        this.raices = Collections.unmodifiableList(lista);
+    }
+
+    /**
+     * Raíces indicadas en -Dcalificaciones.raices o, si no hay, solo la
+     * predeterminada.
+     */
+    public static RaicesAlmacenamiento configuradas(String predeterminada) {
+        String prop = System.getProperty("calificaciones.raices", "").trim();
+        List<File> lista = new ArrayList<>();
+        for (String r : prop.split(File.pathSeparator))
+            if (!r.trim().isEmpty()) lista.add(new File(r.trim()));
+        if (lista.isEmpty()) lista.add(new File(predeterminada));
+        return new RaicesAlmacenamiento(lista);
+    }
+
+    /** @return todas las raíces, la principal primero */
+    public List<File> todas() {
+        return raices;
+    }
+
+    /** @return la raíz principal (la primera configurada) */
+    public File principal() {
+        return raices.get(0);
+    }
+
+    /** @return true si hay más de una raíz */
+    public boolean esMultiple() {
+        return raices.size() > 1;
+    }
+
+    /** @return la raíz donde vive (o vivirá) la carpeta de una carrera */
+    public File raizDe(String carrera) {
+        if (raices.size() == 1) return raices.get(0);
+
+        File r = ubicacion.get(carrera);
+        // Se vuelve a revisar por si otra instancia borró o movió la carpeta
+        if (r != null && new File(r, carrera).isDirectory()) return r;
+
+        for (File x : raices) {
+            if (new File(x, carrera).isDirectory()) {
+                ubicacion.put(carrera, x);
+                return x;
+            }
+        }
+        r = raices.get(Math.floorMod(carrera.hashCode(), raices.size()));
+        ubicacion.put(carrera, r);
+        return r;
+    }
+
+    /** @return archivos de semestre de todas las raíces (listadas en paralelo) */
+    public List<File> archivosDeSemestre() {
+        List<File> res = new ArrayList<>();
+        for (List<File> l : paraCadaSinError(GestorArchivos::listarArchivosSemestre)) res.addAll(l);
+        return res;
+    }
+
+    /**
+     * Ejecuta una tarea sobre cada raíz, todas al mismo tiempo.
+     *
+     * @return resultados en el orden de las raíces
+     * @throws IOException la primera que haya lanzado alguna tarea (después
+     *         de esperar a que terminen las demás)
+     */
+    public <T> List<T> paraCada(Tarea<T> tarea) throws IOException {
+        List<T> res = new ArrayList<>(raices.size());
+        if (raices.size() == 1) {
+            res.add(tarea.ejecutar(raices.get(0)));
+            return res;
+        }
+
+        List<Future<T>> pendientes = new ArrayList<>();
+        for (File r : raices) pendientes.add(hilos.submit(() -> tarea.ejecutar(r)));
+
+        IOException error = null;
+        for (Future<T> f : pendientes) {
+            try {
+                res.add(f.get());
+            } catch (ExecutionException e) {
+                Throwable c = e.getCause();
+                if (c instanceof RuntimeException) throw (RuntimeException) c;
+                if (c instanceof Error) throw (Error) c;
+                if (error == null) error = c instanceof IOException ? (IOException) c : new IOException(c);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrumpido", e);
+            }
+        }
+        if (error != null) throw error;
+        return res;
+    }
+
+    /** Como {@link #paraCada(Tarea)} para tareas que no lanzan IOException */
+    public <T> List<T> paraCadaSinError(Tarea<T> tarea) {
+        try {
+            return paraCada(tarea);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
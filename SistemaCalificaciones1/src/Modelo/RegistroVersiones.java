@@ -0,0 +1,126 @@
+package Modelo;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Registro central de versiones de los archivos de semestre.
+ *
+ * Cada vez que un archivo cambia (por una escritura propia de GestorArchivos
+ * o por un cambio externo detectado por MonitorCarpetas) su versión aumenta
+ * y se avisa a los oyentes registrados. Así cada componente que guarda datos
+ * en memoria puede invalidar SOLO lo que corresponde al archivo modificado.
+ */
+public final class RegistroVersiones {
+
+    /** Estado conocido de cada archivo: versión lógica + sello físico */
+    private static final ConcurrentHashMap<String, Estado> estados = new ConcurrentHashMap<>();
+
+    /** Aumenta con cualquier cambio de cualquier archivo */
+    private static final AtomicLong versionGlobal = new AtomicLong();
+
+    /** Oyentes que reciben el archivo que cambió */
+    private static final List<Consumer<File>> oyentes = new CopyOnWriteArrayList<>();
+
+    private RegistroVersiones() {}
+
+    /**
+     * Versión lógica y último sello físico (fecha de modificación y tamaño)
+     * conocidos para un archivo.
+     */
+    private static final class Estado {
+        long version;
+        long modificado;
+        long tamano;
+    }
+
+    /**
+     * Normaliza la ruta para que el mismo archivo siempre tenga la misma clave,
+     * sin importar si se abrió con ruta relativa o absoluta. La versión
+     * comprimida (.txtz) de un semestre comparte la clave de su .txt.
+     */
+    public static String clave(File archivo) {
+        String c = archivo.getAbsoluteFile().toPath().normalize().toString();
+        if (c.toLowerCase().endsWith(ArchivoComprimido.EXTENSION))
+            c = c.substring(0, c.length() - 1);
+        return c;
+    }
+
+    /** @return versión lógica actual del archivo (0 si nunca ha cambiado) */
+    public static long version(File archivo) {
+        Estado e = estados.get(clave(archivo));
+        if (e == null) return 0;
+        synchronized (e) { return e.version; }
+    }
+
+    /**
+     * @return contador que aumenta con cada cambio de cualquier archivo; sirve
+     *         para datos que dependen de todos los semestres a la vez
+     */
+    public static long versionGlobal() {
+        return versionGlobal.get();
+    }
+
+    /**
+     * Marca el archivo como modificado: incrementa su versión, guarda su sello
+     * físico actual y avisa a los oyentes.
+     */
+    public static void notificarCambio(File archivo) {
+        Estado e = estados.computeIfAbsent(clave(archivo), k -> new Estado());
+        synchronized (e) {
+            e.version++;
+            e.modificado = archivo.lastModified();
+            e.tamano = archivo.length();
+        }
+        versionGlobal.incrementAndGet();
+        avisar(archivo);
+    }
+
+    /**
+     * Igual que notificarCambio, pero solo si el sello físico del archivo es
+     * distinto al último conocido. Lo usa el monitor de carpetas para no
+     * repetir avisos de escrituras que ya notificó el propio programa.
+     *
+     * @return true si realmente había un cambio
+     */
+    public static boolean notificarSiCambio(File archivo) {
+        Estado e = estados.computeIfAbsent(clave(archivo), k -> new Estado());
+        long modificado = archivo.lastModified();
+        long tamano = archivo.length();
+        synchronized (e) {
+            if (e.version > 0 && e.modificado == modificado && e.tamano == tamano)
+                return false;
+            e.version++;
+            e.modificado = modificado;
+            e.tamano = tamano;
+        }
+        versionGlobal.incrementAndGet();
+        avisar(archivo);
+        return true;
+    }
+
+    /** Registra un oyente que será llamado con cada archivo modificado */
+    public static void agregarOyente(Consumer<File> oyente) {
+        oyentes.add(oyente);
+    }
+
+    /** Elimina un oyente registrado previamente */
+    public static void quitarOyente(Consumer<File> oyente) {
+        oyentes.remove(oyente);
+    }
+
+    private static void avisar(File archivo) {
+        for (Consumer<File> o : oyentes) {
+            try {
+                o.accept(archivo);
+            } catch (RuntimeException ex) {
+                // Un oyente con error no debe impedir que se avise a los demás
+                ex.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package Modelo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Mantiene una copia (espejo) de la carpeta de alumnos aplicando solo los
+ * cambios registrados en el feed (ver FeedCambios).
+ *
+ * La primera vez copia todos los semestres. Después cada llamada a
+ * {@link #replicar()} lee el feed desde la posición guardada, agrupa los
+ * eventos por archivo y reescribe en el espejo solo los archivos tocados:
+ * el costo depende de lo que cambió, no del tamaño de la carpeta.
+ *
+ * La posición se guarda en replica.txt dentro del espejo ("secuencia
+ * posición") después de escribir los archivos. Si el programa se cierra a
+ * medias, al reanudar se vuelven a aplicar algunos eventos; aplicarlos dos
+ * veces deja el mismo resultado (un alta reemplaza al alumno con esa
+ * matrícula, una baja de alguien que ya no está no hace nada).
+ *
+ * En el espejo los semestres se guardan siempre como .txt.
+ */
+public class Replicador {
+
+    private static final String PUNTO_CONTROL = "replica.txt";
+
+    /** Eventos que se aplican antes de guardar el punto de control */
+    private static final int EVENTOS_POR_TANDA = 50_000;
+
+    private final File raiz;
+    private final File espejo;
+    private final FeedCambios feed;
+
+    /**
+     * @param raiz carpeta de alumnos de origen
+     * @param espejo carpeta donde se mantiene la copia
+     */
+    public Replicador(File raiz, File espejo) {
+        this.raiz = raiz.getAbsoluteFile();
+        this.espejo = espejo.getAbsoluteFile();
+        File base = this.raiz.getParentFile() == null ? this.raiz : this.raiz.getParentFile();
+        this.feed = FeedCambios.en(new File(base, "Cambios"));
+    }
+
+    /** Un evento leído del feed */
+    private static final class Evento {
+        final FeedCambios.Tipo tipo;
+        final String matricula;
+        final String linea;
+
+        Evento(FeedCambios.Tipo tipo, String matricula, String linea) {
+            this.tipo = tipo;
+            this.matricula = matricula;
+            this.linea = linea;
+        }
+    }
+
+    /**
+     * Lleva el espejo al estado actual del origen.
+     *
+     * @return cantidad de eventos aplicados (en la primera copia, la
+     *         cantidad de semestres copiados)
+     */
+    public synchronized long replicar() throws IOException {
+        long[] punto = leerPuntoControl();
+        File archivoFeed = feed.getArchivo();
+
+        // Sin punto de control, o el feed se borró o se recortó: copia completa
+        if (punto == null || archivoFeed.length() < punto[1]) return copiaCompleta();
+
+        long aplicados = 0;
+        try (FileChannel canal = FileChannel.open(archivoFeed.toPath(), StandardOpenOption.READ);
+             InputStream in = new BufferedInputStream(Channels.newInputStream(canal.position(punto[1])), 64 * 1024)) {
+            long posicion = punto[1];
+            long secuencia = punto[0];
+            ByteArrayOutputStream linea = new ByteArrayOutputStream(256);
+            while (true) {
+                // "carrera/semestre" → eventos de ese archivo, en orden
+                Map<String, List<Evento>> porArchivo = new LinkedHashMap<>();
+                int leidos = 0;
+                String l;
+                while (leidos < EVENTOS_POR_TANDA && (l = leerLineaCompleta(in, linea)) != null) {
+                    posicion += linea.size() + 1;
+                    String[] p = l.split("\t", -1);
+                    if (p.length < 6) continue;
+                    secuencia = Long.parseLong(p[0]);
+                    String clave = BitacoraAuditoria.desescapar(p[2]) + "/" + BitacoraAuditoria.desescapar(p[3]);
+                    porArchivo.computeIfAbsent(clave, k -> new ArrayList<>())
+                            .add(new Evento(FeedCambios.Tipo.valueOf(p[1]),
+                                    BitacoraAuditoria.desescapar(p[4]), BitacoraAuditoria.desescapar(p[5])));
+                    leidos++;
+                }
+                if (leidos == 0) break;
+
+                for (Map.Entry<String, List<Evento>> e : porArchivo.entrySet())
+                    aplicar(e.getKey(), e.getValue());
+                guardarPuntoControl(secuencia, posicion);
+                aplicados += leidos;
+            }
+        }
+        return aplicados;
+    }
+
+    /**
+     * Lee una línea terminada en '\n' (UTF-8); sus bytes quedan en b. Si la
+     * última línea está a medias (se está escribiendo) devuelve null y la
+     * posición guardada no la incluye: se lee completa la siguiente vez.
+     */
+    private static String leerLineaCompleta(InputStream in, ByteArrayOutputStream b) throws IOException {
+        b.reset();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') return b.toString(StandardCharsets.UTF_8);
+            b.write(c);
+        }
+        return null;
+    }
+
+    /** Aplica al espejo los eventos de un semestre */
+    private void aplicar(String clave, List<Evento> eventos) throws IOException {
+        File destino = new File(espejo, clave + ".txt");
+
+        // Si el archivo cambió completo basta copiarlo; lo anterior no importa
+        int desde = 0;
+        for (int i = eventos.size() - 1; i >= 0; i--) {
+            if (eventos.get(i).tipo == FeedCambios.Tipo.ARCHIVO) {
+                copiarDesdeOrigen(clave);
+                desde = i + 1;
+                break;
+            }
+        }
+        if (desde == eventos.size()) return;
+
+        // matrícula (minúsculas) → línea, en el orden del archivo
+        Map<String, String> alumnos = new LinkedHashMap<>();
+        if (destino.exists()) {
+            for (String l : new GestorArchivos(destino.getPath()).leerLineas())
+                alumnos.put(clave(ArchivoComprimido.matriculaDe(l)), l);
+        }
+
+        for (Evento e : eventos.subList(desde, eventos.size())) {
+            switch (e.tipo) {
+                case ALTA -> alumnos.put(clave(e.matricula), e.linea);
+                case EDICION -> {
+                    String anterior = clave(e.matricula);
+                    String nueva = clave(ArchivoComprimido.matriculaDe(e.linea));
+                    if (nueva.equals(anterior) || !alumnos.containsKey(anterior)) alumnos.put(nueva, e.linea);
+                    else alumnos = renombrar(alumnos, anterior, nueva, e.linea);
+                }
+                case BAJA -> alumnos.remove(clave(e.matricula));
+                default -> { }
+            }
+        }
+        new GestorArchivos(destino.getPath()).escribirLineas(new ArrayList<>(alumnos.values()));
+    }
+
+    /**
+     * Cambia la matrícula de un alumno sin moverlo de su lugar en el
+     * archivo (el origen lo edita en su misma línea).
+     */
+    private static Map<String, String> renombrar(Map<String, String> alumnos, String anterior,
+                                                 String nueva, String linea) {
+        Map<String, String> res = new LinkedHashMap<>();
+        for (Map.Entry<String, String> e : alumnos.entrySet()) {
+            if (e.getKey().equals(anterior)) res.put(nueva, linea);
+            else if (!e.getKey().equals(nueva)) res.put(e.getKey(), e.getValue());
+        }
+        return res;
+    }
+
+    /** Copia un semestre del origen al espejo, o lo borra del espejo si ya no existe */
+    private void copiarDesdeOrigen(String clave) throws IOException {
+        File origen = new File(raiz, clave + ".txt");
+        File destino = new File(espejo, clave + ".txt");
+        GestorArchivos g = new GestorArchivos(origen.getPath());
+
+        List<String> lineas;
+        AlumnoDAO.candado(origen).readLock().lock();
+        try {
+            if (!g.archivoEnDisco().exists()) {
+                if (destino.delete()) RegistroVersiones.notificarCambio(destino);
+                return;
+            }
+            lineas = g.leerLineas();
+        } finally {
+            AlumnoDAO.candado(origen).readLock().unlock();
+        }
+        new GestorArchivos(destino.getPath()).escribirLineas(lineas);
+    }
+
+    /**
+     * Copia todos los semestres y borra del espejo los que ya no existen.
+     * La posición del feed se toma antes de copiar: lo que cambie durante
+     * la copia se vuelve a aplicar en la siguiente llamada.
+     */
+    private long copiaCompleta() throws IOException {
+        long[] fin = feed.fin();
+        long secuencia = fin[0];
+        long posicion = fin[1];
+
+        Set<String> copiados = new HashSet<>();
+        for (File f : GestorArchivos.listarArchivosSemestre(raiz)) {
+            String clave = claveDe(f);
+            copiarDesdeOrigen(clave);
+            copiados.add(clave);
+        }
+        for (File f : GestorArchivos.listarArchivosSemestre(espejo)) {
+            if (!copiados.contains(claveDe(f)) && f.delete()) RegistroVersiones.notificarCambio(f);
+        }
+
+        guardarPuntoControl(secuencia, posicion);
+        return copiados.size();
+    }
+
+    /** @return "carrera/semestre" de un archivo de semestre */
+    private static String claveDe(File f) {
+        String nombre = f.getName();
+        return f.getParentFile().getName() + "/" + nombre.substring(0, nombre.lastIndexOf('.'));
+    }
+
+    private static String clave(String matricula) {
+        return matricula.trim().toLowerCase();
+    }
+
+    // -------------------------------
+    //        PUNTO DE CONTROL
+    // -------------------------------
+
+    /** @return última secuencia aplicada al espejo (0 si nunca se ha replicado) */
+    public long ultimaSecuenciaAplicada() {
+        long[] p = leerPuntoControl();
+        return p == null ? 0 : p[0];
+    }
+
+    /** @return {secuencia, posición en el feed} o null si no hay (o está dañado) */
+    private long[] leerPuntoControl() {
+        File f = new File(espejo, PUNTO_CONTROL);
+        if (!f.exists()) return null;
+        try {
+            String[] p = Files.readString(f.toPath(), StandardCharsets.UTF_8).trim().split(" ");
+            return new long[] { Long.parseLong(p[0]), Long.parseLong(p[1]) };
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void guardarPuntoControl(long secuencia, long posicion) throws IOException {
+        Files.createDirectories(espejo.toPath());
+        File tmp = Files.createTempFile(espejo.toPath(), "replica", ".tmp").toFile();
+        try (BufferedWriter bw = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+            bw.write(secuencia + " " + posicion);
+            bw.newLine();
+        }
+        Files.move(tmp.toPath(), new File(espejo, PUNTO_CONTROL).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
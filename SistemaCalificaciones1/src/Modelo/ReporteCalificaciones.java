@@ -0,0 +1,452 @@
+package Modelo;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Reporte de calificaciones por carrera y semestre para los jefes de
+ * departamento: cantidad de alumnos, promedio general, mediana, histograma
+ * de promedios, distribución de edades y lista de alumnos bajo un umbral.
+ *
+ * Todos los archivos se leen una sola vez y en paralelo; de cada línea se
+ * sacan los campos una vez y alimentan a todas las secciones. La memoria no
+ * depende de la cantidad de alumnos:
+ *  - las medianas salen de un histograma por centésimas (1001 contadores);
+ *  - los alumnos bajo el umbral se van a un archivo temporal por semestre
+ *    y se copian al HTML al escribirlo.
+ * Los totales por carrera y de la universidad se obtienen sumando los
+ * histogramas de los semestres, sin volver a leer nada.
+ *
+ * La salida es un HTML sin dependencias (estilos incluidos) y un CSV con una
+ * fila por semestre, una por carrera y una de la universidad.
+ */
+public class ReporteCalificaciones {
+
+    /** Umbral predeterminado para la lista de alumnos en riesgo */
+    public static final double UMBRAL_PREDETERMINADO = 7.0;
+
+    /** Límites inferiores de los grupos de edad (el último es "o más") */
+    private static final int[] GRUPOS_EDAD = { 0, 18, 21, 24, 27, 30 };
+
+    private static final String ENCABEZADO_CSV = "carrera,semestre,alumnos,media,mediana,minimo,maximo,bajo_umbral,"
+            + "prom_0_1,prom_1_2,prom_2_3,prom_3_4,prom_4_5,prom_5_6,prom_6_7,prom_7_8,prom_8_9,prom_9_10,"
+            + "edad_menos_18,edad_18_20,edad_21_23,edad_24_26,edad_27_29,edad_30_mas,lineas_invalidas";
+
+    /** Estadísticas de un semestre, una carrera o la universidad */
+    public static final class Resumen {
+        private final String carrera, semestre;
+        private long alumnos, invalidas, bajoUmbral;
+        private double suma;
+        private double minimo = Double.NaN, maximo = Double.NaN;
+        /** alumnos por promedio en centésimas (0.00 … 10.00) */
+        private final long[] centesimas = new long[1001];
+        /** alumnos por edad (la última casilla junta 120 o más) */
+        private final long[] edades = new long[121];
+
+        Resumen(String carrera, String semestre) {
+            this.carrera = carrera;
+            this.semestre = semestre;
+        }
+
+        void agregar(double promedio, int edad) {
+            alumnos++;
+            suma += promedio;
+            if (Double.isNaN(minimo) || promedio < minimo) minimo = promedio;
+            if (Double.isNaN(maximo) || promedio > maximo) maximo = promedio;
+            centesimas[(int) Math.round(Math.max(0, Math.min(10, promedio)) * 100)]++;
+            edades[Math.max(0, Math.min(120, edad))]++;
+        }
+
+        void sumar(Resumen r) {
+            alumnos += r.alumnos;
+            invalidas += r.invalidas;
+            bajoUmbral += r.bajoUmbral;
+            suma += r.suma;
+            if (!Double.isNaN(r.minimo) && (Double.isNaN(minimo) || r.minimo < minimo)) minimo = r.minimo;
+            if (!Double.isNaN(r.maximo) && (Double.isNaN(maximo) || r.maximo > maximo)) maximo = r.maximo;
+            for (int i = 0; i < centesimas.length; i++) centesimas[i] += r.centesimas[i];
+            for (int i = 0; i < edades.length; i++) edades[i] += r.edades[i];
+        }
+
+        public String getCarrera() { return carrera; }
+        public String getSemestre() { return semestre; }
+        public long getAlumnos() { return alumnos; }
+        /** @return alumnos con promedio menor al umbral */
+        public long getBajoUmbral() { return bajoUmbral; }
+        /** @return líneas que no se pudieron leer como alumno */
+        public long getInvalidas() { return invalidas; }
+        public double getMinimo() { return minimo; }
+        public double getMaximo() { return maximo; }
+
+        public double getMedia() {
+            return alumnos == 0 ? Double.NaN : suma / alumnos;
+        }
+
+        /** @return mediana de los promedios (redondeados a centésimas) */
+        public double getMediana() {
+            if (alumnos == 0) return Double.NaN;
+            return (posicion((alumnos - 1) / 2) + posicion(alumnos / 2)) / 200.0;
+        }
+
+        /** @return centésima del alumno k (0 = el promedio más bajo) */
+        private int posicion(long k) {
+            long visto = 0;
+            for (int i = 0; i < centesimas.length; i++) {
+                visto += centesimas[i];
+                if (visto > k) return i;
+            }
+            return centesimas.length - 1;
+        }
+
+        /** @return alumnos por punto de promedio: [0,1), [1,2), … [9,10] */
+        public long[] histograma() {
+            long[] h = new long[10];
+            for (int i = 0; i < centesimas.length; i++) h[Math.min(9, i / 100)] += centesimas[i];
+            return h;
+        }
+
+        /** @return alumnos por grupo de edad (ver {@link #gruposEdad()}) */
+        public long[] distribucionEdades() {
+            long[] g = new long[GRUPOS_EDAD.length];
+            for (int e = 0; e < edades.length; e++) {
+                int i = GRUPOS_EDAD.length - 1;
+                while (e < GRUPOS_EDAD[i]) i--;
+                g[i] += edades[e];
+            }
+            return g;
+        }
+
+        @Override public String toString() {
+            return String.format("%s / %s: %d alumnos, media %s, mediana %s, %d bajo el umbral", carrera, semestre,
+                    alumnos, numero(getMedia()), numero(getMediana()), bajoUmbral);
+        }
+    }
+
+    /** Un semestre leído: su resumen y el temporal con los alumnos bajo el umbral */
+    private static final class Semestre {
+        final Resumen resumen;
+        Path bajoUmbral;
+
+        Semestre(Resumen resumen) {
+            this.resumen = resumen;
+        }
+    }
+
+    private final List<File> archivos;
+    private final double umbral;
+
+    /**
+     * @param archivos archivos de semestre (de una o varias raíces)
+     * @param umbral promedio debajo del cual un alumno aparece en la lista
+     */
+    public ReporteCalificaciones(List<File> archivos, double umbral) {
+        this.archivos = new ArrayList<>(archivos);
+        this.umbral = umbral;
+    }
+
+    /** @return nombres de los grupos de edad, en el orden de {@link Resumen#distribucionEdades()} */
+    public static List<String> gruposEdad() {
+        List<String> res = new ArrayList<>();
+        for (int i = 0; i < GRUPOS_EDAD.length; i++) {
+            if (i == 0) res.add("menos de " + GRUPOS_EDAD[1]);
+            else if (i == GRUPOS_EDAD.length - 1) res.add(GRUPOS_EDAD[i] + " o más");
+            else res.add(GRUPOS_EDAD[i] + "-" + (GRUPOS_EDAD[i + 1] - 1));
+        }
+        return res;
+    }
+
+    /**
+     * Lee todos los archivos y escribe el reporte.
+     *
+     * @param html archivo HTML a crear (null = no se genera)
+     * @param csv archivo CSV a crear (null = no se genera)
+     * @return resumen de toda la universidad
+     */
+    public Resumen generar(File html, File csv) throws IOException {
+        Path temporales = Files.createTempDirectory("reporte");
+        List<Semestre> semestres = new ArrayList<>();
+        try {
+            // 1) Una sola pasada, un archivo por hilo
+            try {
+                archivos.parallelStream().map(f -> {
+                    try {
+                        return leer(f, temporales);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }).forEachOrdered(semestres::add);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            // 2) Totales a partir de los resúmenes ya calculados
+            semestres.sort(Comparator.comparing((Semestre s) -> s.resumen.carrera)
+                    .thenComparingInt(s -> ordenSemestre(s.resumen.semestre))
+                    .thenComparing(s -> s.resumen.semestre));
+            Map<String, Resumen> carreras = new TreeMap<>();
+            Resumen universidad = new Resumen("Universidad", "Total");
+            for (Semestre s : semestres) {
+                carreras.computeIfAbsent(s.resumen.carrera, c -> new Resumen(c, "Total")).sumar(s.resumen);
+                universidad.sumar(s.resumen);
+            }
+
+            // 3) Salidas
+            if (csv != null) escribirCsv(csv, semestres, carreras, universidad);
+            if (html != null) escribirHtml(html, semestres, carreras, universidad);
+            return universidad;
+        } finally {
+            for (Semestre s : semestres)
+                if (s.bajoUmbral != null) Files.deleteIfExists(s.bajoUmbral);
+            try (Stream<Path> restos = Files.list(temporales)) {
+                // Temporales de hilos que no alcanzaron a entregar su semestre por un error
+                for (Path p : (Iterable<Path>) restos::iterator) Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(temporales);
+        }
+    }
+
+    // -------------------------------
+    //            LECTURA
+    // -------------------------------
+
+    private Semestre leer(File f, Path temporales) throws IOException {
+        String nombre = f.getName();
+        Semestre s = new Semestre(new Resumen(f.getParentFile().getName(), nombre.substring(0, nombre.lastIndexOf('.'))));
+        BufferedWriter bajo = null;
+
+        AlumnoDAO.candado(f).readLock().lock();
+        try (BufferedReader br = new GestorArchivos(f.getPath()).abrirLector()) {
+            String l;
+            int[] cortes = new int[5];
+            while ((l = br.readLine()) != null) {
+                if (l.trim().isEmpty()) continue;
+
+                // Solo se separan los primeros cinco campos: nombre|matricula|promedio|semestre|edad
+                int n = 0;
+                for (int i = l.indexOf('|'); i >= 0 && n < cortes.length; i = l.indexOf('|', i + 1)) cortes[n++] = i;
+                double promedio;
+                int edad;
+                try {
+                    if (n < 4) throw new NumberFormatException();
+                    promedio = Double.parseDouble(l.substring(cortes[1] + 1, cortes[2]).trim());
+                    edad = Integer.parseInt(l.substring(cortes[3] + 1, n > 4 ? cortes[4] : l.length()).trim());
+                    if (Double.isNaN(promedio)) throw new NumberFormatException();
+                } catch (NumberFormatException e) {
+                    s.resumen.invalidas++;
+                    continue;
+                }
+                s.resumen.agregar(promedio, edad);
+
+                if (promedio < umbral) {
+                    if (bajo == null) {
+                        s.bajoUmbral = Files.createTempFile(temporales, "bajo", ".txt");
+                        bajo = Files.newBufferedWriter(s.bajoUmbral, StandardCharsets.UTF_8);
+                    }
+                    // promedio \t matrícula \t nombre, listo para el HTML
+                    bajo.write(numero(promedio));
+                    bajo.write('\t');
+                    bajo.write(BitacoraAuditoria.escapar(l.substring(cortes[0] + 1, cortes[1]).trim()));
+                    bajo.write('\t');
+                    bajo.write(BitacoraAuditoria.escapar(l.substring(0, cortes[0]).trim()));
+                    bajo.newLine();
+                    s.resumen.bajoUmbral++;
+                }
+            }
+        } finally {
+            AlumnoDAO.candado(f).readLock().unlock();
+            if (bajo != null) bajo.close();
+        }
+        return s;
+    }
+
+    // -------------------------------
+    //              CSV
+    // -------------------------------
+
+    private void escribirCsv(File csv, List<Semestre> semestres, Map<String, Resumen> carreras,
+                             Resumen universidad) throws IOException {
+        crearCarpetaPadre(csv);
+        try (BufferedWriter w = Files.newBufferedWriter(csv.toPath(), StandardCharsets.UTF_8)) {
+            w.write(ENCABEZADO_CSV);
+            w.newLine();
+            String actual = null;
+            for (Semestre s : semestres) {
+                // Al cambiar de carrera va primero el total de la anterior
+                if (actual != null && !actual.equals(s.resumen.carrera)) filaCsv(w, carreras.get(actual));
+                actual = s.resumen.carrera;
+                filaCsv(w, s.resumen);
+            }
+            if (actual != null) filaCsv(w, carreras.get(actual));
+            filaCsv(w, universidad);
+        }
+    }
+
+    private static void filaCsv(Writer w, Resumen r) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append(csv(r.carrera)).append(',').append(csv(r.semestre)).append(',').append(r.alumnos).append(',')
+          .append(numero(r.getMedia())).append(',').append(numero(r.getMediana())).append(',')
+          .append(numero(r.minimo)).append(',').append(numero(r.maximo)).append(',').append(r.bajoUmbral);
+        for (long x : r.histograma()) sb.append(',').append(x);
+        for (long x : r.distribucionEdades()) sb.append(',').append(x);
+        sb.append(',').append(r.invalidas).append(System.lineSeparator());
+        w.write(sb.toString());
+    }
+
+    private static String csv(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0) return s;
+        return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+
+    // -------------------------------
+    //              HTML
+    // -------------------------------
+
+    private void escribirHtml(File html, List<Semestre> semestres, Map<String, Resumen> carreras,
+                              Resumen universidad) throws IOException {
+        crearCarpetaPadre(html);
+        try (BufferedWriter w = Files.newBufferedWriter(html.toPath(), StandardCharsets.UTF_8)) {
+            w.write("<!DOCTYPE html>\n<html lang=\"es\">\n<head>\n<meta charset=\"utf-8\">\n"
+                    + "<title>Reporte de calificaciones</title>\n<style>\n"
+                    + "body{font-family:'Segoe UI',Arial,sans-serif;margin:24px;color:#222}\n"
+                    + "h1{font-size:22px}h2{font-size:18px;margin-top:32px;border-bottom:2px solid #2b5797}"
+                    + "h3{font-size:15px;margin-top:20px}\n"
+                    + "table{border-collapse:collapse;margin:8px 0}th,td{border:1px solid #ccc;padding:3px 8px}"
+                    + "th{background:#eef2f8;text-align:left}td.n{text-align:right}tr.total td{font-weight:bold}\n"
+                    + ".barra{display:inline-block;height:12px;background:#2b5797}.riesgo{background:#c0392b}\n"
+                    + ".graficas{display:flex;gap:32px;flex-wrap:wrap}details{margin:6px 0}\n"
+                    + "</style>\n</head>\n<body>\n");
+            w.write("<h1>Reporte de calificaciones</h1>\n<p>Generado el "
+                    + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"))
+                    + ". Umbral de riesgo: promedio menor a " + numero(umbral) + ".</p>\n");
+
+            // Universidad: una fila por carrera
+            w.write("<h2>Universidad</h2>\n");
+            abrirTablaResumen(w, "Carrera");
+            for (Resumen r : carreras.values()) filaHtml(w, r.carrera, r, false);
+            filaHtml(w, "Total", universidad, true);
+            w.write("</table>\n");
+            graficas(w, universidad);
+
+            // Cada carrera: una fila por semestre y el detalle de cada uno
+            int i = 0;
+            for (Map.Entry<String, Resumen> c : carreras.entrySet()) {
+                w.write("<h2>" + html(c.getKey()) + "</h2>\n");
+                abrirTablaResumen(w, "Semestre");
+                int desde = i;
+                while (i < semestres.size() && semestres.get(i).resumen.carrera.equals(c.getKey())) {
+                    filaHtml(w, semestres.get(i).resumen.semestre, semestres.get(i).resumen, false);
+                    i++;
+                }
+                filaHtml(w, "Total", c.getValue(), true);
+                w.write("</table>\n");
+
+                for (int j = desde; j < i; j++) {
+                    Semestre s = semestres.get(j);
+                    if (s.resumen.alumnos == 0) continue;
+                    w.write("<h3>" + html(s.resumen.semestre) + "</h3>\n");
+                    graficas(w, s.resumen);
+                    listaBajoUmbral(w, s);
+                }
+            }
+            w.write("</body>\n</html>\n");
+        }
+    }
+
+    private static void abrirTablaResumen(Writer w, String primera) throws IOException {
+        w.write("<table>\n<tr><th>" + primera + "</th><th>Alumnos</th><th>Media</th><th>Mediana</th>"
+                + "<th>Mínimo</th><th>Máximo</th><th>Bajo el umbral</th></tr>\n");
+    }
+
+    private static void filaHtml(Writer w, String titulo, Resumen r, boolean total) throws IOException {
+        w.write((total ? "<tr class=\"total\">" : "<tr>") + "<td>" + html(titulo) + "</td><td class=\"n\">"
+                + r.alumnos + "</td><td class=\"n\">" + numero(r.getMedia()) + "</td><td class=\"n\">"
+                + numero(r.getMediana()) + "</td><td class=\"n\">" + numero(r.minimo) + "</td><td class=\"n\">"
+                + numero(r.maximo) + "</td><td class=\"n\">" + r.bajoUmbral + "</td></tr>\n");
+    }
+
+    /** Histograma de promedios y distribución de edades, uno junto al otro */
+    private void graficas(Writer w, Resumen r) throws IOException {
+        w.write("<div class=\"graficas\">\n<table>\n<tr><th>Promedio</th><th colspan=\"2\">Alumnos</th></tr>\n");
+        long[] h = r.histograma();
+        for (int i = 0; i < h.length; i++)
+            barra(w, i + "-" + (i + 1), h[i], r.alumnos, i + 1 <= umbral);
+        w.write("</table>\n<table>\n<tr><th>Edad</th><th colspan=\"2\">Alumnos</th></tr>\n");
+        long[] e = r.distribucionEdades();
+        List<String> nombres = gruposEdad();
+        for (int i = 0; i < e.length; i++) barra(w, nombres.get(i), e[i], r.alumnos, false);
+        w.write("</table>\n</div>\n");
+        if (r.invalidas > 0) w.write("<p>" + r.invalidas + " líneas no se pudieron leer.</p>\n");
+    }
+
+    private static void barra(Writer w, String etiqueta, long n, long total, boolean riesgo) throws IOException {
+        int ancho = total == 0 ? 0 : (int) Math.round(200.0 * n / total);
+        w.write("<tr><td>" + html(etiqueta) + "</td><td class=\"n\">" + n + "</td><td><span class=\"barra"
+                + (riesgo ? " riesgo" : "") + "\" style=\"width:" + ancho + "px\"></span></td></tr>\n");
+    }
+
+    /** Copia la lista del temporal al HTML, línea por línea */
+    private void listaBajoUmbral(Writer w, Semestre s) throws IOException {
+        if (s.bajoUmbral == null) return;
+        w.write("<details><summary>" + s.resumen.bajoUmbral + " alumnos con promedio menor a " + numero(umbral)
+                + "</summary>\n<table>\n<tr><th>Matrícula</th><th>Nombre</th><th>Promedio</th></tr>\n");
+        try (BufferedReader br = Files.newBufferedReader(s.bajoUmbral, StandardCharsets.UTF_8)) {
+            String l;
+            while ((l = br.readLine()) != null) {
+                String[] c = l.split("\t", 3);
+                w.write("<tr><td>" + html(BitacoraAuditoria.desescapar(c[1])) + "</td><td>"
+                        + html(BitacoraAuditoria.desescapar(c[2])) + "</td><td class=\"n\">" + c[0] + "</td></tr>\n");
+            }
+        }
+        w.write("</table>\n</details>\n");
+    }
+
+    private static String html(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (char ch : s.toCharArray()) {
+            switch (ch) {
+                case '<': sb.append("&lt;"); break;
+                case '>': sb.append("&gt;"); break;
+                case '&': sb.append("&amp;"); break;
+                case '"': sb.append("&quot;"); break;
+                default: sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    // -------------------------------
+    //           AUXILIARES
+    // -------------------------------
+
+    /** Número con dos decimales y punto (vacío si no hay dato) */
+    private static String numero(double x) {
+        return Double.isNaN(x) ? "" : String.format(Locale.ROOT, "%.2f", x);
+    }
+
+    /** Orden de un semestre: Primer … Octavo, Egresados y luego los desconocidos */
+    private static int ordenSemestre(String semestre) {
+        int i = PromocionSemestres.posicion(semestre);
+        return i < 0 ? Integer.MAX_VALUE : i;
+    }
+
+    private static void crearCarpetaPadre(File f) {
+        File parent = f.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) parent.mkdirs();
+    }
+}
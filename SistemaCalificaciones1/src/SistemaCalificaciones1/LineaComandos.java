@@ -0,0 +1,306 @@
+package SistemaCalificaciones1;
+
+import Controlador.ControladorAlumno;
+import Controlador.ServidorApi;
+import Modelo.Alumno;
+import Modelo.BitacoraAuditoria;
+import Modelo.ConsultaAlumnos;
+import Modelo.DetectorDuplicados;
+import Modelo.HistorialCalificaciones;
+import Modelo.PromocionSemestres;
+import Modelo.ReporteCalificaciones;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Comandos de consola para usar el sistema sin abrir la ventana.
+ *
+ * Uso:
+ *   java SistemaCalificaciones1.MainAlumno mejores [k] [carrera]
+ *   java SistemaCalificaciones1.MainAlumno peores  [k] [carrera]
+ *   java SistemaCalificaciones1.MainAlumno rango promMin promMax [edadMin edadMax] [carrera]
+ *   java SistemaCalificaciones1.MainAlumno listar carrera semestre [desde] [limite] [texto]
+ *   java SistemaCalificaciones1.MainAlumno consulta "carrera = Derecho AND promedio < 6" [explicar] [limite]
+ *   java SistemaCalificaciones1.MainAlumno auditoria [matricula|todas] [desde AAAA-MM-DD] [hasta AAAA-MM-DD]
+ *   java SistemaCalificaciones1.MainAlumno duplicados [mas-reciente|semestre-mas-alto]
+ *   java SistemaCalificaciones1.MainAlumno historial matricula | caidas [carrera|todas] [k] | cohorte [carrera|todas] | compactar
+ *   java SistemaCalificaciones1.MainAlumno promover [carrera|todas] [aplicar]
+ *   java SistemaCalificaciones1.MainAlumno reporte destino [carrera|todas] [umbral]
+ *   java SistemaCalificaciones1.MainAlumno replicar destino [intervalo-segundos]
+ *   java SistemaCalificaciones1.MainAlumno servidor [puerto]
+ *   java SistemaCalificaciones1.MainAlumno carga [hilos=1,4,16,30] [segundos=20] ... (ver PruebaCarga)
+ */
+public class LineaComandos {
+
+    /**
+     * Ejecuta el comando indicado en los argumentos.
+     *
+     * @return código de salida (0 = correcto)
+     */
+    public static int ejecutar(String[] args) {
+        ControladorAlumno c = new ControladorAlumno();
+        String comando = args[0].toLowerCase();
+
+        try {
+            switch (comando) {
+                case "mejores":
+                case "peores": {
+                    int k = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+                    String carrera = args.length > 2 ? args[2] : null;
+
+                    long t0 = System.nanoTime();
+                    List<Alumno> res = comando.equals("mejores")
+                            ? c.mejoresPromedios(carrera, k)
+                            : c.peoresPromedios(carrera, k);
+                    long ms = (System.nanoTime() - t0) / 1_000_000;
+
+                    imprimirAlumnos(res);
+                    System.out.println(res.size() + " alumnos en " + ms + " ms");
+                    return 0;
+                }
+                case "rango": {
+                    double promMin = Double.parseDouble(args[1]);
+                    double promMax = Double.parseDouble(args[2]);
+                    int edadMin = args.length > 4 ? Integer.parseInt(args[3]) : 0;
+                    int edadMax = args.length > 4 ? Integer.parseInt(args[4]) : Integer.MAX_VALUE;
+                    String carrera = args.length == 4 ? args[3] : args.length > 5 ? args[5] : null;
+
+                    long t0 = System.nanoTime();
+                    List<Alumno> res = c.buscarPorRango(carrera, promMin, promMax, edadMin, edadMax);
+                    long ms = (System.nanoTime() - t0) / 1_000_000;
+
+                    imprimirAlumnos(res);
+                    System.out.println(res.size() + " alumnos en " + ms + " ms");
+                    return 0;
+                }
+                case "listar": {
+                    String carrera = args[1];
+                    String semestre = args[2];
+                    long desde = args.length > 3 ? Long.parseLong(args[3]) : 0;
+                    long limite = args.length > 4 ? Long.parseLong(args[4]) : Long.MAX_VALUE;
+                    String texto = args.length > 5 ? args[5].toLowerCase() : null;
+                    Predicate<Alumno> filtro = texto == null ? null
+                            : a -> a.getNombre().toLowerCase().contains(texto) || a.getMatricula().toLowerCase().contains(texto);
+
+                    // Se imprime conforme se lee: solo un alumno a la vez en memoria
+                    long t0 = System.nanoTime();
+                    long[] n = {0};
+                    try (Stream<Alumno> s = c.flujo(carrera, semestre, filtro, desde, limite)) {
+                        s.forEach(a -> {
+                            imprimirAlumno(a);
+                            n[0]++;
+                        });
+                    }
+                    long ms = (System.nanoTime() - t0) / 1_000_000;
+                    System.out.println(n[0] + " alumnos en " + ms + " ms");
+                    return 0;
+                }
+                case "consulta": {
+                    // Con "explicar" solo se muestra el plan, sin leer los archivos
+                    boolean explicar = false;
+                    int limite = Integer.MAX_VALUE;
+                    for (int i = 2; i < args.length; i++) {
+                        if (args[i].equalsIgnoreCase("explicar")) explicar = true;
+                        else limite = Integer.parseInt(args[i]);
+                    }
+
+                    long t0 = System.nanoTime();
+                    ConsultaAlumnos.Plan plan = c.planearConsulta(args[1]);
+                    if (explicar) {
+                        System.out.print(plan.explicar());
+                        System.out.println("Plan en " + (System.nanoTime() - t0) / 1_000_000 + " ms");
+                        return 0;
+                    }
+                    List<Alumno> res = plan.ejecutar(limite);
+                    long ms = (System.nanoTime() - t0) / 1_000_000;
+
+                    imprimirAlumnos(res);
+                    System.out.println(res.size() + " alumnos en " + ms + " ms (" + plan.getArchivosAbiertos()
+                            + " de " + plan.getArchivosTotales() + " archivos abiertos, "
+                            + plan.getLineasLeidas() + " líneas leídas)");
+                    return 0;
+                }
+                case "auditoria": {
+                    String matricula = args.length > 1 && !args[1].equalsIgnoreCase("todas") ? args[1] : null;
+                    LocalDate desde = args.length > 2 ? LocalDate.parse(args[2]) : null;
+                    LocalDate hasta = args.length > 3 ? LocalDate.parse(args[3]) : null;
+
+                    List<BitacoraAuditoria.Registro> res = c.consultarAuditoria(matricula, desde, hasta);
+                    for (BitacoraAuditoria.Registro r : res) System.out.println(r);
+                    System.out.println(res.size() + " eventos");
+                    return 0;
+                }
+                case "duplicados": {
+                    long t0 = System.nanoTime();
+                    DetectorDuplicados.Analisis a = c.buscarDuplicados();
+                    long ms = (System.nanoTime() - t0) / 1_000_000;
+
+                    for (DetectorDuplicados.Conflicto x : a.getConflictos()) System.out.println(x);
+                    System.out.println(a.getConflictos().size() + " matrículas repetidas (" + a.getSobrantes()
+                            + " copias de más) en " + a.getLineas() + " alumnos de " + a.getArchivos()
+                            + " archivos, " + ms + " ms");
+
+                    // Con política se corrige; sin ella solo se reporta
+                    if (args.length > 1) {
+                        DetectorDuplicados.Politica p = DetectorDuplicados.Politica.valueOf(
+                                args[1].toUpperCase().replace('-', '_'));
+                        System.out.println(c.corregirDuplicados(a, p));
+                    }
+                    return 0;
+                }
+                case "historial": {
+                    String sub = args[1].toLowerCase();
+                    long t0 = System.nanoTime();
+                    switch (sub) {
+                        case "caidas": {
+                            String carrera = args.length > 2 && !args[2].equalsIgnoreCase("todas") ? args[2] : null;
+                            int k = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+                            for (HistorialCalificaciones.Caida x : c.mayoresCaidas(carrera, k)) System.out.println(x);
+                            break;
+                        }
+                        case "cohorte": {
+                            String carrera = args.length > 2 && !args[2].equalsIgnoreCase("todas") ? args[2] : null;
+                            for (HistorialCalificaciones.PromedioCohorte x : c.promedioPorSemestre(carrera))
+                                System.out.println(x);
+                            break;
+                        }
+                        case "compactar":
+                            c.compactarHistorial();
+                            break;
+                        default: {
+                            // Cualquier otra cosa es una matrícula
+                            List<HistorialCalificaciones.Punto> puntos = c.historialDe(args[1]);
+                            System.out.println("Trayectoria:");
+                            for (HistorialCalificaciones.Punto p : HistorialCalificaciones.trayectoria(puntos))
+                                System.out.println("  " + p);
+                            System.out.println("Todos los cambios (" + puntos.size() + "):");
+                            for (HistorialCalificaciones.Punto p : puntos) System.out.println("  " + p);
+                        }
+                    }
+                    System.out.println((System.nanoTime() - t0) / 1_000_000 + " ms");
+                    return 0;
+                }
+                case "promover": {
+                    String carrera = args.length > 1 && !args[1].equalsIgnoreCase("todas") ? args[1] : null;
+                    // Sin "aplicar" solo se muestra lo que pasaría
+                    boolean aplicar = args.length > 2 && args[2].equalsIgnoreCase("aplicar");
+
+                    long t0 = System.nanoTime();
+                    List<PromocionSemestres.Reporte> res = c.promoverSemestres(carrera, !aplicar);
+                    long ms = (System.nanoTime() - t0) / 1_000_000;
+
+                    int promovidos = 0, conflictos = 0;
+                    for (PromocionSemestres.Reporte r : res) {
+                        System.out.print(r);
+                        if (r.getConflictos().isEmpty()) promovidos += r.getPromovidos();
+                        else conflictos++;
+                    }
+                    System.out.println(promovidos + " alumnos " + (aplicar ? "promovidos" : "por promover")
+                            + ", " + conflictos + " carreras con matrículas repetidas, " + ms + " ms");
+                    return conflictos == 0 ? 0 : 1;
+                }
+                case "reporte": {
+                    // "destino" sin extensión: se crean destino.html y destino.csv
+                    String base = args[1].replaceFirst("\\.(html|csv)$", "");
+                    String carrera = args.length > 2 && !args[2].equalsIgnoreCase("todas") ? args[2] : null;
+                    double umbral = args.length > 3 ? Double.parseDouble(args[3])
+                            : ReporteCalificaciones.UMBRAL_PREDETERMINADO;
+
+                    long t0 = System.nanoTime();
+                    ReporteCalificaciones.Resumen r = c.generarReporte(carrera, umbral,
+                            new File(base + ".html"), new File(base + ".csv"));
+                    long ms = (System.nanoTime() - t0) / 1_000_000;
+
+                    System.out.println(r);
+                    System.out.println("Reporte escrito en " + base + ".html y " + base + ".csv, " + ms + " ms");
+                    return 0;
+                }
+                case "replicar": {
+                    File destino = new File(args[1]);
+                    int intervalo = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+
+                    // Con intervalo se queda aplicando cambios hasta Ctrl+C
+                    do {
+                        long t0 = System.nanoTime();
+                        long n = c.replicarA(destino);
+                        long ms = (System.nanoTime() - t0) / 1_000_000;
+                        if (n > 0 || intervalo == 0)
+                            System.out.println(n + " cambios aplicados a " + destino + " en " + ms + " ms");
+                        if (intervalo > 0) Thread.sleep(intervalo * 1000L);
+                    } while (intervalo > 0);
+                    return 0;
+                }
+                case "servidor": {
+                    int puerto = args.length > 1 ? Integer.parseInt(args[1]) : ServidorApi.PUERTO_PREDETERMINADO;
+                    puerto = c.iniciarServidorApi(puerto);
+                    System.out.println("API disponible en http://127.0.0.1:" + puerto + "/api/ (Ctrl+C para salir)");
+                    Thread.currentThread().join();
+                    return 0;
+                }
+                case "carga":
+                    return PruebaCarga.ejecutar(args);
+                default:
+                    imprimirAyuda();
+                    return comando.equals("ayuda") ? 0 : 1;
+            }
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            return 2;
+        }
+    }
+
+    /** Imprime alumnos como tabla simple: promedio, matrícula, nombre, carrera y semestre */
+    static void imprimirAlumnos(List<Alumno> lista) {
+        for (Alumno a : lista) imprimirAlumno(a);
+    }
+
+    static void imprimirAlumno(Alumno a) {
+        System.out.printf("%5.2f  %-10s %-30s %s / %s%n", a.getPromedio(), a.getMatricula(),
+                a.getNombre(), a.getLicenciatura(), a.getSemestre());
+    }
+
+    private static void imprimirAyuda() {
+        System.out.println("Comandos disponibles:");
+        System.out.println("  mejores [k] [carrera]   K mejores promedios (cuadro de honor)");
+        System.out.println("  peores  [k] [carrera]   K peores promedios (alumnos en riesgo)");
+        System.out.println("  rango promMin promMax [edadMin edadMax] [carrera]");
+        System.out.println("                          alumnos con promedio (y edad) en el rango");
+        System.out.println("  listar carrera semestre [desde] [limite] [texto]");
+        System.out.println("                          recorre un semestre sin cargarlo completo");
+        System.out.println("  consulta \"expresion\" [explicar] [limite]");
+        System.out.println("                          condiciones unidas con AND, por ejemplo");
+        System.out.println("                          \"carrera = Derecho AND promedio < 6 AND nombre ~ gar\"");
+        System.out.println("                          campos: carrera semestre nombre matricula promedio");
+        System.out.println("                          edad correo telefono direccion; = != < <= > >= ~");
+        System.out.println("                          (con \"explicar\" muestra qué archivos e índices usa)");
+        System.out.println("  auditoria [matricula|todas] [desde] [hasta]");
+        System.out.println("                          cambios registrados (fechas AAAA-MM-DD)");
+        System.out.println("  duplicados [mas-reciente|semestre-mas-alto]");
+        System.out.println("                          matrículas repetidas entre archivos; con una");
+        System.out.println("                          política deja solo una copia de cada una");
+        System.out.println("  historial matricula     promedios de un alumno semestre a semestre");
+        System.out.println("  historial caidas [carrera|todas] [k]");
+        System.out.println("                          mayores bajas de promedio entre semestres");
+        System.out.println("  historial cohorte [carrera|todas]");
+        System.out.println("                          promedio de la cohorte en cada semestre");
+        System.out.println("  historial compactar     pasa los cambios pendientes al archivo por columnas");
+        System.out.println("  promover [carrera|todas] [aplicar]");
+        System.out.println("                          pasa a los alumnos al semestre siguiente");
+        System.out.println("                          (sin \"aplicar\" solo muestra el reporte)");
+        System.out.println("  reporte destino [carrera|todas] [umbral]");
+        System.out.println("                          destino.html y destino.csv con estadísticas por");
+        System.out.println("                          semestre y alumnos con promedio menor al umbral (7)");
+        System.out.println("  replicar destino [intervalo-segundos]");
+        System.out.println("                          copia incremental de la carpeta de alumnos");
+        System.out.println("  servidor [puerto]       API HTTP/JSON local (predeterminado 8080)");
+        System.out.println("  carga [clave=valor ...] prueba de carga con capturistas simultáneos:");
+        System.out.println("                          hilos=1,4,16,30 segundos=20 alumnos=50000 carreras=4");
+        System.out.println("                          semestres=8 mezcla=agregar:20,editar:15,eliminar:5,buscar:30,listar:30");
+        System.out.println("                          api=no conservar=no");
+        System.out.println("  ayuda                   muestra esta ayuda");
+    }
+}
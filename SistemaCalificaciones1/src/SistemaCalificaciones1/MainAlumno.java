@@ -4,6 +4,11 @@ import Vista.VentanaPrincipal;
 
 public class MainAlumno {
     public static void main(String[] args) {
+        // Con argumentos se ejecuta un comando de consola (ver LineaComandos)
+        if (args.length > 0) {
+            System.exit(LineaComandos.ejecutar(args));
+        }
+
         // Llama directamente a la ventana principal
         VentanaPrincipal.main(args);
     }
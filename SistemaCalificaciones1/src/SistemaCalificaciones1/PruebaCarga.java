@@ -0,0 +1,424 @@
+package SistemaCalificaciones1;
+
+import Controlador.ControladorAlumno;
+import Modelo.Alumno;
+import Modelo.GestorArchivos;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Prueba de carga sin ventana: varios "capturistas" (hilos) agregan,
+ * editan, eliminan, buscan y listan alumnos al mismo tiempo sobre una copia
+ * de datos generada en una carpeta temporal.
+ *
+ * Cada hilo usa su propio ControladorAlumno (como si fuera otra ventana
+ * abierta) o, en modo API, peticiones HTTP al servidor local. Al final se
+ * reporta el rendimiento (operaciones/s, p50 y p99 por operación) y se
+ * revisa la integridad de los archivos: que no falte ningún alumno agregado,
+ * que no reaparezca ninguno eliminado y que no haya matrículas duplicadas.
+ *
+ * Uso (argumentos clave=valor, todos opcionales):
+ *   carga hilos=1,4,16,30 segundos=20 alumnos=50000 carreras=4 semestres=8
+ *         mezcla=agregar:20,editar:15,eliminar:5,buscar:30,listar:30 api=no conservar=no
+ */
+public class PruebaCarga {
+
+    /** Tipos de operación que puede hacer un capturista */
+    private static final String[] OPERACIONES = { "agregar", "editar", "eliminar", "buscar", "listar" };
+
+    private static final String[] NOMBRES = { "José", "María", "Juan", "Ana", "Luis", "Sofía", "Carlos",
+            "Lucía", "Miguel", "Valeria", "Jorge", "Fernanda", "Pedro", "Camila", "Ramón", "Ximena" };
+    private static final String[] APELLIDOS = { "García", "Hernández", "López", "Martínez", "González",
+            "Pérez", "Rodríguez", "Sánchez", "Ramírez", "Cruz", "Flores", "Gómez", "Díaz", "Núñez" };
+
+    private final int segundos;
+    private final int alumnos;
+    private final int carreras;
+    private final int semestres;
+    private final int[] mezcla;
+    private final boolean api;
+    private final boolean conservar;
+    private final PrintStream salida;
+
+    /**
+     * @param segundos duración de cada corrida
+     * @param alumnos alumnos iniciales (repartidos entre carreras y semestres)
+     * @param mezcla peso de cada operación, en el orden de {@link #OPERACIONES}
+     * @param api true para usar la API HTTP en lugar del controlador
+     * @param conservar true para no borrar la carpeta temporal al terminar
+     */
+    public PruebaCarga(int segundos, int alumnos, int carreras, int semestres, int[] mezcla,
+                       boolean api, boolean conservar, PrintStream salida) {
+        this.segundos = segundos;
+        this.alumnos = alumnos;
+        this.carreras = carreras;
+        this.semestres = semestres;
+        this.mezcla = mezcla;
+        this.api = api;
+        this.conservar = conservar;
+        this.salida = salida;
+    }
+
+    /**
+     * Ejecuta el comando "carga" con argumentos clave=valor.
+     *
+     * @return 0 si todas las corridas pasaron la revisión de integridad
+     */
+    public static int ejecutar(String[] args) throws Exception {
+        Map<String, String> p = new HashMap<>();
+        for (String a : args) {
+            int i = a.indexOf('=');
+            if (i > 0) p.put(a.substring(0, i).toLowerCase(), a.substring(i + 1));
+        }
+
+        int[] mezcla = new int[OPERACIONES.length];
+        for (String par : p.getOrDefault("mezcla", "agregar:20,editar:15,eliminar:5,buscar:30,listar:30").split(",")) {
+            String[] kv = par.split(":");
+            int op = Arrays.asList(OPERACIONES).indexOf(kv[0].trim().toLowerCase());
+            if (op < 0 || kv.length != 2) throw new IllegalArgumentException("Mezcla inválida: " + par);
+            mezcla[op] = Integer.parseInt(kv[1].trim());
+        }
+
+        PruebaCarga prueba = new PruebaCarga(
+                Integer.parseInt(p.getOrDefault("segundos", "20")),
+                Integer.parseInt(p.getOrDefault("alumnos", "50000")),
+                Integer.parseInt(p.getOrDefault("carreras", "4")),
+                Integer.parseInt(p.getOrDefault("semestres", "8")),
+                mezcla,
+                p.getOrDefault("api", "no").equalsIgnoreCase("si"),
+                p.getOrDefault("conservar", "no").equalsIgnoreCase("si"),
+                System.out);
+
+        boolean todoBien = true;
+        for (String h : p.getOrDefault("hilos", "1,4,16,30").split(","))
+            todoBien &= prueba.correr(Integer.parseInt(h.trim()));
+        return todoBien ? 0 : 3;
+    }
+
+    // -------------------------------
+    //            CORRIDA
+    // -------------------------------
+
+    /** Estado compartido de una corrida */
+    private static final class Corrida {
+        /** Alumnos que deben existir al final: matrícula → "carrera/semestre" */
+        final Map<String, String> esperados = new ConcurrentHashMap<>();
+        /** Matrículas eliminadas que no deben reaparecer */
+        final Map<String, String> eliminados = new ConcurrentHashMap<>();
+        /** Latencias (ns) por operación, una lista por hilo para no competir */
+        final List<Map<String, long[]>> latencias = new ArrayList<>();
+        final AtomicLong errores = new AtomicLong();
+        final AtomicLong duplicadosAceptados = new AtomicLong();
+        final AtomicLong duplicadosRechazados = new AtomicLong();
+        List<String> ubicaciones;
+        List<String> matriculasIniciales;
+        File raiz;
+        String urlApi;
+    }
+
+    /**
+     * Genera los datos, lanza los hilos durante el tiempo indicado y revisa
+     * la integridad al final.
+     *
+     * @return true si la revisión de integridad pasó
+     */
+    public boolean correr(int hilos) throws Exception {
+        Path base = Files.createTempDirectory("carga");
+        Corrida c = new Corrida();
+        c.raiz = base.resolve("Alumnos").toFile();
+        generarDatos(c);
+
+        ControladorAlumno principal = new ControladorAlumno(c.raiz.getPath());
+        if (api) c.urlApi = "http://127.0.0.1:" + principal.iniciarServidorApi(0) + "/api/";
+
+        CountDownLatch inicio = new CountDownLatch(1);
+        long fin = System.nanoTime() + segundos * 1_000_000_000L;
+        List<Thread> ts = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            Map<String, long[]> lat = new HashMap<>();
+            c.latencias.add(lat);
+            int id = h;
+            ts.add(Thread.ofPlatform().name("capturista-" + h).start(() -> {
+                try {
+                    inicio.await();
+                    capturista(c, id, fin, lat);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    c.errores.incrementAndGet();
+                }
+            }));
+        }
+
+        long t0 = System.nanoTime();
+        inicio.countDown();
+        for (Thread t : ts) t.join();
+        double duracion = (System.nanoTime() - t0) / 1e9;
+
+        principal.detenerServidorApi();
+        boolean ok = reportar(c, hilos, duracion);
+
+        if (conservar) salida.println("Datos conservados en " + base);
+        else borrar(base);
+        return ok;
+    }
+
+    /** Crea carreras × semestres archivos con los alumnos iniciales */
+    private void generarDatos(Corrida c) throws IOException {
+        Random r = new Random(42);
+        c.ubicaciones = new ArrayList<>();
+        c.matriculasIniciales = new ArrayList<>(alumnos);
+
+        int archivos = carreras * semestres;
+        List<List<String>> lineas = new ArrayList<>();
+        for (int i = 0; i < archivos; i++) {
+            c.ubicaciones.add("Carrera " + (i / semestres + 1) + "/Semestre " + (i % semestres + 1));
+            lineas.add(new ArrayList<>());
+        }
+        for (int i = 0; i < alumnos; i++) {
+            int archivo = i % archivos;
+            String[] u = c.ubicaciones.get(archivo).split("/");
+            String m = "A" + i;
+            lineas.get(archivo).add(new Alumno(nombreAleatorio(r), m, Math.round(r.nextDouble() * 100) / 10.0,
+                    u[1], 17 + r.nextInt(10), u[0], m.toLowerCase() + "@escuela.mx", "5550000000", "Centro").toLinea());
+            c.matriculasIniciales.add(m);
+            c.esperados.put(m.toLowerCase(), c.ubicaciones.get(archivo));
+        }
+        for (int i = 0; i < archivos; i++)
+            new GestorArchivos(new File(c.raiz, c.ubicaciones.get(i) + ".txt").getPath()).escribirLineas(lineas.get(i));
+    }
+
+    /** Ciclo de un capturista: elige operaciones según la mezcla hasta que se acaba el tiempo */
+    private void capturista(Corrida c, int id, long fin, Map<String, long[]> lat) throws Exception {
+        Random r = new Random(id);
+        ControladorAlumno ctl = api ? null : new ControladorAlumno(c.raiz.getPath());
+        HttpClient http = api ? HttpClient.newHttpClient() : null;
+
+        // Alumnos agregados por este hilo (solo él los edita o elimina)
+        List<String[]> propios = new ArrayList<>();
+        int total = Arrays.stream(mezcla).sum();
+        int consecutivo = 0;
+
+        while (System.nanoTime() < fin) {
+            int x = r.nextInt(total), op = 0;
+            while (x >= mezcla[op]) x -= mezcla[op++];
+
+            String ubicacion = c.ubicaciones.get(r.nextInt(c.ubicaciones.size()));
+            String[] u = ubicacion.split("/");
+            long t = System.nanoTime();
+
+            switch (OPERACIONES[op]) {
+                case "agregar": {
+                    // 1 de cada 20 altas reutiliza una matrícula existente: debe rechazarse
+                    boolean duplicado = r.nextInt(20) == 0;
+                    String m = duplicado ? c.matriculasIniciales.get(r.nextInt(c.matriculasIniciales.size()))
+                            : "H" + id + "N" + (consecutivo++);
+                    if (duplicado) {
+                        ubicacion = c.esperados.getOrDefault(m.toLowerCase(), ubicacion);
+                        u = ubicacion.split("/");
+                    }
+                    Alumno a = new Alumno(nombreAleatorio(r), m, 6 + r.nextInt(40) / 10.0, u[1], 18 + r.nextInt(8),
+                            u[0], "", "", "");
+                    boolean agregado = api ? apiAgregar(http, c, a) : agregar(ctl, a);
+                    if (agregado && duplicado && c.esperados.containsKey(m.toLowerCase()))
+                        c.duplicadosAceptados.incrementAndGet();
+                    else if (!agregado && duplicado)
+                        c.duplicadosRechazados.incrementAndGet();
+                    else if (agregado) {
+                        c.esperados.put(m.toLowerCase(), ubicacion);
+                        propios.add(new String[] { m, u[0], u[1] });
+                    } else {
+                        c.errores.incrementAndGet();
+                    }
+                    break;
+                }
+                case "editar": {
+                    if (propios.isEmpty()) continue;
+                    String[] p = propios.get(r.nextInt(propios.size()));
+                    Alumno a = new Alumno(nombreAleatorio(r), p[0], 6 + r.nextInt(40) / 10.0, p[2],
+                            18 + r.nextInt(8), p[1], "", "", "");
+                    boolean ok;
+                    if (api) {
+                        ok = apiEnviar(http, "PUT", c.urlApi + ruta(p[1], p[2]) + "/" + p[0], a.toJson()) == 200;
+                    } else {
+                        ctl.cambiarCarreraSemestre(p[1], p[2]);
+                        ok = ctl.editarAlumno(p[0], a);
+                    }
+                    if (!ok) c.errores.incrementAndGet();
+                    break;
+                }
+                case "eliminar": {
+                    if (propios.isEmpty()) continue;
+                    String[] p = propios.remove(r.nextInt(propios.size()));
+                    boolean ok;
+                    if (api) {
+                        ok = apiEnviar(http, "DELETE", c.urlApi + ruta(p[1], p[2]) + "/" + p[0], null) == 204;
+                    } else {
+                        ctl.cambiarCarreraSemestre(p[1], p[2]);
+                        ok = ctl.eliminarAlumno(p[0]);
+                    }
+                    if (ok) {
+                        c.esperados.remove(p[0].toLowerCase());
+                        c.eliminados.put(p[0].toLowerCase(), p[1] + "/" + p[2]);
+                    } else {
+                        c.errores.incrementAndGet();
+                    }
+                    break;
+                }
+                case "buscar": {
+                    String q = NOMBRES[r.nextInt(NOMBRES.length)] + " " + APELLIDOS[r.nextInt(APELLIDOS.length)];
+                    if (api) apiEnviar(http, "GET", c.urlApi + "buscar?q=" + URLEncoder.encode(q, StandardCharsets.UTF_8), null);
+                    else ctl.buscarEnTodasLasCarpetas(q);
+                    break;
+                }
+                default: {
+                    if (api) {
+                        apiEnviar(http, "GET", c.urlApi + ruta(u[0], u[1]) + "?limite=100", null);
+                    } else {
+                        ctl.cambiarCarreraSemestre(u[0], u[1]);
+                        ctl.listar();
+                    }
+                }
+            }
+            registrar(lat, OPERACIONES[op], System.nanoTime() - t);
+        }
+    }
+
+    private static boolean agregar(ControladorAlumno ctl, Alumno a) throws IOException {
+        ctl.cambiarCarreraSemestre(a.getLicenciatura(), a.getSemestre());
+        try {
+            return ctl.agregarAlumno(a);
+        } catch (IllegalStateException e) {
+            return false; // matrícula repetida
+        }
+    }
+
+    private static boolean apiAgregar(HttpClient http, Corrida c, Alumno a) throws Exception {
+        return apiEnviar(http, "POST", c.urlApi + ruta(a.getLicenciatura(), a.getSemestre()), a.toJson()) == 201;
+    }
+
+    private static String ruta(String carrera, String semestre) {
+        return "alumnos/" + URLEncoder.encode(carrera, StandardCharsets.UTF_8).replace("+", "%20")
+                + "/" + URLEncoder.encode(semestre, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    /** @return código de estado HTTP */
+    private static int apiEnviar(HttpClient http, String metodo, String url, String cuerpo) throws Exception {
+        HttpRequest.BodyPublisher b = cuerpo == null ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(cuerpo);
+        HttpRequest req = HttpRequest.newBuilder(URI.create(url)).method(metodo, b).build();
+        return http.send(req, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    /** Guarda una latencia en el arreglo del hilo (posición 0 = cantidad) */
+    private static void registrar(Map<String, long[]> lat, String op, long nanos) {
+        long[] a = lat.computeIfAbsent(op, k -> new long[1025]);
+        int n = (int) a[0];
+        if (n + 1 >= a.length) {
+            a = Arrays.copyOf(a, a.length * 2);
+            lat.put(op, a);
+        }
+        a[n + 1] = nanos;
+        a[0] = n + 1;
+    }
+
+    private static String nombreAleatorio(Random r) {
+        return NOMBRES[r.nextInt(NOMBRES.length)] + " " + APELLIDOS[r.nextInt(APELLIDOS.length)] + " "
+                + APELLIDOS[r.nextInt(APELLIDOS.length)];
+    }
+
+    // -------------------------------
+    //       REPORTE E INTEGRIDAD
+    // -------------------------------
+
+    private boolean reportar(Corrida c, int hilos, double duracion) throws IOException {
+        Map<String, List<Long>> porOperacion = new LinkedHashMap<>();
+        for (String op : OPERACIONES) porOperacion.put(op, new ArrayList<>());
+        for (Map<String, long[]> lat : c.latencias)
+            for (Map.Entry<String, long[]> e : lat.entrySet())
+                for (int i = 1; i <= e.getValue()[0]; i++) porOperacion.get(e.getKey()).add(e.getValue()[i]);
+
+        List<Long> todas = new ArrayList<>();
+        salida.printf(Locale.ROOT, "%n=== %d capturista(s), %.1f s, %d alumnos iniciales%s ===%n",
+                hilos, duracion, alumnos, api ? ", vía API HTTP" : "");
+        salida.printf(Locale.ROOT, "%-10s %10s %10s %10s %10s%n", "operación", "cantidad", "ops/s", "p50 ms", "p99 ms");
+        for (Map.Entry<String, List<Long>> e : porOperacion.entrySet()) {
+            List<Long> l = e.getValue();
+            if (l.isEmpty()) continue;
+            todas.addAll(l);
+            imprimirFila(e.getKey(), l, duracion);
+        }
+        if (!todas.isEmpty()) imprimirFila("TOTAL", todas, duracion);
+
+        // Revisión de integridad leyendo los archivos tal como quedaron
+        Map<String, Integer> vistas = new HashMap<>();
+        Map<String, String> dondeEsta = new HashMap<>();
+        for (String u : c.ubicaciones) {
+            for (String l : new GestorArchivos(new File(c.raiz, u + ".txt").getPath()).leerLineas()) {
+                String m = Alumno.fromLinea(l).getMatricula().toLowerCase();
+                vistas.merge(m, 1, Integer::sum);
+                dondeEsta.put(m, u);
+            }
+        }
+
+        long perdidos = 0, malUbicados = 0, duplicados = 0, reaparecidos = 0;
+        for (Map.Entry<String, String> e : c.esperados.entrySet()) {
+            String u = dondeEsta.get(e.getKey());
+            if (u == null) perdidos++;
+            else if (!u.equals(e.getValue())) malUbicados++;
+        }
+        for (int n : vistas.values()) if (n > 1) duplicados++;
+        for (String m : c.eliminados.keySet()) if (vistas.containsKey(m)) reaparecidos++;
+        long sobrantes = vistas.size() - c.esperados.size() + perdidos - reaparecidos;
+
+        boolean ok = perdidos == 0 && malUbicados == 0 && duplicados == 0 && reaparecidos == 0
+                && sobrantes == 0 && c.duplicadosAceptados.get() == 0 && c.errores.get() == 0;
+
+        salida.printf("Integridad: %s%n", ok ? "CORRECTA" : "CON ERRORES");
+        salida.printf("  esperados=%d en disco=%d perdidos=%d mal ubicados=%d duplicados=%d "
+                        + "reaparecidos=%d desconocidos=%d%n",
+                c.esperados.size(), vistas.size(), perdidos, malUbicados, duplicados, reaparecidos, sobrantes);
+        salida.printf("  matrículas repetidas rechazadas=%d aceptadas por error=%d, operaciones fallidas=%d%n",
+                c.duplicadosRechazados.get(), c.duplicadosAceptados.get(), c.errores.get());
+        return ok;
+    }
+
+    private void imprimirFila(String op, List<Long> l, double duracion) {
+        l.sort(Comparator.naturalOrder());
+        salida.printf(Locale.ROOT, "%-10s %10d %10.1f %10.2f %10.2f%n", op, l.size(), l.size() / duracion,
+                percentil(l, 50) / 1e6, percentil(l, 99) / 1e6);
+    }
+
+    private static long percentil(List<Long> ordenadas, int p) {
+        int i = (int) Math.ceil(p / 100.0 * ordenadas.size()) - 1;
+        return ordenadas.get(Math.max(0, Math.min(i, ordenadas.size() - 1)));
+    }
+
+    private static void borrar(Path base) throws IOException {
+        try (Stream<Path> s = Files.walk(base)) {
+            s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -1,12 +1,23 @@
 package Vista;
 
 import Controlador.ControladorAlumno;
+import Controlador.ServidorApi;
 import Modelo.Alumno;
+import Modelo.BitacoraAuditoria;
+import Modelo.ConsultaAlumnos;
+import Modelo.DetectorDuplicados;
+import Modelo.DiferenciaAlumnos;
+import Modelo.FormatoExportacion;
+import Modelo.HistorialCalificaciones;
+import Modelo.LoteCambios;
+import Modelo.PromocionSemestres;
+import Modelo.ReporteCalificaciones;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -25,12 +36,98 @@ public class VentanaPrincipal extends JFrame {
     private JComboBox<String> comboCarrera, comboSemestre;
     private JLabel lblRuta;
 
-    /** Constructor: crea UI inicial y carga datos */
+    // true si la tabla muestra el archivo actual (y no resultados de búsqueda)
+    private boolean mostrandoArchivoActual = false;
+
+    // Últimos resultados de búsqueda mostrados (para exportarlos)
+    private transient List<Alumno> resultadosMostrados = new java.util.ArrayList<>();
+
+    // Última consulta avanzada escrita (se sugiere la siguiente vez)
+    private String ultimaConsulta = "carrera = \"Derecho\" AND promedio < 6 AND nombre ~ \"gar\"";
+
+    /**
+     * Constructor: crea UI inicial. Los combos se llenan con el catálogo
+     * guardado y los alumnos se cargan en segundo plano, para que la ventana
+     * aparezca de inmediato.
+     */
     public VentanaPrincipal() {
         controller = new ControladorAlumno();
-        initUI();                   // Construcción visual
-        cargarCarrerasEnCombo();    // Llenar combo de carreras
-        actualizarArchivoYCargar(); // Cargar alumnos del archivo actual
+        initUI();                                            // Construcción visual
+        llenarComboCarreras(controller.listarCarrerasCatalogo()); // Carreras del catálogo
+        cargaInicialEnSegundoPlano();                        // Alumnos, monitoreo y validación
+    }
+
+    /**
+     * Carga el semestre seleccionado y activa el monitoreo sin bloquear la
+     * ventana; al terminar valida el catálogo contra el disco y, si había
+     * carreras nuevas o borradas, actualiza el combo.
+     *
+     * La selección se hace aquí, en el hilo de la interfaz; el trabajo en
+     * segundo plano solo lee el archivo por su ruta, así no puede regresar
+     * el controlador al semestre inicial si el usuario ya eligió otro.
+     */
+    private void cargaInicialEnSegundoPlano() {
+        String carrera = (String) comboCarrera.getSelectedItem();
+        String semestre = (String) comboSemestre.getSelectedItem();
+        if (carrera == null || semestre == null) return;
+
+        int conocidos = controller.alumnosEnCatalogo(carrera, semestre);
+        lblRuta.setText("Cargando " + carrera + " / " + semestre
+                + (conocidos >= 0 ? " (" + conocidos + " alumnos)..." : "..."));
+
+        controller.cambiarCarreraSemestre(carrera, semestre);
+        String ruta = controller.getRutaActual();
+
+        new SwingWorker<Void, Void>() {
+            @Override protected Void doInBackground() {
+                controller.precargarArchivo(ruta);
+                iniciarMonitoreo(); // Recibir cambios hechos por otras oficinas
+                return null;
+            }
+            @Override protected void done() {
+                try {
+                    get();
+                    // Si el usuario ya cambió de semestre, su selección manda
+                    if (!ruta.equals(controller.getRutaActual()) || !carrera.equals(comboCarrera.getSelectedItem())
+                            || !semestre.equals(comboSemestre.getSelectedItem())) return;
+                    lblRuta.setText("Archivo: " + controller.getRutaActual()
+                            + (controller.semestreActualArchivado() ? " (comprimido)" : ""));
+                    cargarTabla(controller.listar()); // Ya está en la caché
+                    mostrandoArchivoActual = true;
+                } catch (Exception ex) {
+                    lblRuta.setText("Error cargando: " + ex.getMessage());
+                } finally {
+                    validarCatalogoEnSegundoPlano();
+                }
+            }
+        }.execute();
+    }
+
+    /** Corrige el catálogo contra la carpeta de alumnos sin bloquear la ventana */
+    private void validarCatalogoEnSegundoPlano() {
+        new SwingWorker<Boolean, Void>() {
+            @Override protected Boolean doInBackground() throws Exception {
+                return controller.validarCatalogo();
+            }
+            @Override protected void done() {
+                try {
+                    if (get()) llenarComboCarreras(controller.listarCarrerasCatalogo());
+                } catch (Exception ex) {
+                    // Con el catálogo viejo la aplicación sigue funcionando
+                    ex.printStackTrace();
+                }
+            }
+        }.execute();
+    }
+
+    /** Activa la vigilancia de la carpeta compartida de alumnos */
+    private void iniciarMonitoreo() {
+        try {
+            controller.iniciarMonitoreo(d -> SwingUtilities.invokeLater(() -> aplicarDiferencia(d)));
+        } catch (Exception ex) {
+            // Sin monitoreo la aplicación sigue funcionando con "Refrescar"
+            ex.printStackTrace();
+        }
     }
 
     /** Construcción completa de la interfaz gráfica */
@@ -52,6 +149,80 @@ public class VentanaPrincipal extends JFrame {
         header.add(title);
         add(header, BorderLayout.NORTH);
 
+        /* ---------------------- MENÚ ---------------------- */
+        JMenuBar menu = new JMenuBar();
+
+        JMenu mRespaldos = new JMenu("Respaldos");
+        JMenuItem miCrear = new JMenuItem("Crear respaldo");
+        miCrear.addActionListener(e -> crearRespaldo());
+        mRespaldos.add(miCrear);
+        JMenuItem miRestSem = new JMenuItem("Restaurar semestre actual...");
+        miRestSem.addActionListener(e -> restaurarRespaldo(false));
+        mRespaldos.add(miRestSem);
+        JMenuItem miRestTodo = new JMenuItem("Restaurar todo...");
+        miRestTodo.addActionListener(e -> restaurarRespaldo(true));
+        mRespaldos.add(miRestTodo);
+        menu.add(mRespaldos);
+
+        JMenu mAlmacen = new JMenu("Almacenamiento");
+        JMenuItem miArchivar = new JMenuItem("Comprimir semestre actual (archivar)");
+        miArchivar.addActionListener(e -> archivarSemestre(true));
+        mAlmacen.add(miArchivar);
+        JMenuItem miDesarchivar = new JMenuItem("Descomprimir semestre actual");
+        miDesarchivar.addActionListener(e -> archivarSemestre(false));
+        mAlmacen.add(miDesarchivar);
+        mAlmacen.addSeparator();
+        JMenuItem miPromover = new JMenuItem("Promover al semestre siguiente (fin de ciclo)...");
+        miPromover.addActionListener(e -> promoverDialog());
+        mAlmacen.add(miPromover);
+        menu.add(mAlmacen);
+
+        JMenu mConsultas = new JMenu("Consultas");
+        JMenuItem miHonor = new JMenuItem("Cuadro de honor (mejores promedios)...");
+        miHonor.addActionListener(e -> rankingDialog(true));
+        mConsultas.add(miHonor);
+        JMenuItem miRiesgo = new JMenuItem("Alumnos en riesgo (peores promedios)...");
+        miRiesgo.addActionListener(e -> rankingDialog(false));
+        mConsultas.add(miRiesgo);
+        JMenuItem miRango = new JMenuItem("Filtrar por promedio y edad...");
+        miRango.addActionListener(e -> rangoDialog());
+        mConsultas.add(miRango);
+        JMenuItem miConsulta = new JMenuItem("Consulta avanzada...");
+        miConsulta.addActionListener(e -> consultaDialog());
+        mConsultas.add(miConsulta);
+        mConsultas.addSeparator();
+        JMenuItem miHistorial = new JMenuItem("Historial de promedios de un alumno...");
+        miHistorial.addActionListener(e -> historialDialog());
+        mConsultas.add(miHistorial);
+        JMenuItem miCaidas = new JMenuItem("Mayores caídas de promedio...");
+        miCaidas.addActionListener(e -> caidasDialog());
+        mConsultas.add(miCaidas);
+        menu.add(mConsultas);
+
+        JMenu mReportes = new JMenu("Reportes");
+        JMenuItem miReporte = new JMenuItem("Calificaciones por semestre (HTML y CSV)...");
+        miReporte.addActionListener(e -> reporteDialog());
+        mReportes.add(miReporte);
+        menu.add(mReportes);
+
+        JMenu mHerramientas = new JMenu("Herramientas");
+        JCheckBoxMenuItem miApi = new JCheckBoxMenuItem("API HTTP local (puerto " + ServidorApi.PUERTO_PREDETERMINADO + ")");
+        miApi.addActionListener(e -> alternarServidorApi(miApi));
+        mHerramientas.add(miApi);
+        JMenuItem miCache = new JMenuItem("Estadísticas de caché");
+        miCache.addActionListener(e -> JOptionPane.showMessageDialog(this, controller.estadisticasCache(),
+                "Caché de consultas", JOptionPane.INFORMATION_MESSAGE));
+        mHerramientas.add(miCache);
+        JMenuItem miAuditoria = new JMenuItem("Auditoría de un alumno...");
+        miAuditoria.addActionListener(e -> auditoriaDialog());
+        mHerramientas.add(miAuditoria);
+        JMenuItem miDuplicados = new JMenuItem("Matrículas repetidas entre archivos...");
+        miDuplicados.addActionListener(e -> duplicadosDialog());
+        mHerramientas.add(miDuplicados);
+        menu.add(mHerramientas);
+
+        setJMenuBar(menu);
+
         /* ---------------------- PANEL IZQUIERDO ---------------------- */
         JPanel left = new JPanel(new GridBagLayout());
         left.setPreferredSize(new Dimension(300, 0));
@@ -102,6 +273,10 @@ public class VentanaPrincipal extends JFrame {
         btnImport.addActionListener(e -> importarArchivo());
         left.add(btnImport, c); c.gridy++;
 
+        JButton btnExportar = new JButton("Exportar");
+        btnExportar.addActionListener(e -> exportarDialog());
+        left.add(btnExportar, c); c.gridy++;
+
         JButton btnRefrescar = new JButton("Refrescar");
         btnRefrescar.addActionListener(e -> actualizarArchivoYCargar());
         left.add(btnRefrescar, c); c.gridy++;
@@ -129,8 +304,13 @@ public class VentanaPrincipal extends JFrame {
 
     /** Llena el combo de carreras mediante carpetas existentes */
     private void cargarCarrerasEnCombo() {
+        llenarComboCarreras(controller.listarCarrerasExistentes());
+    }
+
+    /** Llena el combo de carreras conservando la selección si sigue existiendo */
+    private void llenarComboCarreras(List<String> carreras) {
+        Object seleccion = comboCarrera.getSelectedItem();
         comboCarrera.removeAllItems();
-        List<String> carreras = controller.listarCarrerasExistentes();
 
         // Si no hay carpetas, usar valores por defecto
         if (carreras.isEmpty()) {
@@ -139,6 +319,7 @@ public class VentanaPrincipal extends JFrame {
         } else {
             for (String s : carreras) comboCarrera.addItem(s);
         }
+        if (seleccion != null) comboCarrera.setSelectedItem(seleccion);
     }
 
     /** Cambia archivo activo según selección y carga los alumnos en tabla */
@@ -148,19 +329,64 @@ public class VentanaPrincipal extends JFrame {
         if (carrera == null || semestre == null) return;
 
         controller.cambiarCarreraSemestre(carrera, semestre);
-        lblRuta.setText("Archivo: " + controller.getRutaActual());
+        lblRuta.setText("Archivo: " + controller.getRutaActual()
+                + (controller.semestreActualArchivado() ? " (comprimido)" : ""));
         cargarTabla(controller.listar());
+        mostrandoArchivoActual = true;
+    }
+
+    /**
+     * Aplica en la tabla solo los cambios detectados en el archivo actual:
+     * quita bajas, reemplaza filas modificadas y agrega altas al final.
+     * Los cambios que hace este mismo programa también llegan aquí, a veces
+     * después de recargar la tabla: un alta que ya está se reemplaza en vez
+     * de agregarse otra vez.
+     */
+    private void aplicarDiferencia(DiferenciaAlumnos d) {
+        if (!mostrandoArchivoActual) return;
+
+        for (String matricula : d.getBajas()) {
+            int fila = buscarFila(matricula);
+            if (fila != -1) modelo.removeRow(fila);
+        }
+
+        for (Alumno a : d.getCambios()) ponerFila(a);
+        for (Alumno a : d.getAltas()) ponerFila(a);
+    }
+
+    /** Reemplaza la fila del alumno, o la agrega al final si no está */
+    private void ponerFila(Alumno a) {
+        Object[] valores = filaDe(a);
+        int fila = buscarFila(a.getMatricula());
+        if (fila == -1) {
+            modelo.addRow(valores);
+            return;
+        }
+        for (int c = 0; c < valores.length; c++)
+            modelo.setValueAt(valores[c], fila, c);
+    }
+
+    /** @return índice de la fila con esa matrícula o -1 si no está */
+    private int buscarFila(String matricula) {
+        for (int i = 0; i < modelo.getRowCount(); i++)
+            if (modelo.getValueAt(i, 1).toString().equalsIgnoreCase(matricula))
+                return i;
+        return -1;
     }
 
     /** Llena la tabla con una lista proporcionada */
     private void cargarTabla(List<Alumno> lista) {
         modelo.setRowCount(0);
-        for (Alumno a : lista) {
-            modelo.addRow(new Object[]{
-                    a.getNombre(), a.getMatricula(), a.getPromedio(), a.getSemestre(), a.getEdad(),
-                    a.getLicenciatura(), a.getCorreo(), a.getTelefono(), a.getDireccion()
-            });
-        }
+        for (Alumno a : lista)
+            modelo.addRow(filaDe(a));
+    }
+
+    /** Convierte un alumno en los valores de una fila de la tabla */
+    private Object[] filaDe(Alumno a) {
+        return new Object[]{
+                a.getNombre(), a.getMatricula(), a.getPromedio(), a.getSemestre(), a.getEdad(),
+                a.getLicenciatura(), a.getCorreo(), a.getTelefono(), a.getDireccion()
+        };
     }
 
     /** Abre formulario para agregar nuevo alumno */
@@ -206,6 +432,12 @@ public class VentanaPrincipal extends JFrame {
             return;
         }
 
+        // Con varios seleccionados solo se puede cambiar carrera y semestre a todos juntos
+        if (tabla.getSelectedRowCount() > 1) {
+            moverSeleccionados();
+            return;
+        }
+
         String matricula = modelo.getValueAt(fila, 1).toString();
         Alumno original = controller.buscarPorMatricula(matricula);
 
@@ -241,7 +473,64 @@ public class VentanaPrincipal extends JFrame {
         }
     }
 
-    /** Elimina el alumno seleccionado en la tabla */
+    /**
+     * Cambia de carrera y/o semestre a todos los alumnos seleccionados.
+     * Se aplica como un lote: cada archivo se reescribe una sola vez.
+     */
+    private void moverSeleccionados() {
+        List<Alumno> seleccion = alumnosSeleccionados();
+
+        List<String> carreras = controller.listarCarrerasExistentes();
+        if (carreras.isEmpty())
+            carreras = java.util.Arrays.asList("Ingeniería en Sistemas","Administración","Derecho","Contaduría");
+
+        JComboBox<String> cbCarrera = new JComboBox<>(carreras.toArray(new String[0]));
+        cbCarrera.setSelectedItem(comboCarrera.getSelectedItem());
+        JComboBox<String> cbSemestre = new JComboBox<>();
+        for (int i = 0; i < comboSemestre.getItemCount(); i++) cbSemestre.addItem(comboSemestre.getItemAt(i));
+        cbSemestre.setSelectedItem(comboSemestre.getSelectedItem());
+
+        JPanel p = new JPanel(new GridLayout(2, 2, 8, 8));
+        p.add(new JLabel("Carrera:"));
+        p.add(cbCarrera);
+        p.add(new JLabel("Semestre:"));
+        p.add(cbSemestre);
+
+        int r = JOptionPane.showConfirmDialog(this, p, "Mover " + seleccion.size() + " alumnos",
+                JOptionPane.OK_CANCEL_OPTION);
+        if (r != JOptionPane.OK_OPTION) return;
+
+        try {
+            LoteCambios.Resultado res = controller.moverAlumnos(seleccion,
+                    (String) cbCarrera.getSelectedItem(), (String) cbSemestre.getSelectedItem());
+            actualizarArchivoYCargar();
+            JOptionPane.showMessageDialog(this, "Movidos: " + res.getMovidos()
+                    + (res.getNoEncontrados() > 0 ? " (no encontrados: " + res.getNoEncontrados() + ")" : ""));
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error moviendo: " + ex.getMessage());
+        }
+    }
+
+    /** Alumnos de las filas seleccionadas, armados con los datos de la tabla */
+    private List<Alumno> alumnosSeleccionados() {
+        List<Alumno> res = new java.util.ArrayList<>();
+        for (int fila : tabla.getSelectedRows()) {
+            int m = tabla.convertRowIndexToModel(fila);
+            res.add(new Alumno(
+                    String.valueOf(modelo.getValueAt(m, 0)),
+                    String.valueOf(modelo.getValueAt(m, 1)),
+                    ((Number) modelo.getValueAt(m, 2)).doubleValue(),
+                    String.valueOf(modelo.getValueAt(m, 3)),
+                    ((Number) modelo.getValueAt(m, 4)).intValue(),
+                    String.valueOf(modelo.getValueAt(m, 5)),
+                    String.valueOf(modelo.getValueAt(m, 6)),
+                    String.valueOf(modelo.getValueAt(m, 7)),
+                    String.valueOf(modelo.getValueAt(m, 8))));
+        }
+        return res;
+    }
+
+    /** Elimina el alumno seleccionado en la tabla (o todos los seleccionados) */
     private void eliminarSeleccionado() {
         int fila = tabla.getSelectedRow();
         if (fila == -1) {
@@ -249,6 +538,11 @@ public class VentanaPrincipal extends JFrame {
             return;
         }
 
+        if (tabla.getSelectedRowCount() > 1) {
+            eliminarSeleccionados();
+            return;
+        }
+
         String matricula = modelo.getValueAt(fila, 1).toString();
 
         int r = JOptionPane.showConfirmDialog(
@@ -273,6 +567,154 @@ public class VentanaPrincipal extends JFrame {
         }
     }
 
+    /** Elimina todos los alumnos seleccionados en un solo lote */
+    private void eliminarSeleccionados() {
+        List<Alumno> seleccion = alumnosSeleccionados();
+
+        int r = JOptionPane.showConfirmDialog(
+                this,
+                "¿Eliminar " + seleccion.size() + " alumnos seleccionados?",
+                "Confirmar",
+                JOptionPane.YES_NO_OPTION
+        );
+        if (r != JOptionPane.YES_OPTION) return;
+
+        try {
+            LoteCambios.Resultado res = controller.eliminarAlumnos(seleccion);
+            if (mostrandoArchivoActual) actualizarArchivoYCargar();
+            else {
+                // Resultados de búsqueda: se quitan de la tabla sin repetir la búsqueda
+                int[] filas = tabla.getSelectedRows();
+                for (int i = filas.length - 1; i >= 0; i--)
+                    modelo.removeRow(tabla.convertRowIndexToModel(filas[i]));
+            }
+            JOptionPane.showMessageDialog(this, "Eliminados: " + res.getEliminados()
+                    + (res.getNoEncontrados() > 0 ? " (no encontrados: " + res.getNoEncontrados() + ")" : ""));
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error eliminando: " + ex.getMessage());
+        }
+    }
+
+    /** Muestra los cambios registrados en la bitácora para una matrícula */
+    private void auditoriaDialog() {
+        int fila = tabla.getSelectedRow();
+        String sugerida = fila == -1 ? "" : modelo.getValueAt(fila, 1).toString();
+        String m = (String) JOptionPane.showInputDialog(this, "Matrícula (vacío = todos los cambios de hoy):",
+                "Auditoría", JOptionPane.QUESTION_MESSAGE, null, null, sugerida);
+        if (m == null) return;
+
+        try {
+            List<BitacoraAuditoria.Registro> res = m.trim().isEmpty()
+                    ? controller.consultarAuditoria(null, java.time.LocalDate.now(), java.time.LocalDate.now())
+                    : controller.consultarAuditoria(m.trim(), null, null);
+
+            StringBuilder sb = new StringBuilder();
+            for (BitacoraAuditoria.Registro r : res) sb.append(r).append('\n');
+            if (res.isEmpty()) sb.append("Sin cambios registrados.");
+
+            JTextArea area = new JTextArea(sb.toString(), 20, 90);
+            area.setEditable(false);
+            JOptionPane.showMessageDialog(this, new JScrollPane(area),
+                    "Auditoría (" + res.size() + " eventos)", JOptionPane.INFORMATION_MESSAGE);
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error leyendo la bitácora: " + ex.getMessage());
+        }
+    }
+
+    /** Muestra la trayectoria de promedios de una matrícula (la seleccionada, si hay) */
+    private void historialDialog() {
+        int fila = tabla.getSelectedRow();
+        String sugerida = fila == -1 ? "" : modelo.getValueAt(fila, 1).toString();
+        String m = (String) JOptionPane.showInputDialog(this, "Matrícula:", "Historial de promedios",
+                JOptionPane.QUESTION_MESSAGE, null, null, sugerida);
+        if (m == null || m.trim().isEmpty()) return;
+
+        try {
+            List<HistorialCalificaciones.Punto> puntos = controller.historialDe(m.trim());
+            StringBuilder sb = new StringBuilder("Por semestre:\n");
+            for (HistorialCalificaciones.Punto p : HistorialCalificaciones.trayectoria(puntos))
+                sb.append("  ").append(p).append('\n');
+            sb.append("\nTodos los cambios:\n");
+            for (HistorialCalificaciones.Punto p : puntos) sb.append("  ").append(p).append('\n');
+            if (puntos.isEmpty()) sb = new StringBuilder("Sin cambios de promedio registrados.");
+
+            JTextArea area = new JTextArea(sb.toString(), 20, 70);
+            area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            area.setEditable(false);
+            JOptionPane.showMessageDialog(this, new JScrollPane(area), "Historial de " + m.trim(),
+                    JOptionPane.INFORMATION_MESSAGE);
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error leyendo el historial: " + ex.getMessage());
+        }
+    }
+
+    /** Alumnos cuyo promedio más bajó entre dos semestres, y el promedio de su cohorte */
+    private void caidasDialog() {
+        JComboBox<String> comboAlcance = new JComboBox<>();
+        comboAlcance.addItem("Toda la universidad");
+        for (int i = 0; i < comboCarrera.getItemCount(); i++)
+            comboAlcance.addItem(comboCarrera.getItemAt(i));
+        if (JOptionPane.showConfirmDialog(this, comboAlcance, "Mayores caídas de promedio",
+                JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION)
+            return;
+        String carrera = comboAlcance.getSelectedIndex() == 0 ? null : (String) comboAlcance.getSelectedItem();
+
+        try {
+            StringBuilder sb = new StringBuilder("Promedio de la cohorte por semestre:\n");
+            for (HistorialCalificaciones.PromedioCohorte c : controller.promedioPorSemestre(carrera))
+                sb.append("  ").append(c).append('\n');
+            sb.append("\nMayores caídas:\n");
+            for (HistorialCalificaciones.Caida c : controller.mayoresCaidas(carrera, 50))
+                sb.append("  ").append(c).append('\n');
+
+            JTextArea area = new JTextArea(sb.toString(), 24, 90);
+            area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            area.setEditable(false);
+            JOptionPane.showMessageDialog(this, new JScrollPane(area), "Caídas de promedio",
+                    JOptionPane.INFORMATION_MESSAGE);
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error leyendo el historial: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Revisa matrículas repetidas en todas las carreras y semestres y, si se
+     * elige una política, deja una sola copia de cada una.
+     */
+    private void duplicadosDialog() {
+        try {
+            DetectorDuplicados.Analisis a = controller.buscarDuplicados();
+            if (a.getConflictos().isEmpty()) {
+                JOptionPane.showMessageDialog(this, "No hay matrículas repetidas (" + a.getLineas() + " alumnos revisados).");
+                return;
+            }
+
+            StringBuilder sb = new StringBuilder();
+            for (DetectorDuplicados.Conflicto x : a.getConflictos()) sb.append(x).append('\n');
+            JTextArea area = new JTextArea(sb.toString(), 20, 90);
+            area.setEditable(false);
+
+            JComboBox<String> comboPolitica = new JComboBox<>(new String[] {
+                    "Solo reportar", "Conservar la del archivo más reciente", "Conservar la del semestre más alto" });
+            JPanel p = new JPanel(new BorderLayout(4, 4));
+            p.add(new JScrollPane(area), BorderLayout.CENTER);
+            p.add(comboPolitica, BorderLayout.SOUTH);
+
+            if (JOptionPane.showConfirmDialog(this, p, a.getConflictos().size() + " matrículas repetidas ("
+                    + a.getSobrantes() + " copias de más)", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION
+                    || comboPolitica.getSelectedIndex() == 0)
+                return;
+
+            DetectorDuplicados.Politica politica = comboPolitica.getSelectedIndex() == 1
+                    ? DetectorDuplicados.Politica.MAS_RECIENTE : DetectorDuplicados.Politica.SEMESTRE_MAS_ALTO;
+            DetectorDuplicados.Correccion r = controller.corregirDuplicados(a, politica);
+            actualizarArchivoYCargar();
+            JOptionPane.showMessageDialog(this, r.toString());
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error revisando matrículas: " + ex.getMessage());
+        }
+    }
+
     /** Búsqueda global en todas las carpetas */
     private void buscarDialog() {
         String q = JOptionPane.showInputDialog(this, "Buscar por matrícula o nombre:");
@@ -284,20 +726,407 @@ public class VentanaPrincipal extends JFrame {
             JOptionPane.showMessageDialog(this, "No se encontraron coincidencias.");
         } else {
             cargarTabla(encontrados);
+            mostrandoArchivoActual = false;
+            resultadosMostrados = encontrados;
+        }
+    }
+
+    /**
+     * Muestra en la tabla los K mejores o peores promedios de una carrera
+     * o de toda la universidad.
+     */
+    private void rankingDialog(boolean mejores) {
+        JComboBox<String> comboAlcance = new JComboBox<>();
+        comboAlcance.addItem("Toda la universidad");
+        for (int i = 0; i < comboCarrera.getItemCount(); i++)
+            comboAlcance.addItem(comboCarrera.getItemAt(i));
+
+        JSpinner spK = new JSpinner(new SpinnerNumberModel(50, 1, 100000, 10));
+
+        JPanel p = new JPanel(new GridLayout(4, 1, 4, 4));
+        p.add(new JLabel("Carrera:"));
+        p.add(comboAlcance);
+        p.add(new JLabel("Cantidad de alumnos:"));
+        p.add(spK);
+
+        String titulo = mejores ? "Cuadro de honor" : "Alumnos en riesgo";
+        if (JOptionPane.showConfirmDialog(this, p, titulo, JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION)
+            return;
+
+        String carrera = comboAlcance.getSelectedIndex() == 0 ? null : (String) comboAlcance.getSelectedItem();
+        int k = (Integer) spK.getValue();
+
+        List<Alumno> res = mejores ? controller.mejoresPromedios(carrera, k) : controller.peoresPromedios(carrera, k);
+        cargarTabla(res);
+        mostrandoArchivoActual = false;
+        resultadosMostrados = res;
+        lblRuta.setText(titulo + ": " + (carrera == null ? "toda la universidad" : carrera));
+    }
+
+    /** Muestra en la tabla los alumnos con promedio y edad dentro de un rango */
+    private void rangoDialog() {
+        JComboBox<String> comboAlcance = new JComboBox<>();
+        comboAlcance.addItem("Toda la universidad");
+        for (int i = 0; i < comboCarrera.getItemCount(); i++)
+            comboAlcance.addItem(comboCarrera.getItemAt(i));
+
+        JSpinner spPromMin = new JSpinner(new SpinnerNumberModel(0.0, 0.0, 100.0, 0.5));
+        JSpinner spPromMax = new JSpinner(new SpinnerNumberModel(10.0, 0.0, 100.0, 0.5));
+        JSpinner spEdadMin = new JSpinner(new SpinnerNumberModel(0, 0, 150, 1));
+        JSpinner spEdadMax = new JSpinner(new SpinnerNumberModel(150, 0, 150, 1));
+
+        JPanel p = new JPanel(new GridLayout(6, 2, 4, 4));
+        p.add(new JLabel("Carrera:"));
+        p.add(comboAlcance);
+        p.add(new JLabel("Promedio desde:"));
+        p.add(spPromMin);
+        p.add(new JLabel("Promedio hasta:"));
+        p.add(spPromMax);
+        p.add(new JLabel("Edad desde:"));
+        p.add(spEdadMin);
+        p.add(new JLabel("Edad hasta:"));
+        p.add(spEdadMax);
+
+        if (JOptionPane.showConfirmDialog(this, p, "Filtrar por rango", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION)
+            return;
+
+        String carrera = comboAlcance.getSelectedIndex() == 0 ? null : (String) comboAlcance.getSelectedItem();
+        double promMin = (Double) spPromMin.getValue(), promMax = (Double) spPromMax.getValue();
+        int edadMin = (Integer) spEdadMin.getValue(), edadMax = (Integer) spEdadMax.getValue();
+
+        List<Alumno> res = controller.buscarPorRango(carrera, promMin, promMax, edadMin, edadMax);
+        cargarTabla(res);
+        mostrandoArchivoActual = false;
+        resultadosMostrados = res;
+        lblRuta.setText(String.format("Promedio %.1f-%.1f, edad %d-%d: %s (%d)", promMin, promMax,
+                edadMin, edadMax, carrera == null ? "toda la universidad" : carrera, res.size()));
+    }
+
+    /**
+     * Consulta estructurada sobre todas las carreras (ver ConsultaAlumnos).
+     * Opcionalmente muestra el plan (archivos e índices que se usarán)
+     * antes de ejecutarla; la lectura se hace en segundo plano.
+     */
+    private void consultaDialog() {
+        JTextField txtConsulta = new JTextField(ultimaConsulta, 50);
+        JCheckBox chkPlan = new JCheckBox("Ver el plan antes de ejecutar");
+
+        JPanel p = new JPanel(new GridLayout(4, 1, 4, 4));
+        p.add(new JLabel("Condiciones unidas con AND (campos: carrera, semestre, nombre, matricula,"));
+        p.add(new JLabel("promedio, edad, correo, telefono, direccion; operadores = != < <= > >= ~):"));
+        p.add(txtConsulta);
+        p.add(chkPlan);
+        if (JOptionPane.showConfirmDialog(this, p, "Consulta avanzada", JOptionPane.OK_CANCEL_OPTION)
+                != JOptionPane.OK_OPTION)
+            return;
+        String texto = txtConsulta.getText().trim();
+
+        ConsultaAlumnos.Plan plan;
+        try {
+            plan = controller.planearConsulta(texto);
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage());
+            return;
+        }
+        ultimaConsulta = texto;
+
+        if (chkPlan.isSelected()) {
+            JTextArea area = new JTextArea(plan.explicar(), 20, 90);
+            area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            area.setEditable(false);
+            if (JOptionPane.showConfirmDialog(this, new JScrollPane(area), "Plan de la consulta",
+                    JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION)
+                return;
+        }
+
+        new SwingWorker<List<Alumno>, Void>() {
+            @Override protected List<Alumno> doInBackground() throws Exception {
+                return controller.consultar(plan);
+            }
+            @Override protected void done() {
+                try {
+                    List<Alumno> res = get();
+                    cargarTabla(res);
+                    mostrandoArchivoActual = false;
+                    resultadosMostrados = res;
+                    lblRuta.setText("Consulta: " + texto + " (" + res.size() + ", "
+                            + plan.getArchivosAbiertos() + " de " + plan.getArchivosTotales() + " archivos leídos)");
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(VentanaPrincipal.this, "Error en la consulta: " + ex.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    /** Enciende o apaga la API HTTP local según la casilla del menú */
+    private void alternarServidorApi(JCheckBoxMenuItem casilla) {
+        if (!casilla.isSelected()) {
+            controller.detenerServidorApi();
+            return;
+        }
+        try {
+            int puerto = controller.iniciarServidorApi(ServidorApi.PUERTO_PREDETERMINADO);
+            JOptionPane.showMessageDialog(this, "API disponible en http://127.0.0.1:" + puerto + "/api/");
+        } catch (Exception ex) {
+            casilla.setSelected(false);
+            JOptionPane.showMessageDialog(this, "No se pudo iniciar la API: " + ex.getMessage());
         }
     }
 
-    /** Importa un archivo externo .txt */
+    /** Importa un archivo externo .txt en segundo plano (antes se crea un respaldo) */
     private void importarArchivo() {
         File f = SelectorArchivo.seleccionarTxt(this);
         if (f == null) return;
 
+        lblRuta.setText("Importando " + f.getName() + "...");
+        new SwingWorker<Integer, Void>() {
+            @Override protected Integer doInBackground() throws Exception {
+                return controller.importarArchivo(f);
+            }
+            @Override protected void done() {
+                try {
+                    int n = get();
+                    JOptionPane.showMessageDialog(VentanaPrincipal.this, "Importados: " + n);
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(VentanaPrincipal.this, "Error importando: " + ex.getMessage());
+                }
+                cargarCarrerasEnCombo();
+                actualizarArchivoYCargar();
+            }
+        }.execute();
+    }
+
+    /** Exporta semestre, carrera, todo o los resultados de búsqueda mostrados */
+    private void exportarDialog() {
+        String[] alcances = {
+                "Semestre actual", "Carrera actual", "Toda la universidad",
+                "Toda la universidad (ZIP por semestre)", "Resultados de búsqueda"
+        };
+        JComboBox<String> comboAlcance = new JComboBox<>(alcances);
+        JComboBox<FormatoExportacion> comboFormato = new JComboBox<>(FormatoExportacion.values());
+
+        JPanel p = new JPanel(new GridLayout(4, 1, 4, 4));
+        p.add(new JLabel("¿Qué exportar?"));
+        p.add(comboAlcance);
+        p.add(new JLabel("Formato:"));
+        p.add(comboFormato);
+
+        int r = JOptionPane.showConfirmDialog(this, p, "Exportar", JOptionPane.OK_CANCEL_OPTION);
+        if (r != JOptionPane.OK_OPTION) return;
+
+        int alcance = comboAlcance.getSelectedIndex();
+        FormatoExportacion formato = (FormatoExportacion) comboFormato.getSelectedItem();
+
+        if (alcance == 4 && mostrandoArchivoActual) {
+            JOptionPane.showMessageDialog(this, "Primero realice una búsqueda.");
+            return;
+        }
+
+        JFileChooser fc = new JFileChooser();
+        fc.setDialogTitle("Guardar exportación");
+        fc.setSelectedFile(new File("exportacion." + (alcance == 3 ? "zip" : formato.getExtension())));
+        if (fc.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File destino = fc.getSelectedFile();
+
+        String carrera = (String) comboCarrera.getSelectedItem();
+        String semestre = (String) comboSemestre.getSelectedItem();
+
+        try {
+            switch (alcance) {
+                case 0: controller.exportarSemestre(carrera, semestre, formato, destino); break;
+                case 1: controller.exportarCarrera(carrera, formato, destino); break;
+                case 2: controller.exportarTodo(formato, destino); break;
+                case 3: controller.exportarTodoZip(formato, destino); break;
+                default: controller.exportarResultados(resultadosMostrados, formato, destino);
+            }
+            JOptionPane.showMessageDialog(this, "Exportado a: " + destino.getAbsolutePath());
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error exportando: " + ex.getMessage());
+        }
+    }
+
+    /** Crea un respaldo en segundo plano para no congelar la ventana */
+    private void crearRespaldo() {
+        new SwingWorker<String, Void>() {
+            @Override protected String doInBackground() throws Exception {
+                return controller.crearRespaldo();
+            }
+            @Override protected void done() {
+                try {
+                    JOptionPane.showMessageDialog(VentanaPrincipal.this, "Respaldo creado: " + get());
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(VentanaPrincipal.this, "Error creando respaldo: " + ex.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Restaura desde un respaldo elegido por el usuario.
+     * @param todo true para toda la carpeta, false solo para el semestre actual
+     */
+    private void restaurarRespaldo(boolean todo) {
+        List<String> ids = controller.listarRespaldos();
+        if (ids.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "No hay respaldos.");
+            return;
+        }
+
+        // Más reciente primero
+        java.util.Collections.reverse(ids);
+        String id = (String) JOptionPane.showInputDialog(this, "Seleccione el respaldo:", "Restaurar",
+                JOptionPane.QUESTION_MESSAGE, null, ids.toArray(), ids.get(0));
+        if (id == null) return;
+
+        String carrera = (String) comboCarrera.getSelectedItem();
+        String semestre = (String) comboSemestre.getSelectedItem();
+
+        int r = JOptionPane.showConfirmDialog(this,
+                todo ? "¿Restaurar TODOS los archivos al respaldo " + id + "?"
+                     : "¿Restaurar " + carrera + " / " + semestre + " al respaldo " + id + "?",
+                "Confirmar", JOptionPane.YES_NO_OPTION);
+        if (r != JOptionPane.YES_OPTION) return;
+
+        try {
+            if (todo) controller.restaurarRespaldo(id);
+            else controller.restaurarSemestre(id, carrera, semestre);
+
+            cargarCarrerasEnCombo();
+            comboCarrera.setSelectedItem(carrera);
+            actualizarArchivoYCargar();
+            JOptionPane.showMessageDialog(this, "Restaurado.");
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error restaurando: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Pide alcance, umbral y destino; el reporte se genera en segundo plano
+     * (destino.html y destino.csv).
+     */
+    private void reporteDialog() {
+        JComboBox<String> comboAlcance = new JComboBox<>();
+        comboAlcance.addItem("Toda la universidad");
+        for (int i = 0; i < comboCarrera.getItemCount(); i++)
+            comboAlcance.addItem(comboCarrera.getItemAt(i));
+        JTextField txtUmbral = new JTextField(String.valueOf(ReporteCalificaciones.UMBRAL_PREDETERMINADO));
+
+        JPanel p = new JPanel(new GridLayout(4, 1, 4, 4));
+        p.add(new JLabel("¿Qué incluir?"));
+        p.add(comboAlcance);
+        p.add(new JLabel("Listar alumnos con promedio menor a:"));
+        p.add(txtUmbral);
+        if (JOptionPane.showConfirmDialog(this, p, "Reporte de calificaciones", JOptionPane.OK_CANCEL_OPTION)
+                != JOptionPane.OK_OPTION)
+            return;
+
+        double umbral;
+        try {
+            umbral = Double.parseDouble(txtUmbral.getText().trim());
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Umbral inválido.");
+            return;
+        }
+        String carrera = comboAlcance.getSelectedIndex() == 0 ? null : (String) comboAlcance.getSelectedItem();
+
+        JFileChooser fc = new JFileChooser();
+        fc.setDialogTitle("Guardar reporte");
+        fc.setSelectedFile(new File("reporte.html"));
+        if (fc.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        String base = fc.getSelectedFile().getPath().replaceFirst("\\.(html|csv)$", "");
+        File html = new File(base + ".html"), csv = new File(base + ".csv");
+
+        new SwingWorker<ReporteCalificaciones.Resumen, Void>() {
+            @Override protected ReporteCalificaciones.Resumen doInBackground() throws Exception {
+                return controller.generarReporte(carrera, umbral, html, csv);
+            }
+            @Override protected void done() {
+                try {
+                    ReporteCalificaciones.Resumen r = get();
+                    JOptionPane.showMessageDialog(VentanaPrincipal.this, r.getAlumnos() + " alumnos, "
+                            + r.getBajoUmbral() + " con promedio menor a " + umbral + ".\nReporte: "
+                            + html.getAbsolutePath() + "\nDatos: " + csv.getAbsolutePath());
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(VentanaPrincipal.this, "Error generando el reporte: " + ex.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Promoción de fin de ciclo: primero muestra el reporte (sin escribir
+     * nada) y solo si se confirma pasa a los alumnos al semestre siguiente.
+     */
+    private void promoverDialog() {
+        JComboBox<String> comboAlcance = new JComboBox<>();
+        comboAlcance.addItem("Todas las carreras");
+        for (int i = 0; i < comboCarrera.getItemCount(); i++)
+            comboAlcance.addItem(comboCarrera.getItemAt(i));
+
+        if (JOptionPane.showConfirmDialog(this, comboAlcance, "Promover al semestre siguiente",
+                JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION)
+            return;
+        String carrera = comboAlcance.getSelectedIndex() == 0 ? null : (String) comboAlcance.getSelectedItem();
+
+        try {
+            List<PromocionSemestres.Reporte> simulacion = controller.promoverSemestres(carrera, true);
+            StringBuilder sb = new StringBuilder();
+            int total = 0;
+            for (PromocionSemestres.Reporte r : simulacion) {
+                sb.append(r).append('\n');
+                total += r.getPromovidos();
+            }
+            sb.append("Los alumnos de Octavo Semestre pasan a ").append(PromocionSemestres.EGRESADOS).append(".\n")
+              .append("Las carreras con matrículas repetidas no se modifican.");
+
+            JTextArea area = new JTextArea(sb.toString(), 20, 70);
+            area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            area.setEditable(false);
+            if (JOptionPane.showConfirmDialog(this, new JScrollPane(area), "¿Promover " + total + " alumnos?",
+                    JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION)
+                return;
+
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error promoviendo: " + ex.getMessage());
+            return;
+        }
+
+        // El respaldo previo y la reescritura de la carrera van en segundo plano
+        lblRuta.setText("Promoviendo...");
+        new SwingWorker<List<PromocionSemestres.Reporte>, Void>() {
+            @Override protected List<PromocionSemestres.Reporte> doInBackground() throws Exception {
+                return controller.promoverSemestres(carrera, false);
+            }
+            @Override protected void done() {
+                try {
+                    int promovidos = 0;
+                    List<String> omitidas = new ArrayList<>();
+                    for (PromocionSemestres.Reporte r : get()) {
+                        if (r.isAplicado()) promovidos += r.getPromovidos();
+                        else if (!r.getConflictos().isEmpty()) omitidas.add(r.getCarrera());
+                    }
+                    JOptionPane.showMessageDialog(VentanaPrincipal.this, "Promovidos: " + promovidos
+                            + (omitidas.isEmpty() ? "" : "\nSin cambios por matrículas repetidas: " + String.join(", ", omitidas)));
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(VentanaPrincipal.this, "Error promoviendo: " + ex.getMessage());
+                }
+                cargarCarrerasEnCombo();
+                actualizarArchivoYCargar();
+            }
+        }.execute();
+    }
+
+    /**
+     * Comprime o descomprime el semestre actual.
+     * @param comprimir true para archivar (.txtz), false para regresar a .txt
+     */
+    private void archivarSemestre(boolean comprimir) {
         try {
-            int n = controller.importarArchivo(f);
-            JOptionPane.showMessageDialog(this, "Importados: " + n);
+            if (comprimir) controller.archivarSemestreActual();
+            else controller.desarchivarSemestreActual();
             actualizarArchivoYCargar();
         } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, "Error importando: " + ex.getMessage());
+            JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage());
         }
     }
 
@@ -6,4 +6,6 @@
  */
 module SistemaCalificaciones1 {
 	requires java.desktop;
+	requires java.net.http;
+	requires jdk.httpserver;
 }
\ No newline at end of file
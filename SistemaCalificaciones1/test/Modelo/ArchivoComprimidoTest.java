@@ -0,0 +1,118 @@
+package Modelo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas del formato .txtz (bloques comprimidos con índice de matrículas)
+ * y de su uso transparente desde GestorArchivos.
+ */
+class ArchivoComprimidoTest {
+
+    @TempDir
+    Path carpeta;
+
+    /** Suficientes líneas para ocupar varios bloques de 64 KB */
+    private static List<String> lineas(int n) {
+        List<String> res = new ArrayList<>();
+        for (int i = 0; i < n; i++)
+            res.add(String.format("Peña Núñez José %d|M%05d|%.1f|Quinto Semestre|20|Ingeniería en Sistemas|a%d@x.mx|555|Calle Ñandú %d",
+                    i, i, (i % 100) / 10.0, i, i));
+        return res;
+    }
+
+    @Test
+    void idaYVueltaConVariosBloques() throws IOException {
+        File f = carpeta.resolve("Quinto Semestre.txtz").toFile();
+        List<String> original = lineas(5000);
+
+        new ArchivoComprimido(f).escribir(original);
+
+        assertEquals(original, new ArchivoComprimido(f).leerLineas());
+        assertTrue(f.length() < original.size() * 40, "el archivo debería quedar comprimido");
+    }
+
+    @Test
+    void encabezadoYCierreDelFormato() throws IOException {
+        File f = carpeta.resolve("s.txtz").toFile();
+        new ArchivoComprimido(f).escribir(lineas(10));
+
+        byte[] datos = Files.readAllBytes(f.toPath());
+        assertArrayEquals("SCZ1".getBytes(StandardCharsets.US_ASCII), Arrays.copyOfRange(datos, 0, 4));
+        assertArrayEquals("SCZI".getBytes(StandardCharsets.US_ASCII),
+                Arrays.copyOfRange(datos, datos.length - 4, datos.length));
+    }
+
+    @Test
+    void buscaPorMatriculaSinDistinguirMayusculas() throws IOException {
+        File f = carpeta.resolve("s.txtz").toFile();
+        List<String> original = lineas(5000);
+        new ArchivoComprimido(f).escribir(original);
+
+        ArchivoComprimido c = new ArchivoComprimido(f);
+        assertEquals(original.get(0), c.buscarPorMatricula("M00000"));
+        assertEquals(original.get(4321), c.buscarPorMatricula("m04321"));
+        assertEquals(original.get(4999), c.buscarPorMatricula(" M04999 "));
+        assertNull(c.buscarPorMatricula("X1"));
+    }
+
+    @Test
+    void laEntradaEntregaElTextoCompleto() throws IOException {
+        File f = carpeta.resolve("s.txtz").toFile();
+        List<String> original = lineas(3000);
+        new ArchivoComprimido(f).escribir(original);
+
+        String texto;
+        try (InputStream in = new ArchivoComprimido(f).abrirEntrada()) {
+            texto = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertEquals(String.join("\n", original) + "\n", texto);
+    }
+
+    @Test
+    void archivoVacio() throws IOException {
+        File f = carpeta.resolve("s.txtz").toFile();
+        new ArchivoComprimido(f).escribir(List.of());
+
+        assertTrue(new ArchivoComprimido(f).leerLineas().isEmpty());
+        assertNull(new ArchivoComprimido(f).buscarPorMatricula("M1"));
+    }
+
+    @Test
+    void comprimirYDescomprimirEsTransparente() throws IOException {
+        File txt = carpeta.resolve("Quinto Semestre.txt").toFile();
+        GestorArchivos g = new GestorArchivos(txt.getPath());
+        List<String> original = lineas(2000);
+        g.escribirLineas(original);
+
+        g.comprimir();
+        assertTrue(g.estaComprimido());
+        assertFalse(txt.exists());
+        assertEquals(original, g.leerLineas());
+        assertEquals(original.get(1500), g.buscarLineaPorMatricula("M01500"));
+
+        g.descomprimir();
+        assertFalse(g.estaComprimido());
+        assertEquals(original, g.leerLineas());
+
+        // El .txt queda en UTF-8 y no quedan temporales en la carpeta
+        assertEquals(original, Files.readAllLines(txt.toPath(), StandardCharsets.UTF_8));
+        assertEquals(List.of("Quinto Semestre.txt"), Arrays.asList(carpeta.toFile().list()));
+    }
+}
@@ -0,0 +1,80 @@
+package Modelo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas de la caché de consultas: admisión por frecuencia antes de
+ * expulsar y oyente de RegistroVersiones quitado al cerrar.
+ */
+class CacheConsultasTest {
+
+    /** Peso estimado de una entrada con un alumno de matrícula de dos letras */
+    private static final long UNO = 299;
+
+    private final CacheConsultas cache = new CacheConsultas(2 * UNO + 100);
+
+    @AfterEach
+    void cerrar() {
+        cache.cerrar();
+    }
+
+    private static List<Alumno> alumnos(String... matriculas) {
+        List<Alumno> res = new ArrayList<>();
+        for (String m : matriculas) res.add(new Alumno("Alumno " + m, m, 8.0, "Quinto Semestre", 20, "Sistemas", "", "", ""));
+        return res;
+    }
+
+    private void pedir(String clave, int veces, String... matriculas) {
+        for (int i = 0; i < veces; i++) cache.obtener(clave, null, () -> alumnos(matriculas));
+    }
+
+    @Test
+    void unaConsultaRechazadaNoExpulsaANinguna() {
+        pedir("poco", 1, "A1");
+        pedir("mucho", 3, "B1");
+        assertEquals(2, cache.getEntradas());
+
+        // Para entrar tendría que sacar a las dos; "mucho" es más frecuente
+        pedir("nueva", 1, "C1", "C2");
+
+        assertEquals(2, cache.getEntradas());
+        assertEquals(0, cache.getExpulsiones());
+        assertEquals(1, cache.getRechazos());
+        long aciertos = cache.getAciertos();
+        cache.obtener("poco", null, () -> fail("debía seguir en la caché"));
+        assertEquals(aciertos + 1, cache.getAciertos());
+    }
+
+    @Test
+    void unaConsultaAdmitidaExpulsaSoloLoNecesario() {
+        pedir("a", 1, "A1");
+        pedir("b", 1, "B1");
+
+        pedir("c", 2, "C1");
+
+        assertEquals(2, cache.getEntradas());
+        assertEquals(1, cache.getExpulsiones());
+        long aciertos = cache.getAciertos();
+        cache.obtener("b", null, () -> fail("debía seguir en la caché"));
+        cache.obtener("c", null, () -> fail("debía estar en la caché"));
+        assertEquals(aciertos + 2, cache.getAciertos());
+    }
+
+    @Test
+    void cerrarDejaDeEscucharCambios() {
+        pedir("a", 1, "A1");
+        cache.cerrar();
+        pedir("a", 1, "A1");
+
+        RegistroVersiones.notificarCambio(new File("cualquiera.txt"));
+        assertEquals(0, cache.getInvalidaciones());
+    }
+}
@@ -0,0 +1,270 @@
+package Modelo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas de las consultas estructuradas: análisis del texto, elección de
+ * archivos e índices, y resultados iguales a revisar alumno por alumno.
+ */
+class ConsultaAlumnosTest {
+
+    private static final String[] NOMBRES = {
+        "José García", "María Núñez", "Edgar Pérez", "Ana Gómez", "Luis Ortega", "Gárate Sol"
+    };
+    private static final String[] CARRERAS = { "Arquitectura", "Derecho", "Medicina" };
+    private static final List<String> SEMESTRES = PromocionSemestres.SEMESTRES.subList(0, 4);
+
+    @TempDir
+    Path carpeta;
+
+    private File raiz;
+    private RaicesAlmacenamiento raices;
+    /** Todos los alumnos en el orden del resultado: carrera, semestre y posición en el archivo */
+    private final List<Alumno> todos = new ArrayList<>();
+
+    @BeforeEach
+    void crearArchivos() throws IOException {
+        raiz = carpeta.resolve("Alumnos").toFile();
+        raices = new RaicesAlmacenamiento(List.of(raiz));
+        Random r = new Random(7);
+        int m = 0;
+        for (String c : CARRERAS) {
+            for (String s : SEMESTRES) {
+                List<String> lineas = new ArrayList<>();
+                for (int i = 0; i < 200; i++) {
+                    Alumno a = new Alumno(NOMBRES[r.nextInt(NOMBRES.length)] + " " + i, "M" + (m++),
+                            r.nextInt(1001) / 100.0, s, 17 + r.nextInt(10), c, "a" + i + "@correo.mx", "5551234567", "Centro");
+                    lineas.add(a.toLinea());
+                    todos.add(Alumno.fromLinea(a.toLinea()));
+                }
+                new GestorArchivos(archivo(c, s).getPath()).escribirLineas(lineas);
+            }
+        }
+    }
+
+    private File archivo(String carrera, String semestre) {
+        return new File(raiz, carrera + "/" + semestre + ".txt");
+    }
+
+    private ConsultaAlumnos.Plan planear(String texto) {
+        return ConsultaAlumnos.analizar(texto).planear(raices, r -> carpeta.resolve("Indices").toString());
+    }
+
+    private static List<String> matriculas(List<Alumno> alumnos) {
+        List<String> res = new ArrayList<>();
+        for (Alumno a : alumnos) res.add(a.getMatricula());
+        return res;
+    }
+
+    private List<String> esperado(Predicate<Alumno> filtro) {
+        List<Alumno> res = new ArrayList<>();
+        for (Alumno a : todos) if (filtro.test(a)) res.add(a);
+        return matriculas(res);
+    }
+
+    private static boolean nombreContiene(Alumno a, String fragmento) {
+        return IndiceNombres.normalizar(a.getNombre()).contains(fragmento);
+    }
+
+    /** Cada consulta comparada con revisar a todos los alumnos */
+    private void resultadosIgualesARevisarTodo() throws IOException {
+        assertEquals(esperado(a -> a.getLicenciatura().equals("Derecho") && a.getPromedio() < 6 && nombreContiene(a, "gar")),
+                matriculas(planear("carrera = \"Derecho\" AND promedio < 6 AND nombre ~ \"GAR\"").ejecutar(Integer.MAX_VALUE)));
+        assertEquals(esperado(a -> SEMESTRES.indexOf(a.getSemestre()) >= 2 && a.getPromedio() >= 9.5 && a.getEdad() <= 18),
+                matriculas(planear("semestre >= Tercer y promedio >= 9.5 y edad <= 18").ejecutar(Integer.MAX_VALUE)));
+        assertEquals(esperado(a -> a.getPromedio() > 0.2 && a.getPromedio() <= 0.5),
+                matriculas(planear("promedio > 0.2 AND promedio <= 0.5").ejecutar(Integer.MAX_VALUE)));
+        assertEquals(esperado(a -> a.getEdad() > 25),
+                matriculas(planear("edad > 25.5").ejecutar(Integer.MAX_VALUE)));
+        assertEquals(esperado(a -> a.getMatricula().equals("M1234")),
+                matriculas(planear("matricula = m1234").ejecutar(Integer.MAX_VALUE)));
+        assertEquals(esperado(a -> !a.getLicenciatura().equals("Medicina") && SEMESTRES.indexOf(a.getSemestre()) < 2
+                        && a.getEdad() == 20 && nombreContiene(a, "jose")),
+                matriculas(planear("carrera != medicina AND semestre < 3 AND edad = 20 AND nombre ~ jose").ejecutar(Integer.MAX_VALUE)));
+        assertEquals(esperado(a -> a.getPromedio() != 5.0 && a.getSemestre().equals("Segundo Semestre")),
+                matriculas(planear("promedio != 5 AND semestre ~ segundo").ejecutar(Integer.MAX_VALUE)));
+    }
+
+    // -------------------------------
+    //            ANÁLISIS
+    // -------------------------------
+
+    @Test
+    void separaCampoOperadorYValor() {
+        ConsultaAlumnos c = ConsultaAlumnos.analizar("  carrera = \"Derecho\" AND promedio<6 y Nombre ~ 'de la \\'O' ");
+        List<ConsultaAlumnos.Condicion> l = c.getCondiciones();
+        assertEquals(3, l.size());
+        assertEquals(ConsultaAlumnos.Campo.CARRERA, l.get(0).getCampo());
+        assertEquals(ConsultaAlumnos.Operador.IGUAL, l.get(0).getOperador());
+        assertEquals("Derecho", l.get(0).getValor());
+        assertEquals(ConsultaAlumnos.Operador.MENOR, l.get(1).getOperador());
+        assertEquals("6", l.get(1).getValor());
+        assertEquals(ConsultaAlumnos.Campo.NOMBRE, l.get(2).getCampo());
+        assertEquals(ConsultaAlumnos.Operador.CONTIENE, l.get(2).getOperador());
+        assertEquals("de la 'O", l.get(2).getValor());
+        assertEquals("carrera = \"Derecho\" AND promedio<6 y Nombre ~ 'de la \\'O'", c.toString());
+    }
+
+    @Test
+    void losOperadoresDeDosCaracteresNoSeConfunden() {
+        assertEquals(ConsultaAlumnos.Operador.MENOR_IGUAL,
+                ConsultaAlumnos.analizar("edad <= 20").getCondiciones().get(0).getOperador());
+        assertEquals(ConsultaAlumnos.Operador.MAYOR_IGUAL,
+                ConsultaAlumnos.analizar("edad>=20").getCondiciones().get(0).getOperador());
+        assertEquals(ConsultaAlumnos.Operador.DISTINTO,
+                ConsultaAlumnos.analizar("correo != x@y.mx").getCondiciones().get(0).getOperador());
+    }
+
+    @Test
+    void lasConsultasMalEscritasSeRechazan() {
+        for (String mala : new String[] {
+                "", "   ", "promedio", "= 5", "promedio ~ 3", "nombre < x", "foo = 1", "promedio = abc",
+                "semestre = Noveno", "nombre = \"abc", "edad = 20 AND", "edad = 20 AND AND edad = 3" }) {
+            assertThrows(IllegalArgumentException.class, () -> ConsultaAlumnos.analizar(mala), mala);
+        }
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> ConsultaAlumnos.analizar("promedio < 5 OR edad > 3"));
+        assertTrue(e.getMessage().contains("posición 14"), e.getMessage());
+        assertTrue(e.getMessage().contains("AND"), e.getMessage());
+    }
+
+    @Test
+    void comparaTextosSinAcentosYSemestresPorSuOrden() {
+        ConsultaAlumnos.Condicion nombre = ConsultaAlumnos.analizar("nombre ~ \"NUNEZ\"").getCondiciones().get(0);
+        assertTrue(nombre.cumple("María Núñez"));
+        assertFalse(nombre.cumple("María Nuño"));
+
+        for (String s : new String[] { "semestre >= 3", "semestre >= Tercer", "semestre >= \"tercer semestre\"" }) {
+            ConsultaAlumnos.Condicion c = ConsultaAlumnos.analizar(s).getCondiciones().get(0);
+            assertTrue(c.cumple("Tercer Semestre"), s);
+            assertTrue(c.cumple("Egresados"), s);
+            assertFalse(c.cumple("Segundo Semestre"), s);
+            assertFalse(c.cumple("Otro"), s);
+        }
+
+        // Un promedio inválido en la línea cuenta como 0, igual que en Alumno.fromLinea
+        assertTrue(ConsultaAlumnos.analizar("promedio < 1").getCondiciones().get(0).cumple("x"));
+        assertEquals("Centro", ConsultaAlumnos.campo("A|M1|9.0|Primer Semestre|20|Derecho|c|t|Centro", 8));
+        assertEquals("", ConsultaAlumnos.campo("A|M1", 5));
+    }
+
+    // -------------------------------
+    //          PLANIFICACIÓN
+    // -------------------------------
+
+    @Test
+    void carreraYSemestreEligenArchivosPorSuNombre() throws IOException {
+        ConsultaAlumnos.Plan p = planear("carrera = derecho AND semestre < 3 AND edad = 20");
+
+        assertEquals(12, p.getArchivosTotales());
+        List<File> archivos = new ArrayList<>();
+        for (ConsultaAlumnos.Paso s : p.getPasos()) {
+            archivos.add(s.getArchivo().getAbsoluteFile());
+            assertEquals(ConsultaAlumnos.Acceso.RECORRIDO, s.getAcceso());
+        }
+        assertEquals(List.of(archivo("Derecho", "Primer Semestre").getAbsoluteFile(),
+                archivo("Derecho", "Segundo Semestre").getAbsoluteFile()), archivos);
+        assertTrue(p.explicar().contains("Archivos: 2 de 12"), p.explicar());
+
+        p.ejecutar(Integer.MAX_VALUE);
+        assertEquals(2, p.getArchivosAbiertos());
+        assertEquals(400, p.getLineasLeidas());
+    }
+
+    @Test
+    void sinIndicesSeRecorreCadaArchivo() throws IOException {
+        ConsultaAlumnos.Plan p = planear("promedio >= 9.9");
+        for (ConsultaAlumnos.Paso s : p.getPasos()) assertEquals(ConsultaAlumnos.Acceso.RECORRIDO, s.getAcceso());
+        assertEquals(ConsultaAlumnos.Acceso.MATRICULA, planear("matricula = M5").getPasos().get(0).getAcceso());
+
+        resultadosIgualesARevisarTodo();
+    }
+
+    @Test
+    void elIndiceDeRangosSeUsaSoloSiDejaPocasFilas() throws IOException {
+        for (File f : GestorArchivos.listarArchivosSemestre(raiz)) IndiceRangos.para(f);
+
+        ConsultaAlumnos.Plan angosta = planear("promedio >= 9.9");
+        for (ConsultaAlumnos.Paso s : angosta.getPasos())
+            assertEquals(ConsultaAlumnos.Acceso.INDICE_RANGOS, s.getAcceso());
+        angosta.ejecutar(Integer.MAX_VALUE);
+        assertTrue(angosta.getLineasLeidas() < 12 * 200, "se deja de leer después de la última fila elegida");
+
+        // Ninguna fila: el archivo ni se abre
+        ConsultaAlumnos.Plan vacia = planear("edad > 40");
+        assertTrue(vacia.getPasos().get(0).sinLectura());
+        assertEquals(List.of(), vacia.ejecutar(10));
+        assertEquals(0, vacia.getArchivosAbiertos());
+
+        // Casi todas las filas: conviene recorrer
+        for (ConsultaAlumnos.Paso s : planear("promedio >= 1").getPasos())
+            assertEquals(ConsultaAlumnos.Acceso.RECORRIDO, s.getAcceso());
+        assertTrue(planear("promedio >= 1").explicar().contains("el índice de rangos deja"));
+
+        resultadosIgualesARevisarTodo();
+    }
+
+    @Test
+    void elIndiceDeNombresResuelveMatriculaYFragmentoSinAbrirArchivos() throws IOException {
+        IndiceNombres.para(raiz.getPath(), carpeta.resolve("Indices").toString()).buscar("jose", 1);
+
+        ConsultaAlumnos.Plan p = planear("matricula = M1234");
+        for (ConsultaAlumnos.Paso s : p.getPasos()) {
+            assertEquals(ConsultaAlumnos.Acceso.INDICE_NOMBRES, s.getAcceso());
+            assertTrue(s.sinLectura());
+        }
+        assertEquals(List.of("M1234"), matriculas(p.ejecutar(10)));
+        assertEquals(0, p.getArchivosAbiertos());
+
+        // Un fragmento de menos de tres letras no acota filas
+        assertEquals(ConsultaAlumnos.Acceso.RECORRIDO, planear("nombre ~ ez").getPasos().get(0).getAcceso());
+
+        resultadosIgualesARevisarTodo();
+    }
+
+    @Test
+    void elLimiteRespetaElOrdenDelResultado() throws IOException {
+        List<String> completo = matriculas(planear("edad >= 20").ejecutar(Integer.MAX_VALUE));
+        assertEquals(esperado(a -> a.getEdad() >= 20), completo);
+        assertEquals(completo.subList(0, 5), matriculas(planear("edad >= 20").ejecutar(5)));
+        assertEquals(List.of(), planear("edad >= 20").ejecutar(0));
+    }
+
+    @Test
+    void unArchivoQueCambiaDespuesDePlanearSeRecorreCompleto() throws IOException {
+        for (File f : GestorArchivos.listarArchivosSemestre(raiz)) IndiceRangos.para(f);
+        ConsultaAlumnos.Plan p = planear("carrera = Derecho AND semestre = 1 AND promedio <= 0.05");
+        assertEquals(ConsultaAlumnos.Acceso.INDICE_RANGOS, p.getPasos().get(0).getAcceso());
+
+        Alumno nuevo = new Alumno("Nuevo", "X1", 0.01, "Primer Semestre", 20, "Derecho", "", "", "");
+        new GestorArchivos(archivo("Derecho", "Primer Semestre").getPath()).escribirLineas(List.of(nuevo.toLinea()));
+
+        assertEquals(List.of("X1"), matriculas(p.ejecutar(10)));
+    }
+
+    @Test
+    void buscarPorRangoLeeLasFilasDelIndice() throws IOException {
+        File derecho = archivo("Derecho", "Segundo Semestre");
+        List<String> resultado = matriculas(AlumnoDAO.buscarPorRango(derecho, 8.0, 9.5, 18, 22));
+
+        assertFalse(resultado.isEmpty());
+        assertEquals(esperado(a -> a.getLicenciatura().equals("Derecho") && a.getSemestre().equals("Segundo Semestre")
+                && a.getPromedio() >= 8.0 && a.getPromedio() <= 9.5 && a.getEdad() >= 18 && a.getEdad() <= 22), resultado);
+        assertEquals(List.of(), AlumnoDAO.buscarPorRango(derecho, 11.0, 12.0, 0, 99));
+    }
+}
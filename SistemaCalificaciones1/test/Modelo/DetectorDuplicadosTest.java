@@ -0,0 +1,71 @@
+package Modelo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas del análisis de matrículas repetidas: en memoria y repartido en
+ * particiones en disco (en una o varias pasadas) da el mismo resultado.
+ */
+class DetectorDuplicadosTest {
+
+    @TempDir
+    Path carpeta;
+
+    private final List<File> archivos = new ArrayList<>();
+
+    @BeforeEach
+    void crearArchivos() throws IOException {
+        File raiz = carpeta.resolve("Alumnos").toFile();
+        String[] semestres = { "Primer Semestre", "Segundo Semestre", "Tercer Semestre" };
+        for (int s = 0; s < semestres.length; s++) {
+            File f = new File(raiz, "Sistemas/" + semestres[s] + ".txt");
+            List<String> lineas = new ArrayList<>();
+            // Las matrículas múltiplos de 7 se repiten en todos los semestres
+            for (int i = 0; i < 2000; i++) {
+                String m = i % 7 == 0 ? "R" + i : "S" + s + "-" + i;
+                lineas.add("Alumno " + i + "|" + m + "|8.0|" + semestres[s] + "|20|Sistemas|||");
+            }
+            new GestorArchivos(f.getPath()).escribirLineas(lineas);
+            archivos.add(f);
+        }
+    }
+
+    private static List<String> resumen(DetectorDuplicados.Analisis a) {
+        List<String> res = new ArrayList<>();
+        for (DetectorDuplicados.Conflicto c : a.getConflictos()) {
+            StringBuilder sb = new StringBuilder(c.getMatricula());
+            for (DetectorDuplicados.Ubicacion u : c.getUbicaciones())
+                sb.append(' ').append(u.getSemestre()).append(':').append(u.getFila());
+            res.add(sb.toString());
+        }
+        return res;
+    }
+
+    @Test
+    void particionesEnVariasPasadasDanLoMismoQueEnMemoria() throws IOException {
+        DetectorDuplicados.Analisis enMemoria = new DetectorDuplicados(archivos, Long.MAX_VALUE / 8).analizar();
+        DetectorDuplicados.Analisis unaPasada = new DetectorDuplicados(archivos, 20_000).analizar();
+        DetectorDuplicados.Analisis variasPasadas = new DetectorDuplicados(archivos, 1).analizar();
+
+        assertEquals(1, enMemoria.getParticiones());
+        assertTrue(unaPasada.getParticiones() > 1 && unaPasada.getParticiones() <= 256);
+        assertTrue(variasPasadas.getParticiones() > 256);
+
+        assertEquals(286, enMemoria.getConflictos().size());
+        assertEquals(6000, enMemoria.getLineas());
+        assertEquals(resumen(enMemoria), resumen(unaPasada));
+        assertEquals(resumen(enMemoria), resumen(variasPasadas));
+        assertEquals(6000, variasPasadas.getLineas());
+    }
+}
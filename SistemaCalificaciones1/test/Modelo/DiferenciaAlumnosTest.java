@@ -0,0 +1,48 @@
+package Modelo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas de la comparación entre dos versiones de un archivo de semestre.
+ */
+class DiferenciaAlumnosTest {
+
+    private static Alumno alumno(String nombre, String matricula, double promedio) {
+        return new Alumno(nombre, matricula, promedio, "Quinto Semestre", 20,
+                "Ingeniería en Sistemas", "", "", "");
+    }
+
+    @Test
+    void detectaAltasBajasYCambios() {
+        List<Alumno> antes = List.of(alumno("Ana", "A1", 9), alumno("Beto", "B2", 8), alumno("Caro", "C3", 7));
+        List<Alumno> despues = List.of(alumno("Ana", "A1", 9), alumno("Caro", "C3", 7.5), alumno("Dani", "D4", 6));
+
+        DiferenciaAlumnos d = DiferenciaAlumnos.calcular(antes, despues);
+
+        assertFalse(d.estaVacia());
+        assertEquals(List.of("D4"), d.getAltas().stream().map(Alumno::getMatricula).toList());
+        assertEquals(List.of("B2"), d.getBajas());
+        assertEquals(List.of("C3"), d.getCambios().stream().map(Alumno::getMatricula).toList());
+    }
+
+    @Test
+    void laMatriculaNoDistingueMayusculas() {
+        DiferenciaAlumnos d = DiferenciaAlumnos.calcular(
+                List.of(alumno("Ana", "a1", 9)), List.of(alumno("Ana", "A1", 9)));
+
+        assertTrue(d.getAltas().isEmpty());
+        assertTrue(d.getBajas().isEmpty());
+    }
+
+    @Test
+    void listasIgualesNoTienenDiferencia() {
+        List<Alumno> lista = List.of(alumno("Ana", "A1", 9), alumno("Beto", "B2", 8));
+        assertTrue(DiferenciaAlumnos.calcular(lista, lista).estaVacia());
+    }
+}
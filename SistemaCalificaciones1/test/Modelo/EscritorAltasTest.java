@@ -0,0 +1,162 @@
+package Modelo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas del escritor único de altas ("group commit"): altas simultáneas,
+ * matrículas repetidas y los casos en que el hilo ya tiene el candado.
+ */
+class EscritorAltasTest {
+
+    @TempDir
+    Path carpeta;
+
+    private File archivo;
+    private AlumnoDAO dao;
+
+    @BeforeEach
+    void crearDao() {
+        archivo = carpeta.resolve("Alumnos").resolve("Sistemas").resolve("Quinto Semestre.txt").toFile();
+        dao = new AlumnoDAO(archivo.getPath());
+    }
+
+    @AfterEach
+    void vaciarBitacora() {
+        // la bitácora escribe en segundo plano dentro de la carpeta temporal
+        assertTrue(BitacoraAuditoria.vaciar(5000));
+    }
+
+    private static Alumno alumno(String matricula) {
+        return new Alumno("Alumno " + matricula, matricula, 8.5, "Quinto Semestre", 20, "Sistemas", "", "", "");
+    }
+
+    @Test
+    void altasSimultaneasQuedanTodasEscritas() throws Exception {
+        ExecutorService hilos = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                String m = "A" + i;
+                tareas.add(hilos.submit(() -> {
+                    dao.agregar(alumno(m));
+                    return null;
+                }));
+            }
+            for (Future<?> t : tareas) t.get();
+        } finally {
+            hilos.shutdown();
+        }
+
+        List<Alumno> lista = dao.listar();
+        assertEquals(2000, lista.size());
+        Set<String> distintas = new HashSet<>();
+        for (Alumno a : lista) distintas.add(a.getMatricula());
+        assertEquals(2000, distintas.size());
+    }
+
+    @Test
+    void laMismaMatriculaSoloSeAgregaUnaVez() throws Exception {
+        dao.agregar(alumno("B0"));
+
+        List<CompletableFuture<Boolean>> altas = new ArrayList<>();
+        for (int i = 0; i < 200; i++)
+            altas.add(dao.agregarSiNoExisteAsincrono(alumno("B" + (i % 10))));
+
+        int agregadas = 0;
+        for (CompletableFuture<Boolean> f : altas) if (f.join()) agregadas++;
+
+        // B0 ya existía; B1..B9 entran una sola vez cada una
+        assertEquals(9, agregadas);
+        assertEquals(10, dao.listar().size());
+    }
+
+    @Test
+    void unaAltaInvalidaNoTumbaAlLote() {
+        Alumno sinMatricula = alumno("X");
+        sinMatricula.setMatricula(null);
+
+        CompletableFuture<Void> mala = dao.agregarAsincrono(sinMatricula);
+        CompletableFuture<Void> buena = dao.agregarAsincrono(alumno("C1"));
+
+        CompletionException e = assertThrows(CompletionException.class, mala::join);
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+        buena.join();
+        assertEquals(1, dao.listar().size());
+    }
+
+    @Test
+    void conCandadoDeLecturaSeRechazaEnVezDeColgarse() throws Exception {
+        dao.agregar(alumno("D1"));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            try (Stream<Alumno> flujo = dao.flujo()) {
+                flujo.iterator().next();
+                assertThrows(IllegalStateException.class, () -> dao.agregar(alumno("D2")));
+            }
+        });
+
+        // Ya sin el flujo abierto el alta procede
+        dao.agregar(alumno("D2"));
+        assertEquals(2, dao.listar().size());
+    }
+
+    @Test
+    void importarDejaUnaImportacionEnLaBitacora() throws Exception {
+        dao.agregar(alumno("F1"));
+        File csv = carpeta.resolve("alumnos.csv").toFile();
+        Files.write(csv.toPath(), List.of(
+                "Ana,F1,9.0,Quinto Semestre,20,Sistemas,a@x.mx,1,Centro",
+                "Luis,F2,8.0,Quinto Semestre,21,Sistemas,l@x.mx,2,Centro",
+                "incompleta,F3"), StandardCharsets.UTF_8);
+
+        assertEquals(1, dao.importarDesdeArchivo(csv));
+        // Sin nada nuevo no hay importación que registrar
+        assertEquals(0, dao.importarDesdeArchivo(csv));
+
+        List<String> importaciones = new ArrayList<>();
+        for (BitacoraAuditoria.Registro r : BitacoraAuditoria.consultar(carpeta.resolve("Auditoria").toFile(), null, null, null))
+            if (r.getAccion().equals("IMPORTACION")) importaciones.add(r.getCarrera() + "/" + r.getSemestre());
+        assertEquals(List.of("Sistemas/Quinto Semestre"), importaciones);
+    }
+
+    @Test
+    void conCandadoDeEscrituraSeEscribeEnElMismoHilo() throws Exception {
+        // El candado se toma dentro: assertTimeoutPreemptively corre en otro hilo
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            Lock escritura = AlumnoDAO.candado(archivo).writeLock();
+            escritura.lock();
+            try {
+                dao.agregar(alumno("E1"));
+            } finally {
+                escritura.unlock();
+            }
+        });
+        assertFalse(dao.listar().isEmpty());
+    }
+}
@@ -0,0 +1,191 @@
+package Modelo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas del registro de cambios (feed.log) y de la réplica incremental
+ * a una carpeta espejo.
+ */
+class FeedCambiosTest {
+
+    @TempDir
+    Path carpeta;
+
+    private File raiz;
+    private File espejo;
+    private File quinto;
+    private AlumnoDAO dao;
+
+    @BeforeEach
+    void crearDao() {
+        raiz = carpeta.resolve("Alumnos").toFile();
+        espejo = carpeta.resolve("Espejo").toFile();
+        quinto = new File(raiz, "Sistemas/Quinto Semestre.txt");
+        dao = new AlumnoDAO(quinto.getPath());
+    }
+
+    @AfterEach
+    void vaciarBitacora() {
+        assertTrue(BitacoraAuditoria.vaciar(5000));
+    }
+
+    private static Alumno alumno(String nombre, String matricula) {
+        return new Alumno(nombre, matricula, 8.5, "Quinto Semestre", 20, "Sistemas", "", "", "");
+    }
+
+    private File archivoFeed() {
+        return FeedCambios.de(quinto).getArchivo();
+    }
+
+    private List<String> lineasFeed() throws IOException {
+        return Files.readAllLines(archivoFeed().toPath(), StandardCharsets.UTF_8);
+    }
+
+    private List<String> lineas(File f) throws IOException {
+        return new GestorArchivos(f.getPath()).leerLineas();
+    }
+
+    @Test
+    void cadaCambioLlevaSecuenciaTipoYArchivo() throws IOException {
+        dao.agregar(alumno("Ana", "A1"));
+        dao.agregar(alumno("Luis", "A2"));
+        assertTrue(dao.editar("A1", alumno("Ana María", "A3")));
+        assertTrue(dao.eliminarPorMatricula("A2"));
+
+        assertEquals(carpeta.resolve("Cambios").resolve("feed.log").toFile().getAbsoluteFile(), archivoFeed());
+        List<String> feed = lineasFeed();
+        assertEquals(4, feed.size());
+        String[][] esperado = {
+            { "1", "ALTA", "A1" },
+            { "2", "ALTA", "A2" },
+            { "3", "EDICION", "A1" },
+            { "4", "BAJA", "A2" },
+        };
+        for (int i = 0; i < esperado.length; i++) {
+            String[] p = feed.get(i).split("\t", -1);
+            assertEquals(6, p.length);
+            assertEquals(esperado[i][0], p[0]);
+            assertEquals(esperado[i][1], p[1]);
+            assertEquals("Sistemas", p[2]);
+            assertEquals("Quinto Semestre", p[3]);
+            assertEquals(esperado[i][2], p[4]);
+        }
+        // La edición lleva la matrícula original y la línea nueva; la baja, ninguna línea
+        assertEquals(alumno("Ana María", "A3").toLinea(), feed.get(2).split("\t", -1)[5]);
+        assertEquals("", feed.get(3).split("\t", -1)[5]);
+        assertEquals(4, FeedCambios.de(quinto).ultimaSecuencia());
+    }
+
+    @Test
+    void unaLineaAMediasSeDescartaYLaSecuenciaContinua() throws IOException {
+        dao.agregar(alumno("Ana", "A1"));
+
+        // Otro proceso se cerró a medio escribir
+        Files.write(archivoFeed().toPath(), "2\tALTA\tSistemas\tQuin".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        assertEquals(1, FeedCambios.de(quinto).ultimaSecuencia());
+
+        dao.agregar(alumno("Luis", "A2"));
+        List<String> feed = lineasFeed();
+        assertEquals(2, feed.size());
+        assertTrue(feed.get(1).startsWith("2\tALTA\tSistemas\tQuinto Semestre\tA2\t"));
+    }
+
+    @Test
+    void laSecuenciaSigueLoQueEscribioOtroProceso() throws IOException {
+        dao.agregar(alumno("Ana", "A1"));
+        Files.write(archivoFeed().toPath(), "41\tBAJA\tSistemas\tQuinto Semestre\tX9\t\n".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        dao.agregar(alumno("Luis", "A2"));
+        assertEquals(42, FeedCambios.de(quinto).ultimaSecuencia());
+    }
+
+    @Test
+    void laPrimeraReplicaCopiaTodoYLuegoSoloLoQueCambio() throws IOException {
+        dao.agregar(alumno("Ana", "A1"));
+        dao.agregar(alumno("Luis", "A2"));
+        File derecho = new File(raiz, "Derecho/Primer Semestre.txt");
+        new AlumnoDAO(derecho.getPath()).agregar(alumno("Eva", "D1"));
+
+        Replicador r = new Replicador(raiz, espejo);
+        assertEquals(2, r.replicar());
+        assertEquals(3, r.ultimaSecuenciaAplicada());
+        File quintoEspejo = new File(espejo, "Sistemas/Quinto Semestre.txt");
+        File derechoEspejo = new File(espejo, "Derecho/Primer Semestre.txt");
+        assertEquals(lineas(quinto), lineas(quintoEspejo));
+        assertEquals(lineas(derecho), lineas(derechoEspejo));
+
+        dao.agregar(alumno("Eva", "A3"));
+        assertTrue(dao.editar("A1", alumno("Ana María", "A4")));
+        assertTrue(dao.eliminarPorMatricula("A2"));
+        assertEquals(3, r.replicar());
+        assertEquals(6, r.ultimaSecuenciaAplicada());
+        assertEquals(lineas(quinto), lineas(quintoEspejo));
+        assertEquals(lineas(derecho), lineas(derechoEspejo));
+
+        // Sin cambios nuevos no hay nada que aplicar
+        assertEquals(0, r.replicar());
+    }
+
+    @Test
+    void unArchivoCambiadoCompletoSeCopiaEntero() throws IOException {
+        dao.agregar(alumno("Ana", "A1"));
+        Replicador r = new Replicador(raiz, espejo);
+        r.replicar();
+
+        // Por ejemplo, al restaurar un respaldo
+        new GestorArchivos(quinto.getPath()).escribirLineas(List.of(
+                alumno("Eva", "B1").toLinea(), alumno("Luis", "B2").toLinea()));
+        FeedCambios.registrarArchivo(quinto);
+        dao.agregar(alumno("Iris", "B3"));
+
+        assertEquals(2, r.replicar());
+        assertEquals(lineas(quinto), lineas(new File(espejo, "Sistemas/Quinto Semestre.txt")));
+    }
+
+    @Test
+    void unArchivoBorradoSeBorraDelEspejo() throws IOException {
+        dao.agregar(alumno("Ana", "A1"));
+        Replicador r = new Replicador(raiz, espejo);
+        r.replicar();
+        File quintoEspejo = new File(espejo, "Sistemas/Quinto Semestre.txt");
+        assertTrue(quintoEspejo.exists());
+
+        assertTrue(quinto.delete());
+        FeedCambios.registrarArchivo(quinto);
+        assertEquals(1, r.replicar());
+        assertFalse(quintoEspejo.exists());
+    }
+
+    @Test
+    void aplicarDosVecesLosMismosEventosDaElMismoResultado() throws IOException {
+        dao.agregar(alumno("Ana", "A1"));
+        Replicador r = new Replicador(raiz, espejo);
+        r.replicar();
+        dao.agregar(alumno("Luis", "A2"));
+        assertTrue(dao.eliminarPorMatricula("A1"));
+        r.replicar();
+
+        // Se perdió el punto de control: se vuelve a copiar todo
+        assertTrue(new File(espejo, "replica.txt").delete());
+        assertEquals(1, r.replicar());
+        assertEquals(lineas(quinto), lineas(new File(espejo, "Sistemas/Quinto Semestre.txt")));
+        assertEquals(3, r.ultimaSecuenciaAplicada());
+    }
+}
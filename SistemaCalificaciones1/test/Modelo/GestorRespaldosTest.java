@@ -0,0 +1,81 @@
+package Modelo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas de los respaldos: el CRC32 del manifiesto se comprueba al
+ * restaurar y antes de reutilizar una copia en un respaldo incremental.
+ */
+class GestorRespaldosTest {
+
+    @TempDir
+    Path carpeta;
+
+    private File raiz;
+    private File quinto;
+    private GestorRespaldos respaldos;
+
+    @BeforeEach
+    void crearArchivos() throws IOException {
+        raiz = carpeta.resolve("Alumnos").toFile();
+        quinto = new File(raiz, "Sistemas/Quinto Semestre.txt");
+        Files.createDirectories(quinto.getParentFile().toPath());
+        Files.write(quinto.toPath(), List.of("Ana|A1|8.0|Quinto Semestre|20|Sistemas|||"), StandardCharsets.UTF_8);
+        respaldos = new GestorRespaldos(raiz.getPath(), carpeta.resolve("Respaldos").toString());
+    }
+
+    private File copiaEn(String id) {
+        return carpeta.resolve("Respaldos").resolve(id).resolve("Sistemas").resolve("Quinto Semestre.txt").toFile();
+    }
+
+    /** Cambia un byte sin cambiar el tamaño */
+    private static void danar(File f) throws IOException {
+        byte[] b = Files.readAllBytes(f.toPath());
+        b[0] = (byte) (b[0] == 'X' ? 'Y' : 'X');
+        Files.write(f.toPath(), b);
+    }
+
+    @Test
+    void restaurarUnaCopiaDanadaNoTocaElArchivo() throws IOException {
+        respaldos.crearRespaldo("1");
+        List<String> original = Files.readAllLines(quinto.toPath(), StandardCharsets.UTF_8);
+        Files.write(quinto.toPath(), List.of("Luis|A2|9.0|Quinto Semestre|21|Sistemas|||"), StandardCharsets.UTF_8);
+        List<String> actual = Files.readAllLines(quinto.toPath(), StandardCharsets.UTF_8);
+        danar(copiaEn("1"));
+
+        assertThrows(IOException.class, () -> respaldos.restaurarTodo("1"));
+        assertThrows(IOException.class, () -> respaldos.restaurarSemestre("1", "Sistemas", "Quinto Semestre"));
+        assertEquals(actual, Files.readAllLines(quinto.toPath(), StandardCharsets.UTF_8));
+        assertFalse(new File(quinto.getPath() + ".restaurando").exists());
+
+        // Con la copia intacta se restaura
+        Files.write(copiaEn("1").toPath(), original, StandardCharsets.UTF_8);
+        respaldos.restaurarTodo("1");
+        assertEquals(original, Files.readAllLines(quinto.toPath(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void unaCopiaDanadaNoSeReutilizaEnElSiguienteRespaldo() throws IOException {
+        respaldos.crearRespaldo("1");
+        danar(copiaEn("1"));
+
+        respaldos.crearRespaldo("2");
+
+        assertEquals(Files.readAllLines(quinto.toPath(), StandardCharsets.UTF_8),
+                Files.readAllLines(copiaEn("2").toPath(), StandardCharsets.UTF_8));
+        respaldos.restaurarTodo("2");
+    }
+}
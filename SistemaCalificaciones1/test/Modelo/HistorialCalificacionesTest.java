@@ -0,0 +1,212 @@
+package Modelo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas del historial de promedios: registro en pendientes.log,
+ * compactación al archivo por columnas y consultas sobre ambos.
+ */
+class HistorialCalificacionesTest {
+
+    @TempDir
+    Path carpeta;
+
+    private File sistemas;
+    private File carpetaHistorial;
+    private HistorialCalificaciones historial;
+
+    @BeforeEach
+    void crearHistorial() {
+        File raiz = carpeta.resolve("Alumnos").toFile();
+        sistemas = new File(raiz, "Sistemas/Segundo Semestre.txt");
+        carpetaHistorial = carpeta.resolve("Historial").toFile();
+        historial = HistorialCalificaciones.deRaiz(raiz);
+    }
+
+    private static Alumno alumno(String matricula, double promedio, String semestre) {
+        return new Alumno("Alumno " + matricula, matricula, promedio, semestre, 20, "Sistemas", "", "", "");
+    }
+
+    private void cambio(String matricula, double antes, String semestreAntes, double despues, String semestreDespues) {
+        HistorialCalificaciones.registrar(sistemas, alumno(matricula, antes, semestreAntes),
+                alumno(matricula, despues, semestreDespues));
+    }
+
+    private static List<String> valores(List<HistorialCalificaciones.Punto> puntos) {
+        List<String> res = new ArrayList<>();
+        for (HistorialCalificaciones.Punto p : puntos)
+            res.add(p.getCarrera() + "/" + p.getSemestre() + "/" + p.getPromedio());
+        return res;
+    }
+
+    /** Historia de cada alumno, para comparar antes y después de compactar */
+    private List<List<String>> historias(int alumnos) throws IOException {
+        List<List<String>> res = new ArrayList<>();
+        for (int i = 0; i < alumnos; i++) res.add(valores(historial.historia(String.format("M%05d", i))));
+        return res;
+    }
+
+    /** Dos cambios por alumno: sube en Primero y baja al pasar a Segundo */
+    private void registrarCohorte(int alumnos) {
+        for (int i = 0; i < alumnos; i++) {
+            String m = String.format("M%05d", i);
+            cambio(m, 7.0, "Primer Semestre", 8.0 + (i % 10) / 10.0, "Primer Semestre");
+            cambio(m, 8.0 + (i % 10) / 10.0, "Primer Semestre", 7.5, "Segundo Semestre");
+        }
+    }
+
+    @Test
+    void registraSoloCambiosDePromedioOSemestre() throws IOException {
+        cambio("A1", 8.0, "Segundo Semestre", 8.0, "Segundo Semestre");
+        assertEquals(List.of(), historial.historia("A1"));
+
+        cambio("A1", 8.0, "Segundo Semestre", 9.0, "Segundo Semestre");
+        cambio("A1", 9.0, "Segundo Semestre", 9.0, "Tercer Semestre");
+        // El valor anterior solo cuenta la primera vez; la matrícula no distingue mayúsculas
+        assertEquals(List.of("Sistemas/Segundo Semestre/8.0", "Sistemas/Segundo Semestre/9.0",
+                "Sistemas/Tercer Semestre/9.0"), valores(historial.historia("a1")));
+    }
+
+    @Test
+    void altasYBajasNoSeRegistran() throws IOException {
+        List<Alumno[]> cambios = new ArrayList<>();
+        cambios.add(new Alumno[] { null, alumno("A1", 8.0, "Segundo Semestre") });
+        cambios.add(new Alumno[] { alumno("A2", 8.0, "Segundo Semestre"), null });
+        HistorialCalificaciones.registrar(sistemas, cambios);
+
+        assertArrayEquals(new long[] { 0, 0 }, historial.tamano());
+        assertFalse(new File(carpetaHistorial, "pendientes.log").exists());
+    }
+
+    @Test
+    void trayectoriaTomaElUltimoPromedioDeCadaSemestre() throws IOException {
+        cambio("A1", 7.0, "Primer Semestre", 8.0, "Primer Semestre");
+        cambio("A1", 8.0, "Primer Semestre", 8.5, "Segundo Semestre");
+        cambio("A1", 8.5, "Segundo Semestre", 9.0, "Segundo Semestre");
+
+        assertEquals(List.of("Sistemas/Primer Semestre/8.0", "Sistemas/Segundo Semestre/9.0"),
+                valores(historial.trayectoria("A1")));
+    }
+
+    @Test
+    void compactarConservaLaHistoriaDeVariosBloques() throws IOException {
+        registrarCohorte(2500);
+        List<List<String>> antes = historias(2500);
+        long[] tamanoAntes = historial.tamano();
+
+        historial.compactar();
+
+        assertTrue(new File(carpetaHistorial, "historial.hcol").exists());
+        assertFalse(new File(carpetaHistorial, "pendientes.log").exists());
+        assertFalse(new File(carpetaHistorial, "compactando.log").exists());
+        assertEquals(antes, historias(2500));
+        assertArrayEquals(tamanoAntes, historial.tamano());
+        assertArrayEquals(new long[] { 2500, 7500 }, tamanoAntes);
+        assertEquals(List.of(), historial.historia("Z999"));
+    }
+
+    @Test
+    void losPendientesSeMezclanConLoCompactado() throws IOException {
+        registrarCohorte(1500);
+        historial.compactar();
+
+        // Uno antes del primer bloque, uno existente y uno al final
+        cambio("A0", 6.0, "Primer Semestre", 6.5, "Primer Semestre");
+        cambio("M00700", 7.5, "Segundo Semestre", 9.5, "Segundo Semestre");
+        cambio("Z1", 9.0, "Primer Semestre", 9.5, "Primer Semestre");
+        List<List<String>> antes = historias(1500);
+        assertEquals(List.of("Sistemas/Primer Semestre/7.0", "Sistemas/Primer Semestre/8.0",
+                "Sistemas/Segundo Semestre/7.5", "Sistemas/Segundo Semestre/9.5"), antes.get(700));
+        assertArrayEquals(new long[] { 1502, 4505 }, historial.tamano());
+
+        historial.compactar();
+
+        assertEquals(antes, historias(1500));
+        assertEquals(List.of("Sistemas/Primer Semestre/6.0", "Sistemas/Primer Semestre/6.5"),
+                valores(historial.historia("A0")));
+        assertArrayEquals(new long[] { 1502, 4505 }, historial.tamano());
+    }
+
+    @Test
+    void unaCompactacionInterrumpidaNoCuentaDosVeces() throws IOException {
+        registrarCohorte(10);
+        byte[] pendientes = Files.readAllBytes(new File(carpetaHistorial, "pendientes.log").toPath());
+        historial.compactar();
+
+        // Se cerró después de cambiar el .hcol y antes de borrar compactando.log
+        Files.write(new File(carpetaHistorial, "compactando.log").toPath(), pendientes);
+        assertArrayEquals(new long[] { 10, 30 }, historial.tamano());
+
+        historial.compactar();
+        assertFalse(new File(carpetaHistorial, "compactando.log").exists());
+        assertArrayEquals(new long[] { 10, 30 }, historial.tamano());
+    }
+
+    @Test
+    void registrarMientrasSeCompactaNoPierdePuntos() throws Exception {
+        ExecutorService hilos = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int h = 0; h < 3; h++) {
+                int desde = h * 1000;
+                tareas.add(hilos.submit(() -> {
+                    for (int i = desde; i < desde + 1000; i++)
+                        cambio(String.format("M%05d", i), 7.0, "Primer Semestre", 8.0, "Primer Semestre");
+                    return null;
+                }));
+            }
+            tareas.add(hilos.submit(() -> {
+                for (int i = 0; i < 20; i++) historial.compactar();
+                return null;
+            }));
+            for (Future<?> t : tareas) t.get();
+        } finally {
+            hilos.shutdown();
+        }
+
+        assertArrayEquals(new long[] { 3000, 6000 }, historial.tamano());
+        historial.compactar();
+        assertArrayEquals(new long[] { 3000, 6000 }, historial.tamano());
+    }
+
+    @Test
+    void mayoresCaidasYPromedioPorSemestre() throws IOException {
+        cambio("A1", 9.0, "Primer Semestre", 6.0, "Segundo Semestre");
+        cambio("A2", 9.0, "Primer Semestre", 8.0, "Segundo Semestre");
+        cambio("A3", 7.0, "Primer Semestre", 9.0, "Segundo Semestre");
+        historial.compactar();
+        cambio("A4", 8.0, "Primer Semestre", 7.5, "Segundo Semestre");
+
+        List<HistorialCalificaciones.Caida> caidas = historial.mayoresCaidas(null, 2);
+        assertEquals(2, caidas.size());
+        assertEquals("a1", caidas.get(0).getMatricula());
+        assertEquals(3.0, caidas.get(0).getDiferencia(), 1e-9);
+        assertEquals("a2", caidas.get(1).getMatricula());
+        assertEquals(List.of(), historial.mayoresCaidas("Derecho", 5));
+
+        List<HistorialCalificaciones.PromedioCohorte> cohorte = historial.promedioPorSemestre("Sistemas");
+        assertEquals(2, cohorte.size());
+        assertEquals("Primer Semestre", cohorte.get(0).getSemestre());
+        assertEquals(4, cohorte.get(0).getAlumnos());
+        assertEquals(8.25, cohorte.get(0).getMedia(), 1e-9);
+        assertEquals("Segundo Semestre", cohorte.get(1).getSemestre());
+        assertEquals(7.625, cohorte.get(1).getMedia(), 1e-9);
+    }
+}
@@ -0,0 +1,143 @@
+package Modelo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas del índice de trigramas: normalización, distancia acotada,
+ * búsqueda tolerante a errores y reindexado de archivos que cambian.
+ */
+class IndiceNombresTest {
+
+    @TempDir
+    Path carpeta;
+
+    private File raiz;
+    private File quinto;
+    private IndiceNombres indice;
+
+    @BeforeEach
+    void crearArchivos() throws IOException {
+        raiz = carpeta.resolve("Alumnos").toFile();
+        quinto = new File(raiz, "Sistemas/Quinto Semestre.txt");
+        new GestorArchivos(quinto.getPath()).escribirLineas(List.of(
+                linea("José Pérez López", "S1"),
+                linea("María González", "S2"),
+                linea("Ana Sofía Núñez", "S3"),
+                linea("Jorge Ramírez", "S4")));
+        new GestorArchivos(new File(raiz, "Derecho/Primer Semestre.txt").getPath()).escribirLineas(List.of(
+                linea("Josefina Díaz", "D1"),
+                linea("Luis Hernández", "D2")));
+        indice = IndiceNombres.para(raiz.getPath(), carpeta.resolve("Indices").toString());
+    }
+
+    private static String linea(String nombre, String matricula) {
+        return nombre + "|" + matricula + "|9.0|Quinto Semestre|20|Sistemas|||";
+    }
+
+    private static List<String> matriculas(List<Alumno> alumnos) {
+        List<String> res = new ArrayList<>();
+        for (Alumno a : alumnos) res.add(a.getMatricula());
+        return res;
+    }
+
+    @Test
+    void normalizaAcentosMayusculasYSignos() {
+        assertEquals("jose perez", IndiceNombres.normalizar("  José   PÉREZ "));
+        assertEquals("ana sofia nunez", IndiceNombres.normalizar("Ana-Sofía Núñez."));
+        assertEquals("", IndiceNombres.normalizar(null));
+    }
+
+    @Test
+    void distanciaCuentaTransposicionesComoUnError() {
+        assertEquals(0, IndiceNombres.distanciaAcotada("jose", "jose", 2));
+        assertEquals(1, IndiceNombres.distanciaAcotada("jsoe", "jose", 2));
+        assertEquals(1, IndiceNombres.distanciaAcotada("gonzales", "gonzalez", 2));
+        assertEquals(3, IndiceNombres.distanciaAcotada("abc", "xyz", 2), "se corta en limite + 1");
+    }
+
+    @Test
+    void buscaSinAcentosYConErrores() {
+        assertEquals("S1", indice.buscar("jose perez", 10).get(0).getMatricula());
+        assertEquals(List.of("S2"), matriculas(indice.buscar("gonzales", 10)));
+        assertEquals(List.of("S3"), matriculas(indice.buscar("nunez", 10)));
+    }
+
+    @Test
+    void transposicionEnPalabraCortaUsaElRespaldoAcotado() {
+        List<String> res = matriculas(indice.buscar("jsoe", 10));
+        assertTrue(res.contains("S1"), res.toString());
+        assertTrue(indice.buscar("qqqq", 10).isEmpty());
+    }
+
+    @Test
+    void contencionVaAntesQueErrores() {
+        // "jose" está contenido en "josefina"; ambos deben aparecer, el exacto primero
+        List<String> res = matriculas(indice.buscar("jose", 10));
+        assertEquals("S1", res.get(0));
+        assertTrue(res.contains("D1"));
+    }
+
+    @Test
+    void laMatriculaExactaVaPrimero() {
+        assertEquals("D2", indice.buscar("d2", 10).get(0).getMatricula());
+    }
+
+    @Test
+    void buscaSoloEnUnArchivo() {
+        assertEquals(List.of("S1"), matriculas(indice.buscar("jose", 10, quinto)));
+    }
+
+    @Test
+    void textoCortoUsaTrigramasQueLoContienen() {
+        List<String> res = matriculas(indice.buscar("ez", 10, quinto));
+        assertTrue(res.containsAll(List.of("S1", "S2", "S3", "S4")), res.toString());
+    }
+
+    @Test
+    void reindexaLosArchivosQueCambian() throws IOException {
+        assertTrue(indice.buscar("wenceslao", 10).isEmpty());
+
+        // Cambio del programa: llega por RegistroVersiones
+        new GestorArchivos(quinto.getPath()).appendLineas(List.of(linea("Wenceslao Ruiz", "S5")), false);
+        assertEquals(List.of("S5"), matriculas(indice.buscar("wenceslao", 10)));
+
+        // Cambio externo que mueve las filas: se detecta al leer las candidatas
+        List<String> l = new ArrayList<>(Files.readAllLines(quinto.toPath(), StandardCharsets.UTF_8));
+        l.add(0, linea("Zacarías Pérez", "S0"));
+        Files.write(quinto.toPath(), l, StandardCharsets.UTF_8);
+        quinto.setLastModified(quinto.lastModified() + 2000);
+        List<Alumno> res = indice.buscar("perez", 10, quinto);
+        assertTrue(matriculas(res).containsAll(List.of("S0", "S1")), matriculas(res).toString());
+        for (Alumno a : res) assertTrue(IndiceNombres.normalizar(a.getNombre()).contains("perez"));
+    }
+
+    @Test
+    void lineasPorMatriculaYFragmento() {
+        assertEquals(List.of(linea("María González", "S2")), indice.lineas(quinto, "s2", null));
+        assertEquals(List.of(linea("José Pérez López", "S1")), indice.lineas(quinto, null, "perez"));
+        assertTrue(indice.lineas(quinto, null, "xyz").isEmpty());
+        assertNull(indice.lineas(quinto, null, "ez"), "un fragmento tan corto no acota filas");
+    }
+
+    @Test
+    void funcionaConArchivosComprimidos() throws IOException {
+        GestorArchivos g = new GestorArchivos(quinto.getPath());
+        g.comprimir();
+        assertEquals(List.of("S2"), matriculas(indice.buscar("gonzalez", 10)));
+        assertEquals(List.of(linea("Jorge Ramírez", "S4")), indice.lineas(quinto, null, "ramirez"));
+    }
+}
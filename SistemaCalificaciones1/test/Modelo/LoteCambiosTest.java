@@ -0,0 +1,161 @@
+package Modelo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas de los lotes de cambios: duplicados revisados antes de escribir,
+ * movimientos entre archivos y lotes interrumpidos que se terminan al iniciar.
+ */
+class LoteCambiosTest {
+
+    @TempDir
+    Path carpeta;
+
+    private File raiz;
+    private File quinto;
+    private File sexto;
+    private AlumnoDAO dao;
+
+    @BeforeEach
+    void crearArchivos() throws IOException {
+        raiz = carpeta.resolve("Alumnos").toFile();
+        quinto = new File(raiz, "Sistemas/Quinto Semestre.txt");
+        sexto = new File(raiz, "Sistemas/Sexto Semestre.txt");
+        new GestorArchivos(quinto.getPath()).escribirLineas(List.of(linea("A1", "Quinto"), linea("A2", "Quinto")));
+        new GestorArchivos(sexto.getPath()).escribirLineas(List.of(linea("B1", "Sexto")));
+        dao = new AlumnoDAO(quinto.getPath());
+    }
+
+    @AfterEach
+    void vaciarBitacora() {
+        assertTrue(BitacoraAuditoria.vaciar(5000));
+    }
+
+    private static String linea(String matricula, String semestre) {
+        return "Alumno " + matricula + "|" + matricula + "|8.0|" + semestre + " Semestre|20|Sistemas|||";
+    }
+
+    private static Alumno alumno(String matricula, String semestre) {
+        return Alumno.fromLinea(linea(matricula, semestre));
+    }
+
+    private static List<String> lineas(File f) throws IOException {
+        return new GestorArchivos(f.getPath()).leerLineas();
+    }
+
+    /** @return archivos que no son semestres dentro de la carrera, más los diarios */
+    private List<String> sobrantes() {
+        List<String> res = new ArrayList<>();
+        for (String n : quinto.getParentFile().list())
+            if (!n.endsWith(".txt") && !n.endsWith(".txtz")) res.add(n);
+        String[] diarios = carpeta.resolve("Lotes").toFile().list();
+        if (diarios != null) res.addAll(List.of(diarios));
+        return res;
+    }
+
+    @Test
+    void moverCambiaAmbosArchivos() throws IOException {
+        LoteCambios.Resultado r = dao.lote().mover(quinto, "a2", sexto, alumno("A2", "Sexto")).aplicar();
+
+        assertEquals(1, r.getMovidos());
+        assertEquals(2, r.getArchivos());
+        assertEquals(List.of(linea("A1", "Quinto")), lineas(quinto));
+        assertEquals(List.of(linea("B1", "Sexto"), linea("A2", "Sexto")), lineas(sexto));
+        assertEquals(List.of(), sobrantes());
+    }
+
+    @Test
+    void moverQuedaEnElHistorial() throws IOException {
+        dao.lote().mover(quinto, "A2", sexto, alumno("A2", "Sexto")).eliminar("A1").aplicar();
+
+        HistorialCalificaciones h = HistorialCalificaciones.deRaiz(raiz);
+        List<String> puntos = new ArrayList<>();
+        for (HistorialCalificaciones.Punto p : h.historia("A2"))
+            puntos.add(p.getCarrera() + "/" + p.getSemestre() + "/" + p.getPromedio());
+        assertEquals(List.of("Sistemas/Quinto Semestre/8.0", "Sistemas/Sexto Semestre/8.0"), puntos);
+        // Una baja sola no tiene valor nuevo
+        assertEquals(List.of(), h.historia("A1"));
+    }
+
+    @Test
+    void moverAUnArchivoComprimido() throws IOException {
+        new GestorArchivos(sexto.getPath()).comprimir();
+
+        dao.lote().mover(quinto, "A1", sexto, alumno("A1", "Sexto")).aplicar();
+
+        assertTrue(new File(sexto.getPath() + "z").exists());
+        assertFalse(sexto.exists());
+        assertEquals(List.of(linea("B1", "Sexto"), linea("A1", "Sexto")), lineas(sexto));
+        assertEquals(List.of(linea("A2", "Quinto")), lineas(quinto));
+        assertEquals(List.of(), sobrantes());
+    }
+
+    @Test
+    void unMovimientoRepetidoNoTocaNingunArchivo() throws IOException {
+        new GestorArchivos(sexto.getPath()).escribirLineas(List.of(linea("A1", "Sexto")));
+
+        assertThrows(IllegalStateException.class,
+                () -> dao.lote().mover(quinto, "A1", sexto, alumno("A1", "Sexto")).aplicar());
+        assertEquals(List.of(linea("A1", "Quinto"), linea("A2", "Quinto")), lineas(quinto));
+        assertEquals(List.of(linea("A1", "Sexto")), lineas(sexto));
+    }
+
+    @Test
+    void editarAUnaMatriculaExistenteSeRechaza() throws IOException {
+        assertThrows(IllegalStateException.class, () -> dao.lote().editar("A1", alumno("A2", "Quinto")).aplicar());
+        assertEquals(List.of(linea("A1", "Quinto"), linea("A2", "Quinto")), lineas(quinto));
+
+        // Dos ediciones que intercambian sus matrículas no chocan
+        dao.lote().editar("A1", alumno("A2", "Quinto")).editar("A2", alumno("A1", "Quinto")).aplicar();
+        assertEquals(List.of(linea("A2", "Quinto"), linea("A1", "Quinto")), lineas(quinto));
+
+        // Tampoco si la matrícula se libera con una baja en el mismo lote
+        dao.lote().eliminar("A1").editar("A2", alumno("A1", "Quinto")).aplicar();
+        assertEquals(List.of(linea("A1", "Quinto")), lineas(quinto));
+    }
+
+    @Test
+    void recuperarTerminaLosReemplazosDelDiario() throws IOException {
+        // Se cerró después de reemplazar Quinto y antes de Sexto
+        new GestorArchivos(quinto.getPath()).escribirLineas(List.of(linea("A1", "Quinto")));
+        Files.write(new File(sexto.getPath() + ".lote").toPath(),
+                List.of(linea("B1", "Sexto"), linea("A2", "Sexto")), StandardCharsets.UTF_8);
+        Files.createDirectories(carpeta.resolve("Lotes"));
+        Files.write(carpeta.resolve("Lotes").resolve("lote1.txt"),
+                List.of("#lote v1", quinto.getAbsolutePath(), sexto.getAbsolutePath()), StandardCharsets.UTF_8);
+
+        LoteCambios.recuperar(raiz);
+
+        assertEquals(List.of(linea("A1", "Quinto")), lineas(quinto));
+        assertEquals(List.of(linea("B1", "Sexto"), linea("A2", "Sexto")), lineas(sexto));
+        assertEquals(List.of(), sobrantes());
+        List<String> feed = Files.readAllLines(carpeta.resolve("Cambios").resolve("feed.log"), StandardCharsets.UTF_8);
+        assertEquals(List.of("1\tARCHIVO\tSistemas\tSexto Semestre\t\t"), feed);
+    }
+
+    @Test
+    void sinDiarioLosTemporalesSeDescartan() throws IOException {
+        Files.write(new File(sexto.getPath() + ".lote").toPath(), List.of(linea("A2", "Sexto")), StandardCharsets.UTF_8);
+
+        LoteCambios.recuperar(raiz);
+
+        assertEquals(List.of(linea("B1", "Sexto")), lineas(sexto));
+        assertEquals(List.of(), sobrantes());
+    }
+}
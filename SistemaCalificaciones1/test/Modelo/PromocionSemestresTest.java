@@ -0,0 +1,204 @@
+package Modelo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas de la promoción de fin de ciclo: cada carrera se confirma completa
+ * o no se toca, y una promoción interrumpida se termina con el diario.
+ */
+class PromocionSemestresTest {
+
+    @TempDir
+    Path carpeta;
+
+    private File derecho;
+    private PromocionSemestres promocion;
+
+    @BeforeEach
+    void crearCarrera() throws IOException {
+        derecho = carpeta.resolve("Alumnos").resolve("Derecho").toFile();
+        escribir("Primer Semestre", "A1", "A2");
+        escribir("Segundo Semestre", "B1");
+        escribir("Octavo Semestre", "H1");
+        promocion = new PromocionSemestres(derecho);
+    }
+
+    @AfterEach
+    void vaciarBitacora() {
+        assertTrue(BitacoraAuditoria.vaciar(5000));
+    }
+
+    private File archivo(String semestre) {
+        return new File(derecho, semestre + ".txt");
+    }
+
+    private void escribir(String semestre, String... matriculas) throws IOException {
+        List<String> lineas = new ArrayList<>();
+        for (String m : matriculas) lineas.add(linea(m, semestre));
+        new GestorArchivos(archivo(semestre).getPath()).escribirLineas(lineas);
+    }
+
+    private static String linea(String matricula, String semestre) {
+        return "Alumno " + matricula + "|" + matricula + "|8.0|" + semestre + "|20|Derecho|||";
+    }
+
+    private List<String> lineas(String semestre) throws IOException {
+        return new GestorArchivos(archivo(semestre).getPath()).leerLineas();
+    }
+
+    /** @return archivos que no son semestres (temporales o diario) */
+    private List<String> sobrantes() {
+        List<String> res = new ArrayList<>();
+        for (String n : derecho.list())
+            if (!n.endsWith(".txt") && !n.endsWith(".txtz")) res.add(n);
+        return res;
+    }
+
+    @Test
+    void cadaAlumnoPasaAlSemestreSiguiente() throws IOException {
+        PromocionSemestres.Reporte r = promocion.promover(false);
+
+        assertTrue(r.isAplicado());
+        assertEquals(4, r.getPromovidos());
+        assertEquals(List.of(), lineas("Primer Semestre"));
+        assertEquals(List.of(linea("A1", "Segundo Semestre"), linea("A2", "Segundo Semestre")), lineas("Segundo Semestre"));
+        assertEquals(List.of(linea("B1", "Tercer Semestre")), lineas("Tercer Semestre"));
+        assertEquals(List.of(linea("H1", "Egresados")), lineas("Egresados"));
+        assertFalse(archivo("Noveno Semestre").exists());
+        assertArrayEquals(new int[] { 1, 1, 2, 2 }, r.conteo("Segundo Semestre"));
+        assertEquals(List.of(), sobrantes());
+    }
+
+    @Test
+    void soloLosSemestresIndicadosAvanzan() throws IOException {
+        PromocionSemestres.Reporte r = promocion.promover(List.of("Primer Semestre"), false);
+
+        assertTrue(r.isAplicado());
+        assertEquals(List.of(), lineas("Primer Semestre"));
+        // Los que ya estaban se quedan y los promovidos se agregan después
+        assertEquals(List.of(linea("B1", "Segundo Semestre"), linea("A1", "Segundo Semestre"),
+                linea("A2", "Segundo Semestre")), lineas("Segundo Semestre"));
+        assertEquals(List.of(linea("H1", "Octavo Semestre")), lineas("Octavo Semestre"));
+        assertFalse(archivo("Tercer Semestre").exists());
+    }
+
+    @Test
+    void laPromocionQuedaEnElHistorial() throws IOException {
+        promocion.promover(List.of("Primer Semestre"), false);
+
+        HistorialCalificaciones h = HistorialCalificaciones.deRaiz(derecho.getParentFile());
+        List<String> puntos = new ArrayList<>();
+        for (HistorialCalificaciones.Punto p : h.trayectoria("A1"))
+            puntos.add(p.getCarrera() + "/" + p.getSemestre() + "/" + p.getPromedio());
+        assertEquals(List.of("Derecho/Primer Semestre/8.0", "Derecho/Segundo Semestre/8.0"), puntos);
+        assertEquals(List.of(), h.historia("B1"));
+    }
+
+    @Test
+    void simularNoEscribeNada() throws IOException {
+        PromocionSemestres.Reporte r = promocion.promover(true);
+
+        assertFalse(r.isAplicado());
+        assertEquals(4, r.getPromovidos());
+        assertEquals(List.of(linea("A1", "Primer Semestre"), linea("A2", "Primer Semestre")), lineas("Primer Semestre"));
+        assertFalse(archivo("Tercer Semestre").exists());
+        assertEquals(List.of(), sobrantes());
+    }
+
+    @Test
+    void conMatriculasRepetidasLaCarreraQuedaComoEstaba() throws IOException {
+        escribir("Segundo Semestre", "B1", "A2");
+
+        PromocionSemestres.Reporte r = promocion.promover(List.of("Primer Semestre"), false);
+
+        assertFalse(r.isAplicado());
+        assertEquals(List.of("A2: Primer Semestre → Segundo Semestre"), r.getConflictos());
+        assertEquals(List.of(linea("A1", "Primer Semestre"), linea("A2", "Primer Semestre")), lineas("Primer Semestre"));
+        assertEquals(List.of(linea("B1", "Segundo Semestre"), linea("A2", "Segundo Semestre")), lineas("Segundo Semestre"));
+        assertEquals(List.of(), sobrantes());
+    }
+
+    @Test
+    void unErrorAlEscribirNoDejaLaCarreraAMedias() throws IOException {
+        // El temporal de Tercer Semestre no se puede crear (es una carpeta con algo dentro)
+        File estorbo = new File(derecho, "Tercer Semestre.txt.promocion");
+        assertTrue(estorbo.mkdir());
+        Files.writeString(new File(estorbo, "x").toPath(), "x");
+
+        assertThrows(IOException.class, () -> promocion.promover(false));
+
+        assertEquals(List.of(linea("A1", "Primer Semestre"), linea("A2", "Primer Semestre")), lineas("Primer Semestre"));
+        assertEquals(List.of(linea("B1", "Segundo Semestre")), lineas("Segundo Semestre"));
+        assertEquals(List.of(linea("H1", "Octavo Semestre")), lineas("Octavo Semestre"));
+        assertEquals(List.of("Tercer Semestre.txt.promocion"), sobrantes());
+    }
+
+    @Test
+    void recuperarTerminaLosReemplazosDelDiario() throws IOException {
+        // Se cerró después de reemplazar Primer Semestre y antes de Segundo
+        Files.write(new File(derecho, "Segundo Semestre.txt.promocion").toPath(),
+                List.of(linea("A1", "Segundo Semestre")), StandardCharsets.UTF_8);
+        Files.write(new File(derecho, "promocion.txt").toPath(),
+                List.of("#promocion v1", "Primer Semestre", "Segundo Semestre"), StandardCharsets.UTF_8);
+
+        PromocionSemestres.recuperar(derecho);
+
+        assertEquals(List.of(linea("A1", "Segundo Semestre")), lineas("Segundo Semestre"));
+        assertEquals(2, lineas("Primer Semestre").size());
+        assertEquals(List.of(), sobrantes());
+
+        // La réplica recibe el semestre reemplazado completo
+        List<String> feed = Files.readAllLines(carpeta.resolve("Cambios").resolve("feed.log"), StandardCharsets.UTF_8);
+        assertEquals(List.of("1\tARCHIVO\tDerecho\tSegundo Semestre\t\t"), feed);
+    }
+
+    @Test
+    void sinDiarioLosTemporalesSeDescartan() throws IOException {
+        // Se cerró antes de escribir el diario
+        Files.write(new File(derecho, "Segundo Semestre.txt.promocion").toPath(),
+                List.of(linea("A1", "Segundo Semestre")), StandardCharsets.UTF_8);
+
+        PromocionSemestres.recuperar(derecho);
+
+        assertEquals(List.of(linea("B1", "Segundo Semestre")), lineas("Segundo Semestre"));
+        assertEquals(List.of(), sobrantes());
+    }
+
+    @Test
+    void unSemestreArchivadoQuedaEnTextoPlano() throws IOException {
+        new AlumnoDAO(archivo("Segundo Semestre").getPath()).comprimir();
+        assertTrue(new File(derecho, "Segundo Semestre.txtz").exists());
+
+        promocion.promover(false);
+
+        assertFalse(new File(derecho, "Segundo Semestre.txtz").exists());
+        assertEquals(List.of(linea("A1", "Segundo Semestre"), linea("A2", "Segundo Semestre")), lineas("Segundo Semestre"));
+        assertEquals(List.of(linea("B1", "Tercer Semestre")), lineas("Tercer Semestre"));
+    }
+
+    @Test
+    void cambiaSoloElCampoSemestre() {
+        assertEquals("Ana|A1|9.5|Segundo Semestre|19|Derecho|a|b|c",
+                PromocionSemestres.conSemestre("Ana|A1|9.5|Primer Semestre|19|Derecho|a|b|c", "Segundo Semestre"));
+        assertEquals("Ana|A1|9.5|Egresados",
+                PromocionSemestres.conSemestre("Ana|A1|9.5|Octavo Semestre", "Egresados"));
+        assertEquals("Ana|A1", PromocionSemestres.conSemestre("Ana|A1", "Egresados"));
+    }
+}